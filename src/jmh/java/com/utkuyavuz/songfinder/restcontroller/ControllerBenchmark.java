@@ -0,0 +1,146 @@
+package com.utkuyavuz.songfinder.restcontroller;
+
+import com.sun.net.httpserver.HttpServer;
+import com.utkuyavuz.songfinder.application.SongFinder;
+import com.utkuyavuz.songfinder.cache.SearchResultCache;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A song preview request through the whole application: Tomcat, the controller, the services and the caches,
+ * with the preview audio served by an in-process stub of the Spotify CDN.
+ * The search result is cached beforehand, so that no request leaves the process. With <code>upstream</code> the
+ * audio caches are off and every request downloads the audio from the stub, with <code>cached</code> it is
+ * written from the off-heap cache.
+ * <br/> Run with more threads, e.g. <code>-t 8</code>, to measure the request path under concurrency.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    /* The searched song */
+    private static final String QUERY = "californication";
+    /* Market of the searches of the service */
+    private static final String MARKET = "TR";
+
+    /* Where the audio comes from */
+    @Param({ "upstream", "cached" })
+    private String audio;
+
+    /* Size of the preview audio, about 30 seconds of mp3 */
+    @Param({ "360000" })
+    private int previewBytes;
+
+    /* The stub CDN */
+    private HttpServer cdn;
+    /* Threads of the stub CDN */
+    private ExecutorService cdnExecutor;
+    /* The application */
+    private ConfigurableApplicationContext application;
+    /* The client */
+    private CloseableHttpClient client;
+    /* The song preview request */
+    private String requestUri;
+
+    @Setup
+    public void start() throws IOException {
+        byte[] preview = new byte[previewBytes];
+        new Random(42).nextBytes(preview);
+        cdnExecutor = Executors.newFixedThreadPool(32);
+        cdn = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        cdn.setExecutor(cdnExecutor);
+        cdn.createContext("/mp3-preview/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "audio/mpeg");
+            exchange.sendResponseHeaders(200, preview.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(preview);
+            }
+        });
+        cdn.start();
+
+        boolean cached = "cached".equals(audio);
+        application = new SpringApplicationBuilder(SongFinder.class)
+                .bannerMode(Banner.Mode.OFF)
+                .properties("server.port=0",
+                        "logging.file=",
+                        "logging.level.com.utkuyavuz=WARN",
+                        "songfinder.cache.audio.maximum-bytes=" + (cached ? 268435456 : 0),
+                        "songfinder.cache.audio.maximum-entry-bytes=" + (cached ? 1048576 : 0),
+                        "songfinder.cache.disk.maximum-bytes=0")
+                .run();
+        application.getBean(SearchResultCache.class).put(QUERY, MARKET, "http://127.0.0.1:"
+                + cdn.getAddress().getPort() + "/mp3-preview/47ae160853bef11a71e109da384440a29e5d56b0");
+
+        client = HttpClients.custom().setMaxConnTotal(256).setMaxConnPerRoute(256).build();
+        requestUri = "http://127.0.0.1:" + application.getEnvironment().getProperty("local.server.port")
+                + "/rest/songfinder?songname=" + QUERY + "&token=benchmark";
+    }
+
+    @TearDown
+    public void stop() throws IOException {
+        client.close();
+        application.close();
+        cdn.stop(0);
+        cdnExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public long songPreview(Buffer buffer) throws IOException {
+        try (CloseableHttpResponse response = client.execute(new HttpGet(requestUri))) {
+            if (response.getStatusLine().getStatusCode() != 200) {
+                throw new IllegalStateException("Song preview failed - " + response.getStatusLine());
+            }
+            HttpEntity entity = response.getEntity();
+            long read = 0;
+            try (InputStream in = entity.getContent()) {
+                int length;
+                while ((length = in.read(buffer.bytes)) != -1) {
+                    read += length;
+                }
+            }
+            return read;
+        }
+    }
+
+    /**
+     * A buffer per benchmark thread to read the responses into
+     */
+    @State(Scope.Thread)
+    public static class Buffer {
+
+        /* The buffer */
+        private final byte[] bytes = new byte[8192];
+    }
+}
@@ -0,0 +1,47 @@
+package com.utkuyavuz.songfinder.service.input;
+
+import com.utkuyavuz.songfinder.util.ByteRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building and validating the service inputs of a request, as the controller does.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InputValidationBenchmark {
+
+    /* Request values, in fields so that they are not constant folded */
+    private String query = "red hot chili peppers californication";
+    private String token = "BQDxq2T4bMeRnWv8ZJz1eXQ7A7cM3mYkV3b9y1J0fHkq";
+    private String previewUrl = "https://p.scdn.co/mp3-preview/47ae160853bef11a71e109da384440a29e5d56b0";
+    private String range = "bytes=32768-";
+
+    @Benchmark
+    public boolean searchItemInput() {
+        return new SearchItemInput(query, token).isValid();
+    }
+
+    @Benchmark
+    public boolean previewInput() {
+        return new PreviewInput(previewUrl).isValid();
+    }
+
+    @Benchmark
+    public boolean rangedPreviewInput() {
+        return new PreviewInput(previewUrl, ByteRange.parse(range)).isValid();
+    }
+}
@@ -0,0 +1,107 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Reading the preview url, or all the track fields, out of a Spotify search response: the Json tree of
+ * {@link GsonUtils} against the streaming {@link GsonStreamUtils}, {@link JsonPath} and {@link JsonProjection}.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonBenchmark {
+
+    /* Path to the preview url of the first track */
+    private static final JsonPath PREVIEW_URL = JsonPath.compile("tracks.items[0].preview_url");
+    /* Fields of the tracks */
+    private static final JsonProjection TRACKS = JsonProjection.compile("tracks.items", "id", "name",
+            "artists[*].name", "album.images[0].url", "duration_ms", "popularity", "is_playable", "preview_url");
+
+    /* Number of tracks in the response, the service asks for one */
+    @Param({ "1", "20" })
+    private int items;
+
+    /* The response */
+    private byte[] response;
+
+    @Setup
+    public void createResponse() throws IOException {
+        String item = read("/spotify/search-item.json");
+        StringBuilder json = new StringBuilder("{\"tracks\": {\"href\": \"https://api.spotify.com/v1/search"
+                + "?query=californication&type=track&market=TR&offset=0&limit=" + items + "\", \"items\": [");
+        for (int i = 0; i < items; i++) {
+            json.append(i == 0 ? "" : ", ").append(item);
+        }
+        json.append("], \"limit\": ").append(items).append(", \"next\": null, \"offset\": 0, \"previous\": null,"
+                + " \"total\": 341}}");
+        response = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public JsonElement gsonUtils() {
+        GsonUtils gsonUtils = new GsonUtils(new String(response, StandardCharsets.UTF_8));
+        gsonUtils
+                .getAsJsonObject("tracks")
+                .getAsJsonArray("items")
+                .getJsonObjectAtIndex(0)
+                .getJsonPrimitive("preview_url");
+        return gsonUtils.getCurrent();
+    }
+
+    @Benchmark
+    public JsonPrimitive gsonStreamUtils() {
+        GsonStreamUtils gsonUtils = new GsonStreamUtils(response);
+        gsonUtils
+                .getAsJsonObject("tracks")
+                .getAsJsonArray("items")
+                .getJsonObjectAtIndex(0)
+                .getJsonPrimitive("preview_url");
+        return gsonUtils.getCurrent();
+    }
+
+    @Benchmark
+    public JsonPrimitive jsonPath() {
+        return PREVIEW_URL.read(response).getValue();
+    }
+
+    @Benchmark
+    public List<JsonProjection.Row> jsonProjection() {
+        return TRACKS.read(response).getRows();
+    }
+
+    /* Reads a UTF-8 resource */
+    private static String read(String resource) throws IOException {
+        try (InputStream in = JsonBenchmark.class.getResourceAsStream(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
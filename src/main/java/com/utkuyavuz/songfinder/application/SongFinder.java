@@ -16,7 +16,8 @@ import org.springframework.context.annotation.ComponentScan;
  * @since 2018-04-16
  */
 @SpringBootApplication
-@ComponentScan(basePackages = { "com.utkuyavuz.songfinder.restcontroller ", " com.utkuyavuz.songfinder.service " })
+@ComponentScan(basePackages = { "com.utkuyavuz.songfinder.restcontroller ", " com.utkuyavuz.songfinder.service ",
+        " com.utkuyavuz.songfinder.configuration " })
 public class SongFinder extends SpringBootServletInitializer {
 
     /**
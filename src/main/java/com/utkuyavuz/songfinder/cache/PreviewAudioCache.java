@@ -0,0 +1,462 @@
+package com.utkuyavuz.songfinder.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.utkuyavuz.songfinder.util.ByteBufferContent;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import com.utkuyavuz.songfinder.util.TransferBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of preview audio keyed by preview url and bounded by the total number of cached bytes.
+ * The audio is kept in direct buffers outside of the Java heap, so that a large cache does not add to the work
+ * of the garbage collector, and hits are written to the client straight from the cached buffer.
+ * <br/> The direct memory limit of the JVM (<code>-XX:MaxDirectMemorySize</code>) must leave room for the cache and
+ * for the buffers of the fills in progress, which are bounded separately.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class PreviewAudioCache {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreviewAudioCache.class);
+
+    /* Direct buffers keyed by preview url, weighted by their size */
+    private final Cache<String, ByteBuffer> cache;
+    /* Largest audio which is cached */
+    private final long maximumEntryBytes;
+    /* Maximum number of bytes of the buffers of the fills in progress */
+    private final long maximumFillingBytes;
+    /* Number of bytes of the buffers of the fills in progress */
+    private final AtomicLong fillingBytes = new AtomicLong();
+    /* Fills in progress by preview url */
+    private final ConcurrentMap<String, CachingContent> filling = new ConcurrentHashMap<>();
+    /* Number of clients which followed a fill in progress */
+    private final LongAdder followCount = new LongAdder();
+
+    /**
+     * Initialize the cache, whose fills in progress may hold up to its maximum number of bytes
+     *
+     * @param maximumBytes Maximum number of cached bytes
+     * @param maximumEntryBytes Largest audio in bytes which is cached
+     */
+    public PreviewAudioCache(long maximumBytes, long maximumEntryBytes) {
+        this(maximumBytes, maximumEntryBytes, maximumBytes);
+    }
+
+    /**
+     * Initialize the cache
+     *
+     * @param maximumBytes Maximum number of cached bytes
+     * @param maximumEntryBytes Largest audio in bytes which is cached
+     * @param maximumFillingBytes Maximum number of bytes of the buffers of the fills in progress
+     */
+    public PreviewAudioCache(long maximumBytes, long maximumEntryBytes, long maximumFillingBytes) {
+        LOGGER.debug("Initializing PreviewAudioCache - MaximumBytes[" + maximumBytes + "] MaximumEntryBytes["
+                + maximumEntryBytes + "] MaximumFillingBytes[" + maximumFillingBytes + "]");
+        this.maximumEntryBytes = maximumEntryBytes;
+        this.maximumFillingBytes = maximumFillingBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String url, ByteBuffer audio) -> audio.capacity())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the cached audio of a preview url
+     *
+     * @param previewUrl The preview url
+     * @return The audio written from the cached buffer, <code>null</code> if it is not cached
+     */
+    public StreamingContent get(String previewUrl) {
+        ByteBuffer audio = cache.getIfPresent(previewUrl);
+        LOGGER.debug("PreviewAudioCache " + (audio == null ? "miss" : "hit") + " - URL[" + previewUrl + "]");
+        return audio == null ? null : new ByteBufferContent(audio);
+    }
+
+    /**
+     * Checks whether the audio of a preview url is cached, without counting a hit or a miss
+     *
+     * @param previewUrl The preview url
+     * @return <code>true</code> if the audio is cached
+     */
+    public boolean contains(String previewUrl) {
+        return cache.asMap().containsKey(previewUrl);
+    }
+
+    /**
+     * Caches the audio of a preview url, copying it to a direct buffer
+     *
+     * @param previewUrl The preview url
+     * @param audio The raw audio
+     */
+    public void put(String previewUrl, byte[] audio) {
+        if (!isCacheable(audio.length)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(audio.length);
+        buffer.put(audio);
+        buffer.flip();
+        cache.put(previewUrl, buffer);
+    }
+
+    /**
+     * Wraps a streamed audio so that it is cached while it is written to the client.
+     * The audio is cached only if it has a known length within the entry limit and is written completely.
+     * Until then, other clients of the same preview url can {@link #follow(String)} the fill.
+     * <br/> The audio is returned as is if the preview url is already being filled, or if the fills in progress
+     * would hold more than their maximum number of bytes.
+     *
+     * @param previewUrl The preview url
+     * @param content The streamed audio
+     * @return The audio to write to the client
+     */
+    public StreamingContent fillOnWrite(String previewUrl, StreamingContent content) {
+        long length = content.getContentLength();
+        if (!isCacheable(length)) {
+            return content;
+        }
+        /* The buffer is allocated only for the first fill of the url, within the limit */
+        CachingContent fill = filling.computeIfAbsent(previewUrl,
+                url -> reserve(length) ? new CachingContent(url, content) : null);
+        if (fill == null || fill.content != content) {
+            LOGGER.debug("PreviewAudioCache not filling - URL[" + previewUrl + "] FillingBytes[" + fillingBytes.get()
+                    + "]");
+            return content;
+        }
+        return fill;
+    }
+
+    /**
+     * Follows the fill of a preview url which is in progress, without a fallback, see
+     * {@link #follow(String, Fallback)}
+     *
+     * @param previewUrl The preview url
+     * @return The audio written behind the fill, <code>null</code> if no fill of the url is in progress
+     */
+    public StreamingContent follow(String previewUrl) {
+        return follow(previewUrl, null);
+    }
+
+    /**
+     * Follows the fill of a preview url which is in progress, see {@link #fillOnWrite(String, StreamingContent)}.
+     * The returned audio is written from the cache buffer as the streamed audio arrives. While it has followers, a
+     * fill goes on even if its own client goes away. A follower no longer counts once it is closed, written or not.
+     * <br/> If the fill fails before the follower has written anything, the follower writes the audio opened by the
+     * fallback instead. If it fails later, the follower fails too: its length is already sent, so its client gets a
+     * truncated response.
+     *
+     * @param previewUrl The preview url
+     * @param fallback Opens the audio if the fill fails before the follower has written anything, optional
+     * @return The audio written behind the fill, <code>null</code> if no fill of the url is in progress
+     */
+    public StreamingContent follow(String previewUrl, Fallback fallback) {
+        CachingContent fill = filling.get(previewUrl);
+        if (fill == null || !fill.addFollower()) {
+            return null;
+        }
+        followCount.increment();
+        LOGGER.debug("PreviewAudioCache following fill - URL[" + previewUrl + "]");
+        return new FollowingContent(fill, fallback);
+    }
+
+    /**
+     * Gets the number of bytes held by the cache
+     *
+     * @return The resident bytes
+     */
+    public long getResidentBytes() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    /**
+     * Gets the number of bytes of the buffers of the fills in progress
+     *
+     * @return The filling bytes
+     */
+    public long getFillingBytes() {
+        return fillingBytes.get();
+    }
+
+    /**
+     * Gets the number of clients which followed a fill in progress instead of downloading the audio themselves
+     *
+     * @return The follow count
+     */
+    public long getFollowCount() {
+        return followCount.sum();
+    }
+
+    /**
+     * Gets the underlying cache, e.g. to publish its statistics
+     *
+     * @return The Caffeine {@link Cache}
+     */
+    public Cache<String, ByteBuffer> getCache() {
+        return cache;
+    }
+
+    /* Whether an audio of the given length is cached */
+    private boolean isCacheable(long length) {
+        return length > 0 && length <= maximumEntryBytes;
+    }
+
+    /* Reserves the buffer of a fill, false if the fills in progress would exceed their maximum */
+    private boolean reserve(long length) {
+        while (true) {
+            long current = fillingBytes.get();
+            if (current + length > maximumFillingBytes) {
+                return false;
+            } else if (fillingBytes.compareAndSet(current, current + length)) {
+                return true;
+            }
+        }
+    }
+
+    /* Copies the streamed audio into a direct buffer while it is written, followers read behind it */
+    private class CachingContent implements StreamingContent {
+
+        /* The preview url */
+        private final String previewUrl;
+        /* The streamed audio */
+        private final StreamingContent content;
+        /* The cache buffer, filled up to filled */
+        private final ByteBuffer buffer;
+        /* Number of bytes in the buffer, published to the followers */
+        private volatile int filled;
+        /* Whether the fill has ended, completely or not */
+        private volatile boolean ended;
+        /* Number of followers, -1 once the fill has ended */
+        private int followers;
+
+        CachingContent(String previewUrl, StreamingContent content) {
+            this.previewUrl = previewUrl;
+            this.content = content;
+            this.buffer = ByteBuffer.allocateDirect((int) content.getContentLength());
+        }
+
+        @Override
+        public long getContentLength() {
+            return content.getContentLength();
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            IOException[] clientFailure = new IOException[1];
+            try {
+                content.writeTo(new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[] { (byte) b }, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (clientFailure[0] == null) {
+                            try {
+                                out.write(b, off, len);
+                            } catch (IOException e) {
+                                clientFailure[0] = e;
+                            }
+                        }
+                        if (clientFailure[0] != null && !hasFollowers()) {
+                            /* Keep filling for the followers, give up once none is left */
+                            throw clientFailure[0];
+                        }
+                        append(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        if (clientFailure[0] == null) {
+                            out.flush();
+                        }
+                    }
+                });
+            } finally {
+                end();
+            }
+            if (clientFailure[0] != null) {
+                throw clientFailure[0];
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                content.close();
+            } finally {
+                /* Never written, e.g. the request timed out */
+                end();
+            }
+        }
+
+        /* Registers a follower, false if the fill has already ended */
+        synchronized boolean addFollower() {
+            if (followers < 0) {
+                return false;
+            }
+            followers++;
+            return true;
+        }
+
+        /* Unregisters a follower which has gone away */
+        synchronized void removeFollower() {
+            if (followers > 0) {
+                followers--;
+            }
+        }
+
+        /* Whether a follower is reading behind the fill */
+        synchronized boolean hasFollowers() {
+            return followers > 0;
+        }
+
+        /* Appends streamed bytes to the buffer and wakes the followers up */
+        private void append(byte[] b, int off, int len) {
+            int length = Math.min(len, buffer.capacity() - filled);
+            buffer.put(b, off, length);
+            filled += length;
+            synchronized (this) {
+                if (followers > 0) {
+                    notifyAll();
+                }
+            }
+        }
+
+        /* Ends the fill, caching the buffer if it is complete */
+        private void end() {
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+                followers = -1;
+                notifyAll();
+            }
+            if (filled == buffer.capacity()) {
+                ByteBuffer audio = buffer.duplicate();
+                audio.flip();
+                cache.put(previewUrl, audio);
+                LOGGER.debug("PreviewAudioCache filled - URL[" + previewUrl + "] Bytes[" + audio.capacity() + "]");
+            }
+            filling.remove(previewUrl, this);
+            fillingBytes.addAndGet(-buffer.capacity());
+        }
+
+        /* Whether the fill has ended before the whole audio was written */
+        boolean isFailed() {
+            return ended && filled < buffer.capacity();
+        }
+
+        /* Waits until the buffer holds more than the given number of bytes, returns the number of bytes held */
+        int await(int position) throws IOException {
+            synchronized (this) {
+                while (filled <= position && !ended) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while following fill");
+                    }
+                }
+            }
+            return filled;
+        }
+    }
+
+    /* Writes a fill in progress from the cache buffer as the streamed audio arrives */
+    private static class FollowingContent implements StreamingContent {
+
+        /* The fill */
+        private final CachingContent fill;
+        /* Opens the audio if the fill fails before anything is written, null if there is none */
+        private final Fallback fallback;
+        /* Whether the follower has been closed and unregistered */
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        FollowingContent(CachingContent fill, Fallback fallback) {
+            this.fill = fill;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public long getContentLength() {
+            return fill.getContentLength();
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            byte[] chunk = TransferBuffer.get();
+            int position = 0;
+            while (position < fill.buffer.capacity()) {
+                int available = fill.await(position);
+                if (position == 0 && fallback != null && fill.isFailed()) {
+                    writeFallback(out);
+                    return;
+                } else if (available <= position) {
+                    throw new IOException("Followed fill ended after " + position + " bytes - URL["
+                            + fill.previewUrl + "]");
+                }
+                ByteBuffer source = fill.buffer.duplicate();
+                source.limit(available);
+                source.position(position);
+                while (source.hasRemaining()) {
+                    int length = Math.min(chunk.length, source.remaining());
+                    source.get(chunk, 0, length);
+                    out.write(chunk, 0, length);
+                }
+                position = available;
+            }
+            out.flush();
+        }
+
+        /* Writes the audio opened by the fallback, which must have the length already sent */
+        private void writeFallback(OutputStream out) throws IOException {
+            LOGGER.debug("PreviewAudioCache followed fill failed, opening the audio - URL[" + fill.previewUrl + "]");
+            try (StreamingContent audio = fallback.open()) {
+                if (audio.getContentLength() != getContentLength()) {
+                    throw new IOException("Opened audio length[" + audio.getContentLength() + "] does not match["
+                            + getContentLength() + "] - URL[" + fill.previewUrl + "]");
+                }
+                audio.writeTo(out);
+            }
+        }
+
+        @Override
+        public void close() {
+            /* Written or not, e.g. its client went away, the fill need not go on for this follower anymore */
+            if (closed.compareAndSet(false, true)) {
+                fill.removeFollower();
+            }
+        }
+    }
+
+    /**
+     * Opens the audio of a preview url for a follower whose fill has failed
+     */
+    public interface Fallback {
+
+        /**
+         * Opens the audio
+         *
+         * @return The streamed audio, which is closed once written
+         * @throws IOException If the audio cannot be opened
+         */
+        StreamingContent open() throws IOException;
+    }
+}
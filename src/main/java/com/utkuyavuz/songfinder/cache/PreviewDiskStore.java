@@ -0,0 +1,505 @@
+package com.utkuyavuz.songfinder.cache;
+
+import com.utkuyavuz.songfinder.util.Digests;
+import com.utkuyavuz.songfinder.util.FileContent;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import com.utkuyavuz.songfinder.util.StreamingContentHttpMessageConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent store of preview audio on local disk, which survives restarts and may hold far more previews than
+ * fit in memory. Files are named by the SHA-256 of the preview url. Hits are sent to the client by the container
+ * with <code>sendfile</code> where it can, see {@link StreamingContentHttpMessageConverter}, otherwise they are
+ * copied through a small buffer, so that a preview is never read onto the Java heap at once.
+ * <br/> Files are filled in a temporary file and atomically renamed once complete, so that a crash never leaves
+ * a truncated preview behind; leftover temporary files are removed on startup. When the store grows beyond its
+ * maximum, the least recently served files are deleted in the background; a hit marks its file as served
+ * at most once a minute, so that most hits do not write to the disk.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class PreviewDiskStore implements Closeable {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreviewDiskStore.class);
+
+    /* Suffix of files which are being filled */
+    private static final String TEMP_SUFFIX = ".tmp";
+    /* Eviction deletes files until the store is below this fraction of its maximum */
+    private static final double EVICTION_TARGET = 0.9;
+    /* A hit marks its file as recently served only if it was not marked within this many milliseconds */
+    private static final long TOUCH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /* Directory of the store */
+    private final Path directory;
+    /* Canonical path of the directory, for the container to send the files itself */
+    private final Path canonicalDirectory;
+    /* Maximum number of stored bytes */
+    private final long maximumBytes;
+    /* Largest audio which is stored */
+    private final long maximumEntryBytes;
+    /* Number of stored bytes, corrected by every eviction run */
+    private final AtomicLong residentBytes = new AtomicLong();
+    /* Number of hits */
+    private final AtomicLong hitCount = new AtomicLong();
+    /* Number of misses */
+    private final AtomicLong missCount = new AtomicLong();
+    /* Number of evicted files */
+    private final AtomicLong evictionCount = new AtomicLong();
+    /* Whether an eviction run is queued */
+    private final AtomicBoolean evictionPending = new AtomicBoolean();
+    /* Runs the evictions, null if the store is disabled */
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Initialize the store, removing the files left unfinished by a previous run
+     *
+     * @param directory Directory of the store, created if missing
+     * @param maximumBytes Maximum number of stored bytes, 0 disables the store
+     * @param maximumEntryBytes Largest audio in bytes which is stored
+     * @param evictionInterval Time in milliseconds between two periodic eviction runs
+     */
+    public PreviewDiskStore(Path directory, long maximumBytes, long maximumEntryBytes, long evictionInterval) {
+        LOGGER.debug("Initializing PreviewDiskStore - Directory[" + directory + "] MaximumBytes[" + maximumBytes
+                + "] MaximumEntryBytes[" + maximumEntryBytes + "]");
+        this.directory = directory;
+        this.maximumBytes = maximumBytes;
+        this.maximumEntryBytes = maximumEntryBytes;
+        if (!isEnabled()) {
+            this.canonicalDirectory = null;
+            this.evictor = null;
+            return;
+        }
+
+        /* Recover the store */
+        try {
+            Files.createDirectories(directory);
+            this.canonicalDirectory = directory.toFile().getCanonicalFile().toPath();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                        LOGGER.debug("Removing unfinished preview - File[" + file + "]");
+                        Files.deleteIfExists(file);
+                    } else if (Files.isRegularFile(file)) {
+                        residentBytes.addAndGet(Files.size(file));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open preview store - Directory[" + directory + "]", e);
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "songfinder-disk-evictor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evict, 0, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the stored audio of a preview url
+     *
+     * @param previewUrl The preview url
+     * @return The audio written from the stored file, <code>null</code> if it is not stored
+     */
+    public StreamingContent get(String previewUrl) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Path file = fileOf(previewUrl);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            touch(file);
+            long size = channel.size();
+            hitCount.incrementAndGet();
+            LOGGER.debug("PreviewDiskStore hit - URL[" + previewUrl + "]");
+            return new FileContent(channel, canonicalDirectory.resolve(file.getFileName()), 0, size);
+        } catch (NoSuchFileException e) {
+            /* Missing, or evicted in between */
+            closeQuietly(channel);
+            missCount.incrementAndGet();
+            LOGGER.debug("PreviewDiskStore miss - URL[" + previewUrl + "]");
+            return null;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            missCount.incrementAndGet();
+            LOGGER.error("Cannot read stored preview - URL[" + previewUrl + "] - Exception: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the audio of a preview url is stored, without counting a hit or a miss
+     *
+     * @param previewUrl The preview url
+     * @return <code>true</code> if the audio is stored
+     */
+    public boolean contains(String previewUrl) {
+        return isEnabled() && Files.isRegularFile(fileOf(previewUrl));
+    }
+
+    /**
+     * Stores the audio of a preview url
+     *
+     * @param previewUrl The preview url
+     * @param audio The raw audio
+     */
+    public void put(String previewUrl, byte[] audio) {
+        if (!isEnabled() || !isStorable(audio.length)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, null, TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(audio);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            commit(previewUrl, temp, audio.length);
+        } catch (IOException e) {
+            LOGGER.error("Cannot store preview - URL[" + previewUrl + "] - Exception: " + e.getMessage());
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Wraps a streamed audio so that it is stored while it is written to the client.
+     * The audio is stored only if it has a known length within the entry limit and is written completely.
+     *
+     * @param previewUrl The preview url
+     * @param content The streamed audio
+     * @return The audio to write to the client
+     */
+    public StreamingContent fillOnWrite(String previewUrl, StreamingContent content) {
+        if (!isEnabled() || !isStorable(content.getContentLength())) {
+            return content;
+        }
+        return new StoringContent(previewUrl, content);
+    }
+
+    /**
+     * Whether the store is enabled
+     *
+     * @return <code>true</code> if previews are stored
+     */
+    public boolean isEnabled() {
+        return maximumBytes > 0;
+    }
+
+    /**
+     * Gets the number of bytes held by the store
+     *
+     * @return The resident bytes
+     */
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * Gets the number of hits
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of misses
+     *
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the number of evicted files
+     *
+     * @return The eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Stops the background eviction, stored files are kept
+     */
+    @Override
+    public void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    /**
+     * Deletes the least recently served files until the store is below its maximum.
+     * Runs on the eviction thread, periodically and whenever a fill exceeds the maximum, one run at a time.
+     */
+    synchronized void evict() {
+        evictionPending.set(false);
+        List<Path> files = new ArrayList<>();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    continue;
+                }
+                BasicFileAttributes attribute;
+                try {
+                    attribute = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    /* Replaced by a fill in between */
+                    continue;
+                }
+                if (attribute.isRegularFile()) {
+                    files.add(file);
+                    attributes.add(attribute);
+                    total += attribute.size();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Cannot scan preview store - Directory[" + directory + "] - Exception: " + e.getMessage());
+            return;
+        }
+        residentBytes.set(total);
+        if (total <= maximumBytes) {
+            return;
+        }
+
+        /* Oldest first */
+        List<Integer> order = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+
+        long target = (long) (maximumBytes * EVICTION_TARGET);
+        for (int i : order) {
+            if (total <= target) {
+                break;
+            }
+            try {
+                /* Open readers keep the data until they are closed */
+                if (Files.deleteIfExists(files.get(i))) {
+                    total -= attributes.get(i).size();
+                    residentBytes.addAndGet(-attributes.get(i).size());
+                    evictionCount.incrementAndGet();
+                }
+            } catch (IOException e) {
+                LOGGER.error("Cannot evict preview - File[" + files.get(i) + "] - Exception: " + e.getMessage());
+            }
+        }
+        LOGGER.debug("PreviewDiskStore evicted - ResidentBytes[" + residentBytes.get() + "]");
+    }
+
+    /* Moves a complete temporary file in place of the preview url's file */
+    private void commit(String previewUrl, Path temp, long length) throws IOException {
+        Path file = fileOf(previewUrl);
+        long previous = Files.exists(file) ? Files.size(file) : 0;
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.debug("PreviewDiskStore filled - URL[" + previewUrl + "] Bytes[" + length + "]");
+        if (residentBytes.addAndGet(length - previous) > maximumBytes && evictionPending.compareAndSet(false, true)) {
+            evictor.execute(this::evict);
+        }
+    }
+
+    /* The file of a preview url */
+    private Path fileOf(String previewUrl) {
+        return directory.resolve(Digests.sha256Hex(previewUrl));
+    }
+
+    /* Whether an audio of the given length is stored */
+    private boolean isStorable(long length) {
+        return length > 0 && length <= maximumEntryBytes;
+    }
+
+    /* Marks a file as recently served for the eviction, sparing a metadata write on most hits */
+    private static void touch(Path file) throws IOException {
+        long now = System.currentTimeMillis();
+        if (Files.getLastModifiedTime(file).toMillis() < now - TOUCH_INTERVAL) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+        }
+    }
+
+    /* Closes a channel, ignoring failures */
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Cannot close file - Exception: " + e.getMessage());
+        }
+    }
+
+    /* Deletes a file, ignoring failures */
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.error("Cannot delete file - File[" + file + "] - Exception: " + e.getMessage());
+        }
+    }
+
+    /* Copies the streamed audio into a temporary file while it is written */
+    private class StoringContent implements StreamingContent {
+
+        /* The preview url */
+        private final String previewUrl;
+        /* The streamed audio */
+        private final StreamingContent content;
+
+        StoringContent(String previewUrl, StreamingContent content) {
+            this.previewUrl = previewUrl;
+            this.content = content;
+        }
+
+        @Override
+        public long getContentLength() {
+            return content.getContentLength();
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            long length = content.getContentLength();
+            Path temp = null;
+            FileChannel channel;
+            try {
+                temp = Files.createTempFile(directory, null, TEMP_SUFFIX);
+                channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                /* The client is served anyway */
+                LOGGER.error("Cannot store preview - URL[" + previewUrl + "] - Exception: " + e.getMessage());
+                deleteQuietly(temp);
+                content.writeTo(out);
+                return;
+            }
+
+            TeeOutputStream tee = new TeeOutputStream(out, channel);
+            try {
+                content.writeTo(tee);
+            } finally {
+                finish(temp, channel, tee.isIntact() && tee.getWritten() == length);
+            }
+        }
+
+        /* Moves the temporary file in place if the audio is complete, otherwise deletes it */
+        private void finish(Path temp, FileChannel channel, boolean complete) {
+            try (FileChannel file = channel) {
+                if (complete) {
+                    file.force(true);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Cannot store preview - URL[" + previewUrl + "] - Exception: " + e.getMessage());
+                complete = false;
+            }
+            try {
+                if (complete) {
+                    commit(previewUrl, temp, content.getContentLength());
+                    return;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Cannot store preview - URL[" + previewUrl + "] - Exception: " + e.getMessage());
+            }
+            deleteQuietly(temp);
+        }
+
+        @Override
+        public void close() throws IOException {
+            content.close();
+        }
+    }
+
+    /* Writes to the client and to a file, giving up on the file on its first failure */
+    private class TeeOutputStream extends OutputStream {
+
+        /* The client */
+        private final OutputStream out;
+        /* The file */
+        private final FileChannel channel;
+        /* Number of bytes written to the file */
+        private long written;
+        /* Whether every write to the file succeeded */
+        private boolean intact = true;
+
+        TeeOutputStream(OutputStream out, FileChannel channel) {
+            this.out = out;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (!intact || written + len > maximumEntryBytes) {
+                intact = false;
+                return;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += len;
+            } catch (IOException e) {
+                LOGGER.error("Cannot store preview - Exception: " + e.getMessage());
+                intact = false;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        boolean isIntact() {
+            return intact;
+        }
+
+        long getWritten() {
+            return written;
+        }
+    }
+}
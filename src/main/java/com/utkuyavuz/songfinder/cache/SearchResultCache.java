@@ -0,0 +1,342 @@
+package com.utkuyavuz.songfinder.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.utkuyavuz.songfinder.service.output.TrackOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * A size bounded cache from a search query and market to the found track and its preview url.
+ * Entries expire a fixed time after they are written and, when the cache is full, are evicted with the
+ * W-TinyLFU policy of Caffeine so that popular queries stay resident.
+ * <br/> An expired entry is kept <code>stale-while-revalidate</code> longer, to be served at once while it is
+ * refreshed in the background, and <code>stale-if-error</code> longer, to be served when the search fails upstream.
+ * <br/> Only a fresh entry counts as a hit: an expired entry, served stale or not, is a miss as the search still goes
+ * upstream. Caffeine keeps no statistics of its own, which would count the expired entries it still holds as hits.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class SearchResultCache {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchResultCache.class);
+
+    /* Runs of whitespace in a query */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /* Tracks keyed by the normalized query and market */
+    private final Cache<String, Entry> cache;
+    /* Time in nanoseconds after which an entry expires */
+    private final long ttlNanos;
+    /* Time in nanoseconds an expired entry is served while it is refreshed */
+    private final long staleWhileRevalidateNanos;
+    /* Time in nanoseconds an expired entry is served while the search fails */
+    private final long staleIfErrorNanos;
+
+    /* Number of lookups answered by a fresh entry */
+    private final LongAdder hitCount = new LongAdder();
+    /* Number of lookups of an expired or absent entry */
+    private final LongAdder missCount = new LongAdder();
+    /* Number of cached tracks */
+    private final LongAdder putCount = new LongAdder();
+    /* Number of entries evicted by size or removed once expired */
+    private final LongAdder evictionCount = new LongAdder();
+    /* Number of expired entries served while they are refreshed */
+    private final LongAdder staleRevalidateCount = new LongAdder();
+    /* Number of expired entries served as the search failed */
+    private final LongAdder staleErrorCount = new LongAdder();
+    /* Number of background refreshes of expired entries */
+    private final LongAdder refreshCount = new LongAdder();
+
+    /**
+     * Initialize the cache, without serving expired entries
+     *
+     * @param maximumSize Maximum number of cached queries
+     * @param ttl Time in milliseconds after which an entry expires
+     */
+    public SearchResultCache(long maximumSize, long ttl) {
+        this(maximumSize, ttl, 0, 0);
+    }
+
+    /**
+     * Initialize the cache
+     *
+     * @param maximumSize Maximum number of cached queries
+     * @param ttl Time in milliseconds after which an entry expires
+     * @param staleWhileRevalidate Time in milliseconds after its expiry an entry is served while it is refreshed
+     * @param staleIfError Time in milliseconds after its expiry an entry is served while the search fails
+     */
+    public SearchResultCache(long maximumSize, long ttl, long staleWhileRevalidate, long staleIfError) {
+        LOGGER.debug("Initializing SearchResultCache - MaximumSize[" + maximumSize + "] TTL[" + ttl
+                + "] StaleWhileRevalidate[" + staleWhileRevalidate + "] StaleIfError[" + staleIfError + "]");
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.staleWhileRevalidateNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, staleWhileRevalidate));
+        this.staleIfErrorNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, staleIfError));
+        /* Entries are kept as long as they may be served stale */
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlNanos + Math.max(staleWhileRevalidateNanos, staleIfErrorNanos),
+                        TimeUnit.NANOSECONDS)
+                .removalListener((String key, Entry entry, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictionCount.increment();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Builds the cache key of a query, ignoring case, surrounding whitespace and repeated whitespace
+     *
+     * @param query The search query
+     * @param market The market of the search
+     * @return The cache key
+     */
+    public static String key(String query, String market) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFC).trim();
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return market + '|' + normalized;
+    }
+
+    /**
+     * Gets the cached preview url of a query
+     *
+     * @param query The search query
+     * @param market The market of the search
+     * @return The preview url, <code>null</code> if it is not cached
+     */
+    public String get(String query, String market) {
+        TrackOutput track = getTrack(query, market);
+        return track == null ? null : track.getPreviewUrl();
+    }
+
+    /**
+     * Gets the cached track of a query
+     *
+     * @param query The search query
+     * @param market The market of the search
+     * @return The track, <code>null</code> if it is not cached
+     */
+    public TrackOutput getTrack(String query, String market) {
+        Entry entry = getEntry(query, market);
+        return entry == null || !entry.isFresh() ? null : entry.getTrack();
+    }
+
+    /**
+     * Gets the cached entry of a query, which may have expired but still be served stale
+     *
+     * @param query The search query
+     * @param market The market of the search
+     * @return The entry, <code>null</code> if it is not cached
+     */
+    public Entry getEntry(String query, String market) {
+        Entry entry = cache.getIfPresent(key(query, market));
+        if (entry != null && entry.isFresh()) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        LOGGER.debug("SearchResultCache " + (entry == null ? "miss" : entry.isFresh() ? "hit" : "stale hit")
+                + " - Query[" + query + "]");
+        return entry;
+    }
+
+    /**
+     * Caches the preview url of a query
+     *
+     * @param query The search query
+     * @param market The market of the search
+     * @param previewUrl The resolved preview url
+     */
+    public void put(String query, String market, String previewUrl) {
+        TrackOutput track = new TrackOutput();
+        track.setPreviewUrl(previewUrl);
+        put(query, market, track);
+    }
+
+    /**
+     * Caches the track of a query
+     *
+     * @param query The search query
+     * @param market The market of the search
+     * @param track The found track, with its preview url
+     */
+    public void put(String query, String market, TrackOutput track) {
+        cache.put(key(query, market), new Entry(track, System.nanoTime()));
+        putCount.increment();
+    }
+
+    /**
+     * Records an expired entry served, while it is refreshed or as the search failed
+     *
+     * @param error <code>true</code> if it is served as the search failed
+     */
+    public void recordStale(boolean error) {
+        if (error) {
+            staleErrorCount.increment();
+        } else {
+            staleRevalidateCount.increment();
+        }
+    }
+
+    /**
+     * Gets the number of lookups answered by a fresh entry
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of lookups of an expired or absent entry, which are searched upstream
+     *
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of cached tracks
+     *
+     * @return The put count
+     */
+    public long getPutCount() {
+        return putCount.sum();
+    }
+
+    /**
+     * Gets the number of entries evicted by size or removed once expired
+     *
+     * @return The eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Gets the number of expired entries served while they are refreshed
+     *
+     * @return The stale while revalidate count
+     */
+    public long getStaleRevalidateCount() {
+        return staleRevalidateCount.sum();
+    }
+
+    /**
+     * Gets the number of expired entries served as the search failed
+     *
+     * @return The stale if error count
+     */
+    public long getStaleErrorCount() {
+        return staleErrorCount.sum();
+    }
+
+    /**
+     * Gets the number of background refreshes of expired entries
+     *
+     * @return The refresh count
+     */
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    /**
+     * Gets the underlying cache, e.g. to publish its size. It records no statistics, see {@link #getHitCount()}
+     *
+     * @return The Caffeine {@link Cache}
+     */
+    public Cache<String, Entry> getCache() {
+        return cache;
+    }
+
+    /**
+     * A cached track and the time it was written
+     */
+    public class Entry {
+
+        /* The found track, with its preview url */
+        private final TrackOutput track;
+        /* Time in nanoseconds the entry was written */
+        private final long written;
+        /* Whether a background refresh of the entry is in flight */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(TrackOutput track, long written) {
+            this.track = track;
+            this.written = written;
+        }
+
+        /**
+         * Gets the cached track
+         *
+         * @return The track
+         */
+        public TrackOutput getTrack() {
+            return track;
+        }
+
+        /**
+         * Checks whether the entry has not expired
+         *
+         * @return Returns <code>true</code> if the entry is fresh, else <code>false</code>
+         */
+        public boolean isFresh() {
+            return System.nanoTime() - written < ttlNanos;
+        }
+
+        /**
+         * Checks whether the entry may be served while it is refreshed
+         *
+         * @return Returns <code>true</code> if the entry is within the stale while revalidate window, else
+         * <code>false</code>
+         */
+        public boolean isRevalidatable() {
+            return System.nanoTime() - written < ttlNanos + staleWhileRevalidateNanos;
+        }
+
+        /**
+         * Checks whether the entry may be served as the search failed
+         *
+         * @return Returns <code>true</code> if the entry is within the stale if error window, else
+         * <code>false</code>
+         */
+        public boolean isServableOnError() {
+            return System.nanoTime() - written < ttlNanos + staleIfErrorNanos;
+        }
+
+        /**
+         * Claims the background refresh of the entry, so that it is sent once however many requests are served
+         * the entry meanwhile
+         *
+         * @return <code>true</code> if the caller is to refresh the entry, <code>false</code> if a refresh is in
+         * flight
+         */
+        public boolean startRefresh() {
+            if (!refreshing.compareAndSet(false, true)) {
+                return false;
+            }
+            refreshCount.increment();
+            return true;
+        }
+
+        /**
+         * Releases the background refresh of the entry, so that another one can be sent if it has failed
+         */
+        public void endRefresh() {
+            refreshing.set(false);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.BoundedExecutor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration of the executor which completes the asynchronous requests, of the executor which opens
+ * the streamed previews and of the executor which stores the downloaded previews.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties({ AsyncProperties.class, PreviewProperties.class })
+public class AsyncConfiguration {
+
+    /**
+     * The bounded executor on which the controller continues after upstream I/O completes
+     *
+     * @param properties Executor configuration
+     * @return The {@link BoundedExecutor}, shut down with the application context
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedExecutor songFinderExecutor(AsyncProperties properties) {
+        return new BoundedExecutor("songfinder-async", properties.getCorePoolSize(), properties.getMaxPoolSize(),
+                properties.getQueueCapacity(), properties.getKeepAlive());
+    }
+
+    /**
+     * Opens the streamed previews, whose blocking requests wait for the response headers here instead of on the
+     * bounded executor. Idle threads are stopped, so that none are kept while the previews are buffered
+     *
+     * @param properties Preview configuration
+     * @return The {@link BoundedExecutor} of the streamed previews, shut down with the application context
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedExecutor previewStreamExecutor(PreviewProperties properties) {
+        BoundedExecutor executor = new BoundedExecutor("songfinder-stream", properties.getStreamThreads(),
+                properties.getStreamThreads(), properties.getStreamThreads(), 60000);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Stores the downloaded previews in the memory cache and on disk, whose writes and forces would otherwise block
+     * the I/O threads of the HTTP clients. Idle threads are stopped
+     *
+     * @param properties Preview configuration
+     * @return The {@link BoundedExecutor} of the stores, shut down with the application context
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedExecutor previewStoreExecutor(PreviewProperties properties) {
+        BoundedExecutor executor = new BoundedExecutor("songfinder-store", properties.getStoreThreads(),
+                properties.getStoreThreads(), properties.getStoreQueueCapacity(), 60000);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Publishes the queue depth, active threads and rejections of the executor
+     *
+     * @param songFinderExecutor The bounded executor
+     * @return A {@link MeterBinder} for the executor meters
+     */
+    @Bean
+    public MeterBinder songFinderExecutorMetrics(BoundedExecutor songFinderExecutor) {
+        return registry -> {
+            Gauge.builder("songfinder.executor.queue", songFinderExecutor, BoundedExecutor::getQueueDepth)
+                    .register(registry);
+            Gauge.builder("songfinder.executor.active", songFinderExecutor, BoundedExecutor::getActiveCount)
+                    .register(registry);
+            Gauge.builder("songfinder.executor.pool", songFinderExecutor, BoundedExecutor::getPoolSize)
+                    .register(registry);
+            FunctionCounter.builder("songfinder.executor.rejected", songFinderExecutor,
+                    BoundedExecutor::getRejectedCount)
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the asynchronous request processing, bound from <code>songfinder.async.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.async")
+public class AsyncProperties {
+
+    /* Release the servlet container thread while upstream I/O is pending */
+    private boolean enabled = true;
+    /* Number of threads kept in the executor */
+    private int corePoolSize = 8;
+    /* Maximum number of threads in the executor */
+    private int maxPoolSize = 32;
+    /* Maximum number of tasks waiting for a thread */
+    private int queueCapacity = 1000;
+    /* Idle time in milliseconds before a thread above the core size terminates */
+    private long keepAlive = 60000;
+    /* Time in milliseconds before an asynchronous request is answered with a timeout */
+    private long timeout = 30000;
+
+    /**
+     * Checks whether asynchronous request processing is enabled
+     *
+     * @return Returns <code>true</code> if enabled, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables asynchronous request processing
+     *
+     * @param enabled <code>true</code> to enable
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the number of threads kept in the executor
+     *
+     * @return The core pool size
+     */
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    /**
+     * Sets the number of threads kept in the executor
+     *
+     * @param corePoolSize The core pool size
+     */
+    public void setCorePoolSize(int corePoolSize) {
+        this.corePoolSize = corePoolSize;
+    }
+
+    /**
+     * Gets the maximum number of threads in the executor
+     *
+     * @return The maximum pool size
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of threads in the executor
+     *
+     * @param maxPoolSize The maximum pool size
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Gets the maximum number of tasks waiting for a thread
+     *
+     * @return The queue capacity
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of tasks waiting for a thread
+     *
+     * @param queueCapacity The queue capacity
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Gets the idle time in milliseconds before a thread above the core size terminates
+     *
+     * @return The keep-alive time
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Sets the idle time in milliseconds before a thread above the core size terminates
+     *
+     * @param keepAlive The keep-alive time
+     */
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Gets the time in milliseconds before an asynchronous request is answered with a timeout
+     *
+     * @return The request timeout
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time in milliseconds before an asynchronous request is answered with a timeout
+     *
+     * @param timeout The request timeout
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,71 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.service.output.GetTrackOutput;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.MicroBatcher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Spring configuration of the batching of concurrent upstream lookups.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties(BatchingProperties.class)
+public class BatchingConfiguration {
+
+    /** Largest number of ids of a Spotify <em>get several tracks</em> request */
+    public static final int MAX_TRACK_IDS = 50;
+
+    /**
+     * Batches the track lookups of an access token into <em>get several tracks</em> requests
+     *
+     * @param properties Batching configuration
+     * @param engine The shared HTTP client engine
+     * @return The {@link MicroBatcher} of the track lookups
+     */
+    @Bean
+    public MicroBatcher<String, GetTrackOutput> trackBatcher(BatchingProperties properties, HttpClientEngine engine) {
+        return new MicroBatcher<>("track", properties.isEnabled() ? properties.getWindow() : 0,
+                Math.min(MAX_TRACK_IDS, properties.getMaxSize()), engine);
+    }
+
+    /**
+     * Publishes the keys loaded, the batches and the distinct keys sent in them, the batches cancelled by all of
+     * their callers and the open batches, tagged by the batched requests
+     *
+     * @param batchers The micro batchers
+     * @return A {@link MeterBinder} for the batching meters
+     */
+    @Bean
+    public MeterBinder batchingMetrics(List<MicroBatcher<?, ?>> batchers) {
+        return registry -> {
+            for (MicroBatcher<?, ?> batcher : batchers) {
+                FunctionCounter.builder("songfinder.batch.loads", batcher, MicroBatcher::getLoadCount)
+                        .tag("request", batcher.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.batch.batches", batcher, MicroBatcher::getBatchCount)
+                        .tag("request", batcher.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.batch.keys", batcher, MicroBatcher::getKeyCount)
+                        .tag("request", batcher.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.batch.cancelled", batcher, MicroBatcher::getCancelledCount)
+                        .tag("request", batcher.getName())
+                        .register(registry);
+                Gauge.builder("songfinder.batch.open", batcher, MicroBatcher::getOpenCount)
+                        .tag("request", batcher.getName())
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the batching of the Spotify track lookups, bound from
+ * <code>songfinder.batching.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.batching")
+public class BatchingProperties {
+
+    /* Batch the lookups which arrive within the window, otherwise each lookup is sent on its own */
+    private boolean enabled = true;
+    /* Batch window in milliseconds, from the first lookup of a batch */
+    private long window = 5;
+    /* Largest number of tracks of a batch, Spotify accepts up to 50 ids */
+    private int maxSize = 50;
+
+    /**
+     * Checks whether batching is enabled
+     *
+     * @return Returns <code>true</code> if enabled, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables batching
+     *
+     * @param enabled <code>true</code> to enable
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the batch window in milliseconds
+     *
+     * @return The window
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the batch window in milliseconds
+     *
+     * @param window The window
+     */
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    /**
+     * Gets the largest number of tracks of a batch
+     *
+     * @return The maximum batch size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the largest number of tracks of a batch
+     *
+     * @param maxSize The maximum batch size, at most 50
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+}
@@ -0,0 +1,75 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the bulk song searches, bound from <code>songfinder.bulk-search.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.bulk-search")
+public class BulkSearchProperties {
+
+    /* Largest number of songs of a request */
+    private int maxSongs = 1000;
+    /* Largest number of searches of a request in flight */
+    private int parallelism = 8;
+    /* Time in milliseconds before the response of a request is ended */
+    private long timeout = 300000;
+
+    /**
+     * Gets the largest number of songs of a request
+     *
+     * @return The maximum number of songs
+     */
+    public int getMaxSongs() {
+        return maxSongs;
+    }
+
+    /**
+     * Sets the largest number of songs of a request
+     *
+     * @param maxSongs The maximum number of songs
+     */
+    public void setMaxSongs(int maxSongs) {
+        this.maxSongs = maxSongs;
+    }
+
+    /**
+     * Gets the largest number of searches of a request in flight
+     *
+     * @return The parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the largest number of searches of a request in flight
+     *
+     * @param parallelism The parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the time in milliseconds before the response of a request is ended
+     *
+     * @return The timeout
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time in milliseconds before the response of a request is ended
+     *
+     * @param timeout The timeout
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+}
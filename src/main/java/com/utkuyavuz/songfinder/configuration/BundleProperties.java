@@ -0,0 +1,75 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the preview bundles, bound from <code>songfinder.bundle.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.bundle")
+public class BundleProperties {
+
+    /* Largest number of songs of a request */
+    private int maxSongs = 100;
+    /* Largest number of previews of a request being downloaded or written */
+    private int parallelism = 4;
+    /* Time in milliseconds before the bundle of a request is ended */
+    private long timeout = 120000;
+
+    /**
+     * Gets the largest number of songs of a request
+     *
+     * @return The maximum number of songs
+     */
+    public int getMaxSongs() {
+        return maxSongs;
+    }
+
+    /**
+     * Sets the largest number of songs of a request
+     *
+     * @param maxSongs The maximum number of songs
+     */
+    public void setMaxSongs(int maxSongs) {
+        this.maxSongs = maxSongs;
+    }
+
+    /**
+     * Gets the largest number of previews of a request being downloaded or written
+     *
+     * @return The parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the largest number of previews of a request being downloaded or written
+     *
+     * @param parallelism The parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the time in milliseconds before the bundle of a request is ended
+     *
+     * @return The timeout
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time in milliseconds before the bundle of a request is ended
+     *
+     * @param timeout The timeout
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,147 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.cache.PreviewAudioCache;
+import com.utkuyavuz.songfinder.cache.PreviewDiskStore;
+import com.utkuyavuz.songfinder.cache.SearchResultCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+
+/**
+ * Spring configuration of the caches used by the services.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfiguration {
+
+    /**
+     * The cache from a search query to its preview url
+     *
+     * @param properties Cache configuration
+     * @return The {@link SearchResultCache}
+     */
+    @Bean
+    public SearchResultCache searchResultCache(CacheProperties properties) {
+        return new SearchResultCache(properties.getSearch().getMaximumSize(), properties.getSearch().getTtl(),
+                properties.getSearch().getStaleWhileRevalidate(), properties.getSearch().getStaleIfError());
+    }
+
+    /**
+     * Publishes the hit, miss, put and eviction counts and the size of the search result cache, with the tags of
+     * the other caches, counted by the cache itself so that an expired entry is a miss. Also publishes the expired
+     * entries served while they are refreshed or as the search failed, and the background refreshes
+     *
+     * @param cache The search result cache
+     * @return A {@link MeterBinder} for the cache meters
+     */
+    @Bean
+    public MeterBinder searchResultCacheMetrics(SearchResultCache cache) {
+        return registry -> {
+            FunctionCounter.builder("cache.gets", cache, SearchResultCache::getHitCount)
+                    .tags("cache", "songfinder.search", "result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", cache, SearchResultCache::getMissCount)
+                    .tags("cache", "songfinder.search", "result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("cache.puts", cache, SearchResultCache::getPutCount)
+                    .tags("cache", "songfinder.search")
+                    .register(registry);
+            FunctionCounter.builder("cache.evictions", cache, SearchResultCache::getEvictionCount)
+                    .tags("cache", "songfinder.search")
+                    .register(registry);
+            Gauge.builder("cache.size", cache, c -> c.getCache().estimatedSize())
+                    .tags("cache", "songfinder.search")
+                    .register(registry);
+            FunctionCounter.builder("songfinder.search.cache.stale", cache, SearchResultCache::getStaleRevalidateCount)
+                    .tag("reason", "revalidate")
+                    .register(registry);
+            FunctionCounter.builder("songfinder.search.cache.stale", cache, SearchResultCache::getStaleErrorCount)
+                    .tag("reason", "error")
+                    .register(registry);
+            FunctionCounter.builder("songfinder.search.cache.refreshes", cache, SearchResultCache::getRefreshCount)
+                    .register(registry);
+        };
+    }
+
+    /**
+     * The off-heap cache from a preview url to its audio
+     *
+     * @param properties Cache configuration
+     * @return The {@link PreviewAudioCache}
+     */
+    @Bean
+    public PreviewAudioCache previewAudioCache(CacheProperties properties) {
+        return new PreviewAudioCache(properties.getAudio().getMaximumBytes(),
+                properties.getAudio().getMaximumEntryBytes(), properties.getAudio().getMaximumFillingBytes());
+    }
+
+    /**
+     * Publishes the hit, miss and eviction counts, the hit ratio, the resident bytes, the bytes being filled and the
+     * followed fills of the preview audio cache
+     *
+     * @param cache The preview audio cache
+     * @return A {@link MeterBinder} for the cache meters
+     */
+    @Bean
+    public MeterBinder previewAudioCacheMetrics(PreviewAudioCache cache) {
+        return registry -> {
+            new CaffeineCacheMetrics(cache.getCache(), "songfinder.preview", Collections.emptyList())
+                    .bindTo(registry);
+            Gauge.builder("songfinder.preview.cache.resident", cache, PreviewAudioCache::getResidentBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("songfinder.preview.cache.filling", cache, PreviewAudioCache::getFillingBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("songfinder.preview.cache.hit.ratio", cache, c -> c.getCache().stats().hitRate())
+                    .register(registry);
+            FunctionCounter.builder("songfinder.preview.cache.follows", cache, PreviewAudioCache::getFollowCount)
+                    .register(registry);
+        };
+    }
+
+    /**
+     * The persistent store of preview audio on local disk
+     *
+     * @param properties Cache configuration
+     * @return The {@link PreviewDiskStore}
+     */
+    @Bean
+    public PreviewDiskStore previewDiskStore(CacheProperties properties) {
+        return new PreviewDiskStore(Paths.get(properties.getDisk().getDirectory()),
+                properties.getDisk().getMaximumBytes(), properties.getDisk().getMaximumEntryBytes(),
+                properties.getDisk().getEvictionInterval());
+    }
+
+    /**
+     * Publishes the hit, miss and eviction counts and the resident bytes of the preview disk store
+     *
+     * @param store The preview disk store
+     * @return A {@link MeterBinder} for the store meters
+     */
+    @Bean
+    public MeterBinder previewDiskStoreMetrics(PreviewDiskStore store) {
+        return registry -> {
+            FunctionCounter.builder("songfinder.preview.disk.hits", store, PreviewDiskStore::getHitCount)
+                    .register(registry);
+            FunctionCounter.builder("songfinder.preview.disk.misses", store, PreviewDiskStore::getMissCount)
+                    .register(registry);
+            FunctionCounter.builder("songfinder.preview.disk.evictions", store, PreviewDiskStore::getEvictionCount)
+                    .register(registry);
+            Gauge.builder("songfinder.preview.disk.resident", store, PreviewDiskStore::getResidentBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,316 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the caches, bound from <code>songfinder.cache.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.cache")
+public class CacheProperties {
+
+    /* Search result cache configuration */
+    private Search search = new Search();
+    /* Preview audio cache configuration */
+    private Audio audio = new Audio();
+    /* Preview disk store configuration */
+    private Disk disk = new Disk();
+
+    /**
+     * Gets the search result cache configuration
+     *
+     * @return The search result cache configuration
+     */
+    public Search getSearch() {
+        return search;
+    }
+
+    /**
+     * Sets the search result cache configuration
+     *
+     * @param search The search result cache configuration
+     */
+    public void setSearch(Search search) {
+        this.search = search;
+    }
+
+    /**
+     * Gets the preview audio cache configuration
+     *
+     * @return The preview audio cache configuration
+     */
+    public Audio getAudio() {
+        return audio;
+    }
+
+    /**
+     * Sets the preview audio cache configuration
+     *
+     * @param audio The preview audio cache configuration
+     */
+    public void setAudio(Audio audio) {
+        this.audio = audio;
+    }
+
+    /**
+     * Gets the preview disk store configuration
+     *
+     * @return The preview disk store configuration
+     */
+    public Disk getDisk() {
+        return disk;
+    }
+
+    /**
+     * Sets the preview disk store configuration
+     *
+     * @param disk The preview disk store configuration
+     */
+    public void setDisk(Disk disk) {
+        this.disk = disk;
+    }
+
+    /**
+     * Configuration of the cache from a search query to its preview url
+     */
+    public static class Search {
+
+        /* Maximum number of cached queries, 0 disables the cache */
+        private long maximumSize = 10000;
+        /* Time in milliseconds after which an entry expires */
+        private long ttl = 3600000;
+        /* Time in milliseconds after its expiry an entry is served at once while it is refreshed in the background */
+        private long staleWhileRevalidate = 600000;
+        /* Time in milliseconds after its expiry an entry is served while the search fails upstream */
+        private long staleIfError = 86400000;
+
+        /**
+         * Gets the maximum number of cached queries
+         *
+         * @return The maximum size
+         */
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        /**
+         * Sets the maximum number of cached queries
+         *
+         * @param maximumSize The maximum size
+         */
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        /**
+         * Gets the time in milliseconds after which an entry expires
+         *
+         * @return The time to live
+         */
+        public long getTtl() {
+            return ttl;
+        }
+
+        /**
+         * Sets the time in milliseconds after which an entry expires
+         *
+         * @param ttl The time to live
+         */
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        /**
+         * Gets the time in milliseconds after its expiry an entry is served while it is refreshed
+         *
+         * @return The stale while revalidate window
+         */
+        public long getStaleWhileRevalidate() {
+            return staleWhileRevalidate;
+        }
+
+        /**
+         * Sets the time in milliseconds after its expiry an entry is served while it is refreshed
+         *
+         * @param staleWhileRevalidate The stale while revalidate window
+         */
+        public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+            this.staleWhileRevalidate = staleWhileRevalidate;
+        }
+
+        /**
+         * Gets the time in milliseconds after its expiry an entry is served while the search fails
+         *
+         * @return The stale if error limit
+         */
+        public long getStaleIfError() {
+            return staleIfError;
+        }
+
+        /**
+         * Sets the time in milliseconds after its expiry an entry is served while the search fails
+         *
+         * @param staleIfError The stale if error limit
+         */
+        public void setStaleIfError(long staleIfError) {
+            this.staleIfError = staleIfError;
+        }
+    }
+
+    /**
+     * Configuration of the off-heap cache from a preview url to its audio
+     */
+    public static class Audio {
+
+        /* Maximum number of cached bytes, 0 disables the cache */
+        private long maximumBytes = 268435456;
+        /* Largest audio in bytes which is cached */
+        private long maximumEntryBytes = 1048576;
+        /* Maximum number of bytes of the buffers of the streamed previews being cached */
+        private long maximumFillingBytes = 33554432;
+
+        /**
+         * Gets the maximum number of cached bytes
+         *
+         * @return The maximum number of cached bytes
+         */
+        public long getMaximumBytes() {
+            return maximumBytes;
+        }
+
+        /**
+         * Sets the maximum number of cached bytes
+         *
+         * @param maximumBytes The maximum number of cached bytes
+         */
+        public void setMaximumBytes(long maximumBytes) {
+            this.maximumBytes = maximumBytes;
+        }
+
+        /**
+         * Gets the largest audio in bytes which is cached
+         *
+         * @return The largest cached audio
+         */
+        public long getMaximumEntryBytes() {
+            return maximumEntryBytes;
+        }
+
+        /**
+         * Sets the largest audio in bytes which is cached
+         *
+         * @param maximumEntryBytes The largest cached audio
+         */
+        public void setMaximumEntryBytes(long maximumEntryBytes) {
+            this.maximumEntryBytes = maximumEntryBytes;
+        }
+
+        /**
+         * Gets the maximum number of bytes of the buffers of the streamed previews being cached
+         *
+         * @return The maximum number of filling bytes
+         */
+        public long getMaximumFillingBytes() {
+            return maximumFillingBytes;
+        }
+
+        /**
+         * Sets the maximum number of bytes of the buffers of the streamed previews being cached
+         *
+         * @param maximumFillingBytes The maximum number of filling bytes
+         */
+        public void setMaximumFillingBytes(long maximumFillingBytes) {
+            this.maximumFillingBytes = maximumFillingBytes;
+        }
+    }
+
+    /**
+     * Configuration of the persistent store of preview audio on local disk
+     */
+    public static class Disk {
+
+        /* Directory of the store */
+        private String directory = System.getProperty("java.io.tmpdir") + "/songfinder/previews";
+        /* Maximum number of stored bytes, 0 disables the store */
+        private long maximumBytes = 0;
+        /* Largest audio in bytes which is stored */
+        private long maximumEntryBytes = 1048576;
+        /* Time in milliseconds between two periodic eviction runs */
+        private long evictionInterval = 60000;
+
+        /**
+         * Gets the directory of the store
+         *
+         * @return The directory
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Sets the directory of the store
+         *
+         * @param directory The directory
+         */
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Gets the maximum number of stored bytes
+         *
+         * @return The maximum number of stored bytes
+         */
+        public long getMaximumBytes() {
+            return maximumBytes;
+        }
+
+        /**
+         * Sets the maximum number of stored bytes
+         *
+         * @param maximumBytes The maximum number of stored bytes
+         */
+        public void setMaximumBytes(long maximumBytes) {
+            this.maximumBytes = maximumBytes;
+        }
+
+        /**
+         * Gets the largest audio in bytes which is stored
+         *
+         * @return The largest stored audio
+         */
+        public long getMaximumEntryBytes() {
+            return maximumEntryBytes;
+        }
+
+        /**
+         * Sets the largest audio in bytes which is stored
+         *
+         * @param maximumEntryBytes The largest stored audio
+         */
+        public void setMaximumEntryBytes(long maximumEntryBytes) {
+            this.maximumEntryBytes = maximumEntryBytes;
+        }
+
+        /**
+         * Gets the time in milliseconds between two periodic eviction runs
+         *
+         * @return The eviction interval
+         */
+        public long getEvictionInterval() {
+            return evictionInterval;
+        }
+
+        /**
+         * Sets the time in milliseconds between two periodic eviction runs
+         *
+         * @param evictionInterval The eviction interval
+         */
+        public void setEvictionInterval(long evictionInterval) {
+            this.evictionInterval = evictionInterval;
+        }
+    }
+}
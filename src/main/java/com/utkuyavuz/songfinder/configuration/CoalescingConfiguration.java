@@ -0,0 +1,83 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.service.output.PreviewOutput;
+import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
+import com.utkuyavuz.songfinder.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Spring configuration of the coalescing of identical concurrent upstream requests.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+public class CoalescingConfiguration {
+
+    /**
+     * Coalesces concurrent searches for the same normalized query
+     *
+     * @return The {@link SingleFlight} of the searches
+     */
+    @Bean
+    public SingleFlight<String, SearchItemOutput> searchFlight() {
+        return new SingleFlight<>("search");
+    }
+
+    /**
+     * Coalesces concurrent downloads of the same preview url
+     *
+     * @return The {@link SingleFlight} of the downloads
+     */
+    @Bean
+    public SingleFlight<String, PreviewOutput> previewFlight() {
+        return new SingleFlight<>("preview");
+    }
+
+    /**
+     * Coalesces concurrent openings of the same streamed preview url
+     *
+     * @return The {@link SingleFlight} of the streamed downloads
+     */
+    @Bean
+    public SingleFlight<String, PreviewOutput> previewStreamFlight() {
+        return new SingleFlight<>("preview.stream");
+    }
+
+    /**
+     * Publishes the calls run, the callers coalesced into them, the calls cancelled by all of their callers, the
+     * calls run again by a caller with time left and the calls in flight, tagged by flight
+     *
+     * @param flights The single flights
+     * @return A {@link MeterBinder} for the coalescing meters
+     */
+    @Bean
+    public MeterBinder singleFlightMetrics(List<SingleFlight<?, ?>> flights) {
+        return registry -> {
+            for (SingleFlight<?, ?> flight : flights) {
+                FunctionCounter.builder("songfinder.singleflight.calls", flight, SingleFlight::getCallCount)
+                        .tag("flight", flight.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.singleflight.coalesced", flight, SingleFlight::getCoalescedCount)
+                        .tag("flight", flight.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.singleflight.cancelled", flight, SingleFlight::getCancelledCount)
+                        .tag("flight", flight.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.singleflight.retried", flight, SingleFlight::getRetriedCount)
+                        .tag("flight", flight.getName())
+                        .register(registry);
+                Gauge.builder("songfinder.singleflight.inflight", flight, SingleFlight::getInFlightCount)
+                        .tag("flight", flight.getName())
+                        .register(registry);
+            }
+        };
+    }
+}
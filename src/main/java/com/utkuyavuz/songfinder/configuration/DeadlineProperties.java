@@ -0,0 +1,65 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the deadline of the song preview requests, bound from
+ * <code>songfinder.deadline.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.deadline")
+public class DeadlineProperties {
+
+    /* Time in milliseconds by which the upstream requests of a song preview request must be answered, 0 disables */
+    private long budget = 10000;
+    /* Part of the budget given to the search, the preview gets whatever remains */
+    private double searchShare = 0.4;
+
+    /**
+     * Gets the time in milliseconds by which the upstream requests of a request must be answered
+     *
+     * @return The budget, 0 if the requests have no deadline
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the time in milliseconds by which the upstream requests of a request must be answered
+     *
+     * @param budget The budget, 0 if the requests have no deadline
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Gets the part of the budget given to the search
+     *
+     * @return The share of the search, between 0 and 1
+     */
+    public double getSearchShare() {
+        return searchShare;
+    }
+
+    /**
+     * Sets the part of the budget given to the search
+     *
+     * @param searchShare The share of the search, between 0 and 1
+     */
+    public void setSearchShare(double searchShare) {
+        this.searchShare = searchShare;
+    }
+
+    /**
+     * Gets the budget of the search
+     *
+     * @return The budget of the search in milliseconds
+     */
+    public long getSearchBudget() {
+        return (long) (budget * Math.max(0, Math.min(1, searchShare)));
+    }
+}
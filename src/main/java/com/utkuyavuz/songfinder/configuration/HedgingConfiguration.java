@@ -0,0 +1,79 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.Hedger;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Spring configuration of the hedging of the preview downloads.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties(HedgingProperties.class)
+public class HedgingConfiguration {
+
+    /**
+     * Hedges the buffered downloads of the previews, timed until the whole audio is received
+     *
+     * @param properties Hedging configuration
+     * @param engine The shared HTTP client engine
+     * @return The {@link Hedger} of the downloads
+     */
+    @Bean
+    public Hedger previewHedger(HedgingProperties properties, HttpClientEngine engine) {
+        return new Hedger("preview", properties, engine);
+    }
+
+    /**
+     * Hedges the openings of the streamed previews, timed until the response headers are received
+     *
+     * @param properties Hedging configuration
+     * @param engine The shared HTTP client engine
+     * @return The {@link Hedger} of the streamed downloads
+     */
+    @Bean
+    public Hedger previewStreamHedger(HedgingProperties properties, HttpClientEngine engine) {
+        return new Hedger("preview.stream", properties, engine);
+    }
+
+    /**
+     * Publishes the hedged calls, the hedges fired, won and denied by the hedge ratio, and the hedging delay,
+     * tagged by the hedged requests
+     *
+     * @param hedgers The hedgers
+     * @return A {@link MeterBinder} for the hedging meters
+     */
+    @Bean
+    public MeterBinder hedgingMetrics(List<Hedger> hedgers) {
+        return registry -> {
+            for (Hedger hedger : hedgers) {
+                FunctionCounter.builder("songfinder.hedge.calls", hedger, Hedger::getCallCount)
+                        .tag("request", hedger.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.hedge.fired", hedger, Hedger::getFiredCount)
+                        .tag("request", hedger.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.hedge.won", hedger, Hedger::getWonCount)
+                        .tag("request", hedger.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.hedge.denied", hedger, Hedger::getDeniedCount)
+                        .tag("request", hedger.getName())
+                        .register(registry);
+                Gauge.builder("songfinder.hedge.delay", hedger, Hedger::getDelayMillis)
+                        .tag("request", hedger.getName())
+                        .baseUnit("milliseconds")
+                        .register(registry);
+            }
+        };
+    }
+}
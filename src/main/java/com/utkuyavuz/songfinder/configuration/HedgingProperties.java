@@ -0,0 +1,115 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the hedging of the preview downloads, bound from <code>songfinder.hedging.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.hedging")
+public class HedgingProperties {
+
+    /* Send a second request when the first one is slow */
+    private boolean enabled = false;
+    /* Percentile of the recent latencies after which the second request is sent, between 0 and 1 */
+    private double percentile = 0.95;
+    /* Minimum delay in milliseconds before the second request */
+    private long minDelay = 20;
+    /* Maximum delay in milliseconds before the second request, used until enough requests are timed */
+    private long maxDelay = 1000;
+    /* Maximum ratio of the requests which are hedged, between 0 and 1 */
+    private double maxRatio = 0.05;
+
+    /**
+     * Checks whether hedging is enabled
+     *
+     * @return Returns <code>true</code> if enabled, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables hedging
+     *
+     * @param enabled <code>true</code> to enable
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the percentile of the recent latencies after which the second request is sent
+     *
+     * @return The percentile, between 0 and 1
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Sets the percentile of the recent latencies after which the second request is sent
+     *
+     * @param percentile The percentile, between 0 and 1
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    /**
+     * Gets the minimum delay in milliseconds before the second request
+     *
+     * @return The minimum delay
+     */
+    public long getMinDelay() {
+        return minDelay;
+    }
+
+    /**
+     * Sets the minimum delay in milliseconds before the second request
+     *
+     * @param minDelay The minimum delay
+     */
+    public void setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    /**
+     * Gets the maximum delay in milliseconds before the second request
+     *
+     * @return The maximum delay
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Sets the maximum delay in milliseconds before the second request
+     *
+     * @param maxDelay The maximum delay
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Gets the maximum ratio of the requests which are hedged
+     *
+     * @return The maximum hedge ratio, between 0 and 1
+     */
+    public double getMaxRatio() {
+        return maxRatio;
+    }
+
+    /**
+     * Sets the maximum ratio of the requests which are hedged
+     *
+     * @param maxRatio The maximum hedge ratio, between 0 and 1
+     */
+    public void setMaxRatio(double maxRatio) {
+        this.maxRatio = maxRatio;
+    }
+}
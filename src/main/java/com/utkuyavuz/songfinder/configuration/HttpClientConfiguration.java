@@ -0,0 +1,124 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.http.pool.PoolStats;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Function;
+
+/**
+ * Spring configuration of the shared HTTP client engine used by the services, and of the upstream endpoints.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties({ HttpClientProperties.class, SpotifyProperties.class })
+public class HttpClientConfiguration {
+
+    /**
+     * The application wide HTTP client engine, closed with the application context
+     *
+     * @param properties Pool configuration
+     * @return The shared {@link HttpClientEngine}
+     */
+    @Bean
+    public HttpClientEngine httpClientEngine(HttpClientProperties properties) {
+        return new HttpClientEngine(properties);
+    }
+
+    /**
+     * Publishes the connection pool statistics, in total and for each configured host
+     *
+     * @param engine The shared HTTP client engine
+     * @param properties Pool configuration
+     * @return A {@link MeterBinder} for the pool gauges
+     */
+    @Bean
+    public MeterBinder httpClientPoolMetrics(HttpClientEngine engine, HttpClientProperties properties) {
+        return registry -> {
+            registerPoolGauges(registry, engine, "all", "blocking", HttpClientEngine::getTotalStats);
+            registerPoolGauges(registry, engine, "all", "async", HttpClientEngine::getAsyncTotalStats);
+            for (String host : properties.getHosts().keySet()) {
+                registerPoolGauges(registry, engine, host, "blocking", e -> e.getStats(host));
+                registerPoolGauges(registry, engine, host, "async", e -> e.getAsyncStats(host));
+            }
+        };
+    }
+
+    /**
+     * Publishes the upstream requests in flight, the response bytes received and the timeouts by kind, in total and
+     * for each configured host
+     *
+     * @param engine The shared HTTP client engine
+     * @param properties Pool configuration
+     * @return A {@link MeterBinder} for the upstream traffic meters
+     */
+    @Bean
+    public MeterBinder upstreamTrafficMetrics(HttpClientEngine engine, HttpClientProperties properties) {
+        return registry -> {
+            FunctionCounter.builder("songfinder.upstream.received", engine, HttpClientEngine::getReceivedBytes)
+                    .baseUnit("bytes").tag("host", "all").register(registry);
+            Gauge.builder("songfinder.upstream.inflight", engine, HttpClientEngine::getInFlight)
+                    .tag("host", "all").register(registry);
+            for (String kind : HttpClientEngine.TIMEOUT_KINDS) {
+                FunctionCounter.builder("songfinder.upstream.timeouts", engine, e -> e.getTimeouts(kind))
+                        .tag("host", "all").tag("kind", kind).register(registry);
+            }
+            for (String host : properties.getHosts().keySet()) {
+                FunctionCounter.builder("songfinder.upstream.received", engine, e -> e.getReceivedBytes(host))
+                        .baseUnit("bytes").tag("host", host).register(registry);
+                Gauge.builder("songfinder.upstream.inflight", engine, e -> e.getInFlight(host))
+                        .tag("host", host).register(registry);
+                for (String kind : HttpClientEngine.TIMEOUT_KINDS) {
+                    FunctionCounter.builder("songfinder.upstream.timeouts", engine, e -> e.getTimeouts(host, kind))
+                            .tag("host", host).tag("kind", kind).register(registry);
+                }
+            }
+        };
+    }
+
+    /**
+     * Publishes the state of the circuit breaker of each configured host, 0 closed, 1 half open and 2 open, and the
+     * requests it failed fast
+     *
+     * @param engine The shared HTTP client engine
+     * @param properties Pool configuration
+     * @return A {@link MeterBinder} for the circuit breaker meters
+     */
+    @Bean
+    public MeterBinder circuitBreakerMetrics(HttpClientEngine engine, HttpClientProperties properties) {
+        return registry -> {
+            if (!properties.getCircuit().isEnabled()) {
+                return;
+            }
+            for (String host : properties.getHosts().keySet()) {
+                Gauge.builder("songfinder.upstream.circuit.state", engine, e -> e.getCircuitBreaker(host).getState())
+                        .tag("host", host).register(registry);
+                FunctionCounter.builder("songfinder.upstream.circuit.rejected", engine,
+                        e -> e.getCircuitBreaker(host).getRejectedCount())
+                        .tag("host", host).register(registry);
+            }
+        };
+    }
+
+    /* Registers leased, available, pending and max gauges for a pool, gauges refer to the engine bean */
+    private static void registerPoolGauges(MeterRegistry registry, HttpClientEngine engine, String host,
+                                           String client, Function<HttpClientEngine, PoolStats> stats) {
+        Gauge.builder("songfinder.http.pool.leased", engine, e -> stats.apply(e).getLeased())
+                .tag("host", host).tag("client", client).register(registry);
+        Gauge.builder("songfinder.http.pool.available", engine, e -> stats.apply(e).getAvailable())
+                .tag("host", host).tag("client", client).register(registry);
+        Gauge.builder("songfinder.http.pool.pending", engine, e -> stats.apply(e).getPending())
+                .tag("host", host).tag("client", client).register(registry);
+        Gauge.builder("songfinder.http.pool.max", engine, e -> stats.apply(e).getMax())
+                .tag("host", host).tag("client", client).register(registry);
+    }
+}
@@ -0,0 +1,472 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for the shared HTTP client engine, bound from <code>songfinder.http.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.http")
+public class HttpClientProperties {
+
+    /* Maximum number of pooled connections over all hosts */
+    private int maxTotal = 200;
+    /* Maximum number of pooled connections for a single host */
+    private int maxPerRoute = 50;
+    /* Per host overrides of maxPerRoute, keyed by host name (https, port 443) */
+    private Map<String, Integer> hosts = new HashMap<>();
+    /* Percentage of maxTotal and of each host limit given to the non-blocking pool, the blocking pool gets the rest */
+    private int asyncShare = 50;
+    /* Keep-alive duration in milliseconds when the server does not send one */
+    private long keepAlive = 30000;
+    /* Idle time in milliseconds after which a pooled connection is closed */
+    private long maxIdle = 60000;
+    /* Inactivity in milliseconds after which a pooled connection is validated before reuse */
+    private int validateAfterInactivity = 2000;
+    /* Lifetime of cached TLS sessions in seconds */
+    private int tlsSessionTimeout = 3600;
+    /* Number of cached TLS sessions */
+    private int tlsSessionCacheSize = 1000;
+    /* Timeout in milliseconds to establish a connection, 0 waits forever */
+    private int connectTimeout = 2000;
+    /* Timeout in milliseconds of inactivity while waiting for the response, 0 waits forever */
+    private int readTimeout = 5000;
+    /* Timeout in milliseconds to lease a connection from the pool, 0 waits forever */
+    private int poolTimeout = 1000;
+    /* Per host overrides of the connect and read timeouts, keyed by host name */
+    private Map<String, Timeouts> timeouts = new HashMap<>();
+    /* Circuit breaker of each upstream host */
+    private Circuit circuit = new Circuit();
+
+    /**
+     * Gets the maximum number of pooled connections over all hosts
+     *
+     * @return The maximum number of pooled connections
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections over all hosts
+     *
+     * @param maxTotal The maximum number of pooled connections
+     */
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * Gets the maximum number of pooled connections for a single host
+     *
+     * @return The maximum number of pooled connections per host
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections for a single host
+     *
+     * @param maxPerRoute The maximum number of pooled connections per host
+     */
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    /**
+     * Gets the per host connection limits, keyed by host name
+     *
+     * @return The per host connection limits
+     */
+    public Map<String, Integer> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Sets the per host connection limits, keyed by host name
+     *
+     * @param hosts The per host connection limits
+     */
+    public void setHosts(Map<String, Integer> hosts) {
+        this.hosts = hosts;
+    }
+
+    /**
+     * Gets the percentage of the connection limits given to the non-blocking pool
+     *
+     * @return The share of the non-blocking pool
+     */
+    public int getAsyncShare() {
+        return asyncShare;
+    }
+
+    /**
+     * Sets the percentage of the connection limits given to the non-blocking pool, the blocking pool gets the rest
+     *
+     * @param asyncShare The share of the non-blocking pool
+     */
+    public void setAsyncShare(int asyncShare) {
+        this.asyncShare = asyncShare;
+    }
+
+    /**
+     * Gets the default keep-alive duration in milliseconds
+     *
+     * @return The default keep-alive duration
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Sets the default keep-alive duration in milliseconds
+     *
+     * @param keepAlive The default keep-alive duration
+     */
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Gets the idle time in milliseconds after which a pooled connection is closed
+     *
+     * @return The maximum idle time
+     */
+    public long getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Sets the idle time in milliseconds after which a pooled connection is closed
+     *
+     * @param maxIdle The maximum idle time
+     */
+    public void setMaxIdle(long maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Gets the inactivity in milliseconds after which a pooled connection is validated
+     *
+     * @return The inactivity period before validation
+     */
+    public int getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    /**
+     * Sets the inactivity in milliseconds after which a pooled connection is validated
+     *
+     * @param validateAfterInactivity The inactivity period before validation
+     */
+    public void setValidateAfterInactivity(int validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+
+    /**
+     * Gets the lifetime of cached TLS sessions in seconds
+     *
+     * @return The TLS session lifetime
+     */
+    public int getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    /**
+     * Sets the lifetime of cached TLS sessions in seconds
+     *
+     * @param tlsSessionTimeout The TLS session lifetime
+     */
+    public void setTlsSessionTimeout(int tlsSessionTimeout) {
+        this.tlsSessionTimeout = tlsSessionTimeout;
+    }
+
+    /**
+     * Gets the number of cached TLS sessions
+     *
+     * @return The TLS session cache size
+     */
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    /**
+     * Sets the number of cached TLS sessions
+     *
+     * @param tlsSessionCacheSize The TLS session cache size
+     */
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    /**
+     * Gets the timeout in milliseconds to establish a connection
+     *
+     * @return The connect timeout, 0 waits forever
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the timeout in milliseconds to establish a connection
+     *
+     * @param connectTimeout The connect timeout, 0 waits forever
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Gets the timeout in milliseconds of inactivity while waiting for the response
+     *
+     * @return The read timeout, 0 waits forever
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets the timeout in milliseconds of inactivity while waiting for the response
+     *
+     * @param readTimeout The read timeout, 0 waits forever
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Gets the timeout in milliseconds to lease a connection from the pool
+     *
+     * @return The pool timeout, 0 waits forever
+     */
+    public int getPoolTimeout() {
+        return poolTimeout;
+    }
+
+    /**
+     * Sets the timeout in milliseconds to lease a connection from the pool
+     *
+     * @param poolTimeout The pool timeout, 0 waits forever
+     */
+    public void setPoolTimeout(int poolTimeout) {
+        this.poolTimeout = poolTimeout;
+    }
+
+    /**
+     * Gets the per host timeouts, keyed by host name
+     *
+     * @return The per host timeouts
+     */
+    public Map<String, Timeouts> getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Sets the per host timeouts, keyed by host name
+     *
+     * @param timeouts The per host timeouts
+     */
+    public void setTimeouts(Map<String, Timeouts> timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * Gets the configuration of the circuit breaker of each upstream host
+     *
+     * @return The circuit breaker configuration
+     */
+    public Circuit getCircuit() {
+        return circuit;
+    }
+
+    /**
+     * Sets the configuration of the circuit breaker of each upstream host
+     *
+     * @param circuit The circuit breaker configuration
+     */
+    public void setCircuit(Circuit circuit) {
+        this.circuit = circuit;
+    }
+
+    /**
+     * Connect and read timeouts of an upstream host, the ones which are not set are inherited
+     */
+    public static class Timeouts {
+
+        /* Timeout in milliseconds to establish a connection, null to inherit */
+        private Integer connect;
+        /* Timeout in milliseconds of inactivity while waiting for the response, null to inherit */
+        private Integer read;
+
+        /**
+         * Gets the timeout in milliseconds to establish a connection
+         *
+         * @return The connect timeout, <code>null</code> to inherit
+         */
+        public Integer getConnect() {
+            return connect;
+        }
+
+        /**
+         * Sets the timeout in milliseconds to establish a connection
+         *
+         * @param connect The connect timeout, <code>null</code> to inherit
+         */
+        public void setConnect(Integer connect) {
+            this.connect = connect;
+        }
+
+        /**
+         * Gets the timeout in milliseconds of inactivity while waiting for the response
+         *
+         * @return The read timeout, <code>null</code> to inherit
+         */
+        public Integer getRead() {
+            return read;
+        }
+
+        /**
+         * Sets the timeout in milliseconds of inactivity while waiting for the response
+         *
+         * @param read The read timeout, <code>null</code> to inherit
+         */
+        public void setRead(Integer read) {
+            this.read = read;
+        }
+    }
+
+    /**
+     * Circuit breaker of an upstream host, which fails the requests fast while the host is failing
+     */
+    public static class Circuit {
+
+        /* Fail the requests fast while the host is failing */
+        private boolean enabled = true;
+        /* Number of recent requests the failure rate is computed over */
+        private int window = 50;
+        /* Number of requests needed before the circuit can open */
+        private int minimumCalls = 20;
+        /* Failure rate which opens the circuit, between 0 and 1 */
+        private double failureRate = 0.5;
+        /* Duration in milliseconds the circuit stays open before trial requests are let through */
+        private long openDuration = 10000;
+        /* Number of trial requests let through once the open duration is over */
+        private int halfOpenCalls = 1;
+
+        /**
+         * Checks whether the circuit breakers are enabled
+         *
+         * @return Returns <code>true</code> if enabled, else <code>false</code>
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Enables or disables the circuit breakers
+         *
+         * @param enabled <code>true</code> to enable
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets the number of recent requests the failure rate is computed over
+         *
+         * @return The window size
+         */
+        public int getWindow() {
+            return window;
+        }
+
+        /**
+         * Sets the number of recent requests the failure rate is computed over
+         *
+         * @param window The window size
+         */
+        public void setWindow(int window) {
+            this.window = window;
+        }
+
+        /**
+         * Gets the number of requests needed before the circuit can open
+         *
+         * @return The minimum number of requests
+         */
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        /**
+         * Sets the number of requests needed before the circuit can open
+         *
+         * @param minimumCalls The minimum number of requests
+         */
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        /**
+         * Gets the failure rate which opens the circuit
+         *
+         * @return The failure rate, between 0 and 1
+         */
+        public double getFailureRate() {
+            return failureRate;
+        }
+
+        /**
+         * Sets the failure rate which opens the circuit
+         *
+         * @param failureRate The failure rate, between 0 and 1
+         */
+        public void setFailureRate(double failureRate) {
+            this.failureRate = failureRate;
+        }
+
+        /**
+         * Gets the duration in milliseconds the circuit stays open
+         *
+         * @return The open duration
+         */
+        public long getOpenDuration() {
+            return openDuration;
+        }
+
+        /**
+         * Sets the duration in milliseconds the circuit stays open
+         *
+         * @param openDuration The open duration
+         */
+        public void setOpenDuration(long openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        /**
+         * Gets the number of trial requests let through once the open duration is over
+         *
+         * @return The number of trial requests
+         */
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        /**
+         * Sets the number of trial requests let through once the open duration is over
+         *
+         * @param halfOpenCalls The number of trial requests
+         */
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.RequestMetrics;
+import com.utkuyavuz.songfinder.util.RequestMetricsFilter;
+import com.utkuyavuz.songfinder.util.RequestTraceFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.servlet.DispatcherType;
+
+/**
+ * Spring configuration of the latency metrics and of the request tracing of the song preview requests.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * The request and stage timers, on the application registry or on a registry of their own without one
+     *
+     * @param registry The application {@link MeterRegistry}, if any
+     * @return The {@link RequestMetrics}
+     */
+    @Bean
+    public RequestMetrics requestMetrics(ObjectProvider<MeterRegistry> registry) {
+        return new RequestMetrics(registry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /**
+     * Times the song preview requests and the writing of their responses
+     *
+     * @param requestMetrics The request and stage timers
+     * @return The registration of the {@link RequestMetricsFilter}
+     */
+    @Bean
+    public FilterRegistrationBean<RequestMetricsFilter> requestMetricsFilter(RequestMetrics requestMetrics) {
+        FilterRegistrationBean<RequestMetricsFilter> registration =
+                new FilterRegistrationBean<>(new RequestMetricsFilter(requestMetrics));
+        registration.addUrlPatterns("/rest/*");
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        return registration;
+    }
+
+    /**
+     * Answers the request id and the <code>Server-Timing</code> of the song preview requests, and keeps the
+     * request id in the logging MDC. Runs first, so that every log line of the request carries the id
+     *
+     * @return The registration of the {@link RequestTraceFilter}
+     */
+    @Bean
+    public FilterRegistrationBean<RequestTraceFilter> requestTraceFilter() {
+        FilterRegistrationBean<RequestTraceFilter> registration =
+                new FilterRegistrationBean<>(new RequestTraceFilter());
+        registration.addUrlPatterns("/rest/*");
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
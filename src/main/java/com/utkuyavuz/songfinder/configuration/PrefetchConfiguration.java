@@ -0,0 +1,83 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.Prefetcher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Spring configuration of the speculative prefetch of the previews.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties(PrefetchProperties.class)
+public class PrefetchConfiguration {
+
+    /**
+     * Warms the preview caches with the audio of the resolved preview urls
+     *
+     * @param properties Prefetch configuration
+     * @param engine The shared HTTP client engine
+     * @return The {@link Prefetcher} of the previews
+     */
+    @Bean
+    public Prefetcher previewPrefetcher(PrefetchProperties properties, HttpClientEngine engine) {
+        return new Prefetcher("preview", properties, engine);
+    }
+
+    /**
+     * Publishes the prefetches submitted, loaded, hit, wasted and dropped, the prefetched bytes, the hit ratio, and
+     * the queued, active and outstanding prefetches, tagged by the prefetched requests
+     *
+     * @param prefetchers The prefetchers
+     * @return A {@link MeterBinder} for the prefetch meters
+     */
+    @Bean
+    public MeterBinder prefetchMetrics(List<Prefetcher> prefetchers) {
+        return registry -> {
+            for (Prefetcher prefetcher : prefetchers) {
+                FunctionCounter.builder("songfinder.prefetch.submitted", prefetcher, Prefetcher::getSubmittedCount)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.prefetch.loads", prefetcher, Prefetcher::getPrefetchedCount)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.prefetch.bytes", prefetcher, Prefetcher::getPrefetchedBytes)
+                        .tag("request", prefetcher.getName())
+                        .baseUnit("bytes")
+                        .register(registry);
+                FunctionCounter.builder("songfinder.prefetch.hits", prefetcher, Prefetcher::getHitCount)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.prefetch.wasted", prefetcher, Prefetcher::getWastedCount)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.prefetch.dropped", prefetcher, Prefetcher::getDroppedCount)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                Gauge.builder("songfinder.prefetch.hit.ratio", prefetcher, Prefetcher::getHitRatio)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                Gauge.builder("songfinder.prefetch.queued", prefetcher, Prefetcher::getQueuedCount)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                Gauge.builder("songfinder.prefetch.active", prefetcher, Prefetcher::getActiveCount)
+                        .tag("request", prefetcher.getName())
+                        .register(registry);
+                Gauge.builder("songfinder.prefetch.outstanding", prefetcher, Prefetcher::getOutstandingBytes)
+                        .tag("request", prefetcher.getName())
+                        .baseUnit("bytes")
+                        .register(registry);
+            }
+        };
+    }
+}
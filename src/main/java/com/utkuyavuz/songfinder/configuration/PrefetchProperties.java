@@ -0,0 +1,136 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the speculative prefetch of the previews, bound from
+ * <code>songfinder.prefetch.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.prefetch")
+public class PrefetchProperties {
+
+    /* Download the previews of the resolved preview urls into the caches in the background */
+    private boolean enabled = false;
+    /* Largest number of prefetches in flight */
+    private int maxConcurrent = 2;
+    /* Largest number of prefetches waiting to be started, the oldest one is dropped when it is full */
+    private int maxQueue = 100;
+    /* Largest number of prefetched bytes which have not been requested yet */
+    private long maxBytes = 16777216;
+    /* Time in milliseconds a prefetched preview waits for its request before it is counted as wasted */
+    private long ttl = 60000;
+    /* Number of upstream requests of the clients in flight at which the prefetches wait */
+    private int yieldInFlight = 8;
+
+    /**
+     * Checks whether the prefetch is enabled
+     *
+     * @return Returns <code>true</code> if enabled, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the prefetch
+     *
+     * @param enabled <code>true</code> to enable
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the largest number of prefetches in flight
+     *
+     * @return The maximum number of concurrent prefetches
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Sets the largest number of prefetches in flight
+     *
+     * @param maxConcurrent The maximum number of concurrent prefetches
+     */
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Gets the largest number of prefetches waiting to be started
+     *
+     * @return The maximum queue length
+     */
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    /**
+     * Sets the largest number of prefetches waiting to be started
+     *
+     * @param maxQueue The maximum queue length
+     */
+    public void setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+    }
+
+    /**
+     * Gets the largest number of prefetched bytes which have not been requested yet
+     *
+     * @return The maximum number of bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the largest number of prefetched bytes which have not been requested yet
+     *
+     * @param maxBytes The maximum number of bytes
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the time in milliseconds a prefetched preview waits for its request
+     *
+     * @return The time to live
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Sets the time in milliseconds a prefetched preview waits for its request
+     *
+     * @param ttl The time to live
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Gets the number of upstream requests of the clients in flight at which the prefetches wait
+     *
+     * @return The in flight threshold
+     */
+    public int getYieldInFlight() {
+        return yieldInFlight;
+    }
+
+    /**
+     * Sets the number of upstream requests of the clients in flight at which the prefetches wait
+     *
+     * @param yieldInFlight The in flight threshold
+     */
+    public void setYieldInFlight(int yieldInFlight) {
+        this.yieldInFlight = yieldInFlight;
+    }
+}
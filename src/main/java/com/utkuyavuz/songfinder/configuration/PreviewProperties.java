@@ -0,0 +1,95 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the preview audio responses, bound from <code>songfinder.preview.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.preview")
+public class PreviewProperties {
+
+    /* Pipe the preview audio to the client as it arrives instead of buffering it */
+    private boolean streaming = true;
+    /* Number of threads which open the streamed previews, each one waits for the response headers */
+    private int streamThreads = 32;
+    /* Number of threads which store the downloaded previews in the caches, off the threads of the HTTP clients */
+    private int storeThreads = 2;
+    /* Maximum number of downloaded previews waiting to be stored, further ones are not cached */
+    private int storeQueueCapacity = 64;
+
+    /**
+     * Checks whether the preview audio is streamed
+     *
+     * @return Returns <code>true</code> if streamed, else <code>false</code>
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Enables or disables streaming of the preview audio
+     *
+     * @param streaming <code>true</code> to stream
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Gets the number of threads which open the streamed previews
+     *
+     * @return The number of threads
+     */
+    public int getStreamThreads() {
+        return streamThreads;
+    }
+
+    /**
+     * Sets the number of threads which open the streamed previews
+     *
+     * @param streamThreads The number of threads
+     */
+    public void setStreamThreads(int streamThreads) {
+        this.streamThreads = streamThreads;
+    }
+
+    /**
+     * Gets the number of threads which store the downloaded previews
+     *
+     * @return The number of threads
+     */
+    public int getStoreThreads() {
+        return storeThreads;
+    }
+
+    /**
+     * Sets the number of threads which store the downloaded previews
+     *
+     * @param storeThreads The number of threads
+     */
+    public void setStoreThreads(int storeThreads) {
+        this.storeThreads = storeThreads;
+    }
+
+    /**
+     * Gets the maximum number of downloaded previews waiting to be stored
+     *
+     * @return The queue capacity
+     */
+    public int getStoreQueueCapacity() {
+        return storeQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of downloaded previews waiting to be stored
+     *
+     * @param storeQueueCapacity The queue capacity
+     */
+    public void setStoreQueueCapacity(int storeQueueCapacity) {
+        this.storeQueueCapacity = storeQueueCapacity;
+    }
+}
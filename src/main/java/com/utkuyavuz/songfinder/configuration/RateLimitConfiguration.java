@@ -0,0 +1,37 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration of the rate limiting of the Spotify searches by access token.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfiguration {
+
+    /**
+     * Limits the rate of the searches of each access token, with its meters on the application registry or on a
+     * registry of their own without one
+     *
+     * @param properties Rate limit configuration
+     * @param engine The shared HTTP client engine
+     * @param registry The application {@link MeterRegistry}, if any
+     * @return The {@link RateLimiter} of the searches
+     */
+    @Bean
+    public RateLimiter searchRateLimiter(RateLimitProperties properties, HttpClientEngine engine,
+                                         ObjectProvider<MeterRegistry> registry) {
+        return new RateLimiter("search", properties, engine, registry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
@@ -0,0 +1,196 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the rate limiting of the Spotify Web API requests by access token, bound from
+ * <code>songfinder.ratelimit.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.ratelimit")
+public class RateLimitProperties {
+
+    /* Limit the rate of the requests of each access token */
+    private boolean enabled = true;
+    /* Requests per second of an access token */
+    private double rate = 10;
+    /* Largest number of requests of an access token sent at once after an idle period */
+    private int burst = 20;
+    /* Lowest rate in requests per second an access token is cut to by the 429 responses */
+    private double minRate = 1;
+    /* Factor the rate of an access token is cut by on a 429 response, between 0 and 1 */
+    private double decrease = 0.5;
+    /* Requests per second the rate of an access token is raised by on each successful response */
+    private double increase = 0.1;
+    /* Largest number of requests of an access token waiting to be sent */
+    private int maxQueue = 50;
+    /* Longest wait in milliseconds of a request to be sent */
+    private long maxWait = 2000;
+    /* Time in milliseconds after which the rate of an idle access token is forgotten */
+    private long idleExpiry = 600000;
+
+    /**
+     * Checks whether rate limiting is enabled
+     *
+     * @return Returns <code>true</code> if enabled, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables rate limiting
+     *
+     * @param enabled <code>true</code> to enable
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the requests per second of an access token
+     *
+     * @return The rate
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Sets the requests per second of an access token
+     *
+     * @param rate The rate
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Gets the largest number of requests of an access token sent at once after an idle period
+     *
+     * @return The burst size
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Sets the largest number of requests of an access token sent at once after an idle period
+     *
+     * @param burst The burst size
+     */
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    /**
+     * Gets the lowest rate an access token is cut to by the 429 responses
+     *
+     * @return The minimum rate in requests per second
+     */
+    public double getMinRate() {
+        return minRate;
+    }
+
+    /**
+     * Sets the lowest rate an access token is cut to by the 429 responses
+     *
+     * @param minRate The minimum rate in requests per second
+     */
+    public void setMinRate(double minRate) {
+        this.minRate = minRate;
+    }
+
+    /**
+     * Gets the factor the rate of an access token is cut by on a 429 response
+     *
+     * @return The decrease factor, between 0 and 1
+     */
+    public double getDecrease() {
+        return decrease;
+    }
+
+    /**
+     * Sets the factor the rate of an access token is cut by on a 429 response
+     *
+     * @param decrease The decrease factor, between 0 and 1
+     */
+    public void setDecrease(double decrease) {
+        this.decrease = decrease;
+    }
+
+    /**
+     * Gets the requests per second the rate of an access token is raised by on each successful response
+     *
+     * @return The increase step
+     */
+    public double getIncrease() {
+        return increase;
+    }
+
+    /**
+     * Sets the requests per second the rate of an access token is raised by on each successful response
+     *
+     * @param increase The increase step
+     */
+    public void setIncrease(double increase) {
+        this.increase = increase;
+    }
+
+    /**
+     * Gets the largest number of requests of an access token waiting to be sent
+     *
+     * @return The maximum queue length
+     */
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    /**
+     * Sets the largest number of requests of an access token waiting to be sent
+     *
+     * @param maxQueue The maximum queue length
+     */
+    public void setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+    }
+
+    /**
+     * Gets the longest wait in milliseconds of a request to be sent
+     *
+     * @return The maximum wait
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Sets the longest wait in milliseconds of a request to be sent
+     *
+     * @param maxWait The maximum wait
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Gets the time in milliseconds after which the rate of an idle access token is forgotten
+     *
+     * @return The idle expiry
+     */
+    public long getIdleExpiry() {
+        return idleExpiry;
+    }
+
+    /**
+     * Sets the time in milliseconds after which the rate of an idle access token is forgotten
+     *
+     * @param idleExpiry The idle expiry
+     */
+    public void setIdleExpiry(long idleExpiry) {
+        this.idleExpiry = idleExpiry;
+    }
+}
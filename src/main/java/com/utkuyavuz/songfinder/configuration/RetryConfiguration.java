@@ -0,0 +1,71 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.Retrier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Spring configuration of the retries of the Spotify Web API requests.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties(RetryProperties.class)
+public class RetryConfiguration {
+
+    /**
+     * Retries the searches which fail transiently
+     *
+     * @param properties Retry configuration
+     * @param engine The shared HTTP client engine
+     * @return The {@link Retrier} of the searches
+     */
+    @Bean
+    public Retrier searchRetrier(RetryProperties properties, HttpClientEngine engine) {
+        return new Retrier("search", properties, engine);
+    }
+
+    /**
+     * Retries the track lookups which fail transiently
+     *
+     * @param properties Retry configuration
+     * @param engine The shared HTTP client engine
+     * @return The {@link Retrier} of the track lookups
+     */
+    @Bean
+    public Retrier trackRetrier(RetryProperties properties, HttpClientEngine engine) {
+        return new Retrier("track", properties, engine);
+    }
+
+    /**
+     * Publishes the retried calls, the retries sent and the calls which failed after their last attempt, tagged by
+     * the retried requests
+     *
+     * @param retriers The retriers
+     * @return A {@link MeterBinder} for the retry meters
+     */
+    @Bean
+    public MeterBinder retryMetrics(List<Retrier> retriers) {
+        return registry -> {
+            for (Retrier retrier : retriers) {
+                FunctionCounter.builder("songfinder.retry.calls", retrier, Retrier::getCallCount)
+                        .tag("request", retrier.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.retry.retries", retrier, Retrier::getRetryCount)
+                        .tag("request", retrier.getName())
+                        .register(registry);
+                FunctionCounter.builder("songfinder.retry.exhausted", retrier, Retrier::getExhaustedCount)
+                        .tag("request", retrier.getName())
+                        .register(registry);
+            }
+        };
+    }
+}
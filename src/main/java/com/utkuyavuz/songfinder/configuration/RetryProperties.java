@@ -0,0 +1,95 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the retries of the Spotify Web API requests, bound from <code>songfinder.retry.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.retry")
+public class RetryProperties {
+
+    /* Maximum number of attempts of a request, including the first one, 1 disables the retries */
+    private int maxAttempts = 3;
+    /* Backoff in milliseconds before the first retry, doubled before each further one */
+    private long initialBackoff = 100;
+    /* Maximum backoff in milliseconds */
+    private long maxBackoff = 2000;
+    /* Longest Retry-After in milliseconds which is waited for, a longer one is answered to the client */
+    private long maxRetryAfter = 5000;
+
+    /**
+     * Gets the maximum number of attempts of a request, including the first one
+     *
+     * @return The maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Sets the maximum number of attempts of a request, including the first one
+     *
+     * @param maxAttempts The maximum number of attempts, 1 disables the retries
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Gets the backoff in milliseconds before the first retry
+     *
+     * @return The initial backoff
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * Sets the backoff in milliseconds before the first retry
+     *
+     * @param initialBackoff The initial backoff
+     */
+    public void setInitialBackoff(long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Gets the maximum backoff in milliseconds
+     *
+     * @return The maximum backoff
+     */
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * Sets the maximum backoff in milliseconds
+     *
+     * @param maxBackoff The maximum backoff
+     */
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Gets the longest Retry-After in milliseconds which is waited for
+     *
+     * @return The maximum Retry-After
+     */
+    public long getMaxRetryAfter() {
+        return maxRetryAfter;
+    }
+
+    /**
+     * Sets the longest Retry-After in milliseconds which is waited for
+     *
+     * @param maxRetryAfter The maximum Retry-After
+     */
+    public void setMaxRetryAfter(long maxRetryAfter) {
+        this.maxRetryAfter = maxRetryAfter;
+    }
+}
@@ -0,0 +1,35 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the Spotify Web API, bound from <code>songfinder.spotify.*</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@ConfigurationProperties(prefix = "songfinder.spotify")
+public class SpotifyProperties {
+
+    /* Base url of the Web API, e.g. of a local emulator for load tests */
+    private String baseUrl = "https://api.spotify.com";
+
+    /**
+     * Gets the base url of the Web API
+     *
+     * @return The base url, without a trailing slash
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Sets the base url of the Web API
+     *
+     * @param baseUrl The base url, a trailing slash is removed
+     */
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+}
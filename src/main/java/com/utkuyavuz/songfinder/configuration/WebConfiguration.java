@@ -0,0 +1,77 @@
+package com.utkuyavuz.songfinder.configuration;
+
+import com.utkuyavuz.songfinder.util.SetDeferredResultReturnValueHandler;
+import com.utkuyavuz.songfinder.util.StreamingContentHttpMessageConverter;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.DeferredResultMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.HttpEntityMethodProcessor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spring MVC configuration of the response bodies and of their handling, and of the deadline, the bulk searches and
+ * the preview bundles of the requests.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@Configuration
+@EnableConfigurationProperties({ PreviewProperties.class, DeadlineProperties.class, BulkSearchProperties.class,
+        BundleProperties.class })
+public class WebConfiguration {
+
+    /**
+     * Writes streamed preview audio, picked up by Spring Boot in front of the default converters
+     *
+     * @return The {@link StreamingContentHttpMessageConverter}
+     */
+    @Bean
+    public StreamingContentHttpMessageConverter streamingContentHttpMessageConverter() {
+        return new StreamingContentHttpMessageConverter();
+    }
+
+    /**
+     * Writes the deferred results which are already set when the handler returns, e.g. with
+     * <code>songfinder.async.enabled</code> off, in the request dispatch, see
+     * {@link SetDeferredResultReturnValueHandler}
+     *
+     * @return The {@link WebMvcRegistrations} of the handler adapter
+     */
+    @Bean
+    public WebMvcRegistrations setDeferredResultRegistrations() {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new RequestMappingHandlerAdapter() {
+                    @Override
+                    public void afterPropertiesSet() {
+                        super.afterPropertiesSet();
+                        setReturnValueHandlers(withSetDeferredResults(getReturnValueHandlers()));
+                    }
+                };
+            }
+        };
+    }
+
+    /* Replaces the default handler of the deferred results, which is kept as the fallback */
+    private static List<HandlerMethodReturnValueHandler> withSetDeferredResults(
+            List<HandlerMethodReturnValueHandler> handlers) {
+        HandlerMethodReturnValueHandler httpEntityHandler = handlers.stream()
+                .filter(handler -> handler instanceof HttpEntityMethodProcessor)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No handler of the entities."));
+        List<HandlerMethodReturnValueHandler> replaced = new ArrayList<>(handlers.size());
+        for (HandlerMethodReturnValueHandler handler : handlers) {
+            replaced.add(handler instanceof DeferredResultMethodReturnValueHandler
+                    ? new SetDeferredResultReturnValueHandler(handler, httpEntityHandler) : handler);
+        }
+        return replaced;
+    }
+}
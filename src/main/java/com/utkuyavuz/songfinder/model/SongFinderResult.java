@@ -0,0 +1,130 @@
+package com.utkuyavuz.songfinder.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.utkuyavuz.songfinder.service.output.TrackOutput;
+
+/**
+ * The class to return the result of a song of a bulk search, a line of the Json stream. Carries either the found
+ * track or the error of the song.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SongFinderResult {
+
+    /* Position of the song in the request */
+    private int index;
+    /* Name of the song */
+    private String songname;
+    /* The found track */
+    private TrackOutput track;
+    /* Error of the song */
+    private SongFinderError error;
+
+    /**
+     * The default constructor
+     */
+    public SongFinderResult() {
+
+    }
+
+    /**
+     * The constructor with the found track
+     *
+     * @param index Position of the song in the request
+     * @param songname Name of the song as {@link String}
+     * @param track The found track as {@link TrackOutput}
+     */
+    public SongFinderResult(int index, String songname, TrackOutput track) {
+        this.index = index;
+        this.songname = songname;
+        this.track = track;
+    }
+
+    /**
+     * The constructor with the error of the song
+     *
+     * @param index Position of the song in the request
+     * @param songname Name of the song as {@link String}
+     * @param error The error as {@link SongFinderError}
+     */
+    public SongFinderResult(int index, String songname, SongFinderError error) {
+        this.index = index;
+        this.songname = songname;
+        this.error = error;
+    }
+
+    /**
+     * Gets the position of the song in the request
+     *
+     * @return The index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the position of the song in the request
+     *
+     * @param index The index
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Gets the name of the song
+     *
+     * @return The song name
+     */
+    public String getSongname() {
+        return songname;
+    }
+
+    /**
+     * Sets the name of the song
+     *
+     * @param songname The song name
+     */
+    public void setSongname(String songname) {
+        this.songname = songname;
+    }
+
+    /**
+     * Gets the found track
+     *
+     * @return The track, <code>null</code> if the song has an error
+     */
+    public TrackOutput getTrack() {
+        return track;
+    }
+
+    /**
+     * Sets the found track
+     *
+     * @param track The track
+     */
+    public void setTrack(TrackOutput track) {
+        this.track = track;
+    }
+
+    /**
+     * Gets the error of the song
+     *
+     * @return The error, <code>null</code> if the track is found
+     */
+    public SongFinderError getError() {
+        return error;
+    }
+
+    /**
+     * Sets the error of the song
+     *
+     * @param error The error
+     */
+    public void setError(SongFinderError error) {
+        this.error = error;
+    }
+}
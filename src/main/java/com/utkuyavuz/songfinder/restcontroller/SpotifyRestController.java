@@ -1,12 +1,32 @@
 package com.utkuyavuz.songfinder.restcontroller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utkuyavuz.songfinder.configuration.AsyncProperties;
+import com.utkuyavuz.songfinder.configuration.BulkSearchProperties;
+import com.utkuyavuz.songfinder.configuration.BundleProperties;
+import com.utkuyavuz.songfinder.configuration.DeadlineProperties;
+import com.utkuyavuz.songfinder.configuration.PreviewProperties;
 import com.utkuyavuz.songfinder.model.SongFinderError;
+import com.utkuyavuz.songfinder.model.SongFinderResult;
 import com.utkuyavuz.songfinder.service.contract.IPreviewService;
 import com.utkuyavuz.songfinder.service.contract.ISpotifyService;
+import com.utkuyavuz.songfinder.service.input.GetTrackInput;
 import com.utkuyavuz.songfinder.service.input.PreviewInput;
 import com.utkuyavuz.songfinder.service.input.SearchItemInput;
+import com.utkuyavuz.songfinder.service.output.GetTrackOutput;
 import com.utkuyavuz.songfinder.service.output.PreviewOutput;
 import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
+import com.utkuyavuz.songfinder.util.BoundedExecutor;
+import com.utkuyavuz.songfinder.util.ByteBufferContent;
+import com.utkuyavuz.songfinder.util.ByteRange;
+import com.utkuyavuz.songfinder.util.Deadline;
+import com.utkuyavuz.songfinder.util.Digests;
+import com.utkuyavuz.songfinder.util.FanOut;
+import com.utkuyavuz.songfinder.util.Futures;
+import com.utkuyavuz.songfinder.util.RequestMetrics;
+import com.utkuyavuz.songfinder.util.RequestTrace;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import com.utkuyavuz.songfinder.util.ZipContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,10 +35,23 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
@@ -35,6 +68,10 @@ public class SpotifyRestController {
     /* The Logger */
     private static final Logger LOGGER = LoggerFactory.getLogger(SpotifyRestController.class);
 
+    /* Content type of a stream of Json objects, one per line */
+    private static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson",
+            StandardCharsets.UTF_8);
+
     /* Autowire Spotify service */
     @Autowired
     private ISpotifyService spotifyService;
@@ -43,69 +80,462 @@ public class SpotifyRestController {
     @Autowired
     private IPreviewService previewService;
 
+    /* Autowire the executor for asynchronous requests */
+    @Autowired
+    private BoundedExecutor songFinderExecutor;
+
+    /* Autowire asynchronous request configuration */
+    @Autowired
+    private AsyncProperties asyncProperties;
+
+    /* Autowire preview configuration */
+    @Autowired
+    private PreviewProperties previewProperties;
+
+    /* Autowire request deadline configuration */
+    @Autowired
+    private DeadlineProperties deadlineProperties;
+
+    /* Autowire bulk search configuration */
+    @Autowired
+    private BulkSearchProperties bulkSearchProperties;
+
+    /* Autowire preview bundle configuration */
+    @Autowired
+    private BundleProperties bundleProperties;
+
+    /* Autowire the Json mapper of the responses */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /* Autowire the request latency metrics */
+    @Autowired
+    private RequestMetrics requestMetrics;
+
     /**
      * Searches for a song in the Spotify Web API <em>search for an item</em> endpoint and returns
      * 30 seconds long preview of the song.
+     * <br/> When <code>songfinder.async.enabled</code> is set, the servlet container thread is released while the
+     * upstream requests are pending and the response is completed on the bounded executor. Otherwise the request
+     * is completed and written on the servlet container thread, without an asynchronous dispatch, so that a preview
+     * stored on disk is sent by the container itself.
+     * <br/> When <code>songfinder.preview.streaming</code> is set, the audio is piped to the client as it arrives
+     * from the preview CDN instead of being buffered.
+     * <br/> A single byte range can be requested with the <code>Range</code> header, answered with
+     * <code>206 Partial Content</code> from the cached audio or by a ranged request to the preview CDN.
+     * With <code>If-Range</code>, the range is served only if the entity tag still matches the preview,
+     * otherwise the whole preview is returned. Multiple ranges are rejected.
+     * <br/> The search and the preview stages are timed into {@link RequestMetrics} and into the
+     * {@link RequestTrace} of the request, answered as the <code>Server-Timing</code> header.
+     * <br/> The upstream requests share the <code>songfinder.deadline.budget</code>: the search gets its share and
+     * the preview gets whatever remains. A request which runs out of it is answered with
+     * <code>504 Gateway Timeout</code>, without waiting for the preview CDN.
+     * <br/> In async mode, the pending upstream requests are aborted once the request times out, or once the client
+     * goes away.
      *
      * @param songname Name of the song to get the preview url
      * @param token Access token for the Spotify Web API
+     * @param range Byte range of the preview to return, optional
+     * @param ifRange Entity tag which the preview must have for the range to be served, optional
      * @return If successful returns the audio preview, else returns error description.
      */
     @RequestMapping(method = RequestMethod.GET, value = "/songfinder")
-    public ResponseEntity findSongAndGetPreview(
+    public DeferredResult<ResponseEntity<?>> findSongAndGetPreview(
             @RequestParam(name = "songname", defaultValue = "") String songname,
-            @RequestParam(name = "token", defaultValue = "") String token) {
+            @RequestParam(name = "token", defaultValue = "") String token,
+            @RequestHeader(name = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(name = HttpHeaders.IF_RANGE, required = false) String ifRange) {
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(asyncProperties.getTimeout(),
+                errorResponse(HttpStatus.GATEWAY_TIMEOUT, "Request timed out."));
 
         /* Validate the query parameters */
         if (StringUtils.isEmpty(token)) {
             LOGGER.error("InvalidRequest - Token is empty!");
-            return new ResponseEntity<>(
-                    new SongFinderError(HttpStatus.BAD_REQUEST,"Token cannot be empty"), headers,
-                    HttpStatus.BAD_REQUEST);
+            result.setResult(errorResponse(HttpStatus.BAD_REQUEST, "Token cannot be empty"));
+            return result;
         } else if (StringUtils.isEmpty(songname)) {
             LOGGER.error("InvalidRequest - Songname is empty!");
-            return new ResponseEntity<>(
-                    new SongFinderError(HttpStatus.BAD_REQUEST,"Songname cannot be empty"), headers,
-                    HttpStatus.BAD_REQUEST);
+            result.setResult(errorResponse(HttpStatus.BAD_REQUEST, "Songname cannot be empty"));
+            return result;
+        } else if (ByteRange.isMultiple(range)) {
+            LOGGER.error("InvalidRequest - Multiple ranges[" + range + "]!");
+            result.setResult(errorResponse(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+                    "Multiple ranges are not supported"));
+            return result;
         }
+        /* An invalid range is ignored and the whole preview is returned */
+        ByteRange byteRange = ByteRange.parse(range);
+
+        /* Continue on the bounded executor in async mode, on the calling thread otherwise, within the trace */
+        RequestTrace trace = RequestTrace.current();
+        Executor executor = RequestTrace.wrap(asyncProperties.isEnabled() ? songFinderExecutor : Runnable::run);
+
+        /* The search gets its share of the deadline, the preview the rest */
+        Deadline deadline = deadlineProperties.getBudget() > 0 ? Deadline.after(deadlineProperties.getBudget()) : null;
 
         /* Search Spotify for the song */
         SearchItemInput input = new SearchItemInput(songname, token);
+        if (deadline != null) {
+            input.setDeadline(deadline.limit(deadlineProperties.getSearchBudget()));
+        }
         LOGGER.debug("Asking Spotify Web API for the song[" + songname + "] with token[" + token + "].");
-        SearchItemOutput output = spotifyService.searchItem(input);
+        long searchStart = System.nanoTime();
+        CompletableFuture<SearchItemOutput> search = spotifyService.searchItemAsync(input);
+        CompletableFuture<ResponseEntity<?>> entity = Futures.composeCancelling(
+                Futures.cancelling(search, search.thenApply(output -> {
+                    long nanos = requestMetrics.recordStage(RequestMetrics.SEARCH, output.getStatus(), searchStart);
+                    if (trace != null) {
+                        trace.setStage(RequestMetrics.SEARCH, nanos);
+                    }
+                    return output;
+                })),
+                output -> onSearchItem(songname, output, byteRange, ifRange, deadline, executor, trace), executor,
+                SpotifyRestController::closeQuietly);
+        CompletableFuture<ResponseEntity<?>> response = Futures.cancelling(entity,
+                entity.exceptionally(this::onFailure));
+
+        if (asyncProperties.isEnabled()) {
+            response.thenAccept(answer -> {
+                if (!result.setResult(answer)) {
+                    /* Request has already timed out, release the streamed audio */
+                    closeQuietly(answer);
+                }
+            });
+            /* Abort the pending upstream requests once the response no longer needs them */
+            result.onTimeout(() -> {
+                LOGGER.error("Request for the song[" + songname + "] timed out.");
+                response.cancel(true);
+            });
+            result.onCompletion(() -> response.cancel(true));
+        } else {
+            result.setResult(response.join());
+        }
+        return result;
+    }
+
+    /**
+     * Looks a track up by its Spotify id in the Spotify Web API <em>get several tracks</em> endpoint and returns
+     * its metadata, with its preview url if it has one.
+     * <br/> The lookups of a token which arrive within <code>songfinder.batching.window</code> of each other are
+     * sent as one request of up to 50 ids, and the tracks are fanned back out to each lookup.
+     * <br/> The lookup gets the whole <code>songfinder.deadline.budget</code>, as no preview is downloaded.
+     * A lookup which runs out of it is answered with <code>504 Gateway Timeout</code>.
+     * <br/> In async mode, the lookup is cancelled once the request times out or the client goes away, and its batch
+     * is cancelled with it when no other lookup is left in it.
+     * <br/> When <code>songfinder.prefetch.enabled</code> is set, the preview is prefetched into the preview caches
+     * in the background, as the client is likely to request it next.
+     *
+     * @param id Spotify id of the track
+     * @param token Access token for the Spotify Web API
+     * @return If successful returns the track as Json, else returns error description.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/track")
+    public DeferredResult<ResponseEntity<?>> getTrack(
+            @RequestParam(name = "id", defaultValue = "") String id,
+            @RequestParam(name = "token", defaultValue = "") String token) {
+
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(asyncProperties.getTimeout(),
+                errorResponse(HttpStatus.GATEWAY_TIMEOUT, "Request timed out."));
+
+        /* Validate the query parameters */
+        if (StringUtils.isEmpty(token)) {
+            LOGGER.error("InvalidRequest - Token is empty!");
+            result.setResult(errorResponse(HttpStatus.BAD_REQUEST, "Token cannot be empty"));
+            return result;
+        } else if (StringUtils.isEmpty(id)) {
+            LOGGER.error("InvalidRequest - Id is empty!");
+            result.setResult(errorResponse(HttpStatus.BAD_REQUEST, "Id cannot be empty"));
+            return result;
+        }
+
+        /* Look the track up, answered on the bounded executor in async mode */
+        GetTrackInput input = new GetTrackInput(id, token);
+        if (deadlineProperties.getBudget() > 0) {
+            input.setDeadline(Deadline.after(deadlineProperties.getBudget()));
+        }
+        /* The client is likely to request the preview next */
+        input.setPrefetch(true);
+        LOGGER.debug("Asking Spotify Web API for the track[" + id + "] with token[" + token + "].");
+        Executor executor = RequestTrace.wrap(asyncProperties.isEnabled() ? songFinderExecutor : Runnable::run);
+        CompletableFuture<GetTrackOutput> track = spotifyService.getTrackAsync(input);
+        CompletableFuture<ResponseEntity<?>> entity = Futures.cancelling(track,
+                track.thenApplyAsync(output -> onGetTrack(id, output), executor));
+        CompletableFuture<ResponseEntity<?>> response = Futures.cancelling(entity,
+                entity.exceptionally(this::onFailure));
+
+        if (asyncProperties.isEnabled()) {
+            response.thenAccept(result::setResult);
+            /* Abort the batched lookup, and with it the prefetch of the preview, once the response no longer needs
+            them */
+            result.onTimeout(() -> {
+                LOGGER.error("Request for the track[" + id + "] timed out.");
+                response.cancel(true);
+            });
+            result.onCompletion(() -> response.cancel(true));
+        } else {
+            result.setResult(response.join());
+        }
+        return result;
+    }
+
+    /**
+     * Searches for many songs in the Spotify Web API <em>search for an item</em> endpoint and streams their tracks,
+     * with their preview urls, back as Json objects one per line (<code>application/x-ndjson</code>), without
+     * downloading any preview.
+     * <br/> Up to <code>songfinder.bulk-search.parallelism</code> searches of a request are in flight, and each line
+     * is written as soon as its search completes, so the lines come in completion order and carry the
+     * <code>index</code> of their song in the request. A song which is not found is answered with a line carrying
+     * its {@link SongFinderError}, the other songs are not affected.
+     * <br/> Each search gets the search share of <code>songfinder.deadline.budget</code> from when it is sent.
+     * The response is ended after <code>songfinder.bulk-search.timeout</code>, and the pending searches are
+     * cancelled if the client goes away.
+     * <br/> When <code>songfinder.prefetch.enabled</code> is set, the previews are prefetched as for a track lookup.
+     *
+     * @param token Access token for the Spotify Web API
+     * @param songnames Names of the songs as a Json array, at most <code>songfinder.bulk-search.max-songs</code>
+     * @return The stream of the results, or a Json error if the request is not valid
+     */
+    @RequestMapping(method = RequestMethod.POST, value = "/search")
+    public ResponseEntity<ResponseBodyEmitter> searchSongs(
+            @RequestParam(name = "token", defaultValue = "") String token,
+            @RequestBody(required = false) List<String> songnames) {
+
+        /* Validate the request */
+        if (StringUtils.isEmpty(token)) {
+            LOGGER.error("InvalidRequest - Token is empty!");
+            return errorStream(HttpStatus.BAD_REQUEST, "Token cannot be empty");
+        } else if (songnames == null || songnames.isEmpty()) {
+            LOGGER.error("InvalidRequest - Songnames are empty!");
+            return errorStream(HttpStatus.BAD_REQUEST, "Songnames cannot be empty");
+        } else if (songnames.size() > bulkSearchProperties.getMaxSongs()) {
+            LOGGER.error("InvalidRequest - Songnames[" + songnames.size() + "] are too many!");
+            return errorStream(HttpStatus.BAD_REQUEST, "At most " + bulkSearchProperties.getMaxSongs()
+                    + " songnames can be searched at once");
+        }
+
+        /* The emitter is written on the bounded executor in both modes, off the threads of the HTTP clients */
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkSearchProperties.getTimeout());
+        Executor executor = RequestTrace.wrap(songFinderExecutor);
+        LOGGER.debug("Asking Spotify Web API for Songs[" + songnames.size() + "] with token[" + token + "].");
+
+        CompletableFuture<Void> searches = FanOut.run(songnames, bulkSearchProperties.getParallelism(),
+                songname -> {
+                    SearchItemInput input = new SearchItemInput(songname, token);
+                    if (deadlineProperties.getBudget() > 0) {
+                        input.setDeadline(Deadline.after(deadlineProperties.getSearchBudget()));
+                    }
+                    input.setPrefetch(true);
+                    return spotifyService.searchItemAsync(input).thenApplyAsync(output -> output, executor);
+                },
+                (index, songname, output, throwable) -> sendResult(emitter, index, songname, output, throwable));
+        searches.whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                LOGGER.debug("Successfully searched Songs[" + songnames.size() + "].");
+                emitter.complete();
+            } else if (!searches.isCancelled()) {
+                LOGGER.error("Bulk search failed - Exception: " + throwable.getMessage());
+                emitter.completeWithError(throwable);
+            }
+        });
+        emitter.onTimeout(() -> {
+            LOGGER.error("Bulk search of Songs[" + songnames.size() + "] timed out.");
+            searches.cancel(true);
+            emitter.complete();
+        });
+        /* The client has gone away, or the response has ended */
+        emitter.onCompletion(() -> searches.cancel(true));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(APPLICATION_NDJSON);
+        return new ResponseEntity<>(emitter, headers, HttpStatus.OK);
+    }
+
+    /* Writes the result of a song of a bulk search as a line */
+    private void sendResult(ResponseBodyEmitter emitter, int index, String songname, SearchItemOutput output,
+                            Throwable throwable) {
+        SongFinderResult result;
+        if (throwable != null) {
+            ResponseEntity<?> failure = onFailure(throwable);
+            result = new SongFinderResult(index, songname, (SongFinderError) failure.getBody());
+        } else if (output.getStatus() == HttpStatus.OK.value()) {
+            result = new SongFinderResult(index, songname, output.getTrack());
+        } else {
+            LOGGER.error("Cannot retrieve song[" + songname + "]'s track. Status[" + output.getStatus()
+                    + "] - Error Message: " + output.getErrorMessage() + ".");
+            result = new SongFinderResult(index, songname,
+                    new SongFinderError(output.getStatus(), output.getErrorMessage()));
+        }
+        try {
+            emitter.send((objectMapper.writeValueAsString(result) + "\n").getBytes(StandardCharsets.UTF_8),
+                    APPLICATION_NDJSON);
+        } catch (IOException e) {
+            /* The client has gone away, stop the searches */
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* Builds a response which streams a Json error */
+    private static ResponseEntity<ResponseBodyEmitter> errorStream(HttpStatus status, String errorMessage) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        try {
+            emitter.send(new SongFinderError(status, errorMessage), MediaType.APPLICATION_JSON_UTF8);
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        return new ResponseEntity<>(emitter, headers, status);
+    }
+
+    /**
+     * Searches for many songs in the Spotify Web API <em>search for an item</em> endpoint and returns their previews
+     * as one zip archive, e.g. for the previews of a playlist.
+     * <br/> The archive is built while it is written: up to <code>songfinder.bundle.parallelism</code> previews of
+     * a request are downloaded at once, and each one is written to the archive as soon as it is downloaded, so the
+     * entries come in completion order. At most that many previews are held in memory at once, never the whole
+     * archive.
+     * <br/> The preview of the song at <code>index</code> is named <code>NNN-songname.mp3</code> after its
+     * position in the request, starting from <code>001</code>. A song whose preview cannot be retrieved is written as
+     * <code>NNN-songname.json</code> with its {@link SongFinderError} instead, the other songs are not affected.
+     * <br/> Each song gets the whole <code>songfinder.deadline.budget</code> from when its search is sent, shared
+     * by its search and its preview as for a single song. The archive is ended with the entries written so far
+     * after <code>songfinder.bundle.timeout</code>.
+     *
+     * @param token Access token for the Spotify Web API
+     * @param songnames Names of the songs as a Json array, at most <code>songfinder.bundle.max-songs</code>
+     * @return The zip archive of the previews, or a Json error if the request is not valid
+     */
+    @RequestMapping(method = RequestMethod.POST, value = "/bundle")
+    public ResponseEntity<?> bundleSongPreviews(
+            @RequestParam(name = "token", defaultValue = "") String token,
+            @RequestBody(required = false) List<String> songnames) {
+
+        /* Validate the request */
+        if (StringUtils.isEmpty(token)) {
+            LOGGER.error("InvalidRequest - Token is empty!");
+            return errorResponse(HttpStatus.BAD_REQUEST, "Token cannot be empty");
+        } else if (songnames == null || songnames.isEmpty()) {
+            LOGGER.error("InvalidRequest - Songnames are empty!");
+            return errorResponse(HttpStatus.BAD_REQUEST, "Songnames cannot be empty");
+        } else if (songnames.size() > bundleProperties.getMaxSongs()) {
+            LOGGER.error("InvalidRequest - Songnames[" + songnames.size() + "] are too many!");
+            return errorResponse(HttpStatus.BAD_REQUEST, "At most " + bundleProperties.getMaxSongs()
+                    + " songnames can be bundled at once");
+        }
+
+        /* The previews are opened on the bounded executor in both modes, off the threads of the HTTP clients */
+        Executor executor = RequestTrace.wrap(songFinderExecutor);
+        LOGGER.debug("Bundling previews of Songs[" + songnames.size() + "] with token[" + token + "].");
+
+        /* The archive is written by the servlet container thread, which waits for the previews */
+        ZipContent bundle = new ZipContent(songnames.size(), bundleProperties.getParallelism(),
+                bundleProperties.getTimeout(), index -> openBundleEntry(index, songnames.get(index), token, executor));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Content-Type", "application/zip");
+        headers.set("Content-Disposition", "attachment; filename=\"previews.zip\"");
+        return new ResponseEntity<>(bundle, headers, HttpStatus.OK);
+    }
+
+    /* Searches for a song and downloads its preview as an entry of a bundle, or its error if it cannot */
+    private CompletableFuture<ZipContent.Entry> openBundleEntry(int index, String songname, String token,
+                                                                Executor executor) {
+        String name = String.format("%03d-%s", index + 1, fileName(songname));
+        Deadline deadline = deadlineProperties.getBudget() > 0 ? Deadline.after(deadlineProperties.getBudget()) : null;
+        SearchItemInput input = new SearchItemInput(songname, token);
+        if (deadline != null) {
+            input.setDeadline(deadline.limit(deadlineProperties.getSearchBudget()));
+        }
+        return spotifyService.searchItemAsync(input)
+                .thenComposeAsync(output -> {
+                    if (output.getStatus() != HttpStatus.OK.value()) {
+                        LOGGER.error("Cannot retrieve song[" + songname + "]'s preview url. Status["
+                                + output.getStatus() + "] - Error Message: " + output.getErrorMessage() + ".");
+                        return CompletableFuture.completedFuture(errorEntry(name,
+                                new SongFinderError(output.getStatus(), output.getErrorMessage())));
+                    }
+                    PreviewInput previewInput = new PreviewInput(output.getPreviewUrl());
+                    previewInput.setDeadline(deadline);
+                    return previewService.getSongPreviewAsync(previewInput).thenApply(previewOutput -> {
+                        if (previewOutput.getStatus() == HttpStatus.OK.value()) {
+                            /* Cached audio is written from the cache, downloaded audio from its own buffer */
+                            return new ZipContent.Entry(name + ".mp3", previewOutput.getContent() != null
+                                    ? previewOutput.getContent()
+                                    : new ByteBufferContent(ByteBuffer.wrap(previewOutput.getRawAudio())));
+                        }
+                        LOGGER.error("Cannot retrieve raw audio for preview url[" + output.getPreviewUrl()
+                                + "]. Status[" + previewOutput.getStatus() + "] - Error Message: "
+                                + previewOutput.getErrorMessage() + ".");
+                        return errorEntry(name,
+                                new SongFinderError(previewOutput.getStatus(), previewOutput.getErrorMessage()));
+                    });
+                }, executor)
+                .exceptionally(throwable -> errorEntry(name, (SongFinderError) onFailure(throwable).getBody()));
+    }
+
+    /* Builds the entry of a song of a bundle whose preview cannot be retrieved */
+    private ZipContent.Entry errorEntry(String name, SongFinderError error) {
+        try {
+            return new ZipContent.Entry(name + ".json",
+                    new ByteBufferContent(ByteBuffer.wrap(objectMapper.writeValueAsBytes(error))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
+    /* Makes a song name safe to be used as a file name */
+    private static String fileName(String songname) {
+        String name = songname == null ? "" : songname.trim().replaceAll("[^\\p{L}\\p{N} ._-]+", "_");
+        return name.length() > 100 ? name.substring(0, 100) : name;
+    }
+
+    /* Builds the Json response of the track if it is found */
+    private static ResponseEntity<?> onGetTrack(String id, GetTrackOutput output) {
+        if (output.getStatus() == HttpStatus.OK.value()) {
+            LOGGER.debug("Successfully retrieved track[" + id + "].");
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+            return new ResponseEntity<>(output.getTrack(), headers, HttpStatus.OK);
+        }
+        /* Track is not found, return error. */
+        HttpStatus status = HttpStatus.resolve(output.getStatus());
+        if (status == null) {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        LOGGER.error("Cannot retrieve track[" + id + "]. Status[" + status + "] - Error Message: "
+                + output.getErrorMessage() + ".");
+        return errorResponse(status, output.getErrorMessage());
+    }
+
+    /* Fetches the raw audio if the song is found, within what remains of the deadline */
+    private CompletableFuture<ResponseEntity<?>> onSearchItem(String songname, SearchItemOutput output,
+                                                              ByteRange range, String ifRange, Deadline deadline,
+                                                              Executor executor, RequestTrace trace) {
         if (output.getStatus() == HttpStatus.OK.value()) {
             LOGGER.debug("Successfully retrieved song[" + songname + "]'s preview url. - Response: "
                     + output.getPreviewUrl());
 
+            /* The range is only valid for the preview that the client already has a part of */
+            if (range != null && ifRange != null && !ifRange.trim().equals(entityTag(output.getPreviewUrl()))) {
+                LOGGER.debug("If-Range[" + ifRange + "] does not match, returning the whole preview.");
+                range = null;
+            }
+
             /* Song is found! Get raw audio. */
-            PreviewInput previewInput = new PreviewInput(output.getPreviewUrl());
+            PreviewInput previewInput = new PreviewInput(output.getPreviewUrl(), range);
+            previewInput.setDeadline(deadline);
             LOGGER.debug("Asking raw audio for the retrieved song.");
-            PreviewOutput previewOutput = previewService.getSongPreview(previewInput);
-            if (previewOutput.getStatus() == HttpStatus.OK.value()) {
-                /* Audio is successfully retrieved, return raw audio with audio/mpeg Content-Type header */
-                LOGGER.debug("Successfully retrieved raw audio for the song. Content Length["
-                        + previewOutput.getRawAudio().length + "].");
-
-                headers.set("Content-Type", "audio/mpeg");
-                headers.set("Content-Length", new Integer(previewOutput.getRawAudio().length).toString());
-                headers.set("Accept-Ranges", "bytes");
-
-                return new ResponseEntity<>(previewOutput.getRawAudio(), headers, HttpStatus.OK);
-            } else {
-                /* Audio cannot be retrieved, return error. */
-                HttpStatus status = HttpStatus.resolve(previewOutput.getStatus());
-                if (status == null) {
-                    status = HttpStatus.INTERNAL_SERVER_ERROR;
-                }
-                LOGGER.error("Cannot retrieve raw audio for preview url[" + output.getPreviewUrl() + "]. Status["
-                        + status + "] - Error Message: " + previewOutput.getErrorMessage() + ".");
-                return new ResponseEntity<>(
-                        new SongFinderError(status, previewOutput.getErrorMessage()), headers, status);
+            long previewStart = System.nanoTime();
+            if (previewProperties.isStreaming()) {
+                /* Opened on the executor of the streamed previews, the response is only built here */
+                CompletableFuture<PreviewOutput> preview = previewService.openSongPreviewAsync(previewInput);
+                return Futures.cancelling(preview,
+                        preview.thenApply(previewOutput -> onSongPreview(output, previewOutput, previewStart, trace)));
             }
+            CompletableFuture<PreviewOutput> preview = previewService.getSongPreviewAsync(previewInput);
+            return Futures.cancelling(preview, preview.thenApplyAsync(
+                    previewOutput -> onSongPreview(output, previewOutput, previewStart, trace), executor));
         } else {
             /* Song is not found, return error. */
             HttpStatus status = HttpStatus.resolve(output.getStatus());
@@ -114,7 +544,102 @@ public class SpotifyRestController {
             }
             LOGGER.error("Cannot retrieve song[" + songname + "]'s preview url. Status[" + status
                     + "] - Error Message: " + output.getErrorMessage() + ".");
-            return new ResponseEntity<>(new SongFinderError(status, output.getErrorMessage()), headers, status);
+            return CompletableFuture.completedFuture(errorResponse(status, output.getErrorMessage()));
+        }
+    }
+
+    /* Builds the audio response if the raw audio, or the requested range of it, is retrieved */
+    private ResponseEntity<?> onSongPreview(SearchItemOutput output, PreviewOutput previewOutput, long previewStart,
+                                            RequestTrace trace) {
+        long nanos = requestMetrics.recordStage(RequestMetrics.PREVIEW, previewOutput.getStatus(), previewStart);
+        if (trace != null) {
+            trace.setStage(RequestMetrics.PREVIEW, nanos);
+        }
+        boolean retrieved = previewOutput.getStatus() == HttpStatus.OK.value()
+                || previewOutput.getStatus() == HttpStatus.PARTIAL_CONTENT.value();
+        if (retrieved && previewOutput.getContent() != null) {
+            /* Audio response is successfully opened, stream it with the upstream Content-Length */
+            StreamingContent content = previewOutput.getContent();
+            LOGGER.debug("Streaming raw audio for the song. Content Length[" + content.getContentLength()
+                    + "] Content Range[" + previewOutput.getContentRange() + "].");
+
+            return new ResponseEntity<>(content,
+                    audioHeaders(output.getPreviewUrl(), content.getContentLength(), previewOutput.getContentRange()),
+                    HttpStatus.valueOf(previewOutput.getStatus()));
+        } else if (retrieved) {
+            /* Audio is successfully retrieved, return raw audio with audio/mpeg Content-Type header */
+            LOGGER.debug("Successfully retrieved raw audio for the song. Content Length["
+                    + previewOutput.getRawAudio().length + "] Content Range[" + previewOutput.getContentRange() + "].");
+
+            return new ResponseEntity<>(previewOutput.getRawAudio(),
+                    audioHeaders(output.getPreviewUrl(), previewOutput.getRawAudio().length,
+                            previewOutput.getContentRange()),
+                    HttpStatus.valueOf(previewOutput.getStatus()));
+        } else {
+            /* Audio cannot be retrieved, return error. */
+            HttpStatus status = HttpStatus.resolve(previewOutput.getStatus());
+            if (status == null) {
+                status = HttpStatus.INTERNAL_SERVER_ERROR;
+            }
+            LOGGER.error("Cannot retrieve raw audio for preview url[" + output.getPreviewUrl() + "]. Status["
+                    + status + "] - Error Message: " + previewOutput.getErrorMessage() + ".");
+            return errorResponse(status, previewOutput.getErrorMessage(), previewOutput.getContentRange());
+        }
+    }
+
+    /* Builds the headers of an audio response */
+    private static HttpHeaders audioHeaders(String previewUrl, long contentLength, String contentRange) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Content-Type", "audio/mpeg");
+        if (contentLength >= 0) {
+            headers.set("Content-Length", Long.toString(contentLength));
+        }
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("ETag", entityTag(previewUrl));
+        if (contentRange != null) {
+            headers.set("Content-Range", contentRange);
+        }
+        return headers;
+    }
+
+    /* The entity tag of a preview, preview urls address immutable audio */
+    private static String entityTag(String previewUrl) {
+        return "\"" + Digests.sha256Hex(previewUrl) + "\"";
+    }
+
+    /* Maps an unexpected failure, e.g. a saturated executor, to an error response */
+    private ResponseEntity<?> onFailure(Throwable throwable) {
+        Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof RejectedExecutionException) {
+            return errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Server is busy, try again later.");
+        }
+        LOGGER.error("Request failed - Exception: " + cause.getMessage(), cause);
+        return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Request failed - Exception: " + cause.getMessage());
+    }
+
+    /* Releases the streamed audio of a response which will not be written */
+    private static void closeQuietly(ResponseEntity<?> entity) {
+        if (entity.getBody() instanceof StreamingContent) {
+            try {
+                ((StreamingContent) entity.getBody()).close();
+            } catch (IOException e) {
+                LOGGER.error("Cannot close the streamed audio - Exception: " + e.getMessage());
+            }
+        }
+    }
+
+    /* Builds a Json error response */
+    private static ResponseEntity<?> errorResponse(HttpStatus status, String errorMessage) {
+        return errorResponse(status, errorMessage, null);
+    }
+
+    /* Builds a Json error response, with the Content-Range of an unsatisfiable range */
+    private static ResponseEntity<?> errorResponse(HttpStatus status, String errorMessage, String contentRange) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        if (contentRange != null) {
+            headers.set("Content-Range", contentRange);
         }
+        return new ResponseEntity<>(new SongFinderError(status, errorMessage), headers, status);
     }
 }
@@ -3,6 +3,8 @@ package com.utkuyavuz.songfinder.service.contract;
 import com.utkuyavuz.songfinder.service.input.PreviewInput;
 import com.utkuyavuz.songfinder.service.output.PreviewOutput;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service interface for preview operations
  *
@@ -19,4 +21,44 @@ public interface IPreviewService {
      * @return A {@link PreviewOutput} object containing the status code and the service output or error description
      */
     public PreviewOutput getSongPreview(PreviewInput input);
+
+    /**
+     * Gets audio preview or operation error for specified URL without blocking the calling thread.
+     *
+     * @param input The getSongPreview's input {@link PreviewInput}
+     * @return A {@link CompletableFuture} completed with the {@link PreviewOutput} object containing the status
+     * code and the service output or error description
+     */
+    public CompletableFuture<PreviewOutput> getSongPreviewAsync(PreviewInput input);
+
+    /**
+     * Opens the audio preview for specified URL to be streamed instead of buffered.
+     * Returns as soon as the response headers are received.
+     *
+     * @param input The openSongPreview's input {@link PreviewInput}
+     * @return A {@link PreviewOutput} object containing the status code and, on success, the streamed audio which
+     * must be written or closed by the caller, else the error description
+     */
+    public PreviewOutput openSongPreview(PreviewInput input);
+
+    /**
+     * Opens the audio preview for specified URL to be streamed instead of buffered, without blocking the calling
+     * thread. Completes as soon as the response headers are received, cancelling it aborts the request.
+     *
+     * @param input The openSongPreview's input {@link PreviewInput}
+     * @return A {@link CompletableFuture} completed with the {@link PreviewOutput} object containing the status
+     * code and, on success, the streamed audio which must be written or closed by the caller, else the error
+     * description
+     */
+    public CompletableFuture<PreviewOutput> openSongPreviewAsync(PreviewInput input);
+
+    /**
+     * Downloads the whole audio preview for specified URL into the caches, unless it is cached already, without
+     * blocking the calling thread. Used to warm the caches before the preview is requested.
+     *
+     * @param input The prefetchSongPreview's input {@link PreviewInput}
+     * @return A {@link CompletableFuture} completed with the {@link PreviewOutput} object containing the status
+     * code and the downloaded raw audio, no raw audio if it is cached already, or the error description
+     */
+    public CompletableFuture<PreviewOutput> prefetchSongPreviewAsync(PreviewInput input);
 }
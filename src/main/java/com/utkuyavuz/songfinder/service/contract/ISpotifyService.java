@@ -1,8 +1,12 @@
 package com.utkuyavuz.songfinder.service.contract;
 
+import com.utkuyavuz.songfinder.service.input.GetTrackInput;
 import com.utkuyavuz.songfinder.service.input.SearchItemInput;
+import com.utkuyavuz.songfinder.service.output.GetTrackOutput;
 import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service interface for Spotify Web API operations
  *
@@ -19,4 +23,33 @@ public interface ISpotifyService {
      * @return A {@link SearchItemOutput} object containing the status code and the service output or error description
      */
     public SearchItemOutput searchItem(SearchItemInput input);
+
+    /**
+     * Gets the preview url or operation error for the given song using Spotify <em>search for an item</em> endpoint
+     * without blocking the calling thread.
+     *
+     * @param input The searchItem's input {@link SearchItemInput}
+     * @return A {@link CompletableFuture} completed with the {@link SearchItemOutput} object containing the status
+     * code and the service output or error description
+     */
+    public CompletableFuture<SearchItemOutput> searchItemAsync(SearchItemInput input);
+
+    /**
+     * Gets the track or operation error for the given Spotify id using Spotify <em>get several tracks</em> endpoint.
+     * The lookups of an access token which arrive within the batch window are sent in a single request.
+     *
+     * @param input The getTrack's input {@link GetTrackInput}
+     * @return A {@link GetTrackOutput} object containing the status code and the service output or error description
+     */
+    public GetTrackOutput getTrack(GetTrackInput input);
+
+    /**
+     * Gets the track or operation error for the given Spotify id using Spotify <em>get several tracks</em> endpoint
+     * without blocking the calling thread.
+     *
+     * @param input The getTrack's input {@link GetTrackInput}
+     * @return A {@link CompletableFuture} completed with the {@link GetTrackOutput} object containing the status
+     * code and the service output or error description
+     */
+    public CompletableFuture<GetTrackOutput> getTrackAsync(GetTrackInput input);
 }
@@ -1,13 +1,35 @@
 package com.utkuyavuz.songfinder.service.implementation;
 
+import com.utkuyavuz.songfinder.cache.PreviewAudioCache;
+import com.utkuyavuz.songfinder.cache.PreviewDiskStore;
 import com.utkuyavuz.songfinder.service.contract.IPreviewService;
 import com.utkuyavuz.songfinder.service.input.PreviewInput;
 import com.utkuyavuz.songfinder.service.output.PreviewOutput;
+import com.utkuyavuz.songfinder.util.BoundedExecutor;
+import com.utkuyavuz.songfinder.util.ByteRange;
+import com.utkuyavuz.songfinder.util.Futures;
+import com.utkuyavuz.songfinder.util.Hedger;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.Prefetcher;
+import com.utkuyavuz.songfinder.util.RequestTrace;
 import com.utkuyavuz.songfinder.util.RestUtils;
+import com.utkuyavuz.songfinder.util.SingleFlight;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Implementation for preview operations
  *
@@ -19,41 +41,403 @@ import org.springframework.stereotype.Service;
 @Service
 public class PreviewService implements IPreviewService {
 
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreviewService.class);
+
+    /* Autowire the shared HTTP client engine */
+    @Autowired
+    private HttpClientEngine httpClientEngine;
+
+    /* Autowire the preview audio cache */
+    @Autowired
+    private PreviewAudioCache previewAudioCache;
+
+    /* Autowire the preview disk store */
+    @Autowired
+    private PreviewDiskStore previewDiskStore;
+
+    /* Autowire the coalescing of concurrent downloads */
+    @Autowired
+    private SingleFlight<String, PreviewOutput> previewFlight;
+
+    /* Autowire the coalescing of concurrent streamed downloads */
+    @Autowired
+    private SingleFlight<String, PreviewOutput> previewStreamFlight;
+
+    /* Autowire the hedging of the downloads */
+    @Autowired
+    private Hedger previewHedger;
+
+    /* Autowire the hedging of the streamed downloads */
+    @Autowired
+    private Hedger previewStreamHedger;
+
+    /* Autowire the executor which opens the streamed downloads */
+    @Autowired
+    private BoundedExecutor previewStreamExecutor;
+
+    /* Autowire the executor which stores the downloaded previews */
+    @Autowired
+    private BoundedExecutor previewStoreExecutor;
+
+    /* Autowire the prefetch of the previews, told of the requested previews */
+    @Autowired
+    private Prefetcher previewPrefetcher;
+
     /**
      * {@inheritDoc}
+     * Thin adapter which waits for {@link #getSongPreviewAsync(PreviewInput)}, cached audio is copied to the raw
+     * audio.
      */
     @Override
     public PreviewOutput getSongPreview(PreviewInput input) {
+        PreviewOutput output = getSongPreviewAsync(input).join();
+        if (output.getRawAudio() == null && output.getContent() != null) {
+            ByteArrayOutputStream rawAudio = new ByteArrayOutputStream((int) output.getContent().getContentLength());
+            try (StreamingContent content = output.getContent()) {
+                content.writeTo(rawAudio);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            output.setRawAudio(rawAudio.toByteArray());
+            output.setContent(null);
+        }
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<PreviewOutput> getSongPreviewAsync(PreviewInput input) {
+        PreviewOutput output = new PreviewOutput();
+
+        /* Validate service input */
+        if (input == null) {
+            output.setStatus(HttpStatus.BAD_REQUEST.value());
+            output.setErrorMessage("Service input cannot be null.");
+            return CompletableFuture.completedFuture(output);
+        }
+        if (!input.isValid()) {
+            output.setStatus(HttpStatus.BAD_REQUEST.value());
+            output.setErrorMessage("Service input is not valid.");
+            return CompletableFuture.completedFuture(output);
+        }
+        previewPrefetcher.onRequested(input.getPreviewUrl());
+
+        /* Answer from the cache if the audio has been fetched before */
+        StreamingContent cachedAudio = getCachedAudio(input.getPreviewUrl());
+        if (cachedAudio != null) {
+            return CompletableFuture.completedFuture(fromCachedAudio(cachedAudio, input.getRange()));
+        }
+
+        /* Concurrent downloads of the same preview, or range of it, share one request, downloaded again for a caller
+        with time left if it times out within the shorter deadline of another caller */
+        String key = input.getRange() == null ? input.getPreviewUrl() : input.getPreviewUrl() + '|' + input.getRange();
+        return previewFlight.execute(key, input.getDeadline(), () -> download(input),
+                downloaded -> downloaded.getStatus() == HttpStatus.GATEWAY_TIMEOUT.value());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Thin adapter which waits for {@link #openSongPreviewAsync(PreviewInput)}.
+     */
+    @Override
+    public PreviewOutput openSongPreview(PreviewInput input) {
+        return openSongPreviewAsync(input).join();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The blocking request is opened on the executor of the streamed previews.
+     */
+    @Override
+    public CompletableFuture<PreviewOutput> openSongPreviewAsync(PreviewInput input) {
         PreviewOutput output = new PreviewOutput();
 
         /* Validate service input */
         if (input == null) {
             output.setStatus(HttpStatus.BAD_REQUEST.value());
             output.setErrorMessage("Service input cannot be null.");
-            return output;
+            return CompletableFuture.completedFuture(output);
         }
         if (!input.isValid()) {
             output.setStatus(HttpStatus.BAD_REQUEST.value());
             output.setErrorMessage("Service input is not valid.");
-            return output;
+            return CompletableFuture.completedFuture(output);
+        }
+        previewPrefetcher.onRequested(input.getPreviewUrl());
+
+        /* Answer from the cache if the audio has been fetched before */
+        StreamingContent cachedAudio = getCachedAudio(input.getPreviewUrl());
+        if (cachedAudio != null) {
+            return CompletableFuture.completedFuture(fromCachedAudio(cachedAudio, input.getRange()));
+        }
+
+        /* A range is streamed on its own */
+        if (input.getRange() != null) {
+            return open(input);
+        }
+
+        /* Follow the download of another client of the preview if it is being cached */
+        StreamingContent following = previewAudioCache.follow(input.getPreviewUrl(), () -> reopen(input));
+        if (following != null) {
+            output.setContent(following);
+            output.setStatus(HttpStatus.OK.value());
+            return CompletableFuture.completedFuture(output);
+        }
+
+        /* Concurrent clients of the same preview wait for one request to be opened, then follow its download */
+        AtomicBoolean opened = new AtomicBoolean();
+        CompletableFuture<PreviewOutput> shared = previewStreamFlight.execute(input.getPreviewUrl(), () -> {
+            opened.set(true);
+            return open(input);
+        });
+        if (opened.get()) {
+            return shared;
+        }
+        return Futures.composeCancelling(shared, result -> follow(input, result), Runnable::run,
+                PreviewService::closeContent);
+    }
+
+    /* Follows the download opened by another client of the preview, or opens its own if it cannot */
+    private CompletableFuture<PreviewOutput> follow(PreviewInput input, PreviewOutput shared) {
+        PreviewOutput output = new PreviewOutput();
+        if (shared.getStatus() != HttpStatus.OK.value()) {
+            /* Share the error */
+            output.setErrorMessage(shared.getErrorMessage());
+            output.setStatus(shared.getStatus());
+            return CompletableFuture.completedFuture(output);
+        }
+        StreamingContent following = previewAudioCache.follow(input.getPreviewUrl(), () -> reopen(input));
+        if (following == null) {
+            /* Download is not cached or is already over */
+            following = getCachedAudio(input.getPreviewUrl());
         }
+        if (following == null) {
+            return open(input);
+        }
+        output.setContent(following);
+        output.setStatus(HttpStatus.OK.value());
+        return CompletableFuture.completedFuture(output);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The download is not hedged, and a download of the same preview in flight is shared.
+     */
+    @Override
+    public CompletableFuture<PreviewOutput> prefetchSongPreviewAsync(PreviewInput input) {
+        PreviewOutput output = new PreviewOutput();
 
-        /* Send HTTP GET request to the preview url */
-        RestUtils restUtils = new RestUtils(input.getPreviewUrl());
-        restUtils
+        /* Validate service input, only the whole audio is prefetched */
+        if (input == null) {
+            output.setStatus(HttpStatus.BAD_REQUEST.value());
+            output.setErrorMessage("Service input cannot be null.");
+            return CompletableFuture.completedFuture(output);
+        }
+        if (!input.isValid() || input.getRange() != null) {
+            output.setStatus(HttpStatus.BAD_REQUEST.value());
+            output.setErrorMessage("Service input is not valid.");
+            return CompletableFuture.completedFuture(output);
+        }
+
+        /* Nothing to download if the audio is cached, looked up without counting a hit or a miss */
+        if (previewAudioCache.contains(input.getPreviewUrl()) || previewDiskStore.contains(input.getPreviewUrl())) {
+            output.setStatus(HttpStatus.OK.value());
+            return CompletableFuture.completedFuture(output);
+        }
+
+        return previewFlight.execute(input.getPreviewUrl(), () -> download(input, previewRequest(input).getAsync()));
+    }
+
+    /* Sends the preview request, hedged if it is slow, and caches the whole audio */
+    private CompletableFuture<PreviewOutput> download(PreviewInput input) {
+        /* Buffered responses hold nothing to release */
+        return download(input, previewHedger.execute(() -> previewRequest(input).getAsync(), restUtils -> { }));
+    }
+
+    /* Caches the whole audio of the preview request once it completes, cancelling the result aborts the request */
+    private CompletableFuture<PreviewOutput> download(PreviewInput input, CompletableFuture<RestUtils> request) {
+        return Futures.cancelling(request, request
+                .thenApply(this::toPreviewOutput)
+                .whenComplete((result, throwable) -> {
+                    if (result != null && result.getStatus() == HttpStatus.OK.value()) {
+                        store(input.getPreviewUrl(), result.getRawAudio());
+                    }
+                }));
+    }
+
+    /* Stores the downloaded audio on the store executor, the result is not held up by the copy and the disk write */
+    private void store(String previewUrl, byte[] audio) {
+        try {
+            RequestTrace.wrap(previewStoreExecutor).execute(() -> {
+                previewAudioCache.put(previewUrl, audio);
+                previewDiskStore.put(previewUrl, audio);
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Preview store is busy, preview url[" + previewUrl + "] is not cached.");
+        }
+    }
+
+    /* Opens the preview request on the executor, hedged if it is slow, cancelling the result aborts the request */
+    private CompletableFuture<PreviewOutput> open(PreviewInput input) {
+        CompletableFuture<RestUtils> request = previewStreamHedger.isEnabled()
+                ? previewStreamHedger.execute(() -> openAsync(input), PreviewService::closeStream)
+                : openAsync(input);
+        /* A stream opened once the result is cancelled is released */
+        return Futures.composeCancelling(request,
+                restUtils -> CompletableFuture.completedFuture(toStreamOutput(input, restUtils)), Runnable::run,
+                PreviewService::closeContent);
+    }
+
+    /* Builds the service output from the opened preview request, the whole audio is cached while it is written */
+    private PreviewOutput toStreamOutput(PreviewInput input, RestUtils restUtils) {
+        PreviewOutput output = new PreviewOutput();
+
+        if (restUtils.isSuccess() && restUtils.getStatusCode() == HttpStatus.PARTIAL_CONTENT) {
+            /* Range of the audio retrieved, return the open stream which is not cached */
+            output.setContent(restUtils.getResponseStream());
+            output.setContentRange(restUtils.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+            output.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        } else if (restUtils.isSuccess()) {
+            /* Audio response headers retrieved, return the open stream which fills the caches */
+            output.setContent(previewAudioCache.fillOnWrite(input.getPreviewUrl(),
+                    previewDiskStore.fillOnWrite(input.getPreviewUrl(), restUtils.getResponseStream())));
+            output.setStatus(HttpStatus.OK.value());
+        } else {
+            /* Audio cannot be retrieved, return the error detail */
+            output.setErrorMessage(restUtils.getErrorMessage());
+            output.setContentRange(restUtils.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+            output.setStatus(restUtils.getStatusCode().value());
+        }
+
+        return output;
+    }
+
+    /* Opens the whole preview for a client whose followed download failed, on the thread writing its response */
+    private StreamingContent reopen(PreviewInput input) throws IOException {
+        RestUtils restUtils = previewRequest(input).getStream();
+        if (!restUtils.isSuccess() || restUtils.getStatusCode() == HttpStatus.PARTIAL_CONTENT) {
+            closeStream(restUtils);
+            throw new IOException("Cannot open preview - URL[" + input.getPreviewUrl() + "] Status["
+                    + restUtils.getStatusCode() + "] - Error Message: " + restUtils.getErrorMessage());
+        }
+        return restUtils.getResponseStream();
+    }
+
+    /* Builds the HTTP GET request to the preview url, only for the requested range if any */
+    private RestUtils previewRequest(PreviewInput input) {
+        RestUtils restUtils = new RestUtils(httpClientEngine, input.getPreviewUrl());
+        if (input.getRange() != null) {
+            restUtils.addHeader("Range", input.getRange().toString());
+        }
+        return restUtils
                 .addHeader("Accept", MediaType.ALL_VALUE)
-                .get();
+                .withDeadline(input.getDeadline());
+    }
+
+    /* Opens the preview request on the executor of the streamed previews, aborted if the attempt is cancelled */
+    private CompletableFuture<RestUtils> openAsync(PreviewInput input) {
+        RestUtils restUtils = previewRequest(input);
+        CompletableFuture<RestUtils> attempt = new CompletableFuture<>();
+        try {
+            RequestTrace.wrap(previewStreamExecutor).execute(() -> {
+                if (!attempt.isDone() && !attempt.complete(restUtils.getStream())) {
+                    /* Cancelled while it was being opened */
+                    closeStream(restUtils);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            attempt.completeExceptionally(e);
+        }
+        attempt.whenComplete((result, throwable) -> {
+            if (attempt.isCancelled()) {
+                restUtils.abort();
+            }
+        });
+        return attempt;
+    }
+
+    /* Releases the response stream of a preview request which will not be returned */
+    private static void closeStream(RestUtils restUtils) {
+        if (restUtils.getResponseStream() != null) {
+            closeQuietly(restUtils.getResponseStream());
+        }
+    }
+
+    /* Looks the audio up in memory first, then on disk, and traces whether it was found */
+    private StreamingContent getCachedAudio(String previewUrl) {
+        StreamingContent cachedAudio = previewAudioCache.get(previewUrl);
+        if (cachedAudio == null) {
+            cachedAudio = previewDiskStore.get(previewUrl);
+        }
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            trace.setCacheHit(cachedAudio != null);
+        }
+        return cachedAudio;
+    }
+
+    /* Builds the service output from the cached audio, or the requested range of it */
+    private PreviewOutput fromCachedAudio(StreamingContent cachedAudio, ByteRange range) {
+        PreviewOutput output = new PreviewOutput();
+        long length = cachedAudio.getContentLength();
+
+        if (range == null) {
+            /* Whole audio requested */
+            output.setContent(cachedAudio);
+            output.setStatus(HttpStatus.OK.value());
+        } else if (range.isSatisfiable(length)) {
+            /* Range requested, return that part of the cached audio */
+            long start = range.getStart(length);
+            output.setContent(cachedAudio.slice(start, range.getEnd(length) - start + 1));
+            output.setContentRange(range.toContentRange(length));
+            output.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        } else {
+            /* Range is beyond the audio */
+            closeQuietly(cachedAudio);
+            output.setErrorMessage("Requested range [" + range + "] is not satisfiable.");
+            output.setContentRange("bytes */" + length);
+            output.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        }
+
+        return output;
+    }
+
+    /* Builds the service output from the completed preview request */
+    private PreviewOutput toPreviewOutput(RestUtils restUtils) {
+        PreviewOutput output = new PreviewOutput();
 
         if (restUtils.isSuccess()) {
-            /* Audio retrieved, return the raw audio */
+            /* Audio, or the requested range of it, retrieved, return the raw audio */
             output.setRawAudio(restUtils.getRawResponse());
-            output.setStatus(HttpStatus.OK.value());
+            output.setContentRange(restUtils.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+            output.setStatus(restUtils.getStatusCode() == HttpStatus.PARTIAL_CONTENT
+                    ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
         } else {
             /* Audio cannot be retrieved, return the error detail */
             output.setErrorMessage(restUtils.getErrorMessage());
+            output.setContentRange(restUtils.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
             output.setStatus(restUtils.getStatusCode().value());
         }
 
         return output;
     }
+
+    /* Releases the streamed audio of an output which will not be returned */
+    private static void closeContent(PreviewOutput output) {
+        if (output.getContent() != null) {
+            closeQuietly(output.getContent());
+        }
+    }
+
+    /* Releases an audio which will not be returned */
+    private static void closeQuietly(StreamingContent content) {
+        try {
+            content.close();
+        } catch (IOException e) {
+            LOGGER.error("Cannot close the audio - Exception: " + e.getMessage());
+        }
+    }
 }
@@ -1,15 +1,42 @@
 package com.utkuyavuz.songfinder.service.implementation;
 
 import com.google.gson.*;
+import com.utkuyavuz.songfinder.cache.SearchResultCache;
+import com.utkuyavuz.songfinder.configuration.SpotifyProperties;
+import com.utkuyavuz.songfinder.service.contract.IPreviewService;
 import com.utkuyavuz.songfinder.service.contract.ISpotifyService;
+import com.utkuyavuz.songfinder.service.input.GetTrackInput;
+import com.utkuyavuz.songfinder.service.input.PreviewInput;
 import com.utkuyavuz.songfinder.service.input.SearchItemInput;
+import com.utkuyavuz.songfinder.service.output.GetTrackOutput;
 import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
-import com.utkuyavuz.songfinder.util.GsonUtils;
+import com.utkuyavuz.songfinder.service.output.TrackOutput;
+import com.utkuyavuz.songfinder.util.Deadline;
+import com.utkuyavuz.songfinder.util.Futures;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.JsonProjection;
+import com.utkuyavuz.songfinder.util.MicroBatcher;
+import com.utkuyavuz.songfinder.util.Prefetcher;
+import com.utkuyavuz.songfinder.util.RateLimiter;
+import com.utkuyavuz.songfinder.util.RequestMetrics;
+import com.utkuyavuz.songfinder.util.RequestTrace;
 import com.utkuyavuz.songfinder.util.RestUtils;
+import com.utkuyavuz.songfinder.util.Retrier;
+import com.utkuyavuz.songfinder.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * Implementation of Spotify Web API operations
  *
@@ -21,44 +48,351 @@ import org.springframework.stereotype.Service;
 @Service
 public class SpotifyService implements ISpotifyService {
 
-    /* Search for an item endpoint */
-    private static final String SEARCH_ENDPOINT = "https://api.spotify.com/v1/search";
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpotifyService.class);
+
+    /* Search for an item endpoint, relative to the Web API base url */
+    private static final String SEARCH_PATH = "/v1/search";
+    /* Get several tracks endpoint, relative to the Web API base url */
+    private static final String TRACKS_PATH = "/v1/tracks";
+    /* Market of the searches and the track lookups */
+    private static final String MARKET = "TR";
+    /* Fields of a track */
+    private static final String[] TRACK_FIELDS = { "id", "name", "artists[*].name", "album.images[0].url",
+            "duration_ms", "popularity", "is_playable", "preview_url" };
+    /* Fields of the tracks of a search response */
+    private static final JsonProjection TRACKS = JsonProjection.compile("tracks.items", TRACK_FIELDS);
+    /* Fields of the tracks of a get several tracks response, in the order of the ids, null for an unknown id */
+    private static final JsonProjection TRACKS_BY_ID = JsonProjection.compile("tracks", TRACK_FIELDS);
+    /* Positions of the track fields */
+    private static final int TRACK_ID = 0;
+    private static final int TRACK_NAME = 1;
+    private static final int TRACK_ARTISTS = 2;
+    private static final int TRACK_ALBUM_IMAGE = 3;
+    private static final int TRACK_DURATION = 4;
+    private static final int TRACK_POPULARITY = 5;
+    private static final int TRACK_PLAYABLE = 6;
+    private static final int TRACK_PREVIEW_URL = 7;
+
+    /* Autowire the Spotify Web API configuration */
+    @Autowired
+    private SpotifyProperties spotifyProperties;
+
+    /* Autowire the shared HTTP client engine */
+    @Autowired
+    private HttpClientEngine httpClientEngine;
+
+    /* Autowire the search result cache */
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    /* Autowire the coalescing of concurrent searches */
+    @Autowired
+    private SingleFlight<String, SearchItemOutput> searchFlight;
+
+    /* Autowire the batching of concurrent track lookups */
+    @Autowired
+    private MicroBatcher<String, GetTrackOutput> trackBatcher;
+
+    /* Autowire the rate limiting of the Web API requests by access token */
+    @Autowired
+    private RateLimiter searchRateLimiter;
+
+    /* Autowire the retries of the searches */
+    @Autowired
+    private Retrier searchRetrier;
+
+    /* Autowire the retries of the track lookups */
+    @Autowired
+    private Retrier trackRetrier;
+
+    /* Autowire the request latency metrics */
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    /* Autowire Preview service, which prefetches the previews */
+    @Autowired
+    private IPreviewService previewService;
+
+    /* Autowire the prefetch of the previews */
+    @Autowired
+    private Prefetcher previewPrefetcher;
 
     /**
      * {@inheritDoc}
+     * Thin adapter which waits for {@link #searchItemAsync(SearchItemInput)}.
      */
     @Override
     public SearchItemOutput searchItem(SearchItemInput input) {
+        return searchItemAsync(input).join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<SearchItemOutput> searchItemAsync(SearchItemInput input) {
         SearchItemOutput output = new SearchItemOutput();
 
         /* Validate service input */
         if (input == null) {
             output.setStatus(HttpStatus.BAD_REQUEST.value());
             output.setErrorMessage("Service input cannot be null.");
-            return output;
+            return CompletableFuture.completedFuture(output);
         }
         if (!input.isValid()) {
             output.setStatus(HttpStatus.BAD_REQUEST.value());
             output.setErrorMessage("Service input is not valid.");
-            return output;
+            return CompletableFuture.completedFuture(output);
+        }
+
+        /* Answer from the cache if the query has been resolved recently */
+        SearchResultCache.Entry cached = searchResultCache.getEntry(input.getQuery(), MARKET);
+        CompletableFuture<SearchItemOutput> result;
+        if (cached != null && cached.isFresh()) {
+            result = CompletableFuture.completedFuture(cachedOutput(cached));
+        } else if (cached != null && cached.isRevalidatable()) {
+            /* Answer the expired entry at once within the grace window, while one background search refreshes it */
+            if (cached.startRefresh()) {
+                refresh(input, cached);
+            }
+            searchResultCache.recordStale(false);
+            result = CompletableFuture.completedFuture(cachedOutput(cached));
+        } else {
+            /* Concurrent searches for the same query with the same token share one request, searched again for a
+            caller with time left if it times out within the shorter deadline of another caller */
+            result = searchFlight.execute(flightKey(input), input.getDeadline(), () -> search(input),
+                    SpotifyService::isTimedOut);
+            if (cached != null && cached.isServableOnError()) {
+                /* Answer the expired entry if the search fails upstream */
+                result = Futures.cancelling(result, result.handle((resolved, throwable) -> {
+                    if (isUpstreamFailure(resolved, throwable) && cached.isServableOnError()) {
+                        searchResultCache.recordStale(true);
+                        return cachedOutput(cached);
+                    }
+                    if (throwable != null) {
+                        throw throwable instanceof CompletionException ? (CompletionException) throwable
+                                : new CompletionException(throwable);
+                    }
+                    return resolved;
+                }));
+            }
+        }
+        if (input.isPrefetch()) {
+            result.thenAccept(resolved -> prefetchPreview(resolved.getPreviewUrl()));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Thin adapter which waits for {@link #getTrackAsync(GetTrackInput)}.
+     */
+    @Override
+    public GetTrackOutput getTrack(GetTrackInput input) {
+        return getTrackAsync(input).join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<GetTrackOutput> getTrackAsync(GetTrackInput input) {
+        GetTrackOutput output = new GetTrackOutput();
+
+        /* Validate service input */
+        if (input == null) {
+            output.setStatus(HttpStatus.BAD_REQUEST.value());
+            output.setErrorMessage("Service input cannot be null.");
+            return CompletableFuture.completedFuture(output);
+        }
+        if (!input.isValid()) {
+            output.setStatus(HttpStatus.BAD_REQUEST.value());
+            output.setErrorMessage("Service input is not valid.");
+            return CompletableFuture.completedFuture(output);
+        }
+
+        /* Concurrent lookups with the same token share one request of up to 50 tracks */
+        CompletableFuture<GetTrackOutput> result = trackBatcher.load(input.getToken(), input.getId(),
+                input.getDeadline(), this::getTracks);
+        if (input.isPrefetch()) {
+            result.thenAccept(resolved -> {
+                if (resolved != null && resolved.getTrack() != null) {
+                    prefetchPreview(resolved.getTrack().getPreviewUrl());
+                }
+            });
+        }
+        return result;
+    }
+
+    /* Warms the preview caches with the audio of a resolved preview url in the background, if it is enabled */
+    private void prefetchPreview(String previewUrl) {
+        if (previewUrl == null || !previewPrefetcher.isEnabled()) {
+            return;
         }
+        previewPrefetcher.submit(previewUrl, url -> previewService.prefetchSongPreviewAsync(new PreviewInput(url))
+                .thenApply(output -> output.getRawAudio() == null ? 0L : (long) output.getRawAudio().length));
+    }
+
+    /* Key of the coalesced searches, the request is sent with the token, its deadline and its rate limit, so that a
+    search is only shared by the callers of the same token */
+    private static String flightKey(SearchItemInput input) {
+        return input.getToken() + '|' + SearchResultCache.key(input.getQuery(), MARKET);
+    }
+
+    /* Builds the service output of a cached track */
+    private static SearchItemOutput cachedOutput(SearchResultCache.Entry cached) {
+        SearchItemOutput output = new SearchItemOutput();
+        output.setTrack(cached.getTrack());
+        output.setPreviewUrl(cached.getTrack().getPreviewUrl());
+        output.setStatus(HttpStatus.OK.value());
+        return output;
+    }
+
+    /* Searches again for the query of an expired entry in the background, outside of the request trace and its
+    deadline, the entry is replaced once the search succeeds */
+    private void refresh(SearchItemInput input, SearchResultCache.Entry stale) {
+        LOGGER.debug("Refreshing Query[" + input.getQuery() + "] in the background.");
+        SearchItemInput refreshInput = new SearchItemInput(input.getQuery(), input.getToken());
+        RequestTrace previous = RequestTrace.attach(null);
+        try {
+            searchFlight.execute(flightKey(refreshInput), null, () -> search(refreshInput), SpotifyService::isTimedOut)
+                    .whenComplete((result, throwable) -> {
+                        if (throwable != null || result.getStatus() != HttpStatus.OK.value()) {
+                            LOGGER.error("Cannot refresh Query[" + input.getQuery() + "] - "
+                                    + (throwable != null ? "Exception: " + throwable.getMessage()
+                                    : "Status[" + result.getStatus() + "]"));
+                        }
+                        stale.endRefresh();
+                    });
+        } catch (RuntimeException e) {
+            stale.endRefresh();
+            throw e;
+        } finally {
+            RequestTrace.restore(previous);
+        }
+    }
+
+    /* Whether the search failed upstream, rather than the query or the token being wrong */
+    private static boolean isUpstreamFailure(SearchItemOutput output, Throwable throwable) {
+        return throwable != null || output.getStatus() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || output.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    /* Whether the search has timed out, e.g. as its deadline was over */
+    private static boolean isTimedOut(SearchItemOutput output) {
+        return output.getStatus() == HttpStatus.GATEWAY_TIMEOUT.value();
+    }
 
-        /* Send HTTP GET request to get the preview url */
-        RestUtils restUtils = new RestUtils(SEARCH_ENDPOINT);
-        /* Fetch only one result without offset, set market as TR and type as track */
-        restUtils
+    /* Sends the search request, again while it fails transiently, and caches its result, cancelling the result
+    aborts the request */
+    private CompletableFuture<SearchItemOutput> search(SearchItemInput input) {
+        CompletableFuture<RestUtils> request = searchRetrier.execute(() -> searchRequest(input).getAsync(),
+                input.getDeadline());
+        return Futures.cancelling(request, request
+                .thenApply(this::toSearchItemOutput)
+                .whenComplete((result, throwable) -> {
+                    if (result != null && result.getStatus() == HttpStatus.OK.value()) {
+                        searchResultCache.put(input.getQuery(), MARKET, result.getTrack());
+                    }
+                }));
+    }
+
+    /* Builds an HTTP GET request to get the preview url */
+    private RestUtils searchRequest(SearchItemInput input) {
+        RestUtils restUtils = new RestUtils(httpClientEngine, spotifyProperties.getBaseUrl() + SEARCH_PATH);
+        /* Fetch only one result without offset, set market and type as track, within the search deadline and the
+        rate limit of the token */
+        return restUtils
                 .addHeader("Accept", MediaType.APPLICATION_JSON_UTF8_VALUE)
                 .addHeader("Authorization", "Bearer " + input.getToken())
                 .addParameter("q", input.getQuery())
                 .addParameter("type", "track")
-                .addParameter("market", "TR")
+                .addParameter("market", MARKET)
                 .addParameter("limit", "1")
                 .addParameter("offset", "0")
-                .get();
+                .withDeadline(input.getDeadline())
+                .withRateLimit(searchRateLimiter, input.getToken());
+    }
+
+    /* Sends the get several tracks request of a batch, again while it fails transiently */
+    private CompletableFuture<Map<String, GetTrackOutput>> getTracks(String token, List<String> ids,
+                                                                     Deadline deadline) {
+        /* Cancelling the batch aborts its pending request */
+        CompletableFuture<RestUtils> request = trackRetrier.execute(() -> tracksRequest(token, ids, deadline)
+                .getAsync(), deadline);
+        return Futures.cancelling(request, request.thenApply(restUtils -> toGetTrackOutputs(ids, restUtils)));
+    }
+
+    /* Builds an HTTP GET request to get the tracks of the ids */
+    private RestUtils tracksRequest(String token, List<String> ids, Deadline deadline) {
+        RestUtils restUtils = new RestUtils(httpClientEngine, spotifyProperties.getBaseUrl() + TRACKS_PATH);
+        /* Set the ids and the market, within the deadline of the batch and the rate limit of the token, which the
+        searches share */
+        return restUtils
+                .addHeader("Accept", MediaType.APPLICATION_JSON_UTF8_VALUE)
+                .addHeader("Authorization", "Bearer " + token)
+                .addParameter("ids", String.join(",", ids))
+                .addParameter("market", MARKET)
+                .withDeadline(deadline)
+                .withRateLimit(searchRateLimiter, token);
+    }
+
+    /* Builds the service output of each id from the completed get several tracks request */
+    private static Map<String, GetTrackOutput> toGetTrackOutputs(List<String> ids, RestUtils restUtils) {
+        Map<String, GetTrackOutput> outputs = new HashMap<>();
+
+        if (!restUtils.isSuccess()) {
+            /* HTTP GET is not successful, return its error for every id */
+            for (String id : ids) {
+                GetTrackOutput output = new GetTrackOutput();
+                output.setErrorMessage(restUtils.getErrorMessage());
+                output.setStatus(restUtils.getStatusCode().value());
+                outputs.put(id, output);
+            }
+            return outputs;
+        }
+
+        /* Parse response from JSON
+        {
+            "tracks": [
+                {"id": "...", "name": "...", ..., "preview_url": "..."},
+                null,
+                ...
+            ]
+        }
+        The tracks are in the order of the ids, an unknown id has a null track
+        */
+        byte[] response = restUtils.getRawResponse();
+        JsonProjection.Result result = TRACKS_BY_ID.read(response == null ? new byte[0] : response);
+        for (int i = 0; i < ids.size(); i++) {
+            GetTrackOutput output = new GetTrackOutput();
+            if (!result.isSuccess()) {
+                /* Tracks cannot be fetched, return error */
+                output.setErrorMessage(result.getErrorMessage());
+                output.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            } else if (i >= result.getRows().size() || !result.getRows().get(i).isObject()) {
+                /* No track is found, return error */
+                output.setErrorMessage("Track[" + ids.get(i) + "] is not found.");
+                output.setStatus(HttpStatus.NOT_FOUND.value());
+            } else {
+                /* Track is found, return it with its preview url if it has one */
+                output.setTrack(toTrackOutput(result.getRows().get(i)));
+                output.setStatus(HttpStatus.OK.value());
+            }
+            outputs.put(ids.get(i), output);
+        }
+        return outputs;
+    }
+
+    /* Builds the service output from the completed search request */
+    private SearchItemOutput toSearchItemOutput(RestUtils restUtils) {
+        SearchItemOutput output = new SearchItemOutput();
 
         if (restUtils.isSuccess()) {
             /* HTTP GET is successful */
-            String response = restUtils.getResponse();
+            byte[] response = restUtils.getRawResponse();
+            long parseStart = System.nanoTime();
 
             /* Parse response from JSON
             {
@@ -66,26 +400,48 @@ public class SpotifyService implements ISpotifyService {
                     ...,
                     "items":
                         [
-                            ...,
-                            "preview_url": "URL_TO_FETCH",
-                            ...
+                            {
+                                "id": "...",
+                                "name": "...",
+                                "artists": [{"name": "..."}, ...],
+                                "album": {"images": [{"url": "..."}, ...], ...},
+                                "duration_ms": ...,
+                                "popularity": ...,
+                                "is_playable": ...,
+                                "preview_url": "URL_TO_FETCH",
+                                ...
+                            }
                         ],
                     ...
                  }
             }
+            All the track fields are read in a single pass, without building the Json tree
             */
-            GsonUtils gsonUtils = new GsonUtils(response);
-            gsonUtils
-                    .getAsJsonObject("tracks")
-                    .getAsJsonArray("items")
-                    .getJsonObjectAtIndex(0)
-                    .getJsonPrimitive("preview_url");
-
-            if (gsonUtils.isSuccess() && gsonUtils.isJsonPrimitive()) {
-                /* Url is fetched */
-                JsonPrimitive previewUrl = gsonUtils.getCurrent().getAsJsonPrimitive();
-                if (previewUrl.isString()) {
-                    /* Fetched url is actually String, return the preview url */
+            JsonProjection.Result result = TRACKS.read(response == null ? new byte[0] : response);
+
+            if (!result.isSuccess()) {
+                /* Tracks cannot be fetched, return error */
+                output.setErrorMessage(result.getErrorMessage());
+                output.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            } else if (result.getRows().isEmpty()) {
+                /* No track is found, return error */
+                output.setErrorMessage("IndexOutOfBounds - Idx[0] and JsonArray has size[0].");
+                output.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            } else if (!result.getRows().get(0).isObject()) {
+                /* Found track is not an object, return error */
+                output.setErrorMessage("Object at index[0] is not a JsonObject.");
+                output.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            } else {
+                JsonProjection.Row row = result.getRows().get(0);
+                JsonPrimitive previewUrl = row.get(TRACK_PREVIEW_URL);
+                if (previewUrl == null) {
+                    /* Url cannot be fetched, return error */
+                    output.setErrorMessage("Key[preview_url] does not exists or resulting item is not a "
+                            + "JsonPrimitive.");
+                    output.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                } else if (previewUrl.isString()) {
+                    /* Fetched url is actually String, return the track and its preview url */
+                    output.setTrack(toTrackOutput(row));
                     output.setPreviewUrl(previewUrl.getAsString());
                     output.setStatus(HttpStatus.OK.value());
                 } else {
@@ -93,10 +449,11 @@ public class SpotifyService implements ISpotifyService {
                     output.setErrorMessage("Resulting object is not a string.");
                     output.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
                 }
-            } else {
-                /* Url cannot be fetched, return error */
-                output.setErrorMessage(gsonUtils.getErrorMessage());
-                output.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+            long parseNanos = requestMetrics.recordStage(RequestMetrics.PARSE, output.getStatus(), parseStart);
+            RequestTrace trace = RequestTrace.current();
+            if (trace != null) {
+                trace.setStage(RequestMetrics.PARSE, parseNanos);
             }
         } else {
             /* HTTP GET is not successful, return error */
@@ -106,4 +463,38 @@ public class SpotifyService implements ISpotifyService {
 
         return output;
     }
+
+    /* Builds the track from its projected fields, leaving out the ones of unexpected types */
+    private static TrackOutput toTrackOutput(JsonProjection.Row row) {
+        TrackOutput track = new TrackOutput();
+        track.setId(asString(row.get(TRACK_ID)));
+        track.setName(asString(row.get(TRACK_NAME)));
+        List<String> artists = new ArrayList<>();
+        for (JsonPrimitive artist : row.getAll(TRACK_ARTISTS)) {
+            if (artist.isString()) {
+                artists.add(artist.getAsString());
+            }
+        }
+        track.setArtists(artists);
+        track.setAlbumImageUrl(asString(row.get(TRACK_ALBUM_IMAGE)));
+        JsonPrimitive duration = row.get(TRACK_DURATION);
+        if (duration != null && duration.isNumber()) {
+            track.setDurationMs(duration.getAsLong());
+        }
+        JsonPrimitive popularity = row.get(TRACK_POPULARITY);
+        if (popularity != null && popularity.isNumber()) {
+            track.setPopularity(popularity.getAsInt());
+        }
+        JsonPrimitive playable = row.get(TRACK_PLAYABLE);
+        if (playable != null && playable.isBoolean()) {
+            track.setPlayable(playable.getAsBoolean());
+        }
+        track.setPreviewUrl(asString(row.get(TRACK_PREVIEW_URL)));
+        return track;
+    }
+
+    /* The String value of a JsonPrimitive, null if it is not a String */
+    private static String asString(JsonPrimitive value) {
+        return value != null && value.isString() ? value.getAsString() : null;
+    }
 }
@@ -0,0 +1,137 @@
+package com.utkuyavuz.songfinder.service.input;
+
+import com.utkuyavuz.songfinder.util.Deadline;
+import org.springframework.util.StringUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Input class for {@link com.utkuyavuz.songfinder.service.contract.ISpotifyService#getTrack(GetTrackInput)}
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class GetTrackInput {
+
+    /* A Spotify id, a single malformed id fails the whole batch it is sent in */
+    private static final Pattern SPOTIFY_ID = Pattern.compile("[0-9A-Za-z]{22}");
+
+    /** Spotify id of the track */
+    private String id;
+    /** Spotify Web API token */
+    private String token;
+    /** Deadline of the upstream requests */
+    private Deadline deadline;
+    /** Whether the preview is prefetched once its url is resolved */
+    private boolean prefetch;
+
+    /**
+     * The default constructor
+     */
+    public GetTrackInput() {
+
+    }
+
+    /**
+     * The constructor with fields
+     *
+     * @param id Spotify id of the track to be looked up in the Spotify Web API <em>get several tracks</em> endpoint
+     *           as {@link String}
+     * @param token Access token for the Spotify Web API as {@link String}
+     */
+    public GetTrackInput(String id, String token) {
+        this.id = id;
+        this.token = token;
+    }
+
+    /**
+     * Gets the Spotify id of the track
+     *
+     * @return The track id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the Spotify id of the track
+     *
+     * @param id The track id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the access token for the Spotify Web API
+     *
+     * @return The access token
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Sets the access token for the Spotify Web API
+     *
+     * @param token The access token
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Gets the deadline by which the upstream requests must be answered
+     *
+     * @return The deadline, <code>null</code> for the timeouts of the upstream hosts only
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the deadline by which the upstream requests must be answered
+     *
+     * @param deadline The deadline, <code>null</code> for the timeouts of the upstream hosts only
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Checks whether the preview is prefetched into the preview caches once its url is resolved, e.g. when the
+     * client is likely to request it a moment later
+     *
+     * @return Returns <code>true</code> if the preview is prefetched, else <code>false</code>
+     */
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Sets whether the preview is prefetched into the preview caches once its url is resolved
+     *
+     * @param prefetch <code>true</code> to prefetch the preview
+     */
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Validates the instance for
+     * {@link com.utkuyavuz.songfinder.service.contract.ISpotifyService#getTrack(GetTrackInput)} method
+     *
+     * @return Returns <code>true</code> if {@link #id} is a Spotify id and {@link #token} is not empty,
+     * else <code>false</code>
+     */
+    public boolean isValid() {
+        if (id == null || !SPOTIFY_ID.matcher(id).matches()) {
+            return false;
+        }
+        if (StringUtils.isEmpty(this.token)) {
+            return false;
+        }
+        return true;
+    }
+}
@@ -1,5 +1,7 @@
 package com.utkuyavuz.songfinder.service.input;
 
+import com.utkuyavuz.songfinder.util.ByteRange;
+import com.utkuyavuz.songfinder.util.Deadline;
 import org.springframework.util.StringUtils;
 
 /**
@@ -13,6 +15,10 @@ public class PreviewInput {
 
     /** Preview Url */
     private String previewUrl;
+    /** Requested byte range */
+    private ByteRange range;
+    /** Deadline of the upstream requests */
+    private Deadline deadline;
 
     /**
      * The default constructor
@@ -30,6 +36,17 @@ public class PreviewInput {
         this.previewUrl = previewUrl;
     }
 
+    /**
+     * The constructor with fields
+     *
+     * @param previewUrl Preview url to fetch raw audio as {@link String}
+     * @param range Byte range of the raw audio to fetch, <code>null</code> for the whole audio
+     */
+    public PreviewInput(String previewUrl, ByteRange range) {
+        this.previewUrl = previewUrl;
+        this.range = range;
+    }
+
     /**
      * Gets the preview url to fetch raw audio
      *
@@ -48,6 +65,42 @@ public class PreviewInput {
         this.previewUrl = previewUrl;
     }
 
+    /**
+     * Gets the byte range of the raw audio to fetch
+     *
+     * @return The byte range, <code>null</code> for the whole audio
+     */
+    public ByteRange getRange() {
+        return range;
+    }
+
+    /**
+     * Sets the byte range of the raw audio to fetch
+     *
+     * @param range The byte range, <code>null</code> for the whole audio
+     */
+    public void setRange(ByteRange range) {
+        this.range = range;
+    }
+
+    /**
+     * Gets the deadline by which the upstream requests must be answered
+     *
+     * @return The deadline, <code>null</code> for the timeouts of the upstream hosts only
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the deadline by which the upstream requests must be answered
+     *
+     * @param deadline The deadline, <code>null</code> for the timeouts of the upstream hosts only
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
     /**
      * Validates the instance for
      * {@link com.utkuyavuz.songfinder.service.contract.IPreviewService#getSongPreview(PreviewInput)} method
@@ -1,5 +1,6 @@
 package com.utkuyavuz.songfinder.service.input;
 
+import com.utkuyavuz.songfinder.util.Deadline;
 import org.springframework.util.StringUtils;
 
 /**
@@ -15,6 +16,10 @@ public class SearchItemInput {
     private String query;
     /** Spotify Web API token */
     private String token;
+    /** Deadline of the upstream requests */
+    private Deadline deadline;
+    /** Whether the preview is prefetched once its url is resolved */
+    private boolean prefetch;
 
     /**
      * The default constructor
@@ -70,6 +75,43 @@ public class SearchItemInput {
         this.token = token;
     }
 
+    /**
+     * Gets the deadline by which the upstream requests must be answered
+     *
+     * @return The deadline, <code>null</code> for the timeouts of the upstream hosts only
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the deadline by which the upstream requests must be answered
+     *
+     * @param deadline The deadline, <code>null</code> for the timeouts of the upstream hosts only
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Checks whether the preview is prefetched into the preview caches once its url is resolved, e.g. when the
+     * client is likely to request it a moment later
+     *
+     * @return Returns <code>true</code> if the preview is prefetched, else <code>false</code>
+     */
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Sets whether the preview is prefetched into the preview caches once its url is resolved
+     *
+     * @param prefetch <code>true</code> to prefetch the preview
+     */
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
     /**
      * Validates the instance for
      * {@link com.utkuyavuz.songfinder.service.contract.ISpotifyService#searchItem(SearchItemInput)} method
@@ -0,0 +1,74 @@
+package com.utkuyavuz.songfinder.service.output;
+
+import com.utkuyavuz.songfinder.service.input.GetTrackInput;
+
+/**
+ * Output class for {@link com.utkuyavuz.songfinder.service.contract.ISpotifyService#getTrack(GetTrackInput)}
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class GetTrackOutput {
+
+    /** Error Message */
+    private String errorMessage;
+    /** The found track */
+    private TrackOutput track;
+    /** Http Status */
+    private int status;
+
+    /**
+     * Gets the error message for the <code>getTrack</code> method.
+     *
+     * @return The error message
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Sets the error message for the <code>getTrack</code> method.
+     *
+     * @param errorMessage The error message as {@link String}
+     */
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Gets the found track for the <code>getTrack</code> method.
+     *
+     * @return The found track
+     */
+    public TrackOutput getTrack() {
+        return track;
+    }
+
+    /**
+     * Sets the found track for the <code>getTrack</code> method.
+     *
+     * @param track The found track as {@link TrackOutput}
+     */
+    public void setTrack(TrackOutput track) {
+        this.track = track;
+    }
+
+    /**
+     * Gets the HttpStatus for the <code>getTrack</code> method.
+     *
+     * @return The HttpStatus
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the HttpStatus for the <code>getTrack</code> method.
+     *
+     * @param status The HttpStatus as {@link Integer}
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+}
@@ -1,6 +1,7 @@
 package com.utkuyavuz.songfinder.service.output;
 
 import com.utkuyavuz.songfinder.service.input.PreviewInput;
+import com.utkuyavuz.songfinder.util.StreamingContent;
 
 /**
  * Output class for {@link com.utkuyavuz.songfinder.service.contract.IPreviewService#getSongPreview(PreviewInput)}
@@ -15,6 +16,10 @@ public class PreviewOutput {
     private String errorMessage;
     /** Raw Audio */
     private byte[] rawAudio;
+    /** Streamed Audio */
+    private StreamingContent content;
+    /** Content-Range of a partial audio */
+    private String contentRange;
     /** Http Status */
     private int status;
 
@@ -54,6 +59,43 @@ public class PreviewOutput {
         this.rawAudio = rawAudio;
     }
 
+    /**
+     * Gets the streamed audio for the <code>openSongPreview</code> method.
+     *
+     * @return The streamed audio, which must be written or closed by the caller
+     */
+    public StreamingContent getContent() {
+        return content;
+    }
+
+    /**
+     * Sets the streamed audio for the <code>openSongPreview</code> method.
+     *
+     * @param content The streamed audio
+     */
+    public void setContent(StreamingContent content) {
+        this.content = content;
+    }
+
+    /**
+     * Gets the <code>Content-Range</code> of the audio, set when only a range of it is returned
+     * (<code>206</code>) or the requested range cannot be satisfied (<code>416</code>).
+     *
+     * @return The content range, <code>null</code> if the whole audio is returned
+     */
+    public String getContentRange() {
+        return contentRange;
+    }
+
+    /**
+     * Sets the <code>Content-Range</code> of the audio
+     *
+     * @param contentRange The content range, e.g. <code>bytes 0-499/1234</code>
+     */
+    public void setContentRange(String contentRange) {
+        this.contentRange = contentRange;
+    }
+
     /**
      * Gets the HttpStatus for the <code>getSongPreview</code> method.
      *
@@ -15,6 +15,8 @@ public class SearchItemOutput {
     private String errorMessage;
     /** The preview Url */
     private String previewUrl;
+    /** The found track */
+    private TrackOutput track;
     /** Http Status */
     private int status;
 
@@ -54,6 +56,24 @@ public class SearchItemOutput {
         this.previewUrl = previewUrl;
     }
 
+    /**
+     * Gets the found track for the <code>searchItem</code> method.
+     *
+     * @return The found track
+     */
+    public TrackOutput getTrack() {
+        return track;
+    }
+
+    /**
+     * Sets the found track for the <code>searchItem</code> method.
+     *
+     * @param track The found track as {@link TrackOutput}
+     */
+    public void setTrack(TrackOutput track) {
+        this.track = track;
+    }
+
     /**
      * Gets the HttpStatus for the <code>searchItem</code> method.
      *
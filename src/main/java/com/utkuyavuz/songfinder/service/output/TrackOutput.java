@@ -0,0 +1,177 @@
+package com.utkuyavuz.songfinder.service.output;
+
+import java.util.List;
+
+/**
+ * A track found by {@link com.utkuyavuz.songfinder.service.contract.ISpotifyService#searchItem(
+ * com.utkuyavuz.songfinder.service.input.SearchItemInput)} or
+ * {@link com.utkuyavuz.songfinder.service.contract.ISpotifyService#getTrack(
+ * com.utkuyavuz.songfinder.service.input.GetTrackInput)}, carried by {@link SearchItemOutput} or {@link GetTrackOutput}
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class TrackOutput {
+
+    /** Spotify Id */
+    private String id;
+    /** Track Name */
+    private String name;
+    /** Artist Names */
+    private List<String> artists;
+    /** Album Art Url */
+    private String albumImageUrl;
+    /** Duration in milliseconds */
+    private long durationMs;
+    /** Popularity between 0 and 100 */
+    private int popularity;
+    /** Whether the track is playable in the market */
+    private Boolean playable;
+    /** The preview Url */
+    private String previewUrl;
+
+    /**
+     * Gets the Spotify id of the track.
+     *
+     * @return The track id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the Spotify id of the track.
+     *
+     * @param id The track id as {@link String}
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the name of the track.
+     *
+     * @return The track name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the track.
+     *
+     * @param name The track name as {@link String}
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the names of the artists of the track.
+     *
+     * @return The artist names
+     */
+    public List<String> getArtists() {
+        return artists;
+    }
+
+    /**
+     * Sets the names of the artists of the track.
+     *
+     * @param artists The artist names as a {@link List} of {@link String}
+     */
+    public void setArtists(List<String> artists) {
+        this.artists = artists;
+    }
+
+    /**
+     * Gets the url of the largest album art of the track.
+     *
+     * @return The album art url
+     */
+    public String getAlbumImageUrl() {
+        return albumImageUrl;
+    }
+
+    /**
+     * Sets the url of the largest album art of the track.
+     *
+     * @param albumImageUrl The album art url as {@link String}
+     */
+    public void setAlbumImageUrl(String albumImageUrl) {
+        this.albumImageUrl = albumImageUrl;
+    }
+
+    /**
+     * Gets the duration of the track in milliseconds.
+     *
+     * @return The duration
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * Sets the duration of the track in milliseconds.
+     *
+     * @param durationMs The duration as {@link Long}
+     */
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Gets the popularity of the track between 0 and 100.
+     *
+     * @return The popularity
+     */
+    public int getPopularity() {
+        return popularity;
+    }
+
+    /**
+     * Sets the popularity of the track between 0 and 100.
+     *
+     * @param popularity The popularity as {@link Integer}
+     */
+    public void setPopularity(int popularity) {
+        this.popularity = popularity;
+    }
+
+    /**
+     * Gets the whether the track is playable in the market.
+     *
+     * @return <code>true</code> if the track is playable, <code>null</code> if it is not known
+     */
+    public Boolean getPlayable() {
+        return playable;
+    }
+
+    /**
+     * Sets the whether the track is playable in the market.
+     *
+     * @param playable Whether the track is playable as {@link Boolean}
+     */
+    public void setPlayable(Boolean playable) {
+        this.playable = playable;
+    }
+
+    /**
+     * Gets the preview url of the track.
+     *
+     * @return The preview url
+     */
+    public String getPreviewUrl() {
+        return previewUrl;
+    }
+
+    /**
+     * Sets the preview url of the track.
+     *
+     * @param previewUrl The preview url as {@link String}
+     */
+    public void setPreviewUrl(String previewUrl) {
+        this.previewUrl = previewUrl;
+    }
+}
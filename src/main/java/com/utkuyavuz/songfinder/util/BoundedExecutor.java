@@ -0,0 +1,87 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread pool with a bounded work queue which rejects tasks instead of queueing without limit.
+ * Counts the rejected tasks so that saturation can be observed.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BoundedExecutor.class);
+
+    /* Number of rejected tasks */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Initialize the executor
+     *
+     * @param name Prefix of the thread names
+     * @param corePoolSize Number of threads kept in the pool
+     * @param maxPoolSize Maximum number of threads in the pool
+     * @param queueCapacity Maximum number of tasks waiting for a thread
+     * @param keepAlive Time in milliseconds that an idle thread above the core size waits before terminating
+     */
+    public BoundedExecutor(String name, int corePoolSize, int maxPoolSize, int queueCapacity, long keepAlive) {
+        super(corePoolSize, maxPoolSize, keepAlive, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory(name));
+        setRejectedExecutionHandler((task, executor) -> {
+            rejectedCount.incrementAndGet();
+            LOGGER.error("Executor[" + name + "] is saturated, task rejected. QueueDepth["
+                    + executor.getQueue().size() + "]");
+            throw new RejectedExecutionException("Executor[" + name + "] is saturated.");
+        });
+    }
+
+    /**
+     * Gets the number of tasks waiting for a thread
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * Gets the number of rejected tasks since the executor is created
+     *
+     * @return The rejected task count
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /* Creates daemon threads named with a prefix and a sequence number */
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        /* Thread name prefix */
+        private final String name;
+        /* Thread sequence */
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
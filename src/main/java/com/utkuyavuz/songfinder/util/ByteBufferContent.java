@@ -0,0 +1,69 @@
+package com.utkuyavuz.songfinder.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link StreamingContent} written from a, possibly direct, {@link ByteBuffer} without copying the buffer.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class ByteBufferContent implements StreamingContent {
+
+    /* The content, read through a duplicate so that the buffer can be shared */
+    private final ByteBuffer buffer;
+
+    /**
+     * Initialize the content with a buffer, from its position to its limit
+     *
+     * @param buffer The content
+     */
+    public ByteBufferContent(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContentLength() {
+        return buffer.remaining();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        byte[] chunk = TransferBuffer.get();
+        while (source.hasRemaining()) {
+            int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+        out.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamingContent slice(long position, long count) {
+        ByteBuffer part = buffer.duplicate();
+        part.position(buffer.position() + (int) position);
+        part.limit(part.position() + (int) count);
+        return new ByteBufferContent(part);
+    }
+
+    /**
+     * Nothing to release, the buffer is owned by its creator
+     */
+    @Override
+    public void close() {
+
+    }
+}
@@ -0,0 +1,140 @@
+package com.utkuyavuz.songfinder.util;
+
+/**
+ * A single byte range of an HTTP <code>Range</code> header, e.g. <code>bytes=0-499</code>,
+ * <code>bytes=500-</code> or the suffix range <code>bytes=-500</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class ByteRange {
+
+    /* Range unit prefix */
+    private static final String BYTES = "bytes=";
+
+    /* First byte position, -1 for a suffix range */
+    private final long first;
+    /* Last byte position, -1 if the range is open-ended */
+    private final long last;
+    /* Number of trailing bytes of a suffix range */
+    private final long suffixLength;
+
+    private ByteRange(long first, long last, long suffixLength) {
+        this.first = first;
+        this.last = last;
+        this.suffixLength = suffixLength;
+    }
+
+    /**
+     * Parses a <code>Range</code> header with a single byte range
+     *
+     * @param header The header value
+     * @return The range, <code>null</code> if the header is not a valid single byte range
+     */
+    public static ByteRange parse(String header) {
+        if (header == null || !header.regionMatches(true, 0, BYTES, 0, BYTES.length())) {
+            return null;
+        }
+        String spec = header.substring(BYTES.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+        String firstText = spec.substring(0, dash).trim();
+        String lastText = spec.substring(dash + 1).trim();
+        if (firstText.isEmpty()) {
+            /* Suffix range, the last N bytes */
+            long suffixLength = toPosition(lastText);
+            return suffixLength > 0 ? new ByteRange(-1, -1, suffixLength) : null;
+        }
+        long first = toPosition(firstText);
+        if (first < 0) {
+            return null;
+        }
+        if (lastText.isEmpty()) {
+            return new ByteRange(first, -1, 0);
+        }
+        long last = toPosition(lastText);
+        return last >= first ? new ByteRange(first, last, 0) : null;
+    }
+
+    /**
+     * Whether a <code>Range</code> header asks for more than one byte range
+     *
+     * @param header The header value
+     * @return <code>true</code> if the header is a byte range set of multiple ranges
+     */
+    public static boolean isMultiple(String header) {
+        return header != null && header.regionMatches(true, 0, BYTES, 0, BYTES.length()) && header.indexOf(',') >= 0;
+    }
+
+    /**
+     * Whether the range selects any byte of a content
+     *
+     * @param length Length of the content
+     * @return <code>true</code> if the range can be served
+     */
+    public boolean isSatisfiable(long length) {
+        return first < 0 ? length > 0 : first < length;
+    }
+
+    /**
+     * Gets the first selected byte position of a content
+     *
+     * @param length Length of the content
+     * @return The first byte position
+     */
+    public long getStart(long length) {
+        return first < 0 ? Math.max(0, length - suffixLength) : first;
+    }
+
+    /**
+     * Gets the last selected byte position of a content, inclusive
+     *
+     * @param length Length of the content
+     * @return The last byte position
+     */
+    public long getEnd(long length) {
+        return first < 0 || last < 0 || last >= length ? length - 1 : last;
+    }
+
+    /**
+     * Gets the <code>Content-Range</code> header value of the range for a content
+     *
+     * @param length Length of the content
+     * @return The header value, e.g. <code>bytes 0-499/1234</code>
+     */
+    public String toContentRange(long length) {
+        return "bytes " + getStart(length) + "-" + getEnd(length) + "/" + length;
+    }
+
+    /**
+     * Gets the <code>Range</code> header value of the range
+     *
+     * @return The header value, e.g. <code>bytes=0-499</code>
+     */
+    @Override
+    public String toString() {
+        if (first < 0) {
+            return BYTES + "-" + suffixLength;
+        }
+        return BYTES + first + "-" + (last < 0 ? "" : Long.toString(last));
+    }
+
+    /* Parses a byte position, -1 if it is empty or invalid */
+    private static long toPosition(String text) {
+        if (text.isEmpty() || text.length() > 18) {
+            return -1;
+        }
+        long position = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            position = position * 10 + (c - '0');
+        }
+        return position;
+    }
+}
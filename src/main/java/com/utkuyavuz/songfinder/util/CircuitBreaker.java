@@ -0,0 +1,197 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A circuit breaker of an upstream host, which fails the requests fast while the host is degraded instead of
+ * letting them wait for their timeouts.
+ * <br/> While <em>closed</em> the outcomes of the recent requests are kept in a window, and the circuit opens when
+ * the failure rate of a full enough window reaches the threshold. While <em>open</em> every request is rejected. After
+ * the open duration the circuit is <em>half open</em> and lets a few trial requests through: a successful trial
+ * closes the circuit, a failed one opens it again.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class CircuitBreaker {
+
+    /** Requests are let through and their outcomes recorded */
+    public static final int CLOSED = 0;
+    /** A few trial requests are let through */
+    public static final int HALF_OPEN = 1;
+    /** Requests are rejected */
+    public static final int OPEN = 2;
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /* Name of the upstream host */
+    private final String name;
+    /* Number of recent outcomes the failure rate is computed over */
+    private final int window;
+    /* Number of outcomes needed before the circuit can open */
+    private final int minimumCalls;
+    /* Failure rate which opens the circuit, between 0 and 1 */
+    private final double failureRate;
+    /* Duration in nanoseconds the circuit stays open */
+    private final long openNanos;
+    /* Number of trial requests while half open */
+    private final int halfOpenCalls;
+
+    /* Ring of the recent outcomes, true for a failure */
+    private final boolean[] outcomes;
+    /* Number of outcomes recorded since the circuit closed, the ring is full beyond the window */
+    private int recorded;
+    /* Number of failures in the ring */
+    private int failures;
+    /* The current state */
+    private volatile int state = CLOSED;
+    /* Time the circuit opened */
+    private long openedAt;
+    /* Trial requests in flight while half open */
+    private int trials;
+    /* Number of requests rejected */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Initialize the circuit breaker
+     *
+     * @param name Name of the upstream host
+     * @param window Number of recent outcomes the failure rate is computed over
+     * @param minimumCalls Number of outcomes needed before the circuit can open
+     * @param failureRate Failure rate which opens the circuit, between 0 and 1
+     * @param openMillis Duration in milliseconds the circuit stays open
+     * @param halfOpenCalls Number of trial requests while half open
+     */
+    public CircuitBreaker(String name, int window, int minimumCalls, double failureRate, long openMillis,
+                          int halfOpenCalls) {
+        this.name = name;
+        this.window = Math.max(1, window);
+        this.minimumCalls = Math.max(1, Math.min(this.window, minimumCalls));
+        this.failureRate = failureRate;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.outcomes = new boolean[this.window];
+    }
+
+    /**
+     * Asks for a request to be let through. A request let through must be reported with {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #release()}
+     *
+     * @return Returns <code>true</code> if the request may be sent, <code>false</code> if it must fail fast
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                rejectedCount.increment();
+                return false;
+            }
+            LOGGER.debug("Circuit[" + name + "] is half open.");
+            state = HALF_OPEN;
+            trials = 0;
+        }
+        if (state == HALF_OPEN) {
+            if (trials >= halfOpenCalls) {
+                rejectedCount.increment();
+                return false;
+            }
+            trials++;
+        }
+        return true;
+    }
+
+    /**
+     * Reports a request which succeeded, a successful trial closes the circuit
+     */
+    public synchronized void onSuccess() {
+        if (state == HALF_OPEN) {
+            LOGGER.debug("Circuit[" + name + "] is closed.");
+            state = CLOSED;
+            recorded = 0;
+            failures = 0;
+            return;
+        }
+        if (state == CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * Reports a request which failed, a failed trial or too many failures open the circuit
+     */
+    public synchronized void onFailure() {
+        if (state == HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == CLOSED) {
+            record(true);
+            int count = Math.min(recorded, window);
+            if (count >= minimumCalls && failures >= failureRate * count) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Reports a request whose outcome says nothing about the host, e.g. a cancelled one
+     */
+    public synchronized void release() {
+        if (state == HALF_OPEN && trials > 0) {
+            trials--;
+        }
+    }
+
+    /**
+     * Gets the name of the upstream host
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the current state
+     *
+     * @return One of {@link #CLOSED}, {@link #HALF_OPEN} and {@link #OPEN}
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * Gets the number of requests rejected while the circuit was open or half open
+     *
+     * @return The rejected request count
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /* Puts an outcome in the ring, replacing the oldest one */
+    private void record(boolean failure) {
+        int index = recorded % window;
+        if (recorded >= window && outcomes[index]) {
+            failures--;
+        }
+        outcomes[index] = failure;
+        if (failure) {
+            failures++;
+        }
+        /* Keeps the position in the ring once it is full, without overflowing */
+        recorded = recorded >= 2 * window ? recorded - window + 1 : recorded + 1;
+    }
+
+    /* Opens the circuit */
+    private void open() {
+        LOGGER.error("Circuit[" + name + "] is open for " + TimeUnit.NANOSECONDS.toMillis(openNanos) + "ms.");
+        state = OPEN;
+        openedAt = System.nanoTime();
+    }
+}
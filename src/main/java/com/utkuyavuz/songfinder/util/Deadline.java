@@ -0,0 +1,73 @@
+package com.utkuyavuz.songfinder.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which a song preview request must be answered, on the {@link System#nanoTime()} clock.
+ * <br/> The deadline of a request is split between its stages with {@link #limit(long)}: the search gets a part of
+ * the budget and the preview gets whatever remains. {@link RestUtils} does not send a request past its deadline and
+ * bounds the connect, read and connection pool timeouts by the time remaining.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class Deadline {
+
+    /* Expiry on the System.nanoTime() clock */
+    private final long expiresAt;
+
+    /* Initialize a deadline expiring at the given time */
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Creates a deadline which expires after the given budget
+     *
+     * @param millis The budget in milliseconds
+     * @return The {@link Deadline}
+     */
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Creates a deadline which expires after the given budget, or with this deadline if it is sooner
+     *
+     * @param millis The budget in milliseconds
+     * @return The {@link Deadline} of a stage of the request
+     */
+    public Deadline limit(long millis) {
+        long limit = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        return limit - expiresAt < 0 ? new Deadline(limit) : this;
+    }
+
+    /**
+     * Gets the time remaining until the deadline
+     *
+     * @return The remaining time in nanoseconds, 0 if the deadline is over
+     */
+    public long remainingNanos() {
+        return Math.max(0, expiresAt - System.nanoTime());
+    }
+
+    /**
+     * Gets the time remaining until the deadline, rounded up
+     *
+     * @return The remaining time in milliseconds, 0 if the deadline is over
+     */
+    public long remainingMillis() {
+        long nanos = remainingNanos();
+        return nanos == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos - 1) + 1;
+    }
+
+    /**
+     * Checks whether the deadline is over
+     *
+     * @return Returns <code>true</code> if no time remains, else <code>false</code>
+     */
+    public boolean isExpired() {
+        return expiresAt - System.nanoTime() <= 0;
+    }
+}
@@ -0,0 +1,43 @@
+package com.utkuyavuz.songfinder.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashing helpers for content addressing
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class Digests {
+
+    /* Hex digits */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Digests() {
+
+    }
+
+    /**
+     * Hashes a text with SHA-256
+     *
+     * @param text The text, hashed as UTF-8
+     * @return The lowercase hex digest
+     */
+    public static String sha256Hex(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            /* Every JVM provides SHA-256 */
+            throw new IllegalStateException(e);
+        }
+    }
+}
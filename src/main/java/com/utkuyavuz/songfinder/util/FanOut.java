@@ -0,0 +1,154 @@
+package com.utkuyavuz.songfinder.util;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs a call for each of a list of items with a bounded number of calls in flight, and hands each result over as
+ * soon as its call completes, in completion order. A new call is started whenever one completes, so that the window
+ * stays full until the items run out. No thread waits for the calls, they are started on the thread which completes
+ * the previous one, without recursing when calls complete at once, e.g. from a cache.
+ * <br/> Cancelling the future returned by {@link #run(List, int, Function, Callback)}, or a callback which throws,
+ * starts no further call and cancels the calls in flight.
+ *
+ * @param <T> Type of the items
+ * @param <R> Type of the results
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class FanOut<T, R> {
+
+    /* The items */
+    private final List<T> items;
+    /* Largest number of calls in flight */
+    private final int parallelism;
+    /* Starts the call of an item */
+    private final Function<T, CompletableFuture<R>> call;
+    /* Receives the results */
+    private final Callback<T, R> callback;
+    /* Completed once every result is handed over */
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    /* The calls in flight */
+    private final Set<CompletableFuture<R>> inFlight = ConcurrentHashMap.newKeySet();
+    /* Index of the next item */
+    private final AtomicInteger next = new AtomicInteger();
+    /* Number of calls in flight, including the ones being started */
+    private final AtomicInteger active = new AtomicInteger();
+    /* Number of results not handed over yet */
+    private final AtomicInteger remaining;
+    /* Number of pending requests to start calls, only the first one runs the loop */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private FanOut(List<T> items, int parallelism, Function<T, CompletableFuture<R>> call, Callback<T, R> callback) {
+        this.items = items;
+        this.parallelism = Math.max(1, parallelism);
+        this.call = call;
+        this.callback = callback;
+        this.remaining = new AtomicInteger(items.size());
+    }
+
+    /**
+     * Runs the call of each item, at most <code>parallelism</code> at a time
+     *
+     * @param items The items, in the order their calls are started
+     * @param parallelism Largest number of calls in flight
+     * @param call Starts the call of an item
+     * @param callback Receives the result of each item, possibly from several threads at once
+     * @param <T> Type of the items
+     * @param <R> Type of the results
+     * @return A future completed once every result is handed over, exceptionally if the callback throws
+     */
+    public static <T, R> CompletableFuture<Void> run(List<T> items, int parallelism,
+                                                      Function<T, CompletableFuture<R>> call,
+                                                      Callback<T, R> callback) {
+        FanOut<T, R> fanOut = new FanOut<>(items, parallelism, call, callback);
+        fanOut.done.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                for (CompletableFuture<R> future : fanOut.inFlight) {
+                    future.cancel(true);
+                }
+            }
+        });
+        if (items.isEmpty()) {
+            fanOut.done.complete(null);
+        } else {
+            fanOut.drain();
+        }
+        return fanOut.done;
+    }
+
+    /* Starts calls while the window has room, a request made while the loop runs is served by the loop */
+    private void drain() {
+        if (pending.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (!done.isDone() && active.get() < parallelism) {
+                int index = next.getAndIncrement();
+                if (index >= items.size()) {
+                    break;
+                }
+                active.incrementAndGet();
+                start(index);
+            }
+        } while (pending.decrementAndGet() != 0);
+    }
+
+    /* Starts the call of an item */
+    private void start(int index) {
+        T item = items.get(index);
+        CompletableFuture<R> future;
+        try {
+            future = call.apply(item);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        CompletableFuture<R> started = future;
+        inFlight.add(started);
+        if (done.isCancelled()) {
+            started.cancel(true);
+        }
+        started.whenComplete((result, throwable) -> {
+            inFlight.remove(started);
+            try {
+                if (!done.isDone()) {
+                    callback.accept(index, item, result, throwable);
+                }
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+            active.decrementAndGet();
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(null);
+            } else {
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Receives the result of an item
+     *
+     * @param <T> Type of the items
+     * @param <R> Type of the results
+     */
+    @FunctionalInterface
+    public interface Callback<T, R> {
+
+        /**
+         * Receives the result of an item
+         *
+         * @param index Position of the item in the list
+         * @param item The item
+         * @param result The result of its call, <code>null</code> if the call failed
+         * @param throwable The failure of its call, <code>null</code> if it succeeded
+         */
+        void accept(int index, T item, R result, Throwable throwable);
+    }
+}
@@ -0,0 +1,118 @@
+package com.utkuyavuz.songfinder.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * A {@link StreamingContent} written from a region of an open file. The channel is opened by the creator and closed
+ * with the content, which keeps the data readable even if the file is deleted in the meantime.
+ * <br/> Written to an {@link OutputStream}, the region is copied through a buffer of the JVM. When the path of the
+ * file is known, {@link StreamingContentHttpMessageConverter} lets a container which supports it send the region
+ * itself, with <code>sendfile</code>, so that the audio is never copied into the JVM.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class FileContent implements StreamingContent {
+
+    /* The open file */
+    private final FileChannel channel;
+    /* Canonical path of the file, null if the container must not send it itself */
+    private final Path file;
+    /* Offset of the region in the file */
+    private final long position;
+    /* Length of the region */
+    private final long count;
+
+    /**
+     * Initialize the content with a region of an open file
+     *
+     * @param channel The open file, closed with the content
+     * @param position Offset of the region
+     * @param count Length of the region
+     */
+    public FileContent(FileChannel channel, long position, long count) {
+        this(channel, null, position, count);
+    }
+
+    /**
+     * Initialize the content with a region of an open file, which the container may send itself
+     *
+     * @param channel The open file, closed with the content
+     * @param file Canonical path of the file, <code>null</code> if the container must not send it itself
+     * @param position Offset of the region
+     * @param count Length of the region
+     */
+    public FileContent(FileChannel channel, Path file, long position, long count) {
+        this.channel = channel;
+        this.file = file;
+        this.position = position;
+        this.count = count;
+    }
+
+    /**
+     * Gets the canonical path of the file, for the container to send the region itself
+     *
+     * @return The path, <code>null</code> if the container must not send the file itself
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the offset of the region in the file
+     *
+     * @return The position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContentLength() {
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long transferred = 0;
+        while (transferred < count) {
+            long written = channel.transferTo(position + transferred, count - transferred, target);
+            if (written <= 0) {
+                throw new IOException("File ended after " + transferred + " of " + count + " bytes");
+            }
+            transferred += written;
+        }
+        out.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamingContent slice(long position, long count) {
+        return new FileContent(channel, file, this.position + position, count);
+    }
+
+    /**
+     * Closes the file
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
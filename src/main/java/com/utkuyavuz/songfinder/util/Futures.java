@@ -0,0 +1,79 @@
+package com.utkuyavuz.songfinder.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Helpers for {@link CompletableFuture}s. A stage built with <code>thenApply</code> and the like is not linked back
+ * to its source, cancelling it leaves the source running, e.g. an upstream request holding its connection.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class Futures {
+
+    private Futures() {
+
+    }
+
+    /**
+     * Cancels a source future when a stage which depends on it is cancelled
+     *
+     * @param source The future the stage depends on, e.g. of an upstream request
+     * @param dependent The stage returned to the caller
+     * @param <T> Type of the result of the source
+     * @param <R> Type of the result of the stage
+     * @return The dependent stage
+     */
+    public static <T, R> CompletableFuture<R> cancelling(CompletableFuture<T> source, CompletableFuture<R> dependent) {
+        dependent.whenComplete((result, throwable) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+
+    /**
+     * Composes a source future with the stage which follows it, like <code>thenComposeAsync</code>, so that
+     * cancelling the returned future cancels whichever of the two is pending
+     *
+     * @param source The future of the first stage, e.g. of an upstream request
+     * @param next Starts the following stage from the result of the source
+     * @param executor Runs <code>next</code>
+     * @param discard Releases a result of the following stage which arrives once the returned future is cancelled
+     * @param <T> Type of the result of the source
+     * @param <R> Type of the result of the following stage
+     * @return The composed future
+     */
+    public static <T, R> CompletableFuture<R> composeCancelling(CompletableFuture<T> source,
+                                                                Function<T, CompletableFuture<R>> next,
+                                                                Executor executor, Consumer<R> discard) {
+        CompletableFuture<R> composed = new CompletableFuture<>();
+        source.whenCompleteAsync((result, throwable) -> {
+            if (throwable != null) {
+                composed.completeExceptionally(throwable);
+                return;
+            } else if (composed.isDone()) {
+                return;
+            }
+            CompletableFuture<R> stage = next.apply(result);
+            cancelling(stage, composed);
+            stage.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    composed.completeExceptionally(failure);
+                } else if (!composed.complete(value)) {
+                    discard.accept(value);
+                }
+            });
+        }, executor).exceptionally(throwable -> {
+            /* The executor rejected the stage, or the stage could not be started */
+            composed.completeExceptionally(throwable);
+            return null;
+        });
+        return cancelling(source, composed);
+    }
+}
@@ -0,0 +1,397 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A utility class to fetch data from a Json document while it is read, the streaming counterpart of
+ * {@link GsonUtils}. Reads the document with a {@link JsonReader} straight from its bytes, skips the values
+ * which are not on the requested path without building them and stops reading once the path is resolved.
+ * <br/> The fluent methods, their success and error states and their error messages are the same as the ones
+ * of {@link GsonUtils}, with two differences inherent to streaming: a step can only move deeper into the
+ * document, and a malformed part of the document after the resolved path is not noticed.
+ * {@link #getCurrent()} is only available for a primitive.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class GsonStreamUtils implements Closeable {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(GsonStreamUtils.class);
+
+    /* Enum to track current JsonElement's type */
+    private enum GsonStreamUtilsCurrentModeEnum {
+        JSON_ARRAY, JSON_OBJECT, JSON_PRIMITVE, JSON_NULL, ERROR
+    }
+
+    /* The reader, positioned inside the current JsonObject or JsonArray */
+    private final JsonReader reader;
+    /* Current JsonPrimitive */
+    private JsonPrimitive current;
+    /* Type of the current JsonElement */
+    private GsonStreamUtilsCurrentModeEnum currentMode;
+    /* Error message */
+    private String errorMessage;
+
+    /**
+     * Initialize GsonStreamUtils with the bytes of a UTF-8 Json document
+     *
+     * @param json Json document as <code>byte[]</code>
+     */
+    public GsonStreamUtils(byte[] json) {
+        this(new ByteArrayInputStream(json));
+    }
+
+    /**
+     * Initialize GsonStreamUtils with a UTF-8 Json document which is read as it is traversed.
+     * Reads the document up to its first token and sets type of the current JsonElement.
+     *
+     * @param json Json document as {@link InputStream}, closed by {@link #close()}
+     */
+    public GsonStreamUtils(InputStream json) {
+        this.reader = newReader(json);
+        try {
+            JsonToken token = this.reader.peek();
+            if (token == JsonToken.BEGIN_OBJECT) {
+                this.reader.beginObject();
+                this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_OBJECT;
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                this.reader.beginArray();
+                this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_ARRAY;
+            } else if (token == JsonToken.NULL || token == JsonToken.END_DOCUMENT) {
+                this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_NULL;
+            } else {
+                this.current = this.nextPrimitive();
+                this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_PRIMITVE;
+            }
+        } catch (EOFException e) {
+            /* An empty document, parsed as JsonNull like JsonParser does */
+            this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_NULL;
+        } catch (IOException | RuntimeException e) {
+            this.onParseError(e);
+        }
+    }
+
+    /**
+     * Get JsonArray from the current JsonElement with the given key
+     *
+     * @param key Json key to get the JsonArray
+     * @return A {@link GsonStreamUtils} instance
+     */
+    public GsonStreamUtils getAsJsonArray(String key) {
+        if (this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_OBJECT) {
+            try {
+                if (this.nextValue(key) && this.reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Get JsonArray[" + key + "]");
+                    }
+                    this.reader.beginArray();
+                    this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_ARRAY;
+                } else {
+                    LOGGER.error("Current object does not have key[" + key + "] and/or is not a JsonArray.");
+                    this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+                    this.errorMessage = "Key[" + key + "] does not exists or resulting item is not a JsonArray.";
+                }
+            } catch (IOException | RuntimeException e) {
+                this.onParseError(e);
+            }
+        } else if (this.currentMode != GsonStreamUtilsCurrentModeEnum.ERROR) {
+            LOGGER.error("This method is invalid, the current JsonElement is not a JsonObject.");
+            this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+            this.errorMessage = "Current item is not a JsonObject.";
+        }
+        return this;
+    }
+
+    /**
+     * Get JsonObject from the current JsonElement with the given key
+     *
+     * @param key Json key to get the JsonObject
+     * @return A {@link GsonStreamUtils} instance
+     */
+    public GsonStreamUtils getAsJsonObject(String key) {
+        if (this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_OBJECT) {
+            try {
+                if (this.nextValue(key) && this.reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Get JsonObject[" + key + "]");
+                    }
+                    this.reader.beginObject();
+                } else {
+                    LOGGER.error("Current object does not have key[" + key + "] and/or is not a JsonObject.");
+                    this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+                    this.errorMessage = "Key[" + key + "] does not exists or resulting item is not a JsonObject.";
+                }
+            } catch (IOException | RuntimeException e) {
+                this.onParseError(e);
+            }
+        } else if (this.currentMode != GsonStreamUtilsCurrentModeEnum.ERROR) {
+            LOGGER.error("This method is invalid, the current JsonElement is not a JsonObject.");
+            this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+            this.errorMessage = "Current item is not a JsonObject.";
+        }
+        return this;
+    }
+
+    /**
+     * Get JsonPrimitive from the current JsonElement with the given key
+     *
+     * @param key Json key to get the JsonPrimitive
+     * @return A {@link GsonStreamUtils} instance
+     */
+    public GsonStreamUtils getJsonPrimitive(String key) {
+        if (this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_OBJECT) {
+            try {
+                if (this.nextValue(key) && isPrimitive(this.reader.peek())) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Get JsonPrimitive[" + key + "]");
+                    }
+                    this.current = this.nextPrimitive();
+                    this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_PRIMITVE;
+                } else {
+                    LOGGER.error("Current object does not have key[" + key + "] and/or is not a JsonPrimitive.");
+                    this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+                    this.errorMessage = "Key[" + key + "] does not exists or resulting item is not a JsonPrimitive.";
+                }
+            } catch (IOException | RuntimeException e) {
+                this.onParseError(e);
+            }
+        } else if (this.currentMode != GsonStreamUtilsCurrentModeEnum.ERROR) {
+            LOGGER.error("This method is invalid, the current JsonElement is not a JsonObject.");
+            this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+            this.errorMessage = "Current item is not a JsonObject.";
+        }
+        return this;
+    }
+
+    /**
+     * Get the JsonObject at the given index from the current JsonArray
+     *
+     * @param idx Index of the JsonObject to retrieve
+     * @return A {@link GsonStreamUtils} instance
+     */
+    public GsonStreamUtils getJsonObjectAtIndex(int idx) {
+        if (this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_ARRAY) {
+            try {
+                int size = this.skipElements(idx);
+                if (size > idx) {
+                    if (this.reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug("Get JsonObject@[" + idx + "]");
+                        }
+                        this.reader.beginObject();
+                        this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_OBJECT;
+                    } else {
+                        LOGGER.error("Element at index " + idx + " is not a JsonObject.");
+                        this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+                        this.errorMessage = "Object at index[" + idx + "] is not a JsonObject.";
+                    }
+                } else {
+                    LOGGER.error("Current array has size[" + size + "] less than the desired index[" + idx + "].");
+                    this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+                    this.errorMessage = "IndexOutOfBounds - Idx[" + idx + "] and JsonArray has size[" + size + "].";
+                }
+            } catch (IOException | RuntimeException e) {
+                this.onParseError(e);
+            }
+        } else if (this.currentMode != GsonStreamUtilsCurrentModeEnum.ERROR) {
+            LOGGER.error("This method is invalid, the current JsonElement is not a JsonArray.");
+            this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+            this.errorMessage = "Current item is not a JsonArray.";
+        }
+        return this;
+    }
+
+    /**
+     * Get the JsonPrimitive at the given index from the current JsonArray
+     *
+     * @param idx Index of the JsonPrimitive to retrieve
+     * @return A {@link GsonStreamUtils} instance
+     */
+    public GsonStreamUtils getObjectAtIndex(int idx) {
+        if (this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_ARRAY) {
+            try {
+                int size = this.skipElements(idx);
+                if (size > idx) {
+                    if (isPrimitive(this.reader.peek())) {
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug("Get JsonPrimitive@[" + idx + "]");
+                        }
+                        this.current = this.nextPrimitive();
+                        this.currentMode = GsonStreamUtilsCurrentModeEnum.JSON_PRIMITVE;
+                    } else {
+                        LOGGER.error("Element at index " + idx + " is not a JsonPrimitive.");
+                        this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+                        this.errorMessage = "Object at index[" + idx + "] is not a JsonPrimitive.";
+                    }
+                } else {
+                    LOGGER.error("Current array has size[" + size + "] less than the desired index[" + idx + "].");
+                    this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+                    this.errorMessage = "IndexOutOfBounds - Idx[" + idx + "] and JsonArray has size[" + size + "].";
+                }
+            } catch (IOException | RuntimeException e) {
+                this.onParseError(e);
+            }
+        } else if (this.currentMode != GsonStreamUtilsCurrentModeEnum.ERROR) {
+            LOGGER.error("This method is invalid, the current JsonElement is not a JsonArray.");
+            this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+            this.errorMessage = "Current item is not a JsonArray.";
+        }
+        return this;
+    }
+
+    /**
+     * Check whether the current instance has encountered an error or not.
+     *
+     * @return Returns <code>true</code> if there exists no errors, else <code>false</code>
+     */
+    public boolean isSuccess() {
+        return this.currentMode != GsonStreamUtilsCurrentModeEnum.ERROR;
+    }
+
+    /**
+     * Check whether the current JsonElement is a JsonArray
+     *
+     * @return Return <code>true</code> if the current JsonElement is JsonArray, else <code>false</code>
+     */
+    public boolean isJsonArray() {
+        return this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_ARRAY;
+    }
+
+    /**
+     * Check whether the current JsonElement is a JsonObject
+     *
+     * @return Return <code>true</code> if the current JsonElement is JsonObject, else <code>false</code>
+     */
+    public boolean isJsonObject() {
+        return this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_OBJECT;
+    }
+
+    /**
+     * Check whether the current JsonElement is a JsonPrimitive
+     *
+     * @return Return <code>true</code> if the current JsonElement is JsonPrimitve, else <code>false</code>
+     */
+    public boolean isJsonPrimitive() {
+        return this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_PRIMITVE;
+    }
+
+    /**
+     * Check whether the current JsonElement is a JsonNull
+     *
+     * @return Return <code>true</code> if the current JsonElement is JsonNull, else <code>false</code>
+     */
+    public boolean isJsonNull() {
+        return this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_NULL;
+    }
+
+    /**
+     * Gets the current JsonPrimitive
+     *
+     * @return The current JsonPrimitive, <code>null</code> if the current JsonElement is not a JsonPrimitive
+     */
+    public JsonPrimitive getCurrent() {
+        return this.currentMode == GsonStreamUtilsCurrentModeEnum.JSON_PRIMITVE ? current : null;
+    }
+
+    /**
+     * Gets the error message
+     *
+     * @return The error message
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Closes the underlying document
+     *
+     * @throws IOException If the document cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    /* Moves to the value of the given key in the current JsonObject, skipping the other values */
+    private boolean nextValue(String key) throws IOException {
+        return nextValue(this.reader, key);
+    }
+
+    /* Skips up to the given number of elements of the current JsonArray, returns the number skipped plus one if an
+       element follows them */
+    private int skipElements(int count) throws IOException {
+        return skipElements(this.reader, count);
+    }
+
+    /* Reads the JsonPrimitive the reader is positioned at */
+    private JsonPrimitive nextPrimitive() throws IOException {
+        return nextPrimitive(this.reader);
+    }
+
+    /* A lenient reader of a UTF-8 document, accepting the same documents as GsonUtils */
+    static JsonReader newReader(InputStream json) {
+        JsonReader reader = new JsonReader(new InputStreamReader(json, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    /* Moves the reader to the value of the given key in its JsonObject, skipping the other values */
+    static boolean nextValue(JsonReader reader, String key) throws IOException {
+        while (reader.hasNext()) {
+            if (key.equals(reader.nextName())) {
+                return true;
+            }
+            reader.skipValue();
+        }
+        return false;
+    }
+
+    /* Skips up to the given number of elements of the reader's JsonArray, returns the number skipped plus one if an
+       element follows them */
+    static int skipElements(JsonReader reader, int count) throws IOException {
+        int skipped = 0;
+        while (skipped < count && reader.hasNext()) {
+            reader.skipValue();
+            skipped++;
+        }
+        return reader.hasNext() ? skipped + 1 : skipped;
+    }
+
+    /* Reads the JsonPrimitive the reader is positioned at */
+    static JsonPrimitive nextPrimitive(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BOOLEAN) {
+            return new JsonPrimitive(reader.nextBoolean());
+        } else if (token == JsonToken.NUMBER) {
+            return new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+        }
+        return new JsonPrimitive(reader.nextString());
+    }
+
+    /* Whether the token starts a JsonPrimitive */
+    static boolean isPrimitive(JsonToken token) {
+        return token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN;
+    }
+
+    /* Sets the error state for a document which cannot be parsed */
+    private void onParseError(Exception e) {
+        LOGGER.error("Cannot parse input as a JsonElement - Exception: " + e.getMessage());
+        this.errorMessage = "Cannot parse input as a JsonElement - Exception: " + e.getMessage();
+        this.currentMode = GsonStreamUtilsCurrentModeEnum.ERROR;
+    }
+}
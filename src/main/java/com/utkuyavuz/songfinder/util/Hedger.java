@@ -0,0 +1,315 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HedgingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Hedges the upstream requests to cut their tail latency: when the first attempt has not responded within the
+ * hedging delay, a second identical attempt is sent and whichever responds first wins. The other attempt is
+ * cancelled, or discarded if it responds anyway.
+ * <br/> The delay is a percentile of the latency of the recent first attempts, recomputed every second and bounded
+ * by the configured minimum and maximum. Until enough attempts are timed the maximum is used.
+ * <br/> Each call earns a fraction of a hedge, the maximum hedge ratio, and each hedge spends a whole one. A few
+ * hedges can be saved up for a burst, so that at most the ratio of the calls are hedged over time, also when the
+ * upstream slows down for everyone.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class Hedger {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Hedger.class);
+
+    /* Number of recent latencies the percentile is computed over */
+    private static final int SAMPLES = 1024;
+    /* Number of latencies needed before the percentile is used */
+    private static final int MIN_SAMPLES = 32;
+    /* Interval of the recomputation of the delay */
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /* A whole hedge in the budget */
+    private static final long HEDGE = 1_000_000;
+    /* Hedges which can be saved up for a burst */
+    private static final long MAX_BUDGET = 10 * HEDGE;
+
+    /* Name of the hedged requests, for the meters */
+    private final String name;
+    /* Hedging is enabled, otherwise only the first attempt is sent */
+    private final boolean enabled;
+    /* Percentile of the latency after which a hedge is sent, between 0 and 1 */
+    private final double percentile;
+    /* Bounds of the delay in nanoseconds */
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    /* Fraction of a hedge earned by each call */
+    private final long earnedPerCall;
+    /* Engine which runs the hedging timers */
+    private final HttpClientEngine engine;
+
+    /* Ring of the recent first attempt latencies in nanoseconds */
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    /* Number of latencies recorded */
+    private final AtomicLong sampleCount = new AtomicLong();
+    /* Time of the next recomputation of the delay */
+    private final AtomicLong nextRefresh;
+    /* The current delay in nanoseconds */
+    private volatile long delayNanos;
+    /* Hedges which can be sent, in millionths of a hedge */
+    private final AtomicLong budget = new AtomicLong();
+
+    /* Number of calls */
+    private final LongAdder callCount = new LongAdder();
+    /* Number of hedges sent */
+    private final LongAdder firedCount = new LongAdder();
+    /* Number of hedges which responded first */
+    private final LongAdder wonCount = new LongAdder();
+    /* Number of hedges not sent for the lack of budget */
+    private final LongAdder deniedCount = new LongAdder();
+
+    /**
+     * Initialize the hedger
+     *
+     * @param name Name of the hedged requests, for the meters
+     * @param properties Hedging configuration
+     * @param engine The HTTP client engine whose timer sends the hedges
+     */
+    public Hedger(String name, HedgingProperties properties, HttpClientEngine engine) {
+        this.name = name;
+        this.enabled = properties.isEnabled();
+        this.percentile = Math.max(0, Math.min(1, properties.getPercentile()));
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMinDelay());
+        this.maxDelayNanos = Math.max(this.minDelayNanos, TimeUnit.MILLISECONDS.toNanos(properties.getMaxDelay()));
+        this.earnedPerCall = (long) (HEDGE * Math.max(0, Math.min(1, properties.getMaxRatio())));
+        this.engine = engine;
+        this.delayNanos = this.maxDelayNanos;
+        this.nextRefresh = new AtomicLong(System.nanoTime() + REFRESH_NANOS);
+    }
+
+    /**
+     * Runs the call, hedged with a second attempt if the first one does not respond within the delay
+     *
+     * @param attempt Sends an attempt, called once or twice
+     * @param discard Releases the value of the attempt which responds second, e.g. closes its stream
+     * @param <T> Type of the value
+     * @return A {@link CompletableFuture} completed by the attempt which responds first. Cancelling it cancels both
+     * attempts
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt, Consumer<T> discard) {
+        if (!enabled) {
+            return attempt.get();
+        }
+        callCount.increment();
+        budget.accumulateAndGet(earnedPerCall, (current, earned) -> Math.min(MAX_BUDGET, current + earned));
+
+        Call<T> call = new Call<>(discard);
+        RequestTrace trace = RequestTrace.current();
+        long start = System.nanoTime();
+        CompletableFuture<T> primary = attempt.get();
+
+        ScheduledFuture<?> timer = primary.isDone() ? null : engine.schedule(() -> {
+            if (call.result.isDone()) {
+                return;
+            }
+            if (!spend()) {
+                deniedCount.increment();
+                return;
+            }
+            call.attempts.incrementAndGet();
+            RequestTrace previous = RequestTrace.attach(trace);
+            try {
+                LOGGER.debug("Hedging[" + name + "] after Delay[" + TimeUnit.NANOSECONDS.toMillis(delayNanos)
+                        + "ms].");
+                CompletableFuture<T> hedge = attempt.get();
+                call.hedge = hedge;
+                firedCount.increment();
+                hedge.whenComplete((value, throwable) -> call.onAttempt(primary, value, throwable, () -> {
+                    wonCount.increment();
+                    /* The first attempt takes at least as long as it has taken so far */
+                    record(System.nanoTime() - start);
+                }));
+                if (call.result.isDone()) {
+                    /* First attempt responded meanwhile */
+                    hedge.cancel(true);
+                }
+            } finally {
+                RequestTrace.restore(previous);
+            }
+        }, delayNanos());
+
+        primary.whenComplete((value, throwable) -> {
+            if (!primary.isCancelled()) {
+                record(System.nanoTime() - start);
+            }
+            call.onAttempt(call.hedge, value, throwable, null);
+        });
+        call.result.whenComplete((value, throwable) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (call.result.isCancelled()) {
+                primary.cancel(true);
+                CompletableFuture<T> hedge = call.hedge;
+                if (hedge != null) {
+                    hedge.cancel(true);
+                }
+            }
+        });
+        return call.result;
+    }
+
+    /**
+     * Gets the name of the hedged requests
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks whether hedging is enabled
+     *
+     * @return Returns <code>true</code> if the calls are hedged, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the current hedging delay
+     *
+     * @return The delay in milliseconds
+     */
+    public double getDelayMillis() {
+        return delayNanos / 1e6;
+    }
+
+    /**
+     * Gets the number of hedged calls
+     *
+     * @return The call count
+     */
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    /**
+     * Gets the number of hedges sent
+     *
+     * @return The fired hedge count
+     */
+    public long getFiredCount() {
+        return firedCount.sum();
+    }
+
+    /**
+     * Gets the number of hedges which responded before the first attempt
+     *
+     * @return The won hedge count
+     */
+    public long getWonCount() {
+        return wonCount.sum();
+    }
+
+    /**
+     * Gets the number of hedges which were due but not sent, as the hedge ratio was reached
+     *
+     * @return The denied hedge count
+     */
+    public long getDeniedCount() {
+        return deniedCount.sum();
+    }
+
+    /* Spends a hedge from the budget, if there is one */
+    private boolean spend() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < HEDGE) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - HEDGE));
+        return true;
+    }
+
+    /* Records the latency of a first attempt */
+    private void record(long nanos) {
+        samples.set((int) (sampleCount.getAndIncrement() % SAMPLES), nanos);
+    }
+
+    /* The delay, recomputed from the recent latencies at most once a second */
+    private long delayNanos() {
+        long now = System.nanoTime();
+        long next = nextRefresh.get();
+        if (now - next >= 0 && nextRefresh.compareAndSet(next, now + REFRESH_NANOS)) {
+            int count = (int) Math.min(sampleCount.get(), SAMPLES);
+            if (count >= MIN_SAMPLES) {
+                long[] latencies = new long[count];
+                for (int i = 0; i < count; i++) {
+                    latencies[i] = samples.get(i);
+                }
+                Arrays.sort(latencies);
+                long latency = latencies[Math.max(0, (int) Math.ceil(percentile * count) - 1)];
+                delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, latency));
+            }
+        }
+        return delayNanos;
+    }
+
+    /* A hedged call, completed by the attempt which responds first */
+    private static class Call<T> {
+
+        /* Result of the call */
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        /* Releases the value of the attempt which responds second */
+        private final Consumer<T> discard;
+        /* Attempts sent which have not failed */
+        private final AtomicInteger attempts = new AtomicInteger(1);
+        /* Whether an attempt has responded */
+        private final AtomicBoolean answered = new AtomicBoolean();
+        /* The second attempt, once sent */
+        private volatile CompletableFuture<T> hedge;
+
+        private Call(Consumer<T> discard) {
+            this.discard = discard;
+        }
+
+        /* Completes the result with the first response and cancels the other attempt, discards the second response.
+         A failed attempt gives way to the other one, unless it has failed too. The win of the first response is
+         counted and the other attempt cancelled before the result is completed, so that the caller sees both */
+        private void onAttempt(CompletableFuture<T> other, T value, Throwable throwable, Runnable onWin) {
+            if (throwable != null) {
+                if (attempts.decrementAndGet() == 0) {
+                    result.completeExceptionally(throwable);
+                }
+                return;
+            }
+            if (answered.compareAndSet(false, true)) {
+                if (onWin != null) {
+                    onWin.run();
+                }
+                if (other != null) {
+                    other.cancel(true);
+                }
+                if (result.complete(value)) {
+                    return;
+                }
+            }
+            discard.accept(value);
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The HTTP client engine shared by every {@link RestUtils} instance.
+ * Keeps a pool of keep-alive connections per host and a single TLS context so that TLS sessions are reused
+ * between requests to the same host. A blocking client serves {@link RestUtils#get()} and a non-blocking client,
+ * with its own pool, serves {@link RestUtils#getAsync()}. The connection limits are split between the two pools by
+ * <code>asyncShare</code>, so that a host never gets more connections than its limit.
+ * <br/> Connect, read and connection pool timeouts are configured by host. A request with a {@link Deadline} gets
+ * them bounded by the time remaining, see {@link #requestConfig(String, Deadline)}.
+ * <br/> The requests in flight, the response bytes received and the timeouts are counted, in total and by host.
+ * <br/> Each host has a {@link CircuitBreaker}, which fails the requests fast while the host is failing.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class HttpClientEngine implements Closeable {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientEngine.class);
+
+    /** Timeout to establish a connection */
+    public static final String CONNECT_TIMEOUT = "connect";
+    /** Timeout of inactivity while waiting for the response */
+    public static final String READ_TIMEOUT = "read";
+    /** Timeout to lease a connection from the pool */
+    public static final String POOL_TIMEOUT = "pool";
+    /** Deadline of the request exceeded, before or while the request is sent */
+    public static final String DEADLINE_TIMEOUT = "deadline";
+    /** Kinds of the counted timeouts */
+    public static final List<String> TIMEOUT_KINDS = Collections.unmodifiableList(
+            Arrays.asList(CONNECT_TIMEOUT, READ_TIMEOUT, POOL_TIMEOUT, DEADLINE_TIMEOUT));
+
+    /* Port of the pooled https routes */
+    private static final int HTTPS_PORT = 443;
+
+    /* Connection pool */
+    private final PoolingHttpClientConnectionManager connectionManager;
+    /* Pooled HTTP client */
+    private final CloseableHttpClient httpClient;
+    /* RestTemplate on top of the pooled HTTP client */
+    private final RestTemplate restTemplate;
+    /* Non-blocking connection pool */
+    private final PoolingNHttpClientConnectionManager asyncConnectionManager;
+    /* Pooled non-blocking HTTP client */
+    private final CloseableHttpAsyncClient asyncHttpClient;
+    /* Evicts expired and idle connections of the non-blocking pool, and expires the deadlines of the requests */
+    private final ScheduledExecutorService scheduler;
+    /* Timeouts of the hosts without their own */
+    private final RequestConfig defaultRequestConfig;
+    /* Timeouts by host */
+    private final Map<String, RequestConfig> hostRequestConfigs = new HashMap<>();
+    /* Upstream traffic over all hosts */
+    private final Traffic totalTraffic = new Traffic();
+    /* Upstream traffic by host */
+    private final ConcurrentMap<String, Traffic> hostTraffic = new ConcurrentHashMap<>();
+    /* Circuit breaker configuration */
+    private final HttpClientProperties.Circuit circuit;
+    /* Circuit breakers by host */
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * Initialize the engine with the given pool configuration
+     *
+     * @param properties Pool configuration as {@link HttpClientProperties}
+     */
+    public HttpClientEngine(HttpClientProperties properties) {
+        LOGGER.debug("Initializing HttpClientEngine - MaxTotal[" + properties.getMaxTotal() + "] MaxPerRoute["
+                + properties.getMaxPerRoute() + "]");
+        this.defaultRequestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setSocketTimeout(properties.getReadTimeout())
+                .setConnectionRequestTimeout(properties.getPoolTimeout())
+                .build();
+        for (Map.Entry<String, HttpClientProperties.Timeouts> host : properties.getTimeouts().entrySet()) {
+            HttpClientProperties.Timeouts timeouts = host.getValue();
+            LOGGER.debug("Set Timeouts[" + host.getKey() + "] - Connect[" + timeouts.getConnect() + "] Read["
+                    + timeouts.getRead() + "]");
+            this.hostRequestConfigs.put(host.getKey(), RequestConfig.copy(this.defaultRequestConfig)
+                    .setConnectTimeout(timeouts.getConnect() != null
+                            ? timeouts.getConnect() : properties.getConnectTimeout())
+                    .setSocketTimeout(timeouts.getRead() != null ? timeouts.getRead() : properties.getReadTimeout())
+                    .build());
+        }
+
+        this.circuit = properties.getCircuit();
+
+        SSLContext sslContext = SSLContexts.createDefault();
+        sslContext.getClientSessionContext().setSessionTimeout(properties.getTlsSessionTimeout());
+        sslContext.getClientSessionContext().setSessionCacheSize(properties.getTlsSessionCacheSize());
+
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(sslContext))
+                .build();
+
+        int asyncShare = properties.getAsyncShare();
+        this.connectionManager = new PoolingHttpClientConnectionManager(registry);
+        this.connectionManager.setMaxTotal(blockingLimit(properties.getMaxTotal(), asyncShare));
+        this.connectionManager.setDefaultMaxPerRoute(blockingLimit(properties.getMaxPerRoute(), asyncShare));
+        this.connectionManager.setValidateAfterInactivity(properties.getValidateAfterInactivity());
+        for (Map.Entry<String, Integer> host : properties.getHosts().entrySet()) {
+            LOGGER.debug("Set MaxPerRoute[" + host.getKey() + "] = " + host.getValue());
+            this.connectionManager.setMaxPerRoute(route(host.getKey()), blockingLimit(host.getValue(), asyncShare));
+        }
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(this.connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy(properties.getKeepAlive()))
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getMaxIdle(), TimeUnit.MILLISECONDS)
+                .setDefaultRequestConfig(this.defaultRequestConfig)
+                .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(this.httpClient) {
+            @Override
+            protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+                /* Timeouts of the host */
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(requestConfig(uri.getHost(), null));
+                return context;
+            }
+        });
+
+        Registry<SchemeIOSessionStrategy> asyncRegistry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", new SSLIOSessionStrategy(sslContext))
+                .build();
+        try {
+            this.asyncConnectionManager = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT), asyncRegistry);
+        } catch (IOReactorException e) {
+            LOGGER.error("Cannot create the I/O reactor - Exception: " + e.getMessage(), e);
+            throw new IllegalStateException("Cannot create the I/O reactor.", e);
+        }
+        this.asyncConnectionManager.setMaxTotal(asyncLimit(properties.getMaxTotal(), asyncShare));
+        this.asyncConnectionManager.setDefaultMaxPerRoute(asyncLimit(properties.getMaxPerRoute(), asyncShare));
+        for (Map.Entry<String, Integer> host : properties.getHosts().entrySet()) {
+            this.asyncConnectionManager.setMaxPerRoute(route(host.getKey()), asyncLimit(host.getValue(), asyncShare));
+        }
+
+        this.asyncHttpClient = HttpAsyncClients.custom()
+                .setConnectionManager(this.asyncConnectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy(properties.getKeepAlive()))
+                .setDefaultRequestConfig(this.defaultRequestConfig)
+                .build();
+        this.asyncHttpClient.start();
+
+        /* The non-blocking pool does not validate its connections before reuse, evict the expired and idle ones as
+        often as the blocking pool would validate them, so that a connection is not leased long past its keep-alive */
+        long maxIdle = properties.getMaxIdle();
+        long evictPeriod = properties.getValidateAfterInactivity() > 0
+                ? Math.min(maxIdle, properties.getValidateAfterInactivity()) : maxIdle;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "songfinder-http-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            this.asyncConnectionManager.closeExpiredConnections();
+            this.asyncConnectionManager.closeIdleConnections(maxIdle, TimeUnit.MILLISECONDS);
+        }, evictPeriod, evictPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the process wide engine with the default configuration.
+     * Used by the code paths which are not managed by Spring.
+     *
+     * @return The default {@link HttpClientEngine}
+     */
+    public static HttpClientEngine getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Gets the RestTemplate running on the pooled HTTP client
+     *
+     * @return The shared {@link RestTemplate}
+     */
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    /**
+     * Gets the pooled HTTP client
+     *
+     * @return The shared {@link CloseableHttpClient}
+     */
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Gets the pooled non-blocking HTTP client
+     *
+     * @return The shared {@link CloseableHttpAsyncClient}
+     */
+    public CloseableHttpAsyncClient getAsyncHttpClient() {
+        return asyncHttpClient;
+    }
+
+    /**
+     * Gets the statistics of the whole connection pool
+     *
+     * @return The total {@link PoolStats}
+     */
+    public PoolStats getTotalStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Gets the statistics of the connection pool of the given https host
+     *
+     * @param host Name of the host
+     * @return The {@link PoolStats} of the host
+     */
+    public PoolStats getStats(String host) {
+        return connectionManager.getStats(route(host));
+    }
+
+    /**
+     * Gets the statistics of the whole non-blocking connection pool
+     *
+     * @return The total {@link PoolStats} of the non-blocking pool
+     */
+    public PoolStats getAsyncTotalStats() {
+        return asyncConnectionManager.getTotalStats();
+    }
+
+    /**
+     * Gets the statistics of the non-blocking connection pool of the given https host
+     *
+     * @param host Name of the host
+     * @return The {@link PoolStats} of the host in the non-blocking pool
+     */
+    public PoolStats getAsyncStats(String host) {
+        return asyncConnectionManager.getStats(route(host));
+    }
+
+    /**
+     * Gets the number of requests in flight, from the request until the response is read or closed
+     *
+     * @return The requests in flight over all hosts
+     */
+    public int getInFlight() {
+        return totalTraffic.inFlight.get();
+    }
+
+    /**
+     * Gets the number of requests in flight to the given host
+     *
+     * @param host Name of the host
+     * @return The requests in flight to the host
+     */
+    public int getInFlight(String host) {
+        Traffic traffic = hostTraffic.get(host);
+        return traffic == null ? 0 : traffic.inFlight.get();
+    }
+
+    /**
+     * Gets the number of response body bytes received
+     *
+     * @return The bytes received from all hosts
+     */
+    public long getReceivedBytes() {
+        return totalTraffic.receivedBytes.sum();
+    }
+
+    /**
+     * Gets the number of response body bytes received from the given host
+     *
+     * @param host Name of the host
+     * @return The bytes received from the host
+     */
+    public long getReceivedBytes(String host) {
+        Traffic traffic = hostTraffic.get(host);
+        return traffic == null ? 0 : traffic.receivedBytes.sum();
+    }
+
+    /**
+     * Gets the number of timeouts of the given kind
+     *
+     * @param kind The kind of timeout, one of {@link #TIMEOUT_KINDS}
+     * @return The timeouts over all hosts
+     */
+    public long getTimeouts(String kind) {
+        return totalTraffic.timeouts[TIMEOUT_KINDS.indexOf(kind)].sum();
+    }
+
+    /**
+     * Gets the number of timeouts of the given kind of the requests to the given host
+     *
+     * @param host Name of the host
+     * @param kind The kind of timeout, one of {@link #TIMEOUT_KINDS}
+     * @return The timeouts of the host
+     */
+    public long getTimeouts(String host, String kind) {
+        Traffic traffic = hostTraffic.get(host);
+        return traffic == null ? 0 : traffic.timeouts[TIMEOUT_KINDS.indexOf(kind)].sum();
+    }
+
+    /**
+     * Gets the timeouts of a request to the given host. With a deadline, each timeout is bounded by the time
+     * remaining, so that no wait outlives the deadline
+     *
+     * @param host Name of the host
+     * @param deadline Deadline of the request, optional
+     * @return The {@link RequestConfig} of the request
+     */
+    public RequestConfig requestConfig(String host, Deadline deadline) {
+        RequestConfig config = hostRequestConfigs.getOrDefault(host, defaultRequestConfig);
+        if (deadline == null) {
+            return config;
+        }
+        int remaining = (int) Math.min(Integer.MAX_VALUE, Math.max(1, deadline.remainingMillis()));
+        return RequestConfig.copy(config)
+                .setConnectTimeout(bound(config.getConnectTimeout(), remaining))
+                .setSocketTimeout(bound(config.getSocketTimeout(), remaining))
+                .setConnectionRequestTimeout(bound(config.getConnectionRequestTimeout(), remaining))
+                .build();
+    }
+
+    /**
+     * Gets the circuit breaker of the given host, created on its first request
+     *
+     * @param host Name of the host
+     * @return The {@link CircuitBreaker} of the host, <code>null</code> if the circuit breakers are disabled
+     */
+    public CircuitBreaker getCircuitBreaker(String host) {
+        if (!circuit.isEnabled()) {
+            return null;
+        }
+        String key = host == null ? "" : host;
+        CircuitBreaker breaker = circuitBreakers.get(key);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(key, circuit.getWindow(), circuit.getMinimumCalls(),
+                    circuit.getFailureRate(), circuit.getOpenDuration(), circuit.getHalfOpenCalls());
+            breaker = circuitBreakers.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /* Runs the task after the delay, on the thread of the engine, the task must not block */
+    ScheduledFuture<?> schedule(Runnable task, long delayNanos) {
+        return scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /* Counts a timeout of a request to the host */
+    void timedOut(String host, String kind) {
+        int index = TIMEOUT_KINDS.indexOf(kind);
+        totalTraffic.timeouts[index].increment();
+        traffic(host).timeouts[index].increment();
+    }
+
+    /* Counts a request to the host as in flight */
+    void requestStarted(String host) {
+        totalTraffic.inFlight.incrementAndGet();
+        traffic(host).inFlight.incrementAndGet();
+    }
+
+    /* Counts an in flight request to the host as finished */
+    void requestFinished(String host) {
+        totalTraffic.inFlight.decrementAndGet();
+        traffic(host).inFlight.decrementAndGet();
+    }
+
+    /* Counts response body bytes received from the host */
+    void bytesReceived(String host, long bytes) {
+        totalTraffic.receivedBytes.add(bytes);
+        traffic(host).receivedBytes.add(bytes);
+    }
+
+    /**
+     * Closes the HTTP clients and every pooled connection
+     *
+     * @throws IOException If the clients cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        LOGGER.debug("Closing HttpClientEngine.");
+        scheduler.shutdownNow();
+        try {
+            asyncHttpClient.close();
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    /* Bounds a timeout by the time remaining, a timeout of 0 or less waits forever */
+    private static int bound(int timeout, int remaining) {
+        return timeout <= 0 ? remaining : Math.min(timeout, remaining);
+    }
+
+    /* Pool route for the given https host */
+    private static HttpRoute route(String host) {
+        return new HttpRoute(new HttpHost(host, HTTPS_PORT, "https"), null, true);
+    }
+
+    /* Part of a connection limit given to the non-blocking pool, at least one connection */
+    private static int asyncLimit(int limit, int asyncShare) {
+        return Math.max(1, (int) ((long) limit * Math.max(0, Math.min(100, asyncShare)) / 100));
+    }
+
+    /* Part of a connection limit left to the blocking pool, at least one connection */
+    private static int blockingLimit(int limit, int asyncShare) {
+        return Math.max(1, limit - asyncLimit(limit, asyncShare));
+    }
+
+    /* Honors the Keep-Alive header of the response, falls back to the given duration */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(long keepAlive) {
+        return (HttpResponse response, HttpContext context) -> {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Long.parseLong(element.getValue()) * 1000;
+                    } catch (NumberFormatException ignored) {
+                        /* Malformed header, use the default */
+                    }
+                }
+            }
+            return keepAlive;
+        };
+    }
+
+    /* Traffic of a host, created on its first request */
+    private Traffic traffic(String host) {
+        String key = host == null ? "" : host;
+        Traffic traffic = hostTraffic.get(key);
+        if (traffic == null) {
+            Traffic created = new Traffic();
+            traffic = hostTraffic.putIfAbsent(key, created);
+            if (traffic == null) {
+                traffic = created;
+            }
+        }
+        return traffic;
+    }
+
+    /* Requests in flight, bytes received and timeouts by kind */
+    private static class Traffic {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder receivedBytes = new LongAdder();
+        private final LongAdder[] timeouts = new LongAdder[TIMEOUT_KINDS.size()];
+
+        private Traffic() {
+            for (int i = 0; i < timeouts.length; i++) {
+                timeouts[i] = new LongAdder();
+            }
+        }
+    }
+
+    /* Lazily created default engine */
+    private static class DefaultHolder {
+        private static final HttpClientEngine INSTANCE = new HttpClientEngine(new HttpClientProperties());
+    }
+}
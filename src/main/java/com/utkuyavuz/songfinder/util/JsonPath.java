@@ -0,0 +1,328 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled path to a JsonPrimitive of a Json document, e.g. <code>tracks.items[0].preview_url</code>.
+ * The path is parsed once by {@link #compile(String)}, it is immutable and can be shared by any number of threads.
+ * <br/> {@link #read(InputStream)} streams the document like {@link GsonStreamUtils}: it skips the values which are
+ * not on the path and stops once the JsonPrimitive is read. Each segment knows beforehand the type of the value it
+ * leads to, so the walk does not allocate, log or build messages per segment. Only a failing segment is reported,
+ * with the same error message as the one of the matching {@link GsonUtils} step.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class JsonPath {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonPath.class);
+
+    /* The index standing for [*] in a parsed expression */
+    static final Integer WILDCARD = -1;
+
+    /* The path expression */
+    private final String expression;
+    /* The segments of the path, in order */
+    private final Segment[] segments;
+
+    private JsonPath(String expression, Segment[] segments) {
+        this.expression = expression;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles a path expression made of keys separated by dots, each followed by any number of array indexes,
+     * e.g. <code>tracks.items[0].preview_url</code> or <code>[2].name</code>
+     *
+     * @param expression The path expression
+     * @return The compiled {@link JsonPath}
+     * @throws IllegalArgumentException If the expression is not a valid path
+     */
+    public static JsonPath compile(String expression) {
+        return compile(expression, Kind.PRIMITIVE);
+    }
+
+    /* Compiles a path expression to a JsonArray, see JsonProjection */
+    static JsonPath compileArray(String expression) {
+        return compile(expression, Kind.ARRAY);
+    }
+
+    /* Compiles a path expression to a value of the given type */
+    private static JsonPath compile(String expression, Kind last) {
+        List<Object> parsed = parse(expression, false);
+
+        /* Each segment leads to an object or an array if a key or an index follows, else to the last type */
+        Segment[] segments = new Segment[parsed.size()];
+        for (int i = 0; i < segments.length; i++) {
+            Object next = i + 1 < segments.length ? parsed.get(i + 1) : null;
+            Kind kind = next == null ? last : next instanceof String ? Kind.OBJECT : Kind.ARRAY;
+            Object segment = parsed.get(i);
+            segments[i] = segment instanceof String ? new Segment((String) segment, -1, kind)
+                    : new Segment(null, (Integer) segment, kind);
+        }
+        return new JsonPath(expression, segments);
+    }
+
+    /* Parses a path expression into its keys and indexes, WILDCARD stands for [*] if it is allowed */
+    static List<Object> parse(String expression, boolean wildcard) {
+        if (expression == null || expression.isEmpty()) {
+            throw new IllegalArgumentException("Json path cannot be empty.");
+        }
+        List<Object> parsed = new ArrayList<>();
+        int position = 0;
+        int length = expression.length();
+        while (true) {
+            if (expression.charAt(position) == '[') {
+                int end = expression.indexOf(']', position);
+                if (end < 0) {
+                    throw invalid(expression, "unclosed index at " + position);
+                }
+                if (wildcard && end == position + 2 && expression.charAt(position + 1) == '*') {
+                    parsed.add(WILDCARD);
+                } else {
+                    parsed.add(parseIndex(expression, position + 1, end));
+                }
+                position = end + 1;
+            } else {
+                int end = position;
+                while (end < length && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    if (expression.charAt(end) == ']') {
+                        throw invalid(expression, "unopened index at " + end);
+                    }
+                    end++;
+                }
+                if (end == position) {
+                    throw invalid(expression, "empty key at " + position);
+                }
+                parsed.add(expression.substring(position, end));
+                position = end;
+            }
+            /* A segment is followed by an index, or by a dot and a key */
+            if (position == length) {
+                return parsed;
+            } else if (expression.charAt(position) == '.') {
+                position++;
+                if (position == length || expression.charAt(position) == '[') {
+                    throw invalid(expression, "empty key at " + position);
+                }
+            } else if (expression.charAt(position) != '[') {
+                throw invalid(expression, "unexpected character at " + position);
+            }
+        }
+    }
+
+    /**
+     * Reads the JsonPrimitive at the path from the bytes of a UTF-8 Json document
+     *
+     * @param json Json document as <code>byte[]</code>
+     * @return The {@link Result} of the read
+     */
+    public Result read(byte[] json) {
+        return read(new ByteArrayInputStream(json));
+    }
+
+    /**
+     * Reads the JsonPrimitive at the path from a UTF-8 Json document, reading the document only up to it
+     *
+     * @param json Json document as {@link InputStream}, not closed
+     * @return The {@link Result} of the read
+     */
+    public Result read(InputStream json) {
+        JsonReader reader = GsonStreamUtils.newReader(json);
+        try {
+            String errorMessage = open(reader);
+            if (errorMessage != null) {
+                return new Result(null, errorMessage);
+            }
+            return new Result(GsonStreamUtils.nextPrimitive(reader), null);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Cannot parse input as a JsonElement - Exception: " + e.getMessage());
+            return new Result(null, "Cannot parse input as a JsonElement - Exception: " + e.getMessage());
+        }
+    }
+
+    /* Moves the reader of a whole document to the value at the path, returns the error message if there is none */
+    String open(JsonReader reader) throws IOException {
+        JsonToken token;
+        try {
+            token = reader.peek();
+        } catch (EOFException e) {
+            /* An empty document, parsed as JsonNull like JsonParser does */
+            token = JsonToken.NULL;
+        }
+        if (!segments[0].isInside(token)) {
+            return fail(null, segments[0].isKey() ? "Current item is not a JsonObject."
+                    : "Current item is not a JsonArray.");
+        }
+        for (Segment segment : segments) {
+            if (segment.isKey()) {
+                reader.beginObject();
+                if (!GsonStreamUtils.nextValue(reader, segment.key) || !segment.accepts(reader.peek())) {
+                    return fail(segment, "Key[" + segment.key + "] does not exists or resulting item is not a "
+                            + segment.kind.typeName + ".");
+                }
+            } else {
+                reader.beginArray();
+                int size = GsonStreamUtils.skipElements(reader, segment.index);
+                if (size <= segment.index) {
+                    return fail(segment, "IndexOutOfBounds - Idx[" + segment.index + "] and JsonArray has size["
+                            + size + "].");
+                }
+                if (!segment.accepts(reader.peek())) {
+                    return fail(segment, "Object at index[" + segment.index + "] is not a "
+                            + segment.kind.typeName + ".");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the path expression
+     *
+     * @return The path expression
+     */
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /* Logs the failed read of a segment, null for the document itself, and returns its error message */
+    private String fail(Segment segment, String errorMessage) {
+        LOGGER.error("Cannot read Json path[" + expression + "] at segment[" + (segment == null ? "$" : segment)
+                + "] - " + errorMessage);
+        return errorMessage;
+    }
+
+    /* Parses the index between the given positions */
+    private static int parseIndex(String expression, int start, int end) {
+        if (start == end) {
+            throw invalid(expression, "empty index at " + start);
+        }
+        int index = 0;
+        for (int i = start; i < end; i++) {
+            char c = expression.charAt(i);
+            if (c < '0' || c > '9' || index > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                throw invalid(expression, "invalid index at " + start);
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    /* The exception of an invalid expression */
+    private static IllegalArgumentException invalid(String expression, String reason) {
+        return new IllegalArgumentException("Invalid Json path[" + expression + "] - " + reason + ".");
+    }
+
+    /* Type of the value a segment leads to */
+    private enum Kind {
+        OBJECT("JsonObject"), ARRAY("JsonArray"), PRIMITIVE("JsonPrimitive");
+
+        /* Name of the type in error messages */
+        private final String typeName;
+
+        Kind(String typeName) {
+            this.typeName = typeName;
+        }
+    }
+
+    /* A key or an index of the path */
+    private static final class Segment {
+
+        /* The key, null for an index */
+        private final String key;
+        /* The index, -1 for a key */
+        private final int index;
+        /* Type of the value the segment leads to */
+        private final Kind kind;
+
+        Segment(String key, int index, Kind kind) {
+            this.key = key;
+            this.index = index;
+            this.kind = kind;
+        }
+
+        boolean isKey() {
+            return key != null;
+        }
+
+        /* Whether the token starts the value the segment is read from */
+        boolean isInside(JsonToken token) {
+            return token == (isKey() ? JsonToken.BEGIN_OBJECT : JsonToken.BEGIN_ARRAY);
+        }
+
+        /* Whether the token starts the value the segment leads to */
+        boolean accepts(JsonToken token) {
+            switch (kind) {
+                case OBJECT:
+                    return token == JsonToken.BEGIN_OBJECT;
+                case ARRAY:
+                    return token == JsonToken.BEGIN_ARRAY;
+                default:
+                    return GsonStreamUtils.isPrimitive(token);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return isKey() ? key : "[" + index + "]";
+        }
+    }
+
+    /**
+     * The result of a read: the JsonPrimitive at the path, or the error of the failing segment.
+     */
+    public static final class Result {
+
+        /* The JsonPrimitive at the path */
+        private final JsonPrimitive value;
+        /* Error message */
+        private final String errorMessage;
+
+        private Result(JsonPrimitive value, String errorMessage) {
+            this.value = value;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * Check whether the path is read or not.
+         *
+         * @return Returns <code>true</code> if the JsonPrimitive is read, else <code>false</code>
+         */
+        public boolean isSuccess() {
+            return value != null;
+        }
+
+        /**
+         * Gets the JsonPrimitive at the path
+         *
+         * @return The JsonPrimitive, <code>null</code> if the read failed
+         */
+        public JsonPrimitive getValue() {
+            return value;
+        }
+
+        /**
+         * Gets the error message
+         *
+         * @return The error message, <code>null</code> if the read succeeded
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+}
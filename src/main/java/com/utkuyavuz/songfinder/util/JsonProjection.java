@@ -0,0 +1,324 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled projection of the elements of a JsonArray onto a declared set of fields, e.g. the id, name and artist
+ * names <code>id</code>, <code>name</code> and <code>artists[*].name</code> of each of <code>tracks.items</code>.
+ * <br/> The fields are compiled once into a tree of keys and indexes, so that {@link #read(InputStream)} fills all of
+ * them in a single streaming pass over each element, in whatever order they appear in the document, and skips any
+ * value which leads to none of them. A field with a <code>[*]</code> index collects the values of all the elements
+ * of that array. Like {@link JsonPath}, a projection is immutable and can be shared by any number of threads.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class JsonProjection {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonProjection.class);
+
+    /* Path to the projected JsonArray */
+    private final JsonPath items;
+    /* Tree of the fields of an element */
+    private final Node root;
+    /* Number of fields */
+    private final int fieldCount;
+
+    private JsonProjection(JsonPath items, Node root, int fieldCount) {
+        this.items = items;
+        this.root = root;
+        this.fieldCount = fieldCount;
+    }
+
+    /**
+     * Compiles a projection of the elements of a JsonArray, see {@link JsonPath#compile(String)} for the expressions
+     *
+     * @param itemsPath Path to the JsonArray whose elements are projected
+     * @param fields Paths of the fields, relative to an element and possibly with <code>[*]</code> indexes.
+     *               A field is identified in a {@link Row} by its position in this list.
+     * @return The compiled {@link JsonProjection}
+     * @throws IllegalArgumentException If a path is not valid, or two fields overlap
+     */
+    public static JsonProjection compile(String itemsPath, String... fields) {
+        Node root = new Node();
+        for (int field = 0; field < fields.length; field++) {
+            Node node = root;
+            boolean multiple = false;
+            for (Object segment : JsonPath.parse(fields[field], true)) {
+                if (node.field >= 0) {
+                    throw overlap(fields, field, node.field);
+                }
+                if (segment instanceof String) {
+                    if (node.keys == null) {
+                        node.keys = new HashMap<>();
+                    }
+                    node = node.keys.computeIfAbsent((String) segment, key -> new Node());
+                } else if (JsonPath.WILDCARD.equals(segment)) {
+                    if (node.indexes != null) {
+                        throw invalid(fields[field], "an array cannot be read by both index and [*]");
+                    }
+                    if (node.wildcard == null) {
+                        node.wildcard = new Node();
+                    }
+                    node = node.wildcard;
+                    multiple = true;
+                } else {
+                    if (node.wildcard != null) {
+                        throw invalid(fields[field], "an array cannot be read by both index and [*]");
+                    }
+                    if (node.indexes == null) {
+                        node.indexes = new HashMap<>();
+                    }
+                    node = node.indexes.computeIfAbsent((Integer) segment, index -> new Node());
+                }
+            }
+            if (node.field >= 0) {
+                throw overlap(fields, field, node.field);
+            }
+            if (node.keys != null || node.indexes != null || node.wildcard != null) {
+                throw invalid(fields[field], "it leads to another field");
+            }
+            node.field = field;
+            node.multiple = multiple;
+        }
+        return new JsonProjection(JsonPath.compileArray(itemsPath), root, fields.length);
+    }
+
+    /**
+     * Projects the elements from the bytes of a UTF-8 Json document
+     *
+     * @param json Json document as <code>byte[]</code>
+     * @return The {@link Result} of the projection
+     */
+    public Result read(byte[] json) {
+        return read(new ByteArrayInputStream(json));
+    }
+
+    /**
+     * Projects the elements from a UTF-8 Json document, reading the document only up to the end of the JsonArray
+     *
+     * @param json Json document as {@link InputStream}, not closed
+     * @return The {@link Result} of the projection
+     */
+    public Result read(InputStream json) {
+        JsonReader reader = GsonStreamUtils.newReader(json);
+        try {
+            String errorMessage = items.open(reader);
+            if (errorMessage != null) {
+                return new Result(null, errorMessage);
+            }
+            List<Row> rows = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Row row = new Row(new Object[fieldCount], reader.peek() == JsonToken.BEGIN_OBJECT);
+                readNode(reader, root, row);
+                rows.add(row);
+            }
+            reader.endArray();
+            return new Result(rows, null);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Cannot parse input as a JsonElement - Exception: " + e.getMessage());
+            return new Result(null, "Cannot parse input as a JsonElement - Exception: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the path to the projected JsonArray
+     *
+     * @return The path expression
+     */
+    @Override
+    public String toString() {
+        return items.toString();
+    }
+
+    /* Reads the value the reader is positioned at into the fields of the node, skips it if it leads to none */
+    private static void readNode(JsonReader reader, Node node, Row row) throws IOException {
+        JsonToken token = reader.peek();
+        if (node.field >= 0) {
+            if (GsonStreamUtils.isPrimitive(token)) {
+                row.add(node.field, node.multiple, GsonStreamUtils.nextPrimitive(reader));
+            } else {
+                reader.skipValue();
+            }
+        } else if (token == JsonToken.BEGIN_OBJECT && node.keys != null) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                Node child = node.keys.get(reader.nextName());
+                if (child == null) {
+                    reader.skipValue();
+                } else {
+                    readNode(reader, child, row);
+                }
+            }
+            reader.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY && (node.wildcard != null || node.indexes != null)) {
+            reader.beginArray();
+            for (int index = 0; reader.hasNext(); index++) {
+                Node child = node.wildcard != null ? node.wildcard : node.indexes.get(index);
+                if (child == null) {
+                    reader.skipValue();
+                } else {
+                    readNode(reader, child, row);
+                }
+            }
+            reader.endArray();
+        } else {
+            reader.skipValue();
+        }
+    }
+
+    /* The exception of two overlapping fields */
+    private static IllegalArgumentException overlap(String[] fields, int field, int other) {
+        return invalid(fields[field], "it overlaps field[" + fields[other] + "]");
+    }
+
+    /* The exception of an invalid field */
+    private static IllegalArgumentException invalid(String field, String reason) {
+        return new IllegalArgumentException("Invalid Json projection field[" + field + "] - " + reason + ".");
+    }
+
+    /* A key, an index or [*] of the fields, or a field itself */
+    private static final class Node {
+
+        /* Children by key */
+        private Map<String, Node> keys;
+        /* Children by index */
+        private Map<Integer, Node> indexes;
+        /* Child of all the indexes */
+        private Node wildcard;
+        /* The field of a leaf, -1 otherwise */
+        private int field = -1;
+        /* Whether the field collects many values */
+        private boolean multiple;
+    }
+
+    /**
+     * The projected fields of an element of the JsonArray
+     */
+    public static final class Row {
+
+        /* Values by field, a JsonPrimitive or a List of them for a field with [*] */
+        private final Object[] values;
+        /* Whether the element is a JsonObject */
+        private final boolean object;
+
+        private Row(Object[] values, boolean object) {
+            this.values = values;
+            this.object = object;
+        }
+
+        /**
+         * Check whether the element is a JsonObject
+         *
+         * @return Returns <code>true</code> if the element is a JsonObject, else <code>false</code>
+         */
+        public boolean isObject() {
+            return object;
+        }
+
+        /**
+         * Gets the value of a field, the first value of a field with <code>[*]</code>
+         *
+         * @param field Position of the field
+         * @return The JsonPrimitive, <code>null</code> if the field is missing or not a JsonPrimitive
+         */
+        @SuppressWarnings("unchecked")
+        public JsonPrimitive get(int field) {
+            Object value = values[field];
+            if (value instanceof List) {
+                return ((List<JsonPrimitive>) value).get(0);
+            }
+            return (JsonPrimitive) value;
+        }
+
+        /**
+         * Gets all the values of a field
+         *
+         * @param field Position of the field
+         * @return The JsonPrimitives in document order, empty if there are none
+         */
+        @SuppressWarnings("unchecked")
+        public List<JsonPrimitive> getAll(int field) {
+            Object value = values[field];
+            if (value == null) {
+                return Collections.emptyList();
+            } else if (value instanceof List) {
+                return Collections.unmodifiableList((List<JsonPrimitive>) value);
+            }
+            return Collections.singletonList((JsonPrimitive) value);
+        }
+
+        /* Sets the value of a field, or adds it to the values of a field with [*] */
+        @SuppressWarnings("unchecked")
+        private void add(int field, boolean multiple, JsonPrimitive value) {
+            if (!multiple) {
+                values[field] = value;
+            } else if (values[field] == null) {
+                List<JsonPrimitive> list = new ArrayList<>(2);
+                list.add(value);
+                values[field] = list;
+            } else {
+                ((List<JsonPrimitive>) values[field]).add(value);
+            }
+        }
+    }
+
+    /**
+     * The result of a projection: a {@link Row} per element of the JsonArray, or the error of the path to it.
+     */
+    public static final class Result {
+
+        /* The rows */
+        private final List<Row> rows;
+        /* Error message */
+        private final String errorMessage;
+
+        private Result(List<Row> rows, String errorMessage) {
+            this.rows = rows;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * Check whether the elements are projected or not.
+         *
+         * @return Returns <code>true</code> if the JsonArray is read, else <code>false</code>
+         */
+        public boolean isSuccess() {
+            return rows != null;
+        }
+
+        /**
+         * Gets the rows
+         *
+         * @return A {@link Row} per element in document order, <code>null</code> if the read failed
+         */
+        public List<Row> getRows() {
+            return rows;
+        }
+
+        /**
+         * Gets the error message
+         *
+         * @return The error message, <code>null</code> if the read succeeded
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+}
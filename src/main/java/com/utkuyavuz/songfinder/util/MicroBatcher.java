@@ -0,0 +1,338 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Batches the keys loaded concurrently into one call, like a DataLoader. The first key of a group opens a batch,
+ * the keys of the group loaded within the batch window join it, and the batch is loaded with a single call once the
+ * window is over or the batch is full. The result of the call is fanned out to each caller by key, a key loaded
+ * twice in a batch is sent once.
+ * <br/> The keys of different groups, e.g. different access tokens, are never batched together. No thread waits for
+ * the window, the batches are loaded on the timer of the {@link HttpClientEngine}, or on the thread of the caller
+ * which fills them.
+ * <br/> Every caller receives its own dependent future, so cancelling one does not affect the others. Once every
+ * caller of a batch has cancelled its future, the call of the batch is cancelled too, e.g. to abort its upstream
+ * request, or not made at all if the batch has not been sent yet.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the results
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class MicroBatcher<K, V> {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MicroBatcher.class);
+
+    /* Name of the batched operation */
+    private final String name;
+    /* Batch window in nanoseconds, 0 loads each key on its own */
+    private final long windowNanos;
+    /* Largest number of keys of a batch */
+    private final int maxSize;
+    /* Engine which runs the batch timers */
+    private final HttpClientEngine engine;
+    /* Open batches by group */
+    private final ConcurrentMap<String, Batch> open = new ConcurrentHashMap<>();
+    /* Number of keys loaded */
+    private final LongAdder loadCount = new LongAdder();
+    /* Number of batches loaded */
+    private final LongAdder batchCount = new LongAdder();
+    /* Number of distinct keys sent in the batches */
+    private final LongAdder keyCount = new LongAdder();
+    /* Number of batches cancelled as every caller cancelled */
+    private final LongAdder cancelledCount = new LongAdder();
+
+    /**
+     * Initialize the micro batcher
+     *
+     * @param name Name of the batched operation, e.g. for metrics
+     * @param window Batch window in milliseconds, 0 loads each key on its own
+     * @param maxSize Largest number of keys of a batch
+     * @param engine The HTTP client engine whose timer closes the batches
+     */
+    public MicroBatcher(String name, long window, int maxSize, HttpClientEngine engine) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.windowNanos = this.maxSize > 1 ? TimeUnit.MILLISECONDS.toNanos(Math.max(0, window)) : 0;
+        this.engine = engine;
+    }
+
+    /**
+     * Loads a key in the open batch of its group, opening one if there is none
+     *
+     * @param group The group of the key, only the keys of the same group are batched together
+     * @param key The key to load
+     * @param deadline Deadline of the caller, optional. A batch is loaded within the latest deadline of its callers
+     * @param loader Loads a batch of the group, called once for each batch. The callers of a group must pass
+     *               equivalent loaders, the one of the caller which opens a batch loads it
+     * @return A future completed with the result of the key, <code>null</code> if the call left it out. Cancelling
+     * it cancels the call of the batch once every caller of the batch has cancelled
+     */
+    public CompletableFuture<V> load(String group, K key, Deadline deadline, Loader<K, V> loader) {
+        loadCount.increment();
+        if (windowNanos == 0) {
+            Batch batch = new Batch(group, loader);
+            CompletableFuture<V> future = batch.add(key, deadline);
+            batch.closed = true;
+            batch.send();
+            return batch.follow(future);
+        }
+
+        while (true) {
+            Batch batch = open.computeIfAbsent(group, created -> new Batch(group, loader));
+            CompletableFuture<V> future;
+            boolean full;
+            synchronized (batch) {
+                if (batch.closed) {
+                    /* Closed while the key was being added, open a new one */
+                    continue;
+                }
+                future = batch.add(key, deadline);
+                full = batch.entries.size() >= maxSize;
+                if (full) {
+                    close(batch);
+                } else if (batch.timer == null) {
+                    batch.timer = engine.schedule(() -> onWindow(batch), windowNanos);
+                }
+            }
+            if (full) {
+                batch.send();
+            }
+            return batch.follow(future);
+        }
+    }
+
+    /**
+     * Gets the name of the batched operation
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of keys loaded
+     *
+     * @return The load count
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * Gets the number of batches loaded
+     *
+     * @return The batch count
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * Gets the number of distinct keys sent in the batches, less than the loaded keys when a key is loaded twice
+     * in a batch
+     *
+     * @return The key count
+     */
+    public long getKeyCount() {
+        return keyCount.sum();
+    }
+
+    /**
+     * Gets the number of batches cancelled, or not sent, as every one of their callers cancelled
+     *
+     * @return The cancelled count
+     */
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    /**
+     * Gets the number of open batches
+     *
+     * @return The open batch count
+     */
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    /* Sends the batch once its window is over, unless it filled up before */
+    private void onWindow(Batch batch) {
+        synchronized (batch) {
+            if (batch.closed) {
+                return;
+            }
+            close(batch);
+        }
+        batch.send();
+    }
+
+    /* Closes the batch to new keys, called holding its lock */
+    private void close(Batch batch) {
+        batch.closed = true;
+        open.remove(batch.group, batch);
+        if (batch.timer != null) {
+            batch.timer.cancel(false);
+        }
+    }
+
+    /**
+     * Loads a batch of keys
+     *
+     * @param <K> Type of the keys
+     * @param <V> Type of the results
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+
+        /**
+         * Loads a batch of keys of a group
+         *
+         * @param group The group of the keys
+         * @param keys The distinct keys, in the order they were first loaded
+         * @param deadline The latest deadline of the callers, <code>null</code> if one of them has none
+         * @return A future completed with the results by key
+         */
+        CompletableFuture<Map<K, V>> load(String group, List<K> keys, Deadline deadline);
+    }
+
+    /* The keys of a group loaded within a window */
+    private class Batch {
+
+        /* Group of the keys */
+        private final String group;
+        /* Loads the batch */
+        private final Loader<K, V> loader;
+        /* Callers by key, in the order the keys were first loaded */
+        private final Map<K, CompletableFuture<V>> entries = new LinkedHashMap<>();
+        /* Latest deadline of the callers */
+        private Deadline deadline;
+        /* Whether a caller has no deadline */
+        private boolean unbounded;
+        /* Number of callers which have not cancelled */
+        private int callers;
+        /* Whether every caller has cancelled, the batch is not sent or its call is cancelled */
+        private boolean abandoned;
+        /* The call, once the batch is sent */
+        private CompletableFuture<Map<K, V>> call;
+        /* Whether the batch takes no more keys */
+        private volatile boolean closed;
+        /* Timer of the window */
+        private ScheduledFuture<?> timer;
+
+        private Batch(String group, Loader<K, V> loader) {
+            this.group = group;
+            this.loader = loader;
+        }
+
+        /* Adds a caller of the key, called holding the lock of the batch */
+        private CompletableFuture<V> add(K key, Deadline callerDeadline) {
+            if (callerDeadline == null) {
+                unbounded = true;
+            } else if (deadline == null || callerDeadline.remainingNanos() > deadline.remainingNanos()) {
+                deadline = callerDeadline;
+            }
+            callers++;
+            return entries.computeIfAbsent(key, created -> new CompletableFuture<>());
+        }
+
+        /* The dependent future of a caller added to the batch, which detaches the caller once cancelled */
+        private CompletableFuture<V> follow(CompletableFuture<V> entry) {
+            CompletableFuture<V> follower = entry.thenApply(Function.identity());
+            follower.whenComplete((value, throwable) -> {
+                if (follower.isCancelled()) {
+                    unfollow();
+                }
+            });
+            return follower;
+        }
+
+        /* Detaches a caller which has cancelled, and cancels the call once no caller of the closed batch is left */
+        private void unfollow() {
+            CompletableFuture<Map<K, V>> cancelled;
+            synchronized (this) {
+                if (--callers > 0 || !closed || abandoned || (call != null && call.isDone())) {
+                    /* An open batch may still be joined, it is dropped when sent if nobody joins it */
+                    return;
+                }
+                abandoned = true;
+                cancelled = call;
+            }
+            if (cancelled != null) {
+                cancel(cancelled);
+            }
+        }
+
+        /* Cancels the call of a batch which every caller has cancelled */
+        private void cancel(CompletableFuture<Map<K, V>> cancelled) {
+            cancelledCount.increment();
+            LOGGER.debug("MicroBatcher[" + name + "] cancelled Batch[" + entries.size() + "], every caller cancelled");
+            cancelled.cancel(true);
+        }
+
+        /* Loads the batch and fans its result out, outside of any request trace */
+        private void send() {
+            List<K> keys;
+            synchronized (this) {
+                if (callers == 0) {
+                    /* Every caller has cancelled while the batch was open */
+                    abandoned = true;
+                    cancelledCount.increment();
+                    LOGGER.debug("MicroBatcher[" + name + "] dropped Batch[" + entries.size() + "], every caller "
+                            + "cancelled");
+                    return;
+                }
+                keys = Collections.unmodifiableList(new ArrayList<>(entries.keySet()));
+            }
+            batchCount.increment();
+            keyCount.add(keys.size());
+            LOGGER.debug("MicroBatcher[" + name + "] loading Batch[" + keys.size() + "]");
+            RequestTrace previous = RequestTrace.attach(null);
+            try {
+                CompletableFuture<Map<K, V>> started = loader.load(group, keys, unbounded ? null : deadline);
+                boolean cancel;
+                synchronized (this) {
+                    call = started;
+                    /* Every caller cancelled while the call was being started */
+                    cancel = abandoned;
+                }
+                if (cancel) {
+                    cancel(started);
+                }
+                started.whenComplete(this::complete);
+            } catch (RuntimeException e) {
+                complete(null, e);
+            } finally {
+                RequestTrace.restore(previous);
+            }
+        }
+
+        /* Completes the callers with their results */
+        private void complete(Map<K, V> results, Throwable throwable) {
+            for (Map.Entry<K, CompletableFuture<V>> entry : entries.entrySet()) {
+                if (throwable != null) {
+                    entry.getValue().completeExceptionally(throwable);
+                } else {
+                    entry.getValue().complete(results == null ? null : results.get(entry.getKey()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.utkuyavuz.songfinder.configuration.PrefetchProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads the keys which are likely to be requested soon in the background, e.g. warms the preview cache with the
+ * audio of a preview url as soon as it is resolved, so that the request which follows is a cache hit.
+ * <br/> The prefetches are low priority: at most <code>max-concurrent</code> of them are in flight, and they wait
+ * in a bounded queue, the oldest one dropped when it is full, while the clients have <code>yield-in-flight</code>
+ * upstream requests in flight or the prefetched bytes which have not been requested yet reach
+ * <code>max-bytes</code>. A prefetch in flight is not interrupted, it is bounded by the entry limit of the caches.
+ * <br/> A prefetched key which is requested within <code>ttl</code> is a hit, one which is not is wasted, so that
+ * the hit ratio tells whether the prefetch pays off. A key requested before its prefetch is started is dropped
+ * from the queue, the request loads it anyway.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class Prefetcher {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Prefetcher.class);
+
+    /* Time after which the waiting prefetches check again whether they may start */
+    private static final long YIELD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /* Name of the prefetched operation, for the meters */
+    private final String name;
+    /* Prefetch is enabled, otherwise the keys are not loaded */
+    private final boolean enabled;
+    /* Largest number of prefetches in flight */
+    private final int maxConcurrent;
+    /* Largest number of prefetches waiting to be started */
+    private final int maxQueue;
+    /* Largest number of prefetched bytes which have not been requested yet */
+    private final long maxBytes;
+    /* Number of upstream requests of the clients in flight at which the prefetches wait */
+    private final int yieldInFlight;
+    /* Engine whose traffic the prefetches yield to, and whose timer starts them again */
+    private final HttpClientEngine engine;
+
+    /* Prefetches waiting to be started, oldest first */
+    private final Map<String, Loader> queue = new LinkedHashMap<>();
+    /* Prefetches in flight, and whether their key has been requested meanwhile */
+    private final Map<String, Boolean> active = new HashMap<>();
+    /* Prefetched bytes by key until the key is requested or the entry expires */
+    private final Cache<String, Long> prefetched;
+    /* Prefetched bytes which have not been requested yet */
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    /* Timer which starts the waiting prefetches again */
+    private ScheduledFuture<?> retry;
+
+    /* Number of prefetches accepted */
+    private final LongAdder submittedCount = new LongAdder();
+    /* Number of prefetches which loaded something */
+    private final LongAdder prefetchedCount = new LongAdder();
+    /* Number of bytes prefetched */
+    private final LongAdder prefetchedBytes = new LongAdder();
+    /* Number of prefetched keys requested */
+    private final LongAdder hitCount = new LongAdder();
+    /* Number of prefetched keys expired without being requested */
+    private final LongAdder wastedCount = new LongAdder();
+    /* Number of prefetches dropped, failed or with nothing to load */
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * Initialize the prefetcher
+     *
+     * @param name Name of the prefetched operation, for the meters
+     * @param properties Prefetch configuration
+     * @param engine The HTTP client engine whose traffic the prefetches yield to
+     */
+    public Prefetcher(String name, PrefetchProperties properties, HttpClientEngine engine) {
+        this.name = name;
+        this.enabled = properties.isEnabled();
+        this.maxConcurrent = Math.max(1, properties.getMaxConcurrent());
+        this.maxQueue = Math.max(1, properties.getMaxQueue());
+        this.maxBytes = properties.getMaxBytes();
+        this.yieldInFlight = Math.max(1, properties.getYieldInFlight());
+        this.engine = engine;
+        this.prefetched = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl(), TimeUnit.MILLISECONDS)
+                .executor(Runnable::run)
+                .<String, Long>removalListener((key, bytes, cause) -> {
+                    if (cause.wasEvicted() && bytes != null) {
+                        LOGGER.debug("Prefetcher[" + name + "] wasted Key[" + key + "]");
+                        wastedCount.increment();
+                        outstandingBytes.addAndGet(-bytes);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Queues the prefetch of a key, unless it is queued, in flight or prefetched already
+     *
+     * @param key The key to prefetch
+     * @param loader Loads the key in the background
+     * @return <code>true</code> if the prefetch is queued
+     */
+    public boolean submit(String key, Loader loader) {
+        if (!enabled) {
+            return false;
+        }
+        synchronized (this) {
+            if (queue.containsKey(key) || active.containsKey(key) || prefetched.getIfPresent(key) != null) {
+                return false;
+            }
+            if (queue.size() >= maxQueue) {
+                /* The oldest prefetch is the least likely to be requested before it would be loaded */
+                Iterator<String> oldest = queue.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+                droppedCount.increment();
+            }
+            queue.put(key, loader);
+            submittedCount.increment();
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Records a request of a key, a hit if the key has been prefetched
+     *
+     * @param key The requested key
+     */
+    public void onRequested(String key) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            Long bytes = prefetched.asMap().remove(key);
+            if (bytes != null) {
+                LOGGER.debug("Prefetcher[" + name + "] hit - Key[" + key + "]");
+                hitCount.increment();
+                outstandingBytes.addAndGet(-bytes);
+            } else if (active.containsKey(key)) {
+                /* Counted once the prefetch completes */
+                active.put(key, Boolean.TRUE);
+            } else if (queue.remove(key) != null) {
+                droppedCount.increment();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the prefetch is enabled
+     *
+     * @return Returns <code>true</code> if enabled, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the name of the prefetched operation
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of prefetches accepted
+     *
+     * @return The submitted count
+     */
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    /**
+     * Gets the number of prefetches which loaded something
+     *
+     * @return The prefetched count
+     */
+    public long getPrefetchedCount() {
+        return prefetchedCount.sum();
+    }
+
+    /**
+     * Gets the number of bytes prefetched
+     *
+     * @return The prefetched bytes
+     */
+    public long getPrefetchedBytes() {
+        return prefetchedBytes.sum();
+    }
+
+    /**
+     * Gets the number of prefetched keys which were requested
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of prefetched keys which expired without being requested
+     *
+     * @return The wasted count
+     */
+    public long getWastedCount() {
+        prefetched.cleanUp();
+        return wastedCount.sum();
+    }
+
+    /**
+     * Gets the number of prefetches dropped from the queue, failed or with nothing to load
+     *
+     * @return The dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Gets the ratio of the prefetched keys which were requested, over the ones which were requested or expired
+     *
+     * @return The hit ratio, <code>0</code> before any prefetched key is requested or expires
+     */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getWastedCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Gets the number of prefetches waiting to be started
+     *
+     * @return The queued count
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of prefetches in flight
+     *
+     * @return The active count
+     */
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * Gets the prefetched bytes which have not been requested yet
+     *
+     * @return The outstanding bytes
+     */
+    public long getOutstandingBytes() {
+        prefetched.cleanUp();
+        return outstandingBytes.get();
+    }
+
+    /* Starts the queued prefetches while the budget allows, or checks again later while it does not */
+    private void drain() {
+        while (true) {
+            String key;
+            Loader loader;
+            synchronized (this) {
+                if (queue.isEmpty() || active.size() >= maxConcurrent) {
+                    return;
+                }
+                if (isBusy()) {
+                    if (retry == null || retry.isDone()) {
+                        retry = engine.schedule(this::drain, YIELD_NANOS);
+                    }
+                    return;
+                }
+                Iterator<Map.Entry<String, Loader>> oldest = queue.entrySet().iterator();
+                Map.Entry<String, Loader> next = oldest.next();
+                oldest.remove();
+                key = next.getKey();
+                loader = next.getValue();
+                active.put(key, Boolean.FALSE);
+            }
+            start(key, loader);
+        }
+    }
+
+    /* Whether the clients are busy upstream or the prefetched bytes are not requested, called holding the lock */
+    private boolean isBusy() {
+        prefetched.cleanUp();
+        return outstandingBytes.get() >= maxBytes || engine.getInFlight() - active.size() >= yieldInFlight;
+    }
+
+    /* Loads a key outside of any request trace and keeps its bytes until the key is requested */
+    private void start(String key, Loader loader) {
+        LOGGER.debug("Prefetcher[" + name + "] loading Key[" + key + "]");
+        CompletableFuture<Long> load;
+        RequestTrace previous = RequestTrace.attach(null);
+        try {
+            load = loader.load(key);
+        } catch (RuntimeException e) {
+            load = new CompletableFuture<>();
+            load.completeExceptionally(e);
+        } finally {
+            RequestTrace.restore(previous);
+        }
+        load.whenComplete((bytes, throwable) -> {
+            synchronized (this) {
+                boolean requested = active.remove(key);
+                if (throwable != null || bytes == null || bytes <= 0) {
+                    LOGGER.debug("Prefetcher[" + name + "] loaded nothing for Key[" + key + "]"
+                            + (throwable == null ? "" : " - Exception: " + throwable.getMessage()));
+                    droppedCount.increment();
+                } else {
+                    prefetchedCount.increment();
+                    prefetchedBytes.add(bytes);
+                    if (requested) {
+                        hitCount.increment();
+                    } else {
+                        outstandingBytes.addAndGet(bytes);
+                        prefetched.put(key, bytes);
+                    }
+                }
+            }
+            drain();
+        });
+    }
+
+    /**
+     * Loads a key in the background
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Loads a key, e.g. into a cache
+         *
+         * @param key The key to load
+         * @return A future completed with the number of bytes loaded, <code>0</code> if there was nothing to load
+         */
+        CompletableFuture<Long> load(String key);
+    }
+}
@@ -0,0 +1,335 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.utkuyavuz.songfinder.configuration.RateLimitProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the rate of the upstream requests by key, e.g. by access token, with a token bucket for each key.
+ * <br/> A request takes a permit from the bucket of its key, which is refilled at the rate of the key up to the
+ * burst size. Without a permit the request waits in the queue of its key, and is granted one in order when it is
+ * refilled. A request is rejected at once when the queue is full, or when the permit could not be granted within the
+ * maximum wait or before the deadline of the request, instead of being sent only to be throttled upstream.
+ * <br/> The rate adapts to the upstream: a <code>429 Too Many Requests</code> cuts the rate of the key by the
+ * decrease factor and pauses its bucket for the <code>Retry-After</code>, and each successful request raises the rate
+ * by a step again, up to the configured rate.
+ * <br/> No thread waits for a permit, the queues are drained on the timer of the {@link HttpClientEngine}. The wait
+ * for a permit is timed as <code>songfinder.ratelimit.wait</code>, tagged by the <code>outcome</code>
+ * (<code>granted</code>, <code>rejected</code>).
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class RateLimiter {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiter.class);
+
+    /* Nanoseconds in a second */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /* Name of the limited requests, for the meters */
+    private final String name;
+    /* Rate limiting is enabled, otherwise the requests are sent at once */
+    private final boolean enabled;
+    /* Permits per second of a key */
+    private final double rate;
+    /* Lowest rate a key is cut to */
+    private final double minRate;
+    /* Largest number of permits a key saves up */
+    private final double burst;
+    /* Factor the rate is cut by on a 429 */
+    private final double decrease;
+    /* Permits per second the rate is raised by on each success */
+    private final double increase;
+    /* Largest number of requests waiting for a permit of a key */
+    private final int maxQueue;
+    /* Longest wait for a permit in nanoseconds */
+    private final long maxWaitNanos;
+    /* Engine which runs the queue timers */
+    private final HttpClientEngine engine;
+
+    /* Buckets by key, forgotten when idle */
+    private final Cache<String, Bucket> buckets;
+    /* Requests waiting for a permit */
+    private final AtomicInteger queued = new AtomicInteger();
+    /* Number of 429 responses seen */
+    private final LongAdder throttledCount = new LongAdder();
+    /* Wait of the granted requests */
+    private final Timer grantedTimer;
+    /* Wait of the rejected requests */
+    private final Timer rejectedTimer;
+
+    /**
+     * Initialize the rate limiter
+     *
+     * @param name Name of the limited requests, for the meters
+     * @param properties Rate limit configuration
+     * @param engine The HTTP client engine whose timer drains the queues
+     * @param registry The {@link MeterRegistry} of the meters
+     */
+    public RateLimiter(String name, RateLimitProperties properties, HttpClientEngine engine, MeterRegistry registry) {
+        this.name = name;
+        this.enabled = properties.isEnabled();
+        this.rate = Math.max(0.001, properties.getRate());
+        this.minRate = Math.max(0.001, Math.min(this.rate, properties.getMinRate()));
+        this.burst = Math.max(1, properties.getBurst());
+        this.decrease = Math.max(0, Math.min(1, properties.getDecrease()));
+        this.increase = Math.max(0, properties.getIncrease());
+        this.maxQueue = Math.max(0, properties.getMaxQueue());
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getMaxWait()));
+        this.engine = engine;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getIdleExpiry(), TimeUnit.MILLISECONDS)
+                .build();
+
+        this.grantedTimer = timer(registry, "granted");
+        this.rejectedTimer = timer(registry, "rejected");
+        Gauge.builder("songfinder.ratelimit.queued", queued, AtomicInteger::get)
+                .tag("request", name)
+                .register(registry);
+        FunctionCounter.builder("songfinder.ratelimit.throttled", throttledCount, LongAdder::sum)
+                .tag("request", name)
+                .register(registry);
+    }
+
+    /**
+     * Asks for a permit to send a request of the given key
+     *
+     * @param key Key of the request, e.g. its access token
+     * @param deadline Deadline of the request, no permit is granted after it, optional
+     * @return A {@link CompletableFuture} completed with <code>true</code> when the permit is granted, or with
+     * <code>false</code> when the request is rejected. Cancelling it gives up the place in the queue
+     */
+    public CompletableFuture<Boolean> acquire(String key, Deadline deadline) {
+        Bucket bucket = buckets.get(key, k -> new Bucket());
+        long now = System.nanoTime();
+        Waiter waiter;
+        synchronized (bucket) {
+            bucket.refill(now);
+            if (bucket.waiters.isEmpty() && bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                grantedTimer.record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(true);
+            }
+            long wait = bucket.waitNanos(now, bucket.waiters.size() + 1);
+            long limit = deadline == null ? maxWaitNanos : Math.min(maxWaitNanos, deadline.remainingNanos());
+            if (bucket.waiters.size() >= maxQueue || wait > limit) {
+                LOGGER.debug("Rejected request[" + name + "] - Queued[" + bucket.waiters.size() + "] Wait["
+                        + TimeUnit.NANOSECONDS.toMillis(wait) + "ms]");
+                rejectedTimer.record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(false);
+            }
+            waiter = new Waiter(now, deadline);
+            bucket.waiters.add(waiter);
+            queued.incrementAndGet();
+            if (bucket.drain == null) {
+                bucket.drain = engine.schedule(() -> drain(bucket), wait);
+            }
+        }
+        waiter.permit.whenComplete((granted, throwable) -> {
+            if (waiter.permit.isCancelled()) {
+                synchronized (bucket) {
+                    if (bucket.waiters.remove(waiter)) {
+                        queued.decrementAndGet();
+                    }
+                }
+            }
+        });
+        return waiter.permit;
+    }
+
+    /**
+     * Reports a <code>429 Too Many Requests</code> of a request of the given key: cuts the rate of the key and pauses
+     * it for the <code>Retry-After</code>
+     *
+     * @param key Key of the request
+     * @param retryAfterMillis The <code>Retry-After</code> of the response in milliseconds, -1 without one
+     */
+    public void onThrottled(String key, long retryAfterMillis) {
+        throttledCount.increment();
+        Bucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            return;
+        }
+        synchronized (bucket) {
+            bucket.rate = Math.max(minRate, bucket.rate * decrease);
+            bucket.tokens = 0;
+            if (retryAfterMillis > 0) {
+                bucket.refilledAt = Math.max(bucket.refilledAt,
+                        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+            }
+            LOGGER.debug("Throttled request[" + name + "] - Rate[" + bucket.rate + "/s] RetryAfter["
+                    + retryAfterMillis + "ms]");
+        }
+    }
+
+    /**
+     * Reports a successful request of the given key, which raises the rate of the key by a step
+     *
+     * @param key Key of the request
+     */
+    public void onSuccess(String key) {
+        Bucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            return;
+        }
+        synchronized (bucket) {
+            if (bucket.rate < rate) {
+                bucket.rate = Math.min(rate, bucket.rate + increase);
+            }
+        }
+    }
+
+    /**
+     * Checks whether rate limiting is enabled
+     *
+     * @return Returns <code>true</code> if the requests are limited, else <code>false</code>
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the current rate of the given key
+     *
+     * @param key Key of the requests
+     * @return The permits per second, the configured rate for an unknown key
+     */
+    public double getRate(String key) {
+        Bucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            return rate;
+        }
+        synchronized (bucket) {
+            return bucket.rate;
+        }
+    }
+
+    /**
+     * Gets the number of requests waiting for a permit
+     *
+     * @return The queued request count over all keys
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Gets the number of <code>429 Too Many Requests</code> responses reported
+     *
+     * @return The throttled response count
+     */
+    public long getThrottledCount() {
+        return throttledCount.sum();
+    }
+
+    /* Grants the refilled permits to the waiters in order, drops the ones past their deadline */
+    private void drain(Bucket bucket) {
+        long now = System.nanoTime();
+        List<Waiter> granted = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        synchronized (bucket) {
+            bucket.drain = null;
+            bucket.refill(now);
+            while (!bucket.waiters.isEmpty()) {
+                Waiter waiter = bucket.waiters.peek();
+                if (waiter.deadline != null && waiter.deadline.isExpired()) {
+                    expired.add(bucket.waiters.poll());
+                } else if (bucket.tokens >= 1) {
+                    bucket.tokens -= 1;
+                    granted.add(bucket.waiters.poll());
+                } else {
+                    break;
+                }
+            }
+            queued.addAndGet(-granted.size() - expired.size());
+            if (!bucket.waiters.isEmpty()) {
+                bucket.drain = engine.schedule(() -> drain(bucket), Math.max(1, bucket.waitNanos(now, 1)));
+            }
+        }
+        /* Complete outside of the lock, the requests are sent by the callbacks */
+        for (Waiter waiter : granted) {
+            grantedTimer.record(now - waiter.queuedAt, TimeUnit.NANOSECONDS);
+            waiter.permit.complete(true);
+        }
+        for (Waiter waiter : expired) {
+            rejectedTimer.record(now - waiter.queuedAt, TimeUnit.NANOSECONDS);
+            waiter.permit.complete(false);
+        }
+    }
+
+    /* Registers the timer of the wait of the given outcome */
+    private Timer timer(MeterRegistry registry, String outcome) {
+        return Timer.builder("songfinder.ratelimit.wait")
+                .tag("request", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    /* Token bucket and wait queue of a key, guarded by its own monitor */
+    private class Bucket {
+
+        /* Current permits per second */
+        private double rate = RateLimiter.this.rate;
+        /* Available permits */
+        private double tokens = burst;
+        /* Time the tokens are counted at, in the future while paused by a Retry-After */
+        private long refilledAt = System.nanoTime();
+        /* Requests waiting for a permit, in order */
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        /* Timer of the next drain of the queue */
+        private ScheduledFuture<?> drain;
+
+        /* Adds the permits refilled since the last refill */
+        private void refill(long now) {
+            if (now - refilledAt > 0) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * rate / NANOS_PER_SECOND);
+                refilledAt = now;
+            }
+        }
+
+        /* Time until the given number of permits are available */
+        private long waitNanos(long now, int permits) {
+            long pause = Math.max(0, refilledAt - now);
+            double missing = Math.max(0, permits - tokens);
+            return pause + (long) Math.ceil(missing / rate * NANOS_PER_SECOND);
+        }
+    }
+
+    /* A request waiting for a permit */
+    private static class Waiter {
+
+        /* Completed with whether the permit is granted */
+        private final CompletableFuture<Boolean> permit = new CompletableFuture<>();
+        /* Time the request is queued */
+        private final long queuedAt;
+        /* Deadline of the request, optional */
+        private final Deadline deadline;
+
+        private Waiter(long queuedAt, Deadline deadline) {
+            this.queuedAt = queuedAt;
+            this.deadline = deadline;
+        }
+    }
+}
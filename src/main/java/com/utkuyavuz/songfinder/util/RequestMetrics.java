@@ -0,0 +1,151 @@
+package com.utkuyavuz.songfinder.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of the song preview requests and of their stages, recorded into timers with percentile histograms and
+ * tagged by the outcome of the request or stage.
+ * <ul>
+ * <li><code>songfinder.request</code>: A whole request, until its response is written</li>
+ * <li><code>songfinder.request.stage</code>: A stage, tagged by <code>stage</code>. The search includes the
+ * parsing of its response, the preview ends when the audio is retrieved, or opened when it is streamed, and the
+ * write covers the response body</li>
+ * <li><code>songfinder.request.inflight</code>: Requests not completed yet</li>
+ * </ul>
+ * Recording does not lock, the histograms are kept by the registry, e.g. as the buckets of the Prometheus
+ * endpoint.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class RequestMetrics {
+
+    /** Stage of the Spotify search, cached or not */
+    public static final String SEARCH = "search";
+    /** Stage of the parsing of the search response */
+    public static final String PARSE = "parse";
+    /** Stage of the retrieval of the preview audio, cached or not */
+    public static final String PREVIEW = "preview";
+    /** Stage of the writing of the response */
+    public static final String WRITE = "write";
+
+    /* Timer of the whole requests */
+    private static final String REQUEST_TIMER = "songfinder.request";
+    /* Timer of the stages */
+    private static final String STAGE_TIMER = "songfinder.request.stage";
+
+    /* The registry */
+    private final MeterRegistry registry;
+    /* Timers by name, stage and outcome, so that recording does not look the registry up */
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    /* Requests not completed yet */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Initialize the metrics on a registry
+     *
+     * @param registry The {@link MeterRegistry} of the timers
+     */
+    public RequestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("songfinder.request.inflight", inFlight, AtomicInteger::get).register(registry);
+    }
+
+    /**
+     * Maps an HTTP status to the outcome tag: <code>ok</code> for any 2xx, <code>401</code>, <code>404</code> and
+     * <code>429</code> by themselves, otherwise the status class as <code>4xx</code> or <code>5xx</code>
+     *
+     * @param status The HTTP status
+     * @return The outcome
+     */
+    public static String outcome(int status) {
+        if (status >= 200 && status < 300) {
+            return "ok";
+        } else if (status == 401 || status == 404 || status == 429) {
+            return String.valueOf(status);
+        } else if (status >= 400 && status < 500) {
+            return "4xx";
+        } else if (status >= 500) {
+            return "5xx";
+        }
+        return String.valueOf(status);
+    }
+
+    /**
+     * Records a stage which started at the given time and ends now
+     *
+     * @param stage The stage, e.g. {@link #SEARCH}
+     * @param status HTTP status of the stage
+     * @param startNanos Start of the stage, from {@link System#nanoTime()}
+     * @return The duration of the stage in nanoseconds
+     */
+    public long recordStage(String stage, int status, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        timer(STAGE_TIMER, stage, outcome(status)).record(nanos, TimeUnit.NANOSECONDS);
+        return nanos;
+    }
+
+    /**
+     * Records a request which started at the given time and is completed now
+     *
+     * @param status HTTP status of the response
+     * @param startNanos Start of the request, from {@link System#nanoTime()}
+     */
+    public void recordRequest(int status, long startNanos) {
+        timer(REQUEST_TIMER, null, outcome(status)).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a request as in flight
+     */
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Counts an in flight request as completed
+     */
+    public void requestCompleted() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Gets the number of requests in flight
+     *
+     * @return The in flight requests
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /* Looks the timer up, registering it the first time */
+    private Timer timer(String name, String stage, String outcome) {
+        String key = name + '|' + stage + '|' + outcome;
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            Timer.Builder builder = Timer.builder(name)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30));
+            if (stage != null) {
+                builder.tag("stage", stage);
+            }
+            timer = builder.register(registry);
+            Timer existing = timers.putIfAbsent(key, timer);
+            if (existing != null) {
+                timer = existing;
+            }
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,104 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Records the requests into {@link RequestMetrics}: the whole request until the response is completed, and the
+ * writing of the response, which is done when the asynchronous result is dispatched.
+ * Must be registered for the <code>REQUEST</code> and <code>ASYNC</code> dispatches.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    /* The metrics */
+    private final RequestMetrics requestMetrics;
+
+    /**
+     * Initialize the filter
+     *
+     * @param requestMetrics The metrics to record into
+     */
+    public RequestMetricsFilter(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            /* The asynchronous result is written */
+            long writeStart = System.nanoTime();
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                requestMetrics.recordStage(RequestMetrics.WRITE, response.getStatus(), writeStart);
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        requestMetrics.requestStarted();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                /* The request is completed once its result is dispatched and written, or it times out */
+                request.getAsyncContext().addListener(new CompletionListener(start));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                requestMetrics.recordRequest(response.getStatus(), start);
+                requestMetrics.requestCompleted();
+            }
+        }
+    }
+
+    /* Records an asynchronous request when it is completed */
+    private class CompletionListener implements AsyncListener {
+
+        /* Start of the request */
+        private final long start;
+
+        CompletionListener(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            requestMetrics.recordRequest(((HttpServletResponse) event.getSuppliedResponse()).getStatus(), start);
+            requestMetrics.requestCompleted();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            /* Completed afterwards */
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            /* Completed afterwards */
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            /* Still the same request */
+        }
+    }
+}
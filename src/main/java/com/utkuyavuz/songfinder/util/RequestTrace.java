@@ -0,0 +1,205 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.MDC;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The id and the timing breakdown of a song preview request, answered as the <code>X-Request-Id</code> and
+ * <code>Server-Timing</code> headers.
+ * <br/> The trace of the request being processed is attached to the current thread, with its id in the logging
+ * MDC as <code>requestId</code>. It is carried over the asynchronous boundaries by {@link #wrap(Executor)} and by
+ * {@link #attach(RequestTrace)} in the callbacks of the HTTP clients. Recording a stage is a field write.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class RequestTrace {
+
+    /** Header of the request id */
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    /** Header of the timing breakdown */
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+    /** MDC key of the request id */
+    public static final String MDC_KEY = "requestId";
+
+    /* Longest request id accepted from a client */
+    private static final int MAX_ID_LENGTH = 64;
+    /* Prefix of the generated ids, distinguishes the instances of the application */
+    private static final String ID_PREFIX = Long.toString(ThreadLocalRandom.current().nextLong(1L << 40), 36) + '-';
+    /* Sequence of the generated ids */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    /* Trace attached to the current thread */
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    /* The request id */
+    private final String id;
+    /* Duration of the search in nanoseconds, -1 if not done */
+    private volatile long searchNanos = -1;
+    /* Duration of the parsing of the search response in nanoseconds, -1 if not done */
+    private volatile long parseNanos = -1;
+    /* Duration of the preview retrieval in nanoseconds, -1 if not done */
+    private volatile long previewNanos = -1;
+    /* Whether the preview audio was cached, null if not looked up */
+    private volatile Boolean cacheHit;
+
+    /**
+     * Initialize a trace with the id given by the client, or a generated id if it is missing or invalid
+     *
+     * @param requestId Request id of the client, optional
+     */
+    public RequestTrace(String requestId) {
+        this.id = isValidId(requestId) ? requestId : ID_PREFIX + Long.toString(SEQUENCE.incrementAndGet(), 36);
+    }
+
+    /**
+     * Gets the trace attached to the current thread
+     *
+     * @return The {@link RequestTrace}, <code>null</code> outside of a request
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches a trace to the current thread and puts its id in the MDC
+     *
+     * @param trace The trace, <code>null</code> to detach
+     * @return The trace attached before, to be given to {@link #restore(RequestTrace)}
+     */
+    public static RequestTrace attach(RequestTrace trace) {
+        RequestTrace previous = CURRENT.get();
+        if (trace != previous) {
+            set(trace);
+        }
+        return previous;
+    }
+
+    /**
+     * Attaches back the trace replaced by {@link #attach(RequestTrace)}
+     *
+     * @param previous The trace attached before
+     */
+    public static void restore(RequestTrace previous) {
+        if (CURRENT.get() != previous) {
+            set(previous);
+        }
+    }
+
+    /**
+     * Wraps an executor so that the tasks run with the trace of the current thread attached
+     *
+     * @param executor The executor
+     * @return The wrapping {@link Executor}, the executor itself outside of a request
+     */
+    public static Executor wrap(Executor executor) {
+        RequestTrace trace = CURRENT.get();
+        if (trace == null) {
+            return executor;
+        }
+        return task -> executor.execute(() -> {
+            RequestTrace previous = attach(trace);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        });
+    }
+
+    /**
+     * Gets the request id
+     *
+     * @return The request id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Records the duration of a stage, {@link RequestMetrics#SEARCH}, {@link RequestMetrics#PARSE} or
+     * {@link RequestMetrics#PREVIEW}, other stages are ignored
+     *
+     * @param stage The stage
+     * @param nanos The duration in nanoseconds
+     */
+    public void setStage(String stage, long nanos) {
+        switch (stage) {
+            case RequestMetrics.SEARCH:
+                searchNanos = nanos;
+                break;
+            case RequestMetrics.PARSE:
+                parseNanos = nanos;
+                break;
+            case RequestMetrics.PREVIEW:
+                previewNanos = nanos;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Records whether the preview audio was answered from the memory or disk cache
+     *
+     * @param cacheHit <code>true</code> if it was cached
+     */
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    /**
+     * Formats the recorded stages as a <code>Server-Timing</code> header value, durations in milliseconds, e.g.
+     * <code>search;dur=120.5, parse;dur=0.3, preview;dur=80.1, cache;desc=miss</code>
+     *
+     * @return The header value, empty if nothing is recorded
+     */
+    public String toServerTiming() {
+        StringBuilder timing = new StringBuilder(96);
+        appendDuration(timing, RequestMetrics.SEARCH, searchNanos);
+        appendDuration(timing, RequestMetrics.PARSE, parseNanos);
+        appendDuration(timing, RequestMetrics.PREVIEW, previewNanos);
+        Boolean hit = cacheHit;
+        if (hit != null) {
+            timing.append(timing.length() == 0 ? "" : ", ").append("cache;desc=").append(hit ? "hit" : "miss");
+        }
+        return timing.toString();
+    }
+
+    /* Appends a stage duration in milliseconds with a microsecond precision */
+    private static void appendDuration(StringBuilder timing, String stage, long nanos) {
+        if (nanos >= 0) {
+            timing.append(timing.length() == 0 ? "" : ", ").append(stage).append(";dur=")
+                    .append((nanos / 1000) / 1000.0);
+        }
+    }
+
+    /* Attaches a trace to the current thread */
+    private static void set(RequestTrace trace) {
+        if (trace == null) {
+            CURRENT.remove();
+            MDC.remove(MDC_KEY);
+        } else {
+            CURRENT.set(trace);
+            MDC.put(MDC_KEY, trace.id);
+        }
+    }
+
+    /* A client id is kept if it is short and has no characters that would garble a header or a log line */
+    private static boolean isValidId(String requestId) {
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < requestId.length(); i++) {
+            char c = requestId.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_'
+                    || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Starts a {@link RequestTrace} for each request and answers its id with the <code>X-Request-Id</code> header.
+ * The trace is kept as a request attribute and attached again when the asynchronous result is dispatched, when
+ * the stages are over and the <code>Server-Timing</code> header is set before the response is written.
+ * Must be registered for the <code>REQUEST</code> and <code>ASYNC</code> dispatches.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    /* Request attribute of the trace */
+    private static final String TRACE_ATTRIBUTE = RequestTrace.class.getName();
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTrace trace = (RequestTrace) request.getAttribute(TRACE_ATTRIBUTE);
+        if (trace == null) {
+            trace = new RequestTrace(request.getHeader(RequestTrace.REQUEST_ID_HEADER));
+            request.setAttribute(TRACE_ATTRIBUTE, trace);
+            response.setHeader(RequestTrace.REQUEST_ID_HEADER, trace.getId());
+        } else if (isAsyncDispatch(request)) {
+            setServerTiming(trace, response);
+        }
+
+        RequestTrace previous = RequestTrace.attach(trace);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestTrace.restore(previous);
+        }
+    }
+
+    /* Answers the recorded stages of the trace, the response must not be committed yet */
+    static void setServerTiming(RequestTrace trace, HttpServletResponse response) {
+        String serverTiming = trace.toServerTiming();
+        if (!serverTiming.isEmpty()) {
+            response.setHeader(RequestTrace.SERVER_TIMING_HEADER, serverTiming);
+        }
+    }
+}
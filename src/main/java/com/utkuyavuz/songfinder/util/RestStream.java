@@ -0,0 +1,116 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The body of an HTTP response which is piped to the client as it arrives, see {@link RestUtils#getStream()}.
+ * Copies through a small buffer reused by the writing thread. If the client goes away, or the stream is closed
+ * before the body is fully read, the upstream request is aborted instead of being drained.
+ * <br/> The request stays in flight for the {@link HttpClientEngine} until the stream is closed.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class RestStream implements StreamingContent {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RestStream.class);
+
+    /* The upstream request */
+    private final HttpGet request;
+    /* The upstream response */
+    private final CloseableHttpResponse response;
+    /* The engine which executed the request, counts the traffic */
+    private final HttpClientEngine engine;
+    /* Whether the body has been read to the end */
+    private boolean completed;
+    /* Whether the stream has been closed */
+    private boolean closed;
+
+    /**
+     * Initialize the stream with an executed request
+     *
+     * @param request The upstream request
+     * @param response The upstream response whose body will be piped
+     * @param engine The engine which executed the request
+     */
+    public RestStream(HttpGet request, CloseableHttpResponse response, HttpClientEngine engine) {
+        this.request = request;
+        this.response = response;
+        this.engine = engine;
+        this.completed = false;
+        this.closed = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The upstream <code>Content-Length</code>.
+     */
+    @Override
+    public long getContentLength() {
+        HttpEntity entity = response.getEntity();
+        return entity == null ? 0 : entity.getContentLength();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            completed = true;
+            return;
+        }
+        byte[] buffer = TransferBuffer.get();
+        long transferred = 0;
+        try (InputStream in = entity.getContent()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                transferred += read;
+            }
+            out.flush();
+            completed = true;
+        } catch (IOException e) {
+            LOGGER.error("Streaming aborted after " + transferred + " bytes - URI[" + request.getURI()
+                    + "] - Exception: " + e.getMessage());
+            request.abort();
+            throw e;
+        } finally {
+            engine.bytesReceived(request.getURI().getHost(), transferred);
+        }
+        LOGGER.debug("Streamed " + transferred + " bytes - URI[" + request.getURI() + "]");
+    }
+
+    /**
+     * Releases the connection, aborting the request if the body has not been read to the end
+     *
+     * @throws IOException If the response cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!completed) {
+            LOGGER.debug("Closing unfinished stream, aborting request - URI[" + request.getURI() + "]");
+            request.abort();
+        }
+        try {
+            response.close();
+        } finally {
+            engine.requestFinished(request.getURI().getHost());
+        }
+    }
+}
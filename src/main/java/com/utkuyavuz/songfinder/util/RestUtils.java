@@ -1,20 +1,45 @@
 package com.utkuyavuz.songfinder.util;
 
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.*;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A utility class to send HTTP requests
+ * <br/> Requests time out by the connect, read and connection pool timeouts of their host, see
+ * {@link HttpClientEngine}. A request given a {@link Deadline} is not sent once it is over, and the non-blocking and
+ * streamed requests are aborted when it passes. Timeouts are answered with <code>504 Gateway Timeout</code>.
+ * <br/> A request is not sent while the {@link CircuitBreaker} of its host is open, and is answered with
+ * <code>503 Service Unavailable</code> instead. Server errors, I/O failures and timeouts other than the deadline count
+ * as failures of the host, see {@link #isRetryable()} for the ones worth sending again.
  *
  * @author Utku Yavuz
  * @version 1.0
@@ -27,31 +52,69 @@ public class RestUtils {
 
     /* Uri Builder */
     private UriComponentsBuilder uri;
+    /* HTTP client engine, counts the upstream traffic */
+    private HttpClientEngine engine;
     /* RestTempplate */
     private RestTemplate restTemplate;
+    /* Non-blocking HTTP client */
+    private HttpAsyncClient asyncHttpClient;
+    /* Blocking HTTP client for streamed responses */
+    private CloseableHttpClient httpClient;
+    /* Streamed request being sent, see abort() */
+    private volatile HttpGet streamRequest;
+    /* Streamed request is aborted */
+    private volatile boolean aborted;
+    /* Streamed response */
+    private RestStream responseStream;
+    /* Deadline of the request, optional */
+    private Deadline deadline;
+    /* Rate limiter the non-blocking request waits for, optional */
+    private RateLimiter rateLimiter;
+    /* Key of the request in the rate limiter */
+    private String rateLimitKey;
     /* Headers */
     private HttpHeaders headers;
+    /* Response headers */
+    private HttpHeaders responseHeaders;
     /* Response StatusCode */
     private HttpStatus statusCode;
     /* Raw response */
     private byte[] rawResponse;
     /* Error message */
     private String errorMessage;
+    /* Kind of timeout of the request, null if it has not timed out */
+    private String timeout;
+    /* Request is failed fast by the circuit breaker of its host or by the rate limiter */
+    private boolean rejected;
     /* Operation succeeded or not */
     private boolean success;
     /* Instance is used or not */
     private boolean used;
 
     /**
-     * Initialize RestUtils with a uri
+     * Initialize RestUtils with a uri on the default {@link HttpClientEngine}
      *
      * @param uri The uri that the request will be sent
      */
     public RestUtils(String uri) {
+        this(HttpClientEngine.getDefault(), uri);
+    }
+
+    /**
+     * Initialize RestUtils with a uri on the given {@link HttpClientEngine}
+     *
+     * @param engine The shared HTTP client engine that sends the request
+     * @param uri The uri that the request will be sent
+     */
+    public RestUtils(HttpClientEngine engine, String uri) {
         LOGGER.debug("Initializing RestUtils with URI[" + uri + "]");
         this.uri = UriComponentsBuilder.fromHttpUrl(uri);
-        this.restTemplate = new RestTemplateBuilder().build();
+        this.engine = engine;
+        this.restTemplate = engine.getRestTemplate();
+        this.asyncHttpClient = engine.getAsyncHttpClient();
+        this.httpClient = engine.getHttpClient();
         this.headers = new HttpHeaders();
+        this.responseHeaders = new HttpHeaders();
         this.statusCode = null;
         this.rawResponse = null;
         this.errorMessage = null;
@@ -86,7 +149,33 @@ public class RestUtils {
     }
 
     /**
-     * Execute HTTP GET method
+     * Sets the deadline by which the response must be received
+     *
+     * @param deadline The deadline, <code>null</code> for the host timeouts only
+     * @return A {@link RestUtils} instance
+     */
+    public RestUtils withDeadline(Deadline deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * Sets the rate limiter the non-blocking request waits for a permit of, see {@link #getAsync()}. The
+     * <code>429 Too Many Requests</code> and the successful responses are reported to it
+     *
+     * @param rateLimiter The rate limiter, <code>null</code> or disabled to send the request at once
+     * @param key Key of the request in the rate limiter, e.g. its access token
+     * @return A {@link RestUtils} instance
+     */
+    public RestUtils withRateLimit(RateLimiter rateLimiter, String key) {
+        this.rateLimiter = rateLimiter != null && rateLimiter.isEnabled() ? rateLimiter : null;
+        this.rateLimitKey = key;
+        return this;
+    }
+
+    /**
+     * Execute HTTP GET method. The request is bounded by the timeouts of its host, its deadline is only checked
+     * before it is sent
      *
      * @return A {@link RestUtils} instance
      */
@@ -99,50 +188,358 @@ public class RestUtils {
             return this;
         }
         HttpEntity entity = new HttpEntity(headers);
+        String host = null;
+        CircuitBreaker breaker = null;
         try {
             LOGGER.debug("Sending HTTP GET request - URI[" + this.uri.toUriString() + "]");
+            URI requestUri = toUri();
+            if (this.deadline != null && this.deadline.isExpired()) {
+                this.onTimeout(requestUri.getHost(), HttpClientEngine.DEADLINE_TIMEOUT);
+                return this;
+            }
+            if (!this.acquire(requestUri.getHost())) {
+                return this;
+            }
+            breaker = engine.getCircuitBreaker(requestUri.getHost());
+            host = requestUri.getHost();
+            engine.requestStarted(host);
             ResponseEntity<byte[]> response =
-                    this.restTemplate.exchange(new URI(this.uri.toUriString()), HttpMethod.GET, entity, byte[].class);
+                    this.restTemplate.exchange(requestUri, HttpMethod.GET, entity, byte[].class);
             this.rawResponse = response.getBody();
+            if (this.rawResponse != null) {
+                engine.bytesReceived(host, this.rawResponse.length);
+            }
+            this.responseHeaders = response.getHeaders();
             this.statusCode = response.getStatusCode();
             this.success = true;
-            LOGGER.debug("Retrieved HTTP GET response - URI[" + this.uri.toUriString()
-                    + "] - Response[" + this.getResponse() + "]");
+            if (LOGGER.isDebugEnabled()) {
+                /* Decoding the body is only worth it when it is logged */
+                LOGGER.debug("Retrieved HTTP GET response - URI[" + this.uri.toUriString()
+                        + "] - Response[" + this.getResponse() + "]");
+            }
         } catch (URISyntaxException e) {
             /* Cannot parse the URI */
             LOGGER.error("Exception while executing HTTP GET request - Exception: " + e.getMessage(), e);
             this.statusCode = HttpStatus.NOT_FOUND;
             this.success = false;
             this.errorMessage = "Invalid URI[" + this.uri.toUriString() + "].";
-        } catch (HttpClientErrorException exception) {
-            /* Operation encountered an HttpError */
-            this.statusCode = exception.getStatusCode();
+        } catch (RestClientResponseException exception) {
+            /* Operation encountered an HttpError, of the client or of the server */
+            if (exception.getResponseHeaders() != null) {
+                this.responseHeaders = exception.getResponseHeaders();
+            }
+            HttpStatus status = HttpStatus.resolve(exception.getRawStatusCode());
+            this.setHttpError(status == null ? HttpStatus.INTERNAL_SERVER_ERROR : status, exception.getMessage(),
+                    exception);
+        } catch (ResourceAccessException exception) {
+            /* Operation encountered an I/O error, e.g. a timeout */
+            this.onIOFailure(host, exception.getCause() instanceof IOException
+                    ? (IOException) exception.getCause() : exception);
+        } finally {
+            if (host != null) {
+                engine.requestFinished(host);
+                this.report(breaker);
+            }
+            LOGGER.debug("Set RestUtils as used.");
+            used = true;
+        }
+        return this;
+    }
+
+    /**
+     * Execute HTTP GET method on the non-blocking client of the {@link HttpClientEngine}.
+     * The calling thread is not blocked, the returned future is completed on an I/O thread when the response
+     * arrives, with the {@link RequestTrace} of the calling thread attached. Cancelling the returned future aborts
+     * the request. The request is aborted as well when its deadline passes, and the future completed with a
+     * <code>504 Gateway Timeout</code>. With a rate limiter the request is sent once it is granted a permit, a
+     * rejected request is answered with <code>429 Too Many Requests</code>.
+     *
+     * @return A {@link CompletableFuture} completed with this {@link RestUtils} instance
+     */
+    public CompletableFuture<RestUtils> getAsync() {
+        CompletableFuture<RestUtils> result = new CompletableFuture<>();
+        /* Instance is already consumed, do nothing */
+        if (this.used) {
+            LOGGER.error("RestUtils has already been consumed.");
             this.success = false;
+            this.errorMessage = "RestUtils has already been consumed.";
+            result.complete(this);
+            return result;
+        }
+        LOGGER.debug("Set RestUtils as used.");
+        this.used = true;
+
+        HttpGet request;
+        try {
+            request = new HttpGet(toUri());
+        } catch (URISyntaxException e) {
+            /* Cannot parse the URI */
+            LOGGER.error("Exception while executing HTTP GET request - Exception: " + e.getMessage(), e);
+            this.statusCode = HttpStatus.NOT_FOUND;
+            this.success = false;
+            this.errorMessage = "Invalid URI[" + this.uri.toUriString() + "].";
+            result.complete(this);
+            return result;
+        }
+        for (Map.Entry<String, String> header : this.headers.toSingleValueMap().entrySet()) {
+            request.setHeader(header.getKey(), header.getValue());
+        }
+
+        String host = request.getURI().getHost();
+        if (this.deadline != null && this.deadline.isExpired()) {
+            this.onTimeout(host, HttpClientEngine.DEADLINE_TIMEOUT);
+            result.complete(this);
+            return result;
+        }
+        if (this.rateLimiter == null) {
+            this.sendAsync(request, host, result);
+            return result;
+        }
+
+        /* Send once a permit is granted, give the place in the queue up when the caller is no longer interested */
+        CompletableFuture<Boolean> permit = this.rateLimiter.acquire(this.rateLimitKey, this.deadline);
+        RequestTrace trace = RequestTrace.current();
+        permit.whenComplete((granted, throwable) -> {
+            if (result.isDone()) {
+                return;
+            }
+            RequestTrace previous = RequestTrace.attach(trace);
+            try {
+                if (Boolean.TRUE.equals(granted)) {
+                    this.sendAsync(request, host, result);
+                } else {
+                    this.onRateLimited(host);
+                    result.complete(this);
+                }
+            } finally {
+                RequestTrace.restore(previous);
+            }
+        });
+        if (!permit.isDone()) {
+            /* Stop waiting when the deadline passes */
+            ScheduledFuture<?> expiry = this.deadline == null ? null
+                    : engine.schedule(() -> permit.cancel(false), this.deadline.remainingNanos());
+            result.whenComplete((restUtils, throwable) -> {
+                if (expiry != null) {
+                    expiry.cancel(false);
+                }
+                permit.cancel(false);
+            });
+        }
+        return result;
+    }
+
+    /* Sends the non-blocking request and completes the result with its response */
+    private void sendAsync(HttpGet request, String host, CompletableFuture<RestUtils> result) {
+        if (this.deadline != null && this.deadline.isExpired()) {
+            this.onTimeout(host, HttpClientEngine.DEADLINE_TIMEOUT);
+            result.complete(this);
+            return;
+        }
+        if (!this.acquire(host)) {
+            result.complete(this);
+            return;
+        }
+        CircuitBreaker breaker = engine.getCircuitBreaker(host);
+        request.setConfig(engine.requestConfig(host, this.deadline));
+
+        LOGGER.debug("Sending async HTTP GET request - URI[" + this.uri.toUriString() + "]");
+        RequestTrace trace = RequestTrace.current();
+        AtomicBoolean expired = new AtomicBoolean();
+        engine.requestStarted(host);
+        Future<HttpResponse> pending = this.asyncHttpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                RequestTrace previous = RequestTrace.attach(trace);
+                try {
+                    onAsyncResponse(response);
+                    if (rawResponse != null) {
+                        engine.bytesReceived(host, rawResponse.length);
+                    }
+                    reportRate();
+                } catch (IOException e) {
+                    onIOFailure(host, e);
+                }
+                try {
+                    engine.requestFinished(host);
+                    report(breaker);
+                    result.complete(RestUtils.this);
+                } finally {
+                    RequestTrace.restore(previous);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                RequestTrace previous = RequestTrace.attach(trace);
+                try {
+                    onIOFailure(host, e);
+                    engine.requestFinished(host);
+                    report(breaker);
+                    result.complete(RestUtils.this);
+                } finally {
+                    RequestTrace.restore(previous);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                RequestTrace previous = RequestTrace.attach(trace);
+                try {
+                    engine.requestFinished(host);
+                    if (breaker != null) {
+                        /* Neither a cancelled nor an expired request tells whether the host is failing */
+                        breaker.release();
+                    }
+                    if (expired.get()) {
+                        /* Aborted by the deadline */
+                        onTimeout(host, HttpClientEngine.DEADLINE_TIMEOUT);
+                        result.complete(RestUtils.this);
+                    } else {
+                        LOGGER.debug("Async HTTP GET request cancelled - URI[" + uri.toUriString() + "]");
+                        result.cancel(false);
+                    }
+                } finally {
+                    RequestTrace.restore(previous);
+                }
+            }
+        });
+        /* Abort the exchange when the deadline passes */
+        ScheduledFuture<?> expiry = this.deadline == null ? null : engine.schedule(() -> {
+            if (!result.isDone() && expired.compareAndSet(false, true)) {
+                pending.cancel(true);
+            }
+        }, this.deadline.remainingNanos());
+        /* Abort the exchange when the caller is no longer interested */
+        result.whenComplete((restUtils, throwable) -> {
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            if (result.isCancelled()) {
+                pending.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Execute HTTP GET method and keep the response body open to be streamed.
+     * Returns after the response headers are received. On success the body is available through
+     * {@link #getResponseStream()} and must be written or closed by the caller. The request is aborted if its
+     * deadline passes before the response headers are received, the body is not bounded by the deadline.
+     *
+     * @return A {@link RestUtils} instance
+     */
+    public RestUtils getStream() {
+        /* Instance is already consumed, do nothing */
+        if (this.used) {
+            LOGGER.error("RestUtils has already been consumed.");
+            this.success = false;
+            this.errorMessage = "RestUtils has already been consumed.";
+            return this;
+        }
+        LOGGER.debug("Set RestUtils as used.");
+        this.used = true;
+
+        HttpGet request;
+        try {
+            request = new HttpGet(toUri());
+        } catch (URISyntaxException e) {
+            /* Cannot parse the URI */
+            LOGGER.error("Exception while executing HTTP GET request - Exception: " + e.getMessage(), e);
+            this.statusCode = HttpStatus.NOT_FOUND;
+            this.success = false;
+            this.errorMessage = "Invalid URI[" + this.uri.toUriString() + "].";
+            return this;
+        }
+        for (Map.Entry<String, String> header : this.headers.toSingleValueMap().entrySet()) {
+            request.setHeader(header.getKey(), header.getValue());
+        }
+
+        String host = request.getURI().getHost();
+        if (this.deadline != null && this.deadline.isExpired()) {
+            this.onTimeout(host, HttpClientEngine.DEADLINE_TIMEOUT);
+            return this;
+        }
+        if (!this.acquire(host)) {
+            return this;
+        }
+        CircuitBreaker breaker = engine.getCircuitBreaker(host);
+        request.setConfig(engine.requestConfig(host, this.deadline));
 
-            if (exception.getStatusCode() == HttpStatus.NOT_FOUND) {
-                /* StatusCode = 404 */
-                this.errorMessage =  "Endpoint [" + uri + "] not found.";
-                LOGGER.error("Server encountered an error. StatusCode[" + exception.getStatusCode() +
-                        "] - Message[Endpoint [" + uri + "] not found.]", exception);
-            } else if (exception.getStatusCode() == HttpStatus.UNAUTHORIZED) {
-                /* StatusCode = 401 */
-                this.errorMessage = "Unauthorized, try to renew access token.";
-                LOGGER.error("Server encountered an error. StatusCode[" + exception.getStatusCode() +
-                        "] - Message[Unauthorized, try to renew access token]", exception);
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> expiry = this.deadline == null ? null : engine.schedule(() -> {
+            if (expired.compareAndSet(false, true)) {
+                request.abort();
+            }
+        }, this.deadline.remainingNanos());
+        this.streamRequest = request;
+        if (this.aborted) {
+            request.abort();
+        }
+        engine.requestStarted(host);
+        try {
+            LOGGER.debug("Sending streamed HTTP GET request - URI[" + this.uri.toUriString() + "]");
+            CloseableHttpResponse response = this.httpClient.execute(request);
+            /* Headers are received, the body is not bounded by the deadline */
+            if (expiry != null && !expired.compareAndSet(false, true)) {
+                response.close();
+                throw new SocketTimeoutException("Deadline passed while the response headers were received.");
+            }
+            this.setResponseHeaders(response);
+            int status = response.getStatusLine().getStatusCode();
+            HttpStatus httpStatus = HttpStatus.resolve(status);
+            if (httpStatus == null) {
+                httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+            }
+            if (httpStatus.is2xxSuccessful()) {
+                this.statusCode = httpStatus;
+                this.success = true;
+                /* The stream counts the received bytes and finishes the request when it is closed */
+                this.responseStream = new RestStream(request, response, engine);
+                LOGGER.debug("Retrieved streamed HTTP GET response headers - URI[" + this.uri.toUriString()
+                        + "] - ContentLength[" + this.responseStream.getContentLength() + "]");
             } else {
-                /* StatusCode NOT IN { 200, 401, 404 } */
-                this.errorMessage = "Server encountered an error. StatusCode[" + exception.getStatusCode() +
-                        "] - Message[" + exception.getMessage() + "]";
-                LOGGER.error("Server encountered an error. StatusCode[" + exception.getStatusCode() +
-                        "] - Message[" + exception.getMessage() + "]", exception);
+                EntityUtils.consumeQuietly(response.getEntity());
+                response.close();
+                engine.requestFinished(host);
+                this.setHttpError(httpStatus, status + " " + response.getStatusLine().getReasonPhrase(), null);
+            }
+        } catch (IOException e) {
+            request.abort();
+            engine.requestFinished(host);
+            if (expired.get()) {
+                this.onTimeout(host, HttpClientEngine.DEADLINE_TIMEOUT);
+            } else if (this.aborted) {
+                LOGGER.debug("Streamed HTTP GET request aborted - URI[" + this.uri.toUriString() + "]");
+                this.statusCode = HttpStatus.BAD_GATEWAY;
+                this.success = false;
+                this.errorMessage = "Request to endpoint [" + this.uri.toUriString() + "] is aborted.";
+            } else {
+                this.onIOFailure(host, e);
             }
         } finally {
-            LOGGER.debug("Set RestUtils as used.");
-            used = true;
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            /* A received response counts as a success, whatever happens to its body */
+            this.report(breaker);
         }
         return this;
     }
 
+    /**
+     * Aborts the request of {@link #getStream()} from another thread, e.g. when another request has answered the
+     * caller. A pending {@link #getStream()} returns with an error, a received response stream can no longer be read
+     * and must still be closed
+     */
+    public void abort() {
+        this.aborted = true;
+        HttpGet request = this.streamRequest;
+        if (request != null) {
+            request.abort();
+        }
+    }
+
     /**
      * Execute HTTP POST method
      * <br/> <strong>DO NOT USE THIS METHOD AS IT IS NOT IMPLEMENTED YET</strong>
@@ -176,6 +573,180 @@ public class RestUtils {
         throw new NotImplementedException();
     }
 
+    /* Reads the response of the non-blocking client */
+    private void onAsyncResponse(HttpResponse response) throws IOException {
+        this.setResponseHeaders(response);
+        int status = response.getStatusLine().getStatusCode();
+        HttpStatus httpStatus = HttpStatus.resolve(status);
+        if (httpStatus == null) {
+            httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        if (httpStatus.is2xxSuccessful()) {
+            this.rawResponse =
+                    response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            this.statusCode = httpStatus;
+            this.success = true;
+            if (LOGGER.isDebugEnabled()) {
+                /* Decoding the body is only worth it when it is logged */
+                LOGGER.debug("Retrieved async HTTP GET response - URI[" + this.uri.toUriString()
+                        + "] - Response[" + this.getResponse() + "]");
+            }
+        } else {
+            EntityUtils.consumeQuietly(response.getEntity());
+            this.setHttpError(httpStatus, status + " " + response.getStatusLine().getReasonPhrase(), null);
+        }
+    }
+
+    /* Builds the request uri from the endpoint and the query parameters */
+    URI toUri() throws URISyntaxException {
+        return new URI(this.uri.toUriString());
+    }
+
+    /* Keeps the headers of a response of the Apache clients */
+    private void setResponseHeaders(HttpResponse response) {
+        for (Header header : response.getAllHeaders()) {
+            this.responseHeaders.add(header.getName(), header.getValue());
+        }
+    }
+
+    /* Asks the circuit breaker of the host to let the request through, fails the request fast otherwise */
+    private boolean acquire(String host) {
+        CircuitBreaker breaker = engine.getCircuitBreaker(host);
+        if (breaker == null || breaker.tryAcquire()) {
+            return true;
+        }
+        this.rejected = true;
+        this.statusCode = HttpStatus.SERVICE_UNAVAILABLE;
+        this.success = false;
+        this.errorMessage = "Endpoint [" + this.uri.toUriString() + "] is failing, circuit is open.";
+        LOGGER.error("Request failed fast. Circuit[" + host + "] - Message[" + this.errorMessage + "]");
+        return false;
+    }
+
+    /* Records a request rejected by the rate limiter, as an exceeded deadline if the deadline is over */
+    private void onRateLimited(String host) {
+        if (this.deadline != null && this.deadline.isExpired()) {
+            this.onTimeout(host, HttpClientEngine.DEADLINE_TIMEOUT);
+            return;
+        }
+        this.rejected = true;
+        this.statusCode = HttpStatus.TOO_MANY_REQUESTS;
+        this.success = false;
+        this.errorMessage = "Rate limit of endpoint [" + this.uri.toUriString() + "] exceeded, try again later.";
+        LOGGER.error("Request rate limited. Message[" + this.errorMessage + "]");
+    }
+
+    /* Reports a throttled or a successful response to the rate limiter */
+    private void reportRate() {
+        if (this.rateLimiter == null) {
+            return;
+        }
+        if (this.statusCode == HttpStatus.TOO_MANY_REQUESTS) {
+            this.rateLimiter.onThrottled(this.rateLimitKey, this.getRetryAfterMillis());
+        } else if (this.success) {
+            this.rateLimiter.onSuccess(this.rateLimitKey);
+        }
+    }
+
+    /* Reports the outcome of the request to the circuit breaker of its host */
+    private void report(CircuitBreaker breaker) {
+        if (breaker == null) {
+            return;
+        }
+        if (this.success) {
+            breaker.onSuccess();
+        } else if (this.aborted || HttpClientEngine.DEADLINE_TIMEOUT.equals(this.timeout)) {
+            /* Given up by the caller, the host may be healthy */
+            breaker.release();
+        } else if (this.statusCode == null || this.statusCode.is5xxServerError()) {
+            breaker.onFailure();
+        } else {
+            /* The host answered, e.g. a 404 or a 429 */
+            breaker.onSuccess();
+        }
+    }
+
+    /* Records an I/O failure of the request, as a timeout if it is one */
+    private void onIOFailure(String host, Exception e) {
+        String timeout = timeoutKind(e);
+        if (timeout != null) {
+            this.onTimeout(host, timeout);
+            return;
+        }
+        LOGGER.error("Exception while executing HTTP GET request - URI[" + this.uri.toUriString()
+                + "] - Exception: " + e.getMessage(), e);
+        this.statusCode = HttpStatus.BAD_GATEWAY;
+        this.success = false;
+        this.errorMessage = "Cannot reach endpoint [" + this.uri.toUriString() + "] - Exception: " + e.getMessage();
+    }
+
+    /* Records a timeout of the request, as an exceeded deadline if the deadline is over */
+    private void onTimeout(String host, String kind) {
+        if (this.deadline != null && this.deadline.isExpired()) {
+            kind = HttpClientEngine.DEADLINE_TIMEOUT;
+        }
+        engine.timedOut(host, kind);
+        this.timeout = kind;
+        this.statusCode = HttpStatus.GATEWAY_TIMEOUT;
+        this.success = false;
+        switch (kind) {
+            case HttpClientEngine.CONNECT_TIMEOUT:
+                this.errorMessage = "Timed out connecting to endpoint [" + this.uri.toUriString() + "].";
+                break;
+            case HttpClientEngine.READ_TIMEOUT:
+                this.errorMessage = "Timed out waiting for endpoint [" + this.uri.toUriString() + "] to respond.";
+                break;
+            case HttpClientEngine.POOL_TIMEOUT:
+                this.errorMessage = "Timed out waiting for a connection to endpoint [" + this.uri.toUriString()
+                        + "].";
+                break;
+            default:
+                this.errorMessage = "Deadline of the request exceeded before endpoint [" + this.uri.toUriString()
+                        + "] responded.";
+                break;
+        }
+        LOGGER.error("Request timed out. Timeout[" + kind + "] - Message[" + this.errorMessage + "]");
+    }
+
+    /* The kind of timeout of a failure of the blocking or non-blocking client, null if it is not a timeout */
+    private static String timeoutKind(Exception e) {
+        if (e instanceof ConnectionPoolTimeoutException || e instanceof TimeoutException) {
+            return HttpClientEngine.POOL_TIMEOUT;
+        } else if (e instanceof ConnectTimeoutException) {
+            return HttpClientEngine.CONNECT_TIMEOUT;
+        } else if (e instanceof ConnectException && e.getMessage() == null) {
+            /* The non-blocking pool fails a timed out connect without a message, a refused one has a message */
+            return HttpClientEngine.CONNECT_TIMEOUT;
+        } else if (e instanceof SocketTimeoutException) {
+            return HttpClientEngine.READ_TIMEOUT;
+        }
+        return null;
+    }
+
+    /* Sets the error state and message for an HTTP error response */
+    private void setHttpError(HttpStatus status, String message, Exception exception) {
+        this.statusCode = status;
+        this.success = false;
+
+        if (status == HttpStatus.NOT_FOUND) {
+            /* StatusCode = 404 */
+            this.errorMessage =  "Endpoint [" + uri + "] not found.";
+            LOGGER.error("Server encountered an error. StatusCode[" + status +
+                    "] - Message[Endpoint [" + uri + "] not found.]", exception);
+        } else if (status == HttpStatus.UNAUTHORIZED) {
+            /* StatusCode = 401 */
+            this.errorMessage = "Unauthorized, try to renew access token.";
+            LOGGER.error("Server encountered an error. StatusCode[" + status +
+                    "] - Message[Unauthorized, try to renew access token]", exception);
+        } else {
+            /* StatusCode NOT IN { 200, 401, 404 } */
+            this.errorMessage = "Server encountered an error. StatusCode[" + status +
+                    "] - Message[" + message + "]";
+            LOGGER.error("Server encountered an error. StatusCode[" + status +
+                    "] - Message[" + message + "]", exception);
+        }
+    }
+
     /**
      * Check whether the current instance has encountered an error or not.
      *
@@ -194,6 +765,15 @@ public class RestUtils {
         return statusCode;
     }
 
+    /**
+     * Gets the headers of the HTTP Response
+     *
+     * @return The response headers, empty if no response is received
+     */
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
     /**
      * Gets the raw HTTP Response as <code>byte[]</code>
      *
@@ -203,6 +783,15 @@ public class RestUtils {
         return rawResponse;
     }
 
+    /**
+     * Gets the streamed HTTP Response, see {@link #getStream()}
+     *
+     * @return The streamed HTTP Response, <code>null</code> if the request is not streamed or not successful
+     */
+    public RestStream getResponseStream() {
+        return responseStream;
+    }
+
     /**
      * Gets the HTTP Response as {@link String}
      *
@@ -229,4 +818,52 @@ public class RestUtils {
     public String getErrorMessage() {
         return errorMessage;
     }
+
+    /**
+     * Checks whether the failed request may succeed when it is sent again: on a timeout other than the deadline, an
+     * I/O failure, a <code>429 Too Many Requests</code> or a server error of the endpoint. A request failed fast by
+     * the circuit breaker or aborted by the caller is not worth sending again.
+     *
+     * @return Returns <code>true</code> if the request may be sent again, else <code>false</code>
+     */
+    public boolean isRetryable() {
+        if (!this.used || this.success || this.rejected || this.aborted || this.statusCode == null
+                || HttpClientEngine.DEADLINE_TIMEOUT.equals(this.timeout)) {
+            return false;
+        }
+        switch (this.statusCode) {
+            case TOO_MANY_REQUESTS:
+            case INTERNAL_SERVER_ERROR:
+            case BAD_GATEWAY:
+            case SERVICE_UNAVAILABLE:
+            case GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gets the delay the endpoint asked for before the request is sent again, by the <code>Retry-After</code> header
+     * of the response, in seconds or as an HTTP date
+     *
+     * @return The delay in milliseconds, -1 if the response has no valid <code>Retry-After</code>
+     */
+    public long getRetryAfterMillis() {
+        String retryAfter = this.responseHeaders.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            /* Not a number of seconds, may be a date */
+        }
+        try {
+            return Math.max(0, this.responseHeaders.getFirstDate(HttpHeaders.RETRY_AFTER) - System.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Invalid Retry-After[" + retryAfter + "] - URI[" + this.uri.toUriString() + "]");
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,221 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.RetryProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sends the upstream requests again when they fail transiently, see {@link RestUtils#isRetryable()}.
+ * <br/> A retry waits for the <code>Retry-After</code> of the response if there is one, otherwise for an
+ * exponential backoff with full jitter: a random delay up to the initial backoff doubled by every attempt so far,
+ * so that the clients of a failing host do not retry in lockstep. No thread waits for a retry, the attempts are
+ * sent on the timer of the {@link HttpClientEngine}.
+ * <br/> A request is not retried once its attempts are used up, when the endpoint asks for a longer wait than the
+ * configured maximum, or when its {@link Deadline} would pass before the retry. The last response is returned then.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class Retrier {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Retrier.class);
+
+    /* Largest number of doublings of the backoff, keeps it from overflowing */
+    private static final int MAX_DOUBLINGS = 20;
+
+    /* Name of the retried requests, for the meters */
+    private final String name;
+    /* Maximum number of attempts, including the first one */
+    private final int maxAttempts;
+    /* Backoff before the first retry in nanoseconds */
+    private final long initialBackoffNanos;
+    /* Maximum backoff in nanoseconds */
+    private final long maxBackoffNanos;
+    /* Longest Retry-After in nanoseconds which is waited for */
+    private final long maxRetryAfterNanos;
+    /* Engine which runs the retry timers */
+    private final HttpClientEngine engine;
+
+    /* Number of calls */
+    private final LongAdder callCount = new LongAdder();
+    /* Number of retries sent */
+    private final LongAdder retryCount = new LongAdder();
+    /* Number of calls which failed after their last attempt */
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    /**
+     * Initialize the retrier
+     *
+     * @param name Name of the retried requests, for the meters
+     * @param properties Retry configuration
+     * @param engine The HTTP client engine whose timer sends the retries
+     */
+    public Retrier(String name, RetryProperties properties, HttpClientEngine engine) {
+        this.name = name;
+        this.maxAttempts = Math.max(1, properties.getMaxAttempts());
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getInitialBackoff()));
+        this.maxBackoffNanos = Math.max(this.initialBackoffNanos,
+                TimeUnit.MILLISECONDS.toNanos(properties.getMaxBackoff()));
+        this.maxRetryAfterNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getMaxRetryAfter()));
+        this.engine = engine;
+    }
+
+    /**
+     * Runs the call, sending it again while it fails transiently
+     *
+     * @param attempt Sends an attempt on a new {@link RestUtils}, called once for each attempt
+     * @param deadline Deadline of the call, no retry is sent which could not be answered before it, optional
+     * @return A {@link CompletableFuture} completed with the last attempt. Cancelling it cancels the pending attempt
+     */
+    public CompletableFuture<RestUtils> execute(Supplier<CompletableFuture<RestUtils>> attempt, Deadline deadline) {
+        if (maxAttempts <= 1) {
+            return attempt.get();
+        }
+        callCount.increment();
+        Call call = new Call(attempt, deadline);
+        call.result.whenComplete((restUtils, throwable) -> {
+            if (call.result.isCancelled()) {
+                ScheduledFuture<?> timer = call.timer;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                call.pending.cancel(true);
+            }
+        });
+        call.send(1);
+        return call.result;
+    }
+
+    /**
+     * Gets the name of the retried requests
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of retried calls
+     *
+     * @return The call count
+     */
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    /**
+     * Gets the number of retries sent
+     *
+     * @return The retry count
+     */
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    /**
+     * Gets the number of calls which still failed transiently after their last attempt
+     *
+     * @return The exhausted call count
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.sum();
+    }
+
+    /* Delay before the retry after the given attempt, -1 if the endpoint asks for too long a wait */
+    private long delayNanos(int attempt, RestUtils restUtils) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long retryAfter = restUtils.getRetryAfterMillis();
+        if (retryAfter >= 0) {
+            long retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(retryAfter);
+            /* Spread the clients told to come back at the same time */
+            return retryAfterNanos > maxRetryAfterNanos
+                    ? -1 : retryAfterNanos + random.nextLong(initialBackoffNanos + 1);
+        }
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(MAX_DOUBLINGS, attempt - 1));
+        return random.nextLong(ceiling + 1);
+    }
+
+    /* A retried call, completed by its last attempt */
+    private class Call {
+
+        /* Sends an attempt */
+        private final Supplier<CompletableFuture<RestUtils>> attempt;
+        /* Deadline of the call, optional */
+        private final Deadline deadline;
+        /* Trace of the request of the call, attached to the retries */
+        private final RequestTrace trace = RequestTrace.current();
+        /* Result of the call */
+        private final CompletableFuture<RestUtils> result = new CompletableFuture<>();
+        /* The attempt in flight */
+        private volatile CompletableFuture<RestUtils> pending;
+        /* Timer of the next retry */
+        private volatile ScheduledFuture<?> timer;
+
+        private Call(Supplier<CompletableFuture<RestUtils>> attempt, Deadline deadline) {
+            this.attempt = attempt;
+            this.deadline = deadline;
+        }
+
+        /* Sends the given attempt, the first one is number 1 */
+        private void send(int number) {
+            CompletableFuture<RestUtils> sent = attempt.get();
+            pending = sent;
+            if (result.isCancelled()) {
+                /* Cancelled while the attempt was being sent */
+                sent.cancel(true);
+            }
+            sent.whenComplete((restUtils, throwable) -> onAttempt(number, restUtils, throwable));
+        }
+
+        /* Completes the call with the attempt, or schedules the next one */
+        private void onAttempt(int number, RestUtils restUtils, Throwable throwable) {
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+                return;
+            }
+            if (result.isDone() || !restUtils.isRetryable()) {
+                result.complete(restUtils);
+                return;
+            }
+            if (number >= maxAttempts) {
+                exhaustedCount.increment();
+                result.complete(restUtils);
+                return;
+            }
+            long delay = delayNanos(number, restUtils);
+            if (delay < 0 || (deadline != null && deadline.remainingNanos() <= delay)) {
+                LOGGER.debug("Not retrying[" + name + "], no time to wait for Retry[" + number + "] - Status["
+                        + restUtils.getStatusCode() + "]");
+                exhaustedCount.increment();
+                result.complete(restUtils);
+                return;
+            }
+            retryCount.increment();
+            LOGGER.debug("Retrying[" + name + "] after Delay[" + TimeUnit.NANOSECONDS.toMillis(delay) + "ms] - Status["
+                    + restUtils.getStatusCode() + "] Attempt[" + (number + 1) + "]");
+            timer = engine.schedule(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                RequestTrace previous = RequestTrace.attach(trace);
+                try {
+                    send(number + 1);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    RequestTrace.restore(previous);
+                }
+            }, delay);
+        }
+    }
+}
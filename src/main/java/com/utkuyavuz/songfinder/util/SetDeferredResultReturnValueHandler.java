@@ -0,0 +1,76 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handles a {@link DeferredResult} which already holds an {@link HttpEntity} when the handler returns it, e.g. the
+ * response of a request completed on the servlet container thread, by writing the entity in the request dispatch
+ * instead of starting asynchronous processing only to dispatch it again at once. This saves the round trip of the
+ * asynchronous dispatch, and lets the container send a stored preview itself, see
+ * {@link StreamingContentHttpMessageConverter}, which it only does at the end of a request dispatch.
+ * <br/> Any other {@link DeferredResult} is handed over to the default handler.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class SetDeferredResultReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SetDeferredResultReturnValueHandler.class);
+
+    /* The default handler of the deferred results */
+    private final HandlerMethodReturnValueHandler deferredResultHandler;
+    /* The handler of the entities */
+    private final HandlerMethodReturnValueHandler httpEntityHandler;
+
+    /**
+     * Initialize the handler in front of the default ones
+     *
+     * @param deferredResultHandler The default handler of the deferred results, which starts asynchronous processing
+     * @param httpEntityHandler The handler which writes the entities
+     */
+    public SetDeferredResultReturnValueHandler(HandlerMethodReturnValueHandler deferredResultHandler,
+                                               HandlerMethodReturnValueHandler httpEntityHandler) {
+        this.deferredResultHandler = deferredResultHandler;
+        this.httpEntityHandler = httpEntityHandler;
+    }
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return deferredResultHandler.supportsReturnType(returnType);
+    }
+
+    @Override
+    public void handleReturnValue(Object returnValue, MethodParameter returnType,
+                                  ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        Object result = returnValue instanceof DeferredResult && ((DeferredResult<?>) returnValue).hasResult()
+                ? ((DeferredResult<?>) returnValue).getResult() : null;
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        if (!(result instanceof HttpEntity) || request == null || request.getDispatcherType() != DispatcherType.REQUEST
+                || request.isAsyncStarted()) {
+            deferredResultHandler.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+
+        /* The stages are complete, answer them before the response is committed as the asynchronous dispatch does */
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        RequestTrace trace = RequestTrace.current();
+        if (response != null && trace != null) {
+            RequestTraceFilter.setServerTiming(trace, response);
+        }
+        LOGGER.debug("Deferred result is already set, writing it in the request dispatch.");
+        httpEntityHandler.handleReturnValue(result, returnType.nested(), mavContainer, webRequest);
+    }
+}
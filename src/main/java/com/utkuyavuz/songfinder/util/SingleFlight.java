@@ -0,0 +1,291 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one call. The first caller of a key runs the call, callers
+ * arriving while it is in flight attach to it and receive its result or error. Once the call completes, the next
+ * caller of the key starts a new call.
+ * <br/> Every caller receives its own dependent future, so cancelling one does not affect the others. Once every
+ * caller of a call has cancelled its future, the call is cancelled too, e.g. to abort its upstream request, and the
+ * next caller of the key starts a new call.
+ * <br/> A call runs within the deadline of the caller which started it. If it fails once that deadline is over, an
+ * attached caller with time left runs the call again within its own deadline, rather than failing within the
+ * shorter budget of another caller.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the results
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class SingleFlight<K, V> {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SingleFlight.class);
+
+    /* Name of the coalesced operation */
+    private final String name;
+    /* Calls in flight by key */
+    private final ConcurrentMap<K, Flight> inFlight = new ConcurrentHashMap<>();
+    /* Number of calls run */
+    private final LongAdder callCount = new LongAdder();
+    /* Number of callers attached to a call in flight */
+    private final LongAdder coalescedCount = new LongAdder();
+    /* Number of calls cancelled as every caller cancelled */
+    private final LongAdder cancelledCount = new LongAdder();
+    /* Number of calls run again by an attached caller with time left */
+    private final LongAdder retriedCount = new LongAdder();
+
+    /**
+     * Initialize the single flight
+     *
+     * @param name Name of the coalesced operation, e.g. for metrics
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs the call for a key, or attaches to the call of the key which is in flight
+     *
+     * @param key The key of the call
+     * @param call Starts the call, run on the calling thread only if no call of the key is in flight
+     * @return A future completed with the result of the call, cancelling it cancels the call once every caller of
+     * the call has cancelled
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        return execute(key, null, call, value -> false);
+    }
+
+    /**
+     * Runs the call for a key within the deadline of the caller, or attaches to the call of the key which is in
+     * flight. An attached caller whose deadline is later than the one of the call runs the call again within its
+     * own deadline if the call fails once its deadline is over.
+     *
+     * @param key The key of the call
+     * @param deadline Deadline of the caller, optional
+     * @param call Starts the call within the deadline of the caller, run on the calling thread only if no call of
+     *             the key is in flight, or to run the call again
+     * @param failed Whether a result of the call is a failure, e.g. a timeout, which a caller with time left retries.
+     *               A call which completes exceptionally is retried alike
+     * @return A future completed with the result of the call, cancelling it cancels the call once every caller of
+     * the call has cancelled
+     */
+    public CompletableFuture<V> execute(K key, Deadline deadline, Supplier<CompletableFuture<V>> call,
+                                        Predicate<V> failed) {
+        while (true) {
+            Flight created = new Flight(key, deadline);
+            Flight existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                CompletableFuture<V> follower = existing.follow();
+                if (follower == null) {
+                    /* Every caller of the call in flight has cancelled, it is being removed */
+                    inFlight.remove(key, existing);
+                    continue;
+                }
+                coalescedCount.increment();
+                LOGGER.debug("SingleFlight[" + name + "] attached to call in flight - Key[" + key + "]");
+                if (outlives(deadline, existing.deadline)) {
+                    return retrying(key, deadline, call, failed, existing, follower);
+                }
+                return follower;
+            }
+
+            callCount.increment();
+            CompletableFuture<V> follower = created.follow();
+            try {
+                created.start(call.get());
+            } catch (RuntimeException e) {
+                inFlight.remove(key, created);
+                created.result.completeExceptionally(e);
+            }
+            return follower;
+        }
+    }
+
+    /* Answers an attached caller with the result of the call, or of the call run again within the deadline of the
+    caller if the call failed once its own deadline was over */
+    private CompletableFuture<V> retrying(K key, Deadline deadline, Supplier<CompletableFuture<V>> call,
+                                          Predicate<V> failed, Flight joined, CompletableFuture<V> follower) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        follower.whenComplete((value, throwable) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (joined.deadline.isExpired() && (deadline == null || !deadline.isExpired())
+                    && (throwable != null || failed.test(value))) {
+                retriedCount.increment();
+                LOGGER.debug("SingleFlight[" + name + "] call failed past its deadline, running it again within "
+                        + "the deadline of the caller - Key[" + key + "]");
+                CompletableFuture<V> retry = execute(key, deadline, call, failed);
+                Futures.cancelling(retry, result);
+                retry.whenComplete((retried, failure) -> complete(result, retried, failure));
+            } else {
+                complete(result, value, throwable);
+            }
+        });
+        return Futures.cancelling(follower, result);
+    }
+
+    /* Whether the deadline of a caller is later than the deadline of a call */
+    private static boolean outlives(Deadline caller, Deadline call) {
+        return call != null && (caller == null || caller.remainingNanos() > call.remainingNanos());
+    }
+
+    /* Completes a future with a result or an error */
+    private static <V> void complete(CompletableFuture<V> future, V value, Throwable throwable) {
+        if (throwable != null) {
+            future.completeExceptionally(throwable);
+        } else {
+            future.complete(value);
+        }
+    }
+
+    /**
+     * Gets the name of the coalesced operation
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of calls run
+     *
+     * @return The call count
+     */
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    /**
+     * Gets the number of callers which attached to a call in flight instead of running their own
+     *
+     * @return The coalesced count
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Gets the number of calls cancelled as every one of their callers cancelled
+     *
+     * @return The cancelled count
+     */
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    /**
+     * Gets the number of calls run again by an attached caller with time left, as the call failed once the
+     * deadline of the caller which started it was over
+     *
+     * @return The retried count
+     */
+    public long getRetriedCount() {
+        return retriedCount.sum();
+    }
+
+    /**
+     * Gets the number of calls in flight
+     *
+     * @return The in-flight count
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /* A call in flight and the callers attached to it */
+    private class Flight {
+
+        /* Key of the call */
+        private final K key;
+        /* Deadline of the caller which started the call, null if it has none */
+        private final Deadline deadline;
+        /* Completed with the result of the call */
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        /* The call, once it is started */
+        private CompletableFuture<V> call;
+        /* Number of callers which have not cancelled */
+        private int followers;
+        /* Whether every caller has cancelled, no caller attaches to the call anymore */
+        private boolean abandoned;
+
+        private Flight(K key, Deadline deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        /* Attaches a caller, null if the call has been abandoned */
+        private synchronized CompletableFuture<V> follow() {
+            if (abandoned) {
+                return null;
+            }
+            followers++;
+            CompletableFuture<V> follower = new CompletableFuture<>();
+            result.whenComplete((value, throwable) -> {
+                if (throwable != null) {
+                    follower.completeExceptionally(throwable);
+                } else {
+                    follower.complete(value);
+                }
+            });
+            follower.whenComplete((value, throwable) -> {
+                if (follower.isCancelled()) {
+                    unfollow();
+                }
+            });
+            return follower;
+        }
+
+        /* Detaches a caller which has cancelled, and cancels the call once no caller is left */
+        private void unfollow() {
+            CompletableFuture<V> cancelled;
+            synchronized (this) {
+                if (--followers > 0 || result.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                cancelled = call;
+            }
+            inFlight.remove(key, this);
+            cancelledCount.increment();
+            LOGGER.debug("SingleFlight[" + name + "] cancelled call, every caller cancelled - Key[" + key + "]");
+            result.cancel(false);
+            if (cancelled != null) {
+                cancelled.cancel(true);
+            }
+        }
+
+        /* Completes the callers with the result of the started call, which is cancelled if they already have */
+        private void start(CompletableFuture<V> started) {
+            boolean cancel;
+            synchronized (this) {
+                call = started;
+                cancel = abandoned;
+            }
+            if (cancel) {
+                started.cancel(true);
+            }
+            started.whenComplete((value, throwable) -> {
+                /* Remove before completing so that callers woken up do not attach to a finished call */
+                inFlight.remove(key, this);
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.utkuyavuz.songfinder.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A response body which is written to the client as it is read from its source instead of being buffered.
+ * Written by {@link StreamingContentHttpMessageConverter}, which closes the content afterwards.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public interface StreamingContent extends Closeable {
+
+    /**
+     * Gets the length of the content in bytes
+     *
+     * @return The content length, or <code>-1</code> if it is not known
+     */
+    long getContentLength();
+
+    /**
+     * Writes the whole content to the given stream
+     *
+     * @param out The stream to write to
+     * @throws IOException If the content cannot be read or written
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Gets a part of the content, supported by contents whose bytes can be addressed, e.g. cached audio.
+     * The part takes over the content, only the part should be written and closed afterwards.
+     *
+     * @param position Offset of the part
+     * @param count Length of the part
+     * @return The part of the content
+     * @throws UnsupportedOperationException If the content can only be read from start to end
+     */
+    default StreamingContent slice(long position, long count) {
+        throw new UnsupportedOperationException("Content cannot be sliced.");
+    }
+}
@@ -0,0 +1,107 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Writes a {@link StreamingContent} response body to the client and closes it afterwards.
+ * <br/> A {@link FileContent} whose path is known is sent by the container itself when it supports
+ * <code>sendfile</code>, as Tomcat's NIO connector does, so that the file is copied to the socket by the kernel. The
+ * response must not be wrapped by a filter, which would not see the body, and the request must not be asynchronous,
+ * as Tomcat only sends the file at the end of a request processed on its own thread. The responses of an
+ * asynchronous request, with <code>songfinder.async.enabled</code>, are copied through the JVM.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class StreamingContentHttpMessageConverter extends AbstractHttpMessageConverter<StreamingContent> {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingContentHttpMessageConverter.class);
+
+    /* Request attribute set by the container if it can send a file itself */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    /* Request attributes of the file the container sends, and of its region */
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Initialize the converter for every media type
+     */
+    public StreamingContentHttpMessageConverter() {
+        super(MediaType.ALL);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return StreamingContent.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected StreamingContent readInternal(Class<? extends StreamingContent> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("StreamingContent cannot be read.");
+    }
+
+    @Override
+    protected Long getContentLength(StreamingContent content, MediaType contentType) {
+        long length = content.getContentLength();
+        return length < 0 ? null : length;
+    }
+
+    @Override
+    protected void writeInternal(StreamingContent content, HttpOutputMessage outputMessage) throws IOException {
+        try {
+            if (!sendFile(content, outputMessage)) {
+                content.writeTo(outputMessage.getBody());
+            }
+        } finally {
+            content.close();
+        }
+    }
+
+    /* Lets the container send a file content itself, before the response is committed, if it supports it */
+    private static boolean sendFile(StreamingContent content, HttpOutputMessage outputMessage) {
+        if (!(content instanceof FileContent) || ((FileContent) content).getFile() == null
+                || !(outputMessage instanceof ServletServerHttpResponse)
+                || ((ServletServerHttpResponse) outputMessage).getServletResponse() instanceof ServletResponseWrapper) {
+            return false;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return false;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        if (request.getDispatcherType() != DispatcherType.REQUEST || request.isAsyncStarted()
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        FileContent file = (FileContent) content;
+        request.setAttribute(SENDFILE_FILENAME, file.getFile().toString());
+        request.setAttribute(SENDFILE_START, file.getPosition());
+        request.setAttribute(SENDFILE_END, file.getPosition() + file.getContentLength());
+        LOGGER.debug("Sending file with sendfile - File[" + file.getFile() + "] Bytes[" + file.getContentLength()
+                + "]");
+        return true;
+    }
+}
@@ -0,0 +1,30 @@
+package com.utkuyavuz.songfinder.util;
+
+/**
+ * Small copy buffers reused by the thread which writes a {@link StreamingContent} to the client.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public final class TransferBuffer {
+
+    /* Size of the copy buffer */
+    private static final int BUFFER_SIZE = 8192;
+    /* Copy buffer of the writing thread */
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    /* Utility class */
+    private TransferBuffer() {
+
+    }
+
+    /**
+     * Gets the copy buffer of the current thread
+     *
+     * @return The copy buffer, which must not leak out of the current call
+     */
+    public static byte[] get() {
+        return BUFFER.get();
+    }
+}
@@ -0,0 +1,231 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A zip archive which is built while it is written to the client. The entries are opened concurrently, at most
+ * <code>parallelism</code> at a time, and each one is written as soon as it is opened, so the entries come in
+ * completion order. An entry counts against the window until it is written, so no more than
+ * <code>parallelism</code> entries are held at once, whatever the size of the archive.
+ * <br/> The entries are stored without compression, as the audio is already compressed. An entry which cannot be
+ * opened is left out, and the archive is ended with the entries written so far once its timeout passes.
+ * <br/> The thread writing the archive waits for the entries, the entries are opened on the threads which complete
+ * the previous ones. Closing the archive before it is written stops opening entries and releases the opened ones.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class ZipContent implements StreamingContent {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipContent.class);
+
+    /* Marks the end of the opened entries */
+    private static final Opened END = new Opened(null, null);
+
+    /* Number of entries */
+    private final int count;
+    /* Largest number of entries opened and not written yet */
+    private final int parallelism;
+    /* Time in nanoseconds after which the archive is ended */
+    private final long timeoutNanos;
+    /* Opens an entry by its index */
+    private final IntFunction<CompletableFuture<Entry>> opener;
+    /* The opened entries, in the order they are to be written */
+    private final BlockingQueue<Opened> opened = new LinkedBlockingQueue<>();
+    /* Opens the entries, once the archive is being written */
+    private volatile CompletableFuture<Void> fanOut;
+    /* Whether the archive takes no more entries */
+    private volatile boolean closed;
+
+    /**
+     * Initialize the archive
+     *
+     * @param count Number of entries
+     * @param parallelism Largest number of entries opened and not written yet
+     * @param timeout Time in milliseconds after which the archive is ended, 0 waits for every entry
+     * @param opener Opens the entry of an index, the future of an entry which cannot be opened is completed
+     *               exceptionally or with <code>null</code>
+     */
+    public ZipContent(int count, int parallelism, long timeout, IntFunction<CompletableFuture<Entry>> opener) {
+        this.count = count;
+        this.parallelism = parallelism;
+        this.timeoutNanos = timeout > 0 ? TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE;
+        this.opener = opener;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Not known before the archive is written.
+     */
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        List<Integer> indexes = IntStream.range(0, count).boxed().collect(Collectors.toList());
+        fanOut = FanOut.run(indexes, parallelism, this::open, (index, item, result, throwable) -> { });
+        fanOut.whenComplete((result, throwable) -> opened.add(END));
+
+        long start = System.nanoTime();
+        int written = 0;
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        try {
+            while (true) {
+                long remaining = timeoutNanos - (System.nanoTime() - start);
+                Opened next = remaining > 0 ? opened.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (next == null) {
+                    LOGGER.error("Archive timed out after " + written + " of " + count + " entries.");
+                    break;
+                } else if (next == END) {
+                    break;
+                }
+                try {
+                    zip.putNextEntry(new ZipEntry(next.entry.getName()));
+                    next.entry.getContent().writeTo(zip);
+                    zip.closeEntry();
+                } finally {
+                    next.entry.getContent().close();
+                }
+                written++;
+                /* Makes room in the window for the next entry */
+                next.written.complete(null);
+            }
+            zip.finish();
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.error("Archive aborted after " + written + " of " + count + " entries - Exception: "
+                    + e.getMessage());
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the entries");
+        } finally {
+            close();
+        }
+        LOGGER.debug("Written archive of " + written + " of " + count + " entries.");
+    }
+
+    /**
+     * Stops opening entries and releases the opened entries which are not written
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (fanOut != null) {
+            fanOut.cancel(true);
+        }
+        Opened next;
+        while ((next = opened.poll()) != null) {
+            if (next != END) {
+                closeQuietly(next.entry);
+            }
+        }
+    }
+
+    /* Opens an entry, the returned future is completed once it is written */
+    private CompletableFuture<Void> open(int index) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        opener.apply(index).whenComplete((entry, throwable) -> {
+            if (entry == null) {
+                LOGGER.error("Entry[" + index + "] cannot be opened, leaving it out."
+                        + (throwable == null ? "" : " - Exception: " + throwable.getMessage()));
+                written.complete(null);
+                return;
+            }
+            Opened next = new Opened(entry, written);
+            opened.add(next);
+            /* Closed meanwhile, release the entry unless it has already been released */
+            if (closed && opened.remove(next)) {
+                closeQuietly(entry);
+            }
+        });
+        return written;
+    }
+
+    /* Releases an entry which will not be written */
+    private static void closeQuietly(Entry entry) {
+        try {
+            entry.getContent().close();
+        } catch (IOException e) {
+            LOGGER.error("Cannot close Entry[" + entry.getName() + "] - Exception: " + e.getMessage());
+        }
+    }
+
+    /**
+     * An entry of the archive
+     */
+    public static class Entry {
+
+        /* Name of the entry */
+        private final String name;
+        /* Content of the entry */
+        private final StreamingContent content;
+
+        /**
+         * Initialize the entry
+         *
+         * @param name Name of the entry, unique in the archive
+         * @param content Content of the entry, closed once it is written or left out
+         */
+        public Entry(String name, StreamingContent content) {
+            this.name = name;
+            this.content = content;
+        }
+
+        /**
+         * Gets the name of the entry
+         *
+         * @return The name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the content of the entry
+         *
+         * @return The content
+         */
+        public StreamingContent getContent() {
+            return content;
+        }
+    }
+
+    /* An opened entry waiting to be written */
+    private static class Opened {
+
+        /* The entry */
+        private final Entry entry;
+        /* Completed once the entry is written */
+        private final CompletableFuture<Void> written;
+
+        private Opened(Entry entry, CompletableFuture<Void> written) {
+            this.entry = entry;
+            this.written = written;
+        }
+    }
+}
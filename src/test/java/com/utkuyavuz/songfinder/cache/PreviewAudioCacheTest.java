@@ -0,0 +1,250 @@
+package com.utkuyavuz.songfinder.cache;
+
+import com.utkuyavuz.songfinder.util.ByteBufferContent;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+@RunWith(SpringRunner.class)
+public class PreviewAudioCacheTest {
+
+    private static final String PREVIEW_URL = "https://p.scdn.co/mp3-preview/47ae160853bef11a71e109da384440a29e5d56b0";
+
+    private PreviewAudioCache cache;
+    private byte[] audio;
+
+    @Before
+    public void initialize() {
+        cache = new PreviewAudioCache(4096, 1024);
+        audio = new byte[1000];
+        Arrays.fill(audio, (byte) 7);
+    }
+
+    @Test
+    public void getTest() throws IOException {
+        /* Cached audio is written back unchanged */
+        cache.put(PREVIEW_URL, audio);
+        StreamingContent content = cache.get(PREVIEW_URL);
+        assert (content != null);
+        assert (content.getContentLength() == audio.length);
+        assert (Arrays.equals(audio, write(content)));
+        assert (cache.get("https://p.scdn.co/mp3-preview/other") == null);
+    }
+
+    @Test
+    public void entryLimitTest() {
+        /* Audio larger than the entry limit is not cached */
+        cache.put(PREVIEW_URL, new byte[2048]);
+        assert (cache.get(PREVIEW_URL) == null);
+    }
+
+    @Test
+    public void weightTest() {
+        /* Resident bytes never exceed the maximum */
+        for (int i = 0; i < 10; i++) {
+            cache.put(PREVIEW_URL + i, audio);
+        }
+        cache.getCache().cleanUp();
+        assert (cache.getResidentBytes() <= 4096);
+        assert (cache.getResidentBytes() > 0);
+    }
+
+    @Test
+    public void fillOnWriteTest() throws IOException {
+        /* Streamed audio is cached once it is written completely */
+        StreamingContent content = cache.fillOnWrite(PREVIEW_URL, new ByteBufferContent(ByteBuffer.wrap(audio)));
+        assert (cache.get(PREVIEW_URL) == null);
+        assert (Arrays.equals(audio, write(content)));
+        assert (cache.get(PREVIEW_URL) != null);
+        assert (Arrays.equals(audio, write(cache.get(PREVIEW_URL))));
+    }
+
+    @Test
+    public void concurrentFillTest() throws IOException {
+        /* Only the first streamed audio of a url is filled, the others are returned as they are */
+        StreamingContent first = new ByteBufferContent(ByteBuffer.wrap(audio));
+        StreamingContent second = new ByteBufferContent(ByteBuffer.wrap(audio));
+        StreamingContent fill = cache.fillOnWrite(PREVIEW_URL, first);
+        assert (fill != first);
+        assert (cache.fillOnWrite(PREVIEW_URL, second) == second);
+        assert (cache.getFillingBytes() == audio.length);
+
+        write(fill);
+        assert (cache.getFillingBytes() == 0);
+        assert (cache.get(PREVIEW_URL) != null);
+    }
+
+    @Test
+    public void fillingLimitTest() throws IOException {
+        /* Streamed audio is not filled while the fills in progress are at their maximum */
+        PreviewAudioCache limited = new PreviewAudioCache(4096, 1024, 1500);
+        StreamingContent fill = limited.fillOnWrite(PREVIEW_URL, new ByteBufferContent(ByteBuffer.wrap(audio)));
+        StreamingContent other = new ByteBufferContent(ByteBuffer.wrap(audio));
+        assert (limited.fillOnWrite(PREVIEW_URL + 1, other) == other);
+        assert (limited.follow(PREVIEW_URL + 1) == null);
+
+        /* An unwritten fill releases its buffer when it is closed */
+        fill.close();
+        assert (limited.getFillingBytes() == 0);
+        assert (limited.fillOnWrite(PREVIEW_URL + 1, other) != other);
+    }
+
+    @Test
+    public void followTest() throws Exception {
+        /* A follower receives the audio as the fill writes it, and the fill ends in the cache */
+        PipedContent upstream = new PipedContent(audio);
+        StreamingContent fill = cache.fillOnWrite(PREVIEW_URL, upstream);
+        StreamingContent follower = cache.follow(PREVIEW_URL);
+        assert (follower != null);
+
+        Thread writer = new Thread(() -> {
+            try {
+                write(fill);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.start();
+        assert (Arrays.equals(audio, write(follower)));
+        writer.join();
+
+        assert (cache.follow(PREVIEW_URL) == null);
+        assert (cache.get(PREVIEW_URL) != null);
+        assert (cache.getFollowCount() == 1);
+    }
+
+    @Test
+    public void failedFollowTest() throws IOException {
+        /* A follower fails with the fill */
+        StreamingContent fill = cache.fillOnWrite(PREVIEW_URL, new ByteBufferContent(ByteBuffer.wrap(audio, 0, 10)) {
+            @Override
+            public long getContentLength() {
+                return audio.length;
+            }
+        });
+        StreamingContent follower = cache.follow(PREVIEW_URL);
+        write(fill);
+        try {
+            write(follower);
+            assert (false);
+        } catch (IOException e) {
+            assert (e.getMessage().startsWith("Followed fill ended after 10 bytes"));
+        }
+        assert (cache.get(PREVIEW_URL) == null);
+    }
+
+    @Test
+    public void fallbackFollowTest() throws IOException {
+        /* A follower which has written nothing when the fill fails writes the audio of its fallback */
+        StreamingContent fill = cache.fillOnWrite(PREVIEW_URL, new ByteBufferContent(ByteBuffer.wrap(audio, 0, 10)) {
+            @Override
+            public long getContentLength() {
+                return audio.length;
+            }
+        });
+        StreamingContent follower = cache.follow(PREVIEW_URL,
+                () -> new ByteBufferContent(ByteBuffer.wrap(audio)));
+        StreamingContent mismatched = cache.follow(PREVIEW_URL,
+                () -> new ByteBufferContent(ByteBuffer.wrap(audio, 0, 500)));
+        write(fill);
+        assert (Arrays.equals(audio, write(follower)));
+        try {
+            write(mismatched);
+            assert (false);
+        } catch (IOException e) {
+            assert (e.getMessage().startsWith("Opened audio length[500] does not match[1000]"));
+        }
+        assert (cache.get(PREVIEW_URL) == null);
+    }
+
+    @Test
+    public void closedFollowTest() throws IOException {
+        /* A fill whose client goes away keeps filling for its followers only while one of them is left */
+        PipedContent upstream = new PipedContent(audio);
+        StreamingContent fill = cache.fillOnWrite(PREVIEW_URL, upstream);
+        StreamingContent gone = cache.follow(PREVIEW_URL);
+        StreamingContent follower = cache.follow(PREVIEW_URL);
+        gone.close();
+        gone.close();
+        write(fill, 200);
+        assert (upstream.written == audio.length);
+        assert (cache.get(PREVIEW_URL) != null);
+        assert (Arrays.equals(audio, write(follower)));
+
+        /* Once its last follower has closed early, the fill gives up with its client */
+        cache.getCache().invalidateAll();
+        upstream = new PipedContent(audio);
+        fill = cache.fillOnWrite(PREVIEW_URL, upstream);
+        cache.follow(PREVIEW_URL).close();
+        write(fill, 200);
+        assert (upstream.written < audio.length);
+        assert (cache.get(PREVIEW_URL) == null);
+    }
+
+    /* Writes an audio in small chunks, slowly */
+    private static class PipedContent extends ByteBufferContent {
+
+        private final byte[] audio;
+        private volatile int written;
+
+        PipedContent(byte[] audio) {
+            super(ByteBuffer.wrap(audio));
+            this.audio = audio;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            for (int i = 0; i < audio.length; i += 100) {
+                out.write(audio, i, Math.min(100, audio.length - i));
+                written = Math.min(i + 100, audio.length);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    /* Writes a content to a client which goes away after the given number of bytes */
+    private static void write(StreamingContent content, int limit) throws IOException {
+        int[] size = new int[1];
+        try {
+            content.writeTo(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    size[0] += len;
+                    if (size[0] > limit) {
+                        throw new IOException("Client went away");
+                    }
+                }
+            });
+            assert (false);
+        } catch (IOException e) {
+            assert ("Client went away".equals(e.getMessage()));
+        } finally {
+            content.close();
+        }
+    }
+
+    private static byte[] write(StreamingContent content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.writeTo(out);
+        content.close();
+        return out.toByteArray();
+    }
+}
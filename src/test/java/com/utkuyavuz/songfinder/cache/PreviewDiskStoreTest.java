@@ -0,0 +1,144 @@
+package com.utkuyavuz.songfinder.cache;
+
+import com.utkuyavuz.songfinder.util.ByteBufferContent;
+import com.utkuyavuz.songfinder.util.Digests;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(SpringRunner.class)
+public class PreviewDiskStoreTest {
+
+    private static final String PREVIEW_URL = "https://p.scdn.co/mp3-preview/47ae160853bef11a71e109da384440a29e5d56b0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private PreviewDiskStore store;
+    private byte[] audio;
+
+    @Before
+    public void initialize() throws IOException {
+        directory = folder.newFolder("previews").toPath();
+        store = new PreviewDiskStore(directory, 4096, 1024, 60000);
+        audio = new byte[1000];
+        Arrays.fill(audio, (byte) 7);
+    }
+
+    @After
+    public void close() {
+        store.close();
+    }
+
+    @Test
+    public void getTest() throws IOException {
+        /* Stored audio is written back unchanged */
+        store.put(PREVIEW_URL, audio);
+        assert (Arrays.equals(audio, write(store.get(PREVIEW_URL))));
+        assert (store.get("https://p.scdn.co/mp3-preview/other") == null);
+        assert (store.getHitCount() == 1);
+        assert (store.getMissCount() == 1);
+        assert (store.getResidentBytes() == audio.length);
+    }
+
+    @Test
+    public void restartTest() throws IOException {
+        /* Stored audio survives a restart, unfinished files are removed */
+        store.put(PREVIEW_URL, audio);
+        Files.write(directory.resolve("unfinished.tmp"), new byte[10]);
+        store.close();
+
+        store = new PreviewDiskStore(directory, 4096, 1024, 60000);
+        assert (Arrays.equals(audio, write(store.get(PREVIEW_URL))));
+        assert (!Files.exists(directory.resolve("unfinished.tmp")));
+        assert (store.getResidentBytes() == audio.length);
+    }
+
+    @Test
+    public void fillOnWriteTest() throws IOException {
+        /* Streamed audio is stored once it is written completely */
+        StreamingContent content = store.fillOnWrite(PREVIEW_URL, new ByteBufferContent(ByteBuffer.wrap(audio)));
+        assert (store.get(PREVIEW_URL) == null);
+        assert (Arrays.equals(audio, write(content)));
+        assert (Arrays.equals(audio, write(store.get(PREVIEW_URL))));
+    }
+
+    @Test
+    public void abortedFillTest() throws IOException {
+        /* Audio whose client goes away is not stored, and no temporary file is left */
+        StreamingContent content = store.fillOnWrite(PREVIEW_URL, new ByteBufferContent(ByteBuffer.wrap(audio)));
+        try {
+            content.writeTo(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("Broken pipe");
+                }
+            });
+            assert (false);
+        } catch (IOException e) {
+            assert ("Broken pipe".equals(e.getMessage()));
+        }
+        assert (store.get(PREVIEW_URL) == null);
+        assert (!Files.list(directory).findAny().isPresent());
+    }
+
+    @Test
+    public void evictTest() throws IOException {
+        /* The store is brought below its maximum, least recently served first */
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            store.put(PREVIEW_URL + i, audio);
+            setLastServed(PREVIEW_URL + i, now - TimeUnit.HOURS.toMillis(4 - i));
+        }
+        write(store.get(PREVIEW_URL + 0));
+        store.put(PREVIEW_URL + 4, audio);
+        store.evict();
+        assert (store.getResidentBytes() <= 4096);
+        assert (store.getEvictionCount() > 0);
+        assert (store.get(PREVIEW_URL + 0) != null);
+        assert (store.get(PREVIEW_URL + 1) == null);
+    }
+
+    @Test
+    public void touchTest() throws IOException {
+        /* A hit marks its file as served only if it was not marked recently */
+        store.put(PREVIEW_URL, audio);
+        Path file = directory.resolve(Digests.sha256Hex(PREVIEW_URL));
+        long recent = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - 1);
+        setLastServed(PREVIEW_URL, recent);
+        write(store.get(PREVIEW_URL));
+        assert (Files.getLastModifiedTime(file).toMillis() == recent);
+
+        long old = recent - TimeUnit.HOURS.toMillis(1);
+        setLastServed(PREVIEW_URL, old);
+        write(store.get(PREVIEW_URL));
+        assert (Files.getLastModifiedTime(file).toMillis() > old);
+    }
+
+    private void setLastServed(String previewUrl, long millis) throws IOException {
+        Files.setLastModifiedTime(directory.resolve(Digests.sha256Hex(previewUrl)), FileTime.fromMillis(millis));
+    }
+
+    private static byte[] write(StreamingContent content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.writeTo(out);
+        content.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package com.utkuyavuz.songfinder.cache;
+
+import com.utkuyavuz.songfinder.service.output.TrackOutput;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+public class SearchResultCacheTest {
+
+    private static final String MARKET = "TR";
+    private static final String QUERY = "Bodrum Akşamları";
+    private static final String PREVIEW_URL = "https://p.scdn.co/mp3-preview/47ae160853bef11a71e109da384440a29e5d56b0";
+
+    private SearchResultCache cache;
+
+    @Before
+    public void initialize() {
+        cache = new SearchResultCache(100, 60000);
+        cache.put(QUERY, MARKET, PREVIEW_URL);
+    }
+
+    @Test
+    public void getTest() {
+        /* Cached query is a hit, others are misses */
+        assert (PREVIEW_URL.equals(cache.get(QUERY, MARKET)));
+        assert (cache.get("Californication", MARKET) == null);
+        assert (cache.getHitCount() == 1);
+        assert (cache.getMissCount() == 1);
+        assert (cache.getPutCount() == 1);
+    }
+
+    @Test
+    public void staleMissTest() throws InterruptedException {
+        /* An expired entry still held for the grace window is a miss, as the search goes upstream */
+        SearchResultCache stale = new SearchResultCache(100, 10, 1000, 1000);
+        stale.put(QUERY, MARKET, PREVIEW_URL);
+        assert (PREVIEW_URL.equals(stale.get(QUERY, MARKET)));
+        Thread.sleep(50);
+        assert (stale.getEntry(QUERY, MARKET) != null);
+        assert (stale.get(QUERY, MARKET) == null);
+        assert (stale.getHitCount() == 1);
+        assert (stale.getMissCount() == 2);
+    }
+
+    @Test
+    public void normalizedQueryTest() {
+        /* Case and surrounding or repeated whitespace do not matter */
+        assert (PREVIEW_URL.equals(cache.get("  BODRUM   Akşamları ", MARKET)));
+    }
+
+    @Test
+    public void marketTest() {
+        /* Same query in another market is a miss */
+        assert (cache.get(QUERY, "US") == null);
+    }
+
+    @Test
+    public void trackTest() {
+        /* The whole track is cached with its preview url */
+        TrackOutput track = new TrackOutput();
+        track.setName("Californication");
+        track.setPreviewUrl(PREVIEW_URL);
+        cache.put("Californication", MARKET, track);
+        assert (cache.getTrack("californication", MARKET).getName().equals("Californication"));
+        assert (PREVIEW_URL.equals(cache.get("Californication", MARKET)));
+        assert (cache.getTrack(QUERY, MARKET).getName() == null);
+    }
+
+    @Test
+    public void expireTest() throws InterruptedException {
+        /* Entries expire after the ttl */
+        SearchResultCache shortLived = new SearchResultCache(100, 10);
+        shortLived.put(QUERY, MARKET, PREVIEW_URL);
+        Thread.sleep(50);
+        assert (shortLived.get(QUERY, MARKET) == null);
+        assert (shortLived.getEntry(QUERY, MARKET) == null);
+    }
+
+    @Test
+    public void staleTest() throws InterruptedException {
+        /* Expired entries are kept for the grace window, and for the stale if error limit */
+        SearchResultCache stale = new SearchResultCache(100, 10, 100, 300);
+        stale.put(QUERY, MARKET, PREVIEW_URL);
+        Thread.sleep(50);
+        SearchResultCache.Entry entry = stale.getEntry(QUERY, MARKET);
+        assert (stale.get(QUERY, MARKET) == null);
+        assert (!entry.isFresh() && entry.isRevalidatable() && entry.isServableOnError());
+        assert (PREVIEW_URL.equals(entry.getTrack().getPreviewUrl()));
+
+        /* One refresh at a time */
+        assert (entry.startRefresh() && !entry.startRefresh());
+        entry.endRefresh();
+        assert (entry.startRefresh() && stale.getRefreshCount() == 2);
+
+        Thread.sleep(150);
+        assert (!entry.isRevalidatable() && entry.isServableOnError());
+        Thread.sleep(250);
+        assert (!entry.isServableOnError());
+        assert (stale.getEntry(QUERY, MARKET) == null);
+    }
+}
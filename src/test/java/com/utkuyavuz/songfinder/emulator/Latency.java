@@ -0,0 +1,94 @@
+package com.utkuyavuz.songfinder.emulator;
+
+import java.util.Random;
+
+/**
+ * A distribution of the latency of an emulated endpoint, in milliseconds.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public interface Latency {
+
+    /**
+     * Draws the latency of a response
+     *
+     * @param random Source of randomness
+     * @return The latency in milliseconds
+     */
+    long next(Random random);
+
+    /**
+     * No latency
+     *
+     * @return The {@link Latency}
+     */
+    static Latency none() {
+        return random -> 0;
+    }
+
+    /**
+     * A fixed latency
+     *
+     * @param millis The latency
+     * @return The {@link Latency}
+     */
+    static Latency fixed(long millis) {
+        return random -> millis;
+    }
+
+    /**
+     * A latency uniformly distributed between two bounds
+     *
+     * @param min The smallest latency
+     * @param max The largest latency
+     * @return The {@link Latency}
+     */
+    static Latency uniform(long min, long max) {
+        return random -> min + (long) (random.nextDouble() * (max - min));
+    }
+
+    /**
+     * A log-normally distributed latency with a long tail, like the one of a remote service, given by its median and
+     * its 99th percentile
+     *
+     * @param median The median latency
+     * @param p99 The 99th percentile latency
+     * @return The {@link Latency}
+     */
+    static Latency logNormal(double median, double p99) {
+        double mu = Math.log(median);
+        /* 2.326 is the z-score of the 99th percentile of the standard normal distribution */
+        double sigma = Math.log(p99 / median) / 2.326;
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * Parses a latency given as <code>none</code>, <code>fixed:MS</code>, <code>uniform:MIN-MAX</code> or
+     * <code>lognormal:MEDIAN,P99</code>
+     *
+     * @param value The latency
+     * @return The {@link Latency}
+     * @throws IllegalArgumentException If the latency cannot be parsed
+     */
+    static Latency parse(String value) {
+        int colon = value.indexOf(':');
+        String type = colon < 0 ? value : value.substring(0, colon);
+        String[] bounds = colon < 0 ? new String[0] : value.substring(colon + 1).split("[-,]");
+        try {
+            if (type.equals("none") && bounds.length == 0) {
+                return none();
+            } else if (type.equals("fixed") && bounds.length == 1) {
+                return fixed(Long.parseLong(bounds[0]));
+            } else if (type.equals("uniform") && bounds.length == 2) {
+                return uniform(Long.parseLong(bounds[0]), Long.parseLong(bounds[1]));
+            } else if (type.equals("lognormal") && bounds.length == 2) {
+                return logNormal(Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency[" + value + "].", e);
+        }
+        throw new IllegalArgumentException("Invalid latency[" + value + "].");
+    }
+}
@@ -0,0 +1,662 @@
+package com.utkuyavuz.songfinder.emulator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An embedded stand-in for the Spotify Web API search and get several tracks endpoints and the preview CDN, for
+ * offline tests and load tests. <code>/v1/search</code> answers any query with tracks generated from it, whose
+ * preview urls point to <code>/mp3-preview/{id}</code> of the emulator, where a preview audio is served with single
+ * range support. <code>/v1/tracks</code> answers up to 50 ids with tracks generated from them, except the ids which
+ * start with <code>0000</code>, which are unknown and answered with <code>null</code>. Both endpoints answer the
+ * access tokens which start with {@link #EXPIRED_TOKEN_PREFIX} with a <code>401 Unauthorized</code>.
+ * <br/> The latency distribution, the error rate and the rate of <code>429 Too Many Requests</code> are configured
+ * for each of the endpoints with {@link #getSearch()}, {@link #getTracks()} and {@link #getPreview()}, also while
+ * it is running.
+ * Point the application at the emulator with <code>songfinder.spotify.base-url</code>.
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class SpotifyEmulator implements Closeable {
+
+    /* The Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpotifyEmulator.class);
+
+    /* Characters of a Spotify id */
+    private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    /* Number of tracks of a search without a limit */
+    private static final int DEFAULT_LIMIT = 20;
+    /* Largest number of tracks of a search */
+    private static final int MAXIMUM_LIMIT = 50;
+    /* Largest number of ids of a track lookup */
+    private static final int MAXIMUM_IDS = 50;
+    /* Prefix of the ids of the unknown tracks */
+    private static final String UNKNOWN_ID_PREFIX = "0000";
+    /** Prefix of the access tokens which are answered with a 401, as expired or revoked tokens are */
+    public static final String EXPIRED_TOKEN_PREFIX = "expired";
+
+    /* The server */
+    private final HttpServer server;
+    /* Threads of the server, a latency blocks one */
+    private final ExecutorService executor;
+    /* Base url of the emulator */
+    private final String baseUrl;
+    /* The search endpoint */
+    private final Route search = new Route();
+    /* The get several tracks endpoint */
+    private final Route tracks = new Route();
+    /* The preview CDN */
+    private final Route preview = new Route();
+    /* The preview audio */
+    private volatile byte[] audio;
+    /* Fraction of the tracks without a preview url */
+    private volatile double missingPreviewRate;
+
+    /**
+     * Starts an emulator on a free port of the loopback interface
+     *
+     * @throws IOException If the server cannot be started
+     */
+    public SpotifyEmulator() throws IOException {
+        this("127.0.0.1", 0);
+    }
+
+    /**
+     * Starts an emulator
+     *
+     * @param host Address to listen on
+     * @param port Port to listen on, 0 for a free port
+     * @throws IOException If the server cannot be started
+     */
+    public SpotifyEmulator(String host, int port) throws IOException {
+        setPreviewBytes(360000);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "spotify-emulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext("/v1/search", exchange -> handle(exchange, search, this::search));
+        this.server.createContext("/v1/tracks", exchange -> handle(exchange, tracks, this::tracks));
+        this.server.createContext("/mp3-preview/", exchange -> handle(exchange, preview, this::preview));
+        this.server.start();
+        this.baseUrl = "http://" + host + ":" + server.getAddress().getPort();
+        LOGGER.info("Spotify emulator listening - URL[" + baseUrl + "]");
+    }
+
+    /**
+     * Runs an emulator until the process is stopped, see {@link #configure(Map)} for the options
+     *
+     * @param args Options as <code>--name=value</code>, and <code>--host</code> and <code>--port</code>
+     * @throws IOException If the server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        SpotifyEmulator emulator = new SpotifyEmulator(options.getOrDefault("host", "127.0.0.1"),
+                Integer.parseInt(options.getOrDefault("port", "18098")));
+        emulator.configure(options);
+        System.out.println("Spotify emulator listening at " + emulator.getBaseUrl()
+                + ", start the application with --songfinder.spotify.base-url=" + emulator.getBaseUrl());
+    }
+
+    /**
+     * Parses options given as <code>--name=value</code>
+     *
+     * @param args The arguments
+     * @return The options by name
+     * @throws IllegalArgumentException If an argument is not an option
+     */
+    public static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Invalid option[" + arg + "], expected --name=value.");
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Configures the emulator from options, ignoring the ones it does not know:
+     * <code>search-latency</code>, <code>tracks-latency</code>, <code>preview-latency</code>
+     * (see {@link Latency#parse(String)}), <code>search-error-rate</code>, <code>tracks-error-rate</code>,
+     * <code>preview-error-rate</code>, <code>search-throttle-rate</code>, <code>tracks-throttle-rate</code>,
+     * <code>preview-throttle-rate</code>, <code>retry-after</code> (seconds), <code>preview-bytes</code> and
+     * <code>missing-preview-rate</code>
+     *
+     * @param options The options by name
+     */
+    public void configure(Map<String, String> options) {
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) {
+                case "search-latency":
+                    search.setLatency(Latency.parse(value));
+                    break;
+                case "tracks-latency":
+                    tracks.setLatency(Latency.parse(value));
+                    break;
+                case "preview-latency":
+                    preview.setLatency(Latency.parse(value));
+                    break;
+                case "search-error-rate":
+                    search.setErrorRate(Double.parseDouble(value));
+                    break;
+                case "tracks-error-rate":
+                    tracks.setErrorRate(Double.parseDouble(value));
+                    break;
+                case "preview-error-rate":
+                    preview.setErrorRate(Double.parseDouble(value));
+                    break;
+                case "search-throttle-rate":
+                    search.setThrottleRate(Double.parseDouble(value));
+                    break;
+                case "tracks-throttle-rate":
+                    tracks.setThrottleRate(Double.parseDouble(value));
+                    break;
+                case "preview-throttle-rate":
+                    preview.setThrottleRate(Double.parseDouble(value));
+                    break;
+                case "retry-after":
+                    search.setRetryAfter(Integer.parseInt(value));
+                    tracks.setRetryAfter(Integer.parseInt(value));
+                    preview.setRetryAfter(Integer.parseInt(value));
+                    break;
+                case "preview-bytes":
+                    setPreviewBytes(Integer.parseInt(value));
+                    break;
+                case "missing-preview-rate":
+                    setMissingPreviewRate(Double.parseDouble(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Gets the base url, to be set as <code>songfinder.spotify.base-url</code>
+     *
+     * @return The base url
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Gets the search endpoint, to configure it and read its counts
+     *
+     * @return The search {@link Route}
+     */
+    public Route getSearch() {
+        return search;
+    }
+
+    /**
+     * Gets the get several tracks endpoint, to configure it and read its counts
+     *
+     * @return The tracks {@link Route}
+     */
+    public Route getTracks() {
+        return tracks;
+    }
+
+    /**
+     * Gets the preview CDN, to configure it and read its counts
+     *
+     * @return The preview {@link Route}
+     */
+    public Route getPreview() {
+        return preview;
+    }
+
+    /**
+     * Gets the preview audio served for every track
+     *
+     * @return The audio
+     */
+    public byte[] getAudio() {
+        return audio;
+    }
+
+    /**
+     * Sets the size of the preview audio
+     *
+     * @param previewBytes The size in bytes
+     */
+    public void setPreviewBytes(int previewBytes) {
+        byte[] bytes = new byte[previewBytes];
+        new Random(previewBytes).nextBytes(bytes);
+        this.audio = bytes;
+    }
+
+    /**
+     * Sets the fraction of the tracks which have no preview url, as some Spotify tracks do not
+     *
+     * @param missingPreviewRate The fraction between 0 and 1
+     */
+    public void setMissingPreviewRate(double missingPreviewRate) {
+        this.missingPreviewRate = missingPreviewRate;
+    }
+
+    /**
+     * Restores the default configuration and clears the counts
+     */
+    public void reset() {
+        search.reset();
+        tracks.reset();
+        preview.reset();
+        setPreviewBytes(360000);
+        setMissingPreviewRate(0);
+    }
+
+    /**
+     * Stops the server
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /* Applies the throttling, latency and errors of a route around its handler */
+    private void handle(HttpExchange exchange, Route route, Handler handler) throws IOException {
+        try {
+            route.requests.increment();
+            Random random = ThreadLocalRandom.current();
+            if (random.nextDouble() < route.throttleRate || Route.take(route.throttles)) {
+                route.throttled.increment();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(route.retryAfter));
+                sendError(exchange, 429, "API rate limit exceeded");
+                return;
+            }
+            long latency = route.latency.next(random);
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            if (random.nextDouble() < route.errorRate || Route.take(route.errors)) {
+                route.failed.increment();
+                sendError(exchange, random.nextBoolean() ? 500 : 503, "Emulated server error");
+                return;
+            }
+            handler.handle(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /* Answers a request without a token, or with an expired token, with a 401 */
+    private static boolean authorize(HttpExchange exchange) throws IOException {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ") || authorization.length() == 7) {
+            sendError(exchange, 401, "No token provided");
+            return false;
+        }
+        if (authorization.startsWith("Bearer " + EXPIRED_TOKEN_PREFIX)) {
+            sendError(exchange, 401, "The access token expired");
+            return false;
+        }
+        return true;
+    }
+
+    /* Answers a search with tracks generated from its query */
+    private void search(HttpExchange exchange) throws IOException {
+        if (!authorize(exchange)) {
+            return;
+        }
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        String query = parameters.getOrDefault("q", "");
+        if (query.trim().isEmpty()) {
+            sendError(exchange, 400, "No search query");
+            return;
+        }
+        int limit = Math.min(MAXIMUM_LIMIT, Integer.parseInt(parameters.getOrDefault("limit",
+                String.valueOf(DEFAULT_LIMIT))));
+        int offset = Integer.parseInt(parameters.getOrDefault("offset", "0"));
+
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < limit; i++) {
+            items.add(track(query, offset + i));
+        }
+        JsonObject tracks = new JsonObject();
+        tracks.addProperty("href", baseUrl + exchange.getRequestURI());
+        tracks.add("items", items);
+        tracks.addProperty("limit", limit);
+        tracks.add("next", JsonNull.INSTANCE);
+        tracks.addProperty("offset", offset);
+        tracks.add("previous", JsonNull.INSTANCE);
+        tracks.addProperty("total", offset + limit);
+        JsonObject response = new JsonObject();
+        response.add("tracks", tracks);
+        send(exchange, 200, "application/json; charset=utf-8", response.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* Answers a lookup of up to 50 ids with tracks generated from them, in the order of the ids */
+    private void tracks(HttpExchange exchange) throws IOException {
+        if (!authorize(exchange)) {
+            return;
+        }
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        String[] ids = parameters.getOrDefault("ids", "").split(",");
+        if (ids.length > MAXIMUM_IDS) {
+            sendError(exchange, 400, "Too many ids requested");
+            return;
+        }
+        JsonArray items = new JsonArray();
+        for (String id : ids) {
+            if (id.length() != 22 || !id.chars().allMatch(c -> BASE62.indexOf(c) >= 0)) {
+                sendError(exchange, 400, "invalid id");
+                return;
+            }
+            if (id.startsWith(UNKNOWN_ID_PREFIX)) {
+                items.add(JsonNull.INSTANCE);
+            } else {
+                items.add(track(new Random(id.hashCode()), id, "Track " + id.substring(0, 6), 0));
+            }
+        }
+        JsonObject response = new JsonObject();
+        response.add("tracks", items);
+        send(exchange, 200, "application/json; charset=utf-8", response.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* Serves the preview audio, or a single range of it */
+    private void preview(HttpExchange exchange) throws IOException {
+        byte[] body = audio;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (range == null || !range.startsWith("bytes=") || range.contains(",")) {
+            send(exchange, 200, "audio/mpeg", body);
+            return;
+        }
+        String[] bounds = range.substring(6).split("-", -1);
+        long start;
+        long end;
+        try {
+            if (bounds[0].isEmpty()) {
+                start = Math.max(0, body.length - Long.parseLong(bounds[1]));
+                end = body.length - 1;
+            } else {
+                start = Long.parseLong(bounds[0]);
+                end = bounds[1].isEmpty() ? body.length - 1 : Math.min(body.length - 1, Long.parseLong(bounds[1]));
+            }
+        } catch (NumberFormatException e) {
+            send(exchange, 200, "audio/mpeg", body);
+            return;
+        }
+        if (start >= body.length || start > end) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes */" + body.length);
+            exchange.sendResponseHeaders(416, -1);
+            return;
+        }
+        byte[] part = new byte[(int) (end - start + 1)];
+        System.arraycopy(body, (int) start, part, 0, part.length);
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+        send(exchange, 206, "audio/mpeg", part);
+    }
+
+    /* Generates the track at a position of the results of a query */
+    private JsonObject track(String query, int position) {
+        long seed = query.toLowerCase(Locale.ROOT).hashCode() * 31L + position;
+        Random random = new Random(seed);
+        return track(random, id(random), query, position);
+    }
+
+    /* Generates a track with the given id and name */
+    private JsonObject track(Random random, String id, String name, int position) {
+        String albumId = id(random);
+        String artistId = id(random);
+
+        JsonObject artist = new JsonObject();
+        artist.addProperty("href", baseUrl + "/v1/artists/" + artistId);
+        artist.addProperty("id", artistId);
+        artist.addProperty("name", "Artist " + artistId.substring(0, 6));
+        artist.addProperty("type", "artist");
+        artist.addProperty("uri", "spotify:artist:" + artistId);
+        JsonArray artists = new JsonArray();
+        artists.add(artist);
+
+        JsonArray images = new JsonArray();
+        for (int size : new int[] { 640, 300, 64 }) {
+            JsonObject image = new JsonObject();
+            image.addProperty("height", size);
+            image.addProperty("url", "https://i.scdn.co/image/" + albumId + size);
+            image.addProperty("width", size);
+            images.add(image);
+        }
+        JsonObject album = new JsonObject();
+        album.addProperty("album_type", "album");
+        album.add("artists", artists);
+        album.addProperty("href", baseUrl + "/v1/albums/" + albumId);
+        album.addProperty("id", albumId);
+        album.add("images", images);
+        album.addProperty("name", "Album " + albumId.substring(0, 6));
+        album.addProperty("release_date", (1960 + random.nextInt(58)) + "-01-01");
+        album.addProperty("release_date_precision", "day");
+        album.addProperty("type", "album");
+        album.addProperty("uri", "spotify:album:" + albumId);
+
+        JsonObject track = new JsonObject();
+        track.add("album", album);
+        track.add("artists", artists);
+        track.addProperty("disc_number", 1);
+        track.addProperty("duration_ms", 120000 + random.nextInt(240000));
+        track.addProperty("explicit", false);
+        track.addProperty("href", baseUrl + "/v1/tracks/" + id);
+        track.addProperty("id", id);
+        track.addProperty("is_local", false);
+        track.addProperty("is_playable", true);
+        track.addProperty("name", name);
+        track.addProperty("popularity", random.nextInt(101));
+        if (random.nextDouble() < missingPreviewRate) {
+            track.add("preview_url", JsonNull.INSTANCE);
+        } else {
+            track.addProperty("preview_url", baseUrl + "/mp3-preview/" + id);
+        }
+        track.addProperty("track_number", 1 + position % 12);
+        track.addProperty("type", "track");
+        track.addProperty("uri", "spotify:track:" + id);
+        return track;
+    }
+
+    /* A Spotify id */
+    private static String id(Random random) {
+        char[] id = new char[22];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = BASE62.charAt(random.nextInt(BASE62.length()));
+        }
+        return new String(id);
+    }
+
+    /* Sends an error in the format of the Web API */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("status", status);
+        error.addProperty("message", message);
+        JsonObject response = new JsonObject();
+        response.add("error", error);
+        send(exchange, status, "application/json; charset=utf-8", response.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* Sends a response */
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /* Parses the parameters of a query string */
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    /* Answers a request of a route */
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * The configuration and the counts of an emulated endpoint
+     */
+    public static class Route {
+
+        /* Latency of the responses */
+        private volatile Latency latency = Latency.none();
+        /* Fraction of the requests answered with a 500 or 503 after the latency */
+        private volatile double errorRate;
+        /* Fraction of the requests answered at once with a 429 */
+        private volatile double throttleRate;
+        /* Retry-After of a 429 in seconds */
+        private volatile int retryAfter = 1;
+        /* Number of the next requests answered with a 429 whatever the rate */
+        private final AtomicInteger throttles = new AtomicInteger();
+        /* Number of the next requests answered with a 500 or 503 whatever the rate */
+        private final AtomicInteger errors = new AtomicInteger();
+        /* Number of requests */
+        private final LongAdder requests = new LongAdder();
+        /* Number of requests answered with an error */
+        private final LongAdder failed = new LongAdder();
+        /* Number of requests answered with a 429 */
+        private final LongAdder throttled = new LongAdder();
+
+        /**
+         * Sets the latency of the responses
+         *
+         * @param latency The latency distribution
+         */
+        public void setLatency(Latency latency) {
+            this.latency = latency;
+        }
+
+        /**
+         * Sets the fraction of the requests answered with a <code>500</code> or <code>503</code>
+         *
+         * @param errorRate The fraction between 0 and 1
+         */
+        public void setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+        }
+
+        /**
+         * Sets the fraction of the requests answered with a <code>429</code>
+         *
+         * @param throttleRate The fraction between 0 and 1
+         */
+        public void setThrottleRate(double throttleRate) {
+            this.throttleRate = throttleRate;
+        }
+
+        /**
+         * Answers the next requests with a <code>429</code>
+         *
+         * @param count Number of requests
+         */
+        public void throttleNext(int count) {
+            this.throttles.set(count);
+        }
+
+        /**
+         * Answers the next requests with a <code>500</code> or <code>503</code>
+         *
+         * @param count Number of requests
+         */
+        public void failNext(int count) {
+            this.errors.set(count);
+        }
+
+        /**
+         * Sets the <code>Retry-After</code> of a <code>429</code>
+         *
+         * @param retryAfter The delay in seconds
+         */
+        public void setRetryAfter(int retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * Gets the number of requests
+         *
+         * @return The request count
+         */
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        /**
+         * Gets the number of requests answered with a <code>500</code> or <code>503</code>
+         *
+         * @return The error count
+         */
+        public long getErrorCount() {
+            return failed.sum();
+        }
+
+        /**
+         * Gets the number of requests answered with a <code>429</code>
+         *
+         * @return The throttled count
+         */
+        public long getThrottledCount() {
+            return throttled.sum();
+        }
+
+        /* Takes one of the next requests to answer with an error, if there is one left */
+        private static boolean take(AtomicInteger next) {
+            return next.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+        }
+
+        /* Restores the defaults and clears the counts */
+        private void reset() {
+            latency = Latency.none();
+            errorRate = 0;
+            throttleRate = 0;
+            retryAfter = 1;
+            throttles.set(0);
+            errors.set(0);
+            requests.reset();
+            failed.reset();
+            throttled.reset();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.utkuyavuz.songfinder.loadtest;
+
+import com.utkuyavuz.songfinder.application.SongFinder;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Closed-loop load driver of <code>/rest/songfinder</code>. A fixed number of connections send song preview
+ * requests on a schedule at a target rate, with song names drawn from a Zipfian mix, and the throughput and the
+ * latency percentiles are reported.
+ * <br/> The latency of a request is measured from the time it was scheduled to be sent, not from the time it was
+ * sent, so that a stalled server is not hidden by the requests which the connections could not send meanwhile.
+ * <br/> Without a <code>--target</code> a {@link SpotifyEmulator} and the application are started in this process,
+ * configured by the options of the emulator. Options, as <code>--name=value</code>:
+ * <ul>
+ * <li><code>target</code>: base url of a running application</li>
+ * <li><code>rps</code>: target requests per second, 100 by default</li>
+ * <li><code>duration</code>: measured seconds, 30 by default</li>
+ * <li><code>warmup</code>: seconds before the measurement, 5 by default</li>
+ * <li><code>connections</code>: concurrent connections, 64 by default</li>
+ * <li><code>queries</code>: number of distinct song names, 1000 by default</li>
+ * <li><code>zipf</code>: exponent of the Zipfian mix, 1.0 by default, 0 for a uniform mix</li>
+ * <li><code>token</code>: the Spotify token to send</li>
+ * <li><code>ratelimit</code>: limit the rate of the token in the application started in this process, false by
+ * default as every request is sent with the same token</li>
+ * </ul>
+ *
+ * @author Utku Yavuz
+ * @version 1.0
+ * @since 2018-04-16
+ */
+public class LoadDriver {
+
+    /* Status recorded for a request which failed without a response */
+    private static final int IO_ERROR = -1;
+
+    /* Base url of the application */
+    private final String target;
+    /* Target requests per second */
+    private final double rps;
+    /* Spotify token sent with the requests */
+    private final String token;
+    /* Song names, the most popular first */
+    private final String[] queries;
+    /* Cumulative probabilities of the song names */
+    private final double[] cdf;
+    /* Latencies of the measured requests, in microseconds */
+    private final Recorder recorder = new Recorder(3);
+    /* Number of measured requests by status */
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a driver
+     *
+     * @param target Base url of the application
+     * @param rps Target requests per second
+     * @param token Spotify token sent with the requests
+     * @param queries Number of distinct song names
+     * @param zipf Exponent of the Zipfian mix
+     */
+    public LoadDriver(String target, double rps, String token, int queries, double zipf) {
+        this.target = target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+        this.rps = rps;
+        this.token = token;
+        this.queries = new String[queries];
+        this.cdf = new double[queries];
+        double sum = 0;
+        for (int i = 0; i < queries; i++) {
+            this.queries[i] = "song " + i;
+            sum += 1 / Math.pow(i + 1, zipf);
+            this.cdf[i] = sum;
+        }
+        for (int i = 0; i < queries; i++) {
+            this.cdf[i] /= sum;
+        }
+    }
+
+    /**
+     * Runs a load test
+     *
+     * @param args Options as <code>--name=value</code>
+     * @throws Exception If the load test cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = SpotifyEmulator.parseOptions(args);
+        double rps = Double.parseDouble(options.getOrDefault("rps", "100"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "64"));
+        int queries = Integer.parseInt(options.getOrDefault("queries", "1000"));
+        double zipf = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        String token = options.getOrDefault("token", "loadtest");
+
+        SpotifyEmulator emulator = null;
+        ConfigurableApplicationContext application = null;
+        String target = options.get("target");
+        try {
+            if (target == null) {
+                emulator = new SpotifyEmulator();
+                emulator.configure(options);
+                application = new SpringApplicationBuilder(SongFinder.class)
+                        .bannerMode(Banner.Mode.OFF)
+                        .run("--server.port=0",
+                                "--logging.file=target/loadtest.log",
+                                "--logging.level.com.utkuyavuz=WARN",
+                                "--songfinder.spotify.base-url=" + emulator.getBaseUrl(),
+                                "--songfinder.ratelimit.enabled=" + options.getOrDefault("ratelimit", "false"));
+                target = "http://127.0.0.1:" + application.getEnvironment().getProperty("local.server.port");
+            }
+
+            LoadDriver driver = new LoadDriver(target, rps, token, queries, zipf);
+            System.out.println("Driving " + target + " at " + rps + " requests/s over " + connections
+                    + " connections, " + warmup + "s warmup and " + duration + "s measured");
+            Histogram histogram = driver.run(connections, TimeUnit.SECONDS.toNanos(warmup),
+                    TimeUnit.SECONDS.toNanos(duration));
+            driver.report(histogram, duration);
+            if (emulator != null) {
+                System.out.printf("Emulator     search %d requests (%d errors, %d throttled), "
+                                + "preview %d requests (%d errors, %d throttled)%n",
+                        emulator.getSearch().getRequestCount(), emulator.getSearch().getErrorCount(),
+                        emulator.getSearch().getThrottledCount(), emulator.getPreview().getRequestCount(),
+                        emulator.getPreview().getErrorCount(), emulator.getPreview().getThrottledCount());
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            if (emulator != null) {
+                emulator.close();
+            }
+        }
+    }
+
+    /**
+     * Sends the requests and waits for them
+     *
+     * @param connections Number of concurrent connections
+     * @param warmup Nanoseconds before the measurement
+     * @param duration Measured nanoseconds
+     * @return The latencies of the measured requests, in microseconds
+     * @throws IOException If the client cannot be closed
+     * @throws InterruptedException If interrupted while waiting for the requests
+     */
+    public Histogram run(int connections, long warmup, long duration) throws IOException, InterruptedException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rps);
+        long start = System.nanoTime();
+        long measured = start + warmup;
+        long end = measured + duration;
+        /* The next request on the schedule, taken by the first free connection */
+        AtomicLong schedule = new AtomicLong();
+
+        ExecutorService workers = Executors.newFixedThreadPool(connections);
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setMaxConnTotal(connections)
+                .setMaxConnPerRoute(connections)
+                .disableAutomaticRetries()
+                .build()) {
+            for (int i = 0; i < connections; i++) {
+                workers.execute(() -> {
+                    long intended;
+                    while ((intended = start + schedule.getAndIncrement() * interval) < end) {
+                        long delay = intended - System.nanoTime();
+                        if (delay > 0) {
+                            LockSupport.parkNanos(delay);
+                        }
+                        int status = send(client, nextQuery());
+                        if (intended >= measured) {
+                            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        return recorder.getIntervalHistogram();
+    }
+
+    /* Prints the throughput, the statuses and the latency percentiles */
+    private void report(Histogram histogram, int duration) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        StringBuilder breakdown = new StringBuilder();
+        counts.forEach((status, count) -> breakdown.append(breakdown.length() == 0 ? "" : ", ")
+                .append(status == IO_ERROR ? "I/O error" : String.valueOf(status)).append('=').append(count));
+
+        System.out.printf("Requests     %d, %.1f/s of the target %.1f/s%n", histogram.getTotalCount(),
+                histogram.getTotalCount() / (double) duration, rps);
+        System.out.println("Statuses     " + breakdown);
+        System.out.printf("Latency ms   p50 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+    }
+
+    /* Draws a song name from the Zipfian mix */
+    private String nextQuery() {
+        double p = ThreadLocalRandom.current().nextDouble();
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cdf[middle] < p) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return queries[low];
+    }
+
+    /* Sends a song preview request and reads its response, returns its status */
+    private int send(CloseableHttpClient client, String query) {
+        try {
+            HttpGet request = new HttpGet(target + "/rest/songfinder?songname=" + URLEncoder.encode(query, "UTF-8")
+                    + "&token=" + URLEncoder.encode(token, "UTF-8"));
+            try (CloseableHttpResponse response = client.execute(request)) {
+                EntityUtils.consume(response.getEntity());
+                return response.getStatusLine().getStatusCode();
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            return IO_ERROR;
+        }
+    }
+}
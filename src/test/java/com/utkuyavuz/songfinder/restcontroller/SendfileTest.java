@@ -0,0 +1,128 @@
+package com.utkuyavuz.songfinder.restcontroller;
+
+import com.utkuyavuz.songfinder.application.SongFinder;
+import com.utkuyavuz.songfinder.cache.PreviewDiskStore;
+import com.utkuyavuz.songfinder.configuration.AsyncProperties;
+import com.utkuyavuz.songfinder.configuration.SpotifyProperties;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import com.utkuyavuz.songfinder.util.RequestTrace;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/* The stored previews sent by the container itself, against the Spotify emulator */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = SongFinder.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "songfinder.http.timeouts[127.0.0.1].read=5000", "songfinder.cache.audio.maximum-bytes=0",
+                "songfinder.cache.disk.directory=${java.io.tmpdir}/songfinder/sendfile-${random.uuid}",
+                "songfinder.ratelimit.enabled=false", "logging.file=" })
+@AutoConfigureMockMvc
+public class SendfileTest {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static SpotifyEmulator emulator;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private SpotifyProperties spotifyProperties;
+
+    @Autowired
+    private AsyncProperties asyncProperties;
+
+    @Autowired
+    private PreviewDiskStore previewDiskStore;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+    }
+
+    @AfterClass
+    public static void stopEmulator() {
+        emulator.close();
+    }
+
+    @Before
+    public void resetEmulator() {
+        emulator.reset();
+        spotifyProperties.setBaseUrl(emulator.getBaseUrl());
+    }
+
+    @After
+    public void resetAsync() {
+        asyncProperties.setEnabled(true);
+    }
+
+    @Test
+    public void sendfileTest() throws Exception {
+        /* Without async mode, a stored preview is left to the container in the request dispatch */
+        asyncProperties.setEnabled(false);
+        store("/rest/songfinder?songname=Sendfile&token=token");
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/rest/songfinder?songname=Sendfile&token=token")
+                .requestAttr(SENDFILE_SUPPORT, Boolean.TRUE)).andReturn();
+        MockHttpServletRequest request = result.getRequest();
+        assert (!request.isAsyncStarted());
+        assert (result.getResponse().getStatus() == HttpStatus.OK.value());
+        assert (request.getAttribute(SENDFILE_FILENAME) != null);
+        assert (Long.valueOf(0).equals(request.getAttribute("org.apache.tomcat.sendfile.start")));
+        assert (Long.valueOf(emulator.getAudio().length).equals(
+                request.getAttribute("org.apache.tomcat.sendfile.end")));
+        assert (result.getResponse().getContentLengthLong() == emulator.getAudio().length);
+        assert (result.getResponse().getContentAsByteArray().length == 0);
+        assert (result.getResponse().getHeader(RequestTrace.SERVER_TIMING_HEADER).contains("cache;desc=hit"));
+
+        /* And the container sends the whole preview */
+        ResponseEntity<byte[]> response = restTemplate.getForEntity("/rest/songfinder?songname=Sendfile&token=token",
+                byte[].class);
+        assert (response.getStatusCode() == HttpStatus.OK);
+        assert (Arrays.equals(emulator.getAudio(), response.getBody()));
+    }
+
+    @Test
+    public void asyncTest() throws Exception {
+        /* In async mode the preview is written in the asynchronous dispatch, through the JVM */
+        store("/rest/songfinder?songname=Async Sendfile&token=token");
+
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.get("/rest/songfinder?songname=Async Sendfile&token=token")
+                        .requestAttr(SENDFILE_SUPPORT, Boolean.TRUE)).andReturn();
+        assert (result.getRequest().isAsyncStarted());
+        assert (result.getRequest().getAttribute(SENDFILE_FILENAME) == null);
+    }
+
+    /* Requests the preview until it is stored on disk */
+    private void store(String url) throws InterruptedException {
+        long resident = previewDiskStore.getResidentBytes();
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(url, byte[].class);
+        assert (response.getStatusCode() == HttpStatus.OK);
+        for (int i = 0; i < 100 && previewDiskStore.getResidentBytes() == resident; i++) {
+            Thread.sleep(10);
+        }
+        assert (previewDiskStore.getResidentBytes() > resident);
+    }
+}
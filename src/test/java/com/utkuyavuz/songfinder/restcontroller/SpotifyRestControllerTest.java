@@ -0,0 +1,334 @@
+package com.utkuyavuz.songfinder.restcontroller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utkuyavuz.songfinder.application.SongFinder;
+import com.utkuyavuz.songfinder.configuration.AsyncProperties;
+import com.utkuyavuz.songfinder.configuration.PreviewProperties;
+import com.utkuyavuz.songfinder.configuration.SpotifyProperties;
+import com.utkuyavuz.songfinder.emulator.Latency;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import com.utkuyavuz.songfinder.model.SongFinderError;
+import com.utkuyavuz.songfinder.model.SongFinderResult;
+import com.utkuyavuz.songfinder.util.BoundedExecutor;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/* The rest endpoints served by the embedded container, against the Spotify emulator */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = SongFinder.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "songfinder.http.timeouts[127.0.0.1].read=5000", "songfinder.cache.disk.maximum-bytes=0",
+                "songfinder.ratelimit.enabled=false", "logging.file=" })
+public class SpotifyRestControllerTest {
+
+    private static SpotifyEmulator emulator;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private SpotifyProperties spotifyProperties;
+
+    @Autowired
+    private AsyncProperties asyncProperties;
+
+    @Autowired
+    private PreviewProperties previewProperties;
+
+    @Autowired
+    private HttpClientEngine httpClientEngine;
+
+    @Autowired
+    private BoundedExecutor songFinderExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+    }
+
+    @AfterClass
+    public static void stopEmulator() {
+        emulator.close();
+    }
+
+    @Before
+    public void resetEmulator() {
+        emulator.reset();
+        spotifyProperties.setBaseUrl(emulator.getBaseUrl());
+    }
+
+    @After
+    public void resetProperties() {
+        asyncProperties.setEnabled(true);
+        asyncProperties.setTimeout(30000);
+        previewProperties.setStreaming(true);
+    }
+
+    @Test
+    public void asyncTest() {
+        /* The preview of a song, answered on the bounded executor and in the blocking mode alike */
+        for (boolean enabled : new boolean[] { true, false }) {
+            asyncProperties.setEnabled(enabled);
+            ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                    "/rest/songfinder?songname=Async {enabled}&token=token", byte[].class, enabled);
+            assert (response.getStatusCode() == HttpStatus.OK);
+            assert ("audio/mpeg".equals(response.getHeaders().getContentType().toString()));
+            assert (Arrays.equals(emulator.getAudio(), response.getBody()));
+        }
+    }
+
+    @Test
+    public void asyncTimeoutTest() throws InterruptedException {
+        /* A timed out request is answered with a 504 and its upstream request is aborted */
+        asyncProperties.setTimeout(200);
+        emulator.getSearch().setLatency(Latency.fixed(3000));
+        long start = System.currentTimeMillis();
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "/rest/songfinder?songname=Timeout&token=token", String.class);
+        assert (response.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT);
+        assert (response.getBody().contains("Request timed out."));
+        awaitNoneInFlight();
+        assert (System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    public void trackTimeoutTest() throws InterruptedException {
+        /* A timed out track lookup is answered with a 504 and its batched upstream request is aborted */
+        asyncProperties.setTimeout(200);
+        emulator.getTracks().setLatency(Latency.fixed(3000));
+        long start = System.currentTimeMillis();
+        ResponseEntity<String> response = restTemplate.getForEntity("/rest/track?id=0TimeoutTimeoutTimeout&token=token",
+                String.class);
+        assert (response.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT);
+        assert (response.getBody().contains("Request timed out."));
+        awaitNoneInFlight();
+        assert (System.currentTimeMillis() - start < 2000);
+        assert (emulator.getPreview().getRequestCount() == 0);
+    }
+
+    @Test
+    public void streamingTest() {
+        /* The preview is piped with the upstream length, and buffered alike when streaming is off */
+        for (boolean streaming : new boolean[] { true, false }) {
+            previewProperties.setStreaming(streaming);
+            ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                    "/rest/songfinder?songname=Streaming {streaming}&token=token", byte[].class, streaming);
+            assert (response.getStatusCode() == HttpStatus.OK);
+            assert (response.getHeaders().getContentLength() == emulator.getAudio().length);
+            assert (Arrays.equals(emulator.getAudio(), response.getBody()));
+        }
+    }
+
+    @Test
+    public void streamingDisconnectTest() throws IOException, InterruptedException {
+        /* A client which goes away while the preview is piped closes its upstream response */
+        emulator.setPreviewBytes(64 * 1024 * 1024);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /rest/songfinder?songname=Disconnect&token=token HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            byte[] head = new byte[12];
+            new DataInputStream(socket.getInputStream()).readFully(head);
+            assert ("HTTP/1.1 200".equals(new String(head, StandardCharsets.US_ASCII)));
+
+            /* The client reads no further, the preview cannot be piped through the socket buffers */
+            Thread.sleep(500);
+            assert (httpClientEngine.getInFlight() == 1);
+        }
+        awaitNoneInFlight();
+    }
+
+    @Test
+    public void rangeTest() {
+        /* A byte range of the preview is answered with a 206, streamed and buffered alike */
+        byte[] audio = emulator.getAudio();
+        for (boolean streaming : new boolean[] { true, false }) {
+            previewProperties.setStreaming(streaming);
+            ResponseEntity<byte[]> response = getRange("Range " + streaming, "bytes=100-199", null);
+            assert (response.getStatusCode() == HttpStatus.PARTIAL_CONTENT);
+            assert (("bytes 100-199/" + audio.length).equals(response.getHeaders().getFirst("Content-Range")));
+            assert (Arrays.equals(Arrays.copyOfRange(audio, 100, 200), response.getBody()));
+
+            response = getRange("Range " + streaming, "bytes=-100", null);
+            assert (response.getStatusCode() == HttpStatus.PARTIAL_CONTENT);
+            assert (Arrays.equals(Arrays.copyOfRange(audio, audio.length - 100, audio.length), response.getBody()));
+        }
+    }
+
+    @Test
+    public void ifRangeTest() {
+        /* The range is served only while the entity tag matches, the whole preview otherwise */
+        ResponseEntity<byte[]> response = getRange("If-Range", null, null);
+        String entityTag = response.getHeaders().getETag();
+        assert (entityTag != null);
+
+        response = getRange("If-Range", "bytes=0-9", entityTag);
+        assert (response.getStatusCode() == HttpStatus.PARTIAL_CONTENT);
+        assert (response.getBody().length == 10);
+
+        response = getRange("If-Range", "bytes=0-9", "\"other\"");
+        assert (response.getStatusCode() == HttpStatus.OK);
+        assert (Arrays.equals(emulator.getAudio(), response.getBody()));
+    }
+
+    @Test
+    public void unsatisfiableRangeTest() {
+        /* A range past the end of the preview, or several ranges, are answered with a 416 */
+        int length = emulator.getAudio().length;
+        for (boolean streaming : new boolean[] { true, false }) {
+            previewProperties.setStreaming(streaming);
+            ResponseEntity<byte[]> response = getRange("Unsatisfiable " + streaming, "bytes=" + length + "-", null);
+            assert (response.getStatusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            assert (("bytes */" + length).equals(response.getHeaders().getFirst("Content-Range")));
+        }
+        ResponseEntity<byte[]> response = getRange("Unsatisfiable", "bytes=0-9,20-29", null);
+        assert (response.getStatusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    @Test
+    public void bulkSearchTest() throws IOException {
+        /* One line per song, written on the bounded executor also when async mode is off */
+        List<String> songnames = Arrays.asList("First", "Second", "Third");
+        for (boolean enabled : new boolean[] { true, false }) {
+            asyncProperties.setEnabled(enabled);
+            long tasks = songFinderExecutor.getTaskCount();
+            ResponseEntity<String> response = restTemplate.postForEntity("/rest/search?token=token", songnames,
+                    String.class);
+            assert (response.getStatusCode() == HttpStatus.OK);
+            assert (response.getHeaders().getContentType().toString().startsWith("application/x-ndjson"));
+
+            Set<Integer> indexes = new TreeSet<>();
+            for (String line : response.getBody().split("\n")) {
+                SongFinderResult result = objectMapper.readValue(line, SongFinderResult.class);
+                assert (result.getTrack() != null && result.getError() == null);
+                assert (songnames.get(result.getIndex()).equals(result.getSongname()));
+                indexes.add(result.getIndex());
+            }
+            assert (indexes.size() == songnames.size());
+            assert (songFinderExecutor.getTaskCount() - tasks >= songnames.size());
+        }
+    }
+
+    @Test
+    public void bulkSearchErrorTest() throws IOException {
+        /* A song which cannot be searched is answered with its error line, songs not cached by the other tests */
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/rest/search?token=" + SpotifyEmulator.EXPIRED_TOKEN_PREFIX, Arrays.asList("Expired", "Renewed"),
+                String.class);
+        assert (response.getStatusCode() == HttpStatus.OK);
+        String[] lines = response.getBody().split("\n");
+        assert (lines.length == 2);
+        for (String line : lines) {
+            SongFinderResult result = objectMapper.readValue(line, SongFinderResult.class);
+            assert (result.getTrack() == null && result.getError().getStatusCode() == HttpStatus.UNAUTHORIZED.value());
+        }
+    }
+
+    @Test
+    public void bundleTest() throws IOException {
+        /* One entry per song, named after its position and its song, in both modes */
+        List<String> songnames = Arrays.asList("Bundle One", "Bundle/Two", "Bundle Three");
+        for (boolean enabled : new boolean[] { true, false }) {
+            asyncProperties.setEnabled(enabled);
+            ResponseEntity<byte[]> response = restTemplate.postForEntity("/rest/bundle?token=token", songnames,
+                    byte[].class);
+            assert (response.getStatusCode() == HttpStatus.OK);
+            assert ("application/zip".equals(response.getHeaders().getContentType().toString()));
+
+            Map<String, byte[]> entries = unzip(response.getBody());
+            assert (entries.size() == songnames.size());
+            for (String name : Arrays.asList("001-Bundle One.mp3", "002-Bundle_Two.mp3", "003-Bundle Three.mp3")) {
+                assert (Arrays.equals(emulator.getAudio(), entries.get(name)));
+            }
+        }
+    }
+
+    @Test
+    public void bundleErrorTest() throws IOException {
+        /* A song whose preview cannot be retrieved is written as its error, songs not cached by the other tests */
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(
+                "/rest/bundle?token=" + SpotifyEmulator.EXPIRED_TOKEN_PREFIX, Arrays.asList("Bundle Expired"),
+                byte[].class);
+        assert (response.getStatusCode() == HttpStatus.OK);
+        Map<String, byte[]> entries = unzip(response.getBody());
+        assert (entries.size() == 1);
+        SongFinderError error = objectMapper.readValue(entries.get("001-Bundle Expired.json"), SongFinderError.class);
+        assert (error.getStatusCode() == HttpStatus.UNAUTHORIZED.value());
+    }
+
+    /* Reads the entries of a zip archive by their names */
+    private static Map<String, byte[]> unzip(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    out.write(buffer, 0, read);
+                }
+                entries.put(entry.getName(), out.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    /* Requests the preview of a song with the given Range and If-Range headers, each optional */
+    private ResponseEntity<byte[]> getRange(String songname, String range, String ifRange) {
+        HttpHeaders headers = new HttpHeaders();
+        if (range != null) {
+            headers.set(HttpHeaders.RANGE, range);
+        }
+        if (ifRange != null) {
+            headers.set(HttpHeaders.IF_RANGE, ifRange);
+        }
+        return restTemplate.exchange("/rest/songfinder?songname=" + songname + "&token=token", HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class);
+    }
+
+    /* Waits until no upstream request is in flight, for a second at most */
+    private void awaitNoneInFlight() throws InterruptedException {
+        for (int i = 0; i < 100 && httpClientEngine.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assert (httpClientEngine.getInFlight() == 0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.utkuyavuz.songfinder.service;
+
+import com.utkuyavuz.songfinder.configuration.AsyncConfiguration;
+import com.utkuyavuz.songfinder.configuration.BatchingConfiguration;
+import com.utkuyavuz.songfinder.configuration.CacheConfiguration;
+import com.utkuyavuz.songfinder.configuration.CoalescingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HedgingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HttpClientConfiguration;
+import com.utkuyavuz.songfinder.configuration.MetricsConfiguration;
+import com.utkuyavuz.songfinder.configuration.PrefetchConfiguration;
+import com.utkuyavuz.songfinder.configuration.RateLimitConfiguration;
+import com.utkuyavuz.songfinder.configuration.RetryConfiguration;
+import com.utkuyavuz.songfinder.configuration.SpotifyProperties;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import com.utkuyavuz.songfinder.service.contract.ISpotifyService;
+import com.utkuyavuz.songfinder.service.implementation.PreviewService;
+import com.utkuyavuz.songfinder.service.implementation.SpotifyService;
+import com.utkuyavuz.songfinder.service.input.SearchItemInput;
+import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
+import com.utkuyavuz.songfinder.util.CircuitBreaker;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+
+/* The circuit breaker of the emulator host, which fails every search */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = { SpotifyService.class, PreviewService.class, HttpClientConfiguration.class,
+        AsyncConfiguration.class, BatchingConfiguration.class, CacheConfiguration.class, CoalescingConfiguration.class,
+        HedgingConfiguration.class, MetricsConfiguration.class, PrefetchConfiguration.class,
+        RateLimitConfiguration.class, RetryConfiguration.class },
+        properties = { "songfinder.http.circuit.window=4", "songfinder.http.circuit.minimum-calls=4",
+                "songfinder.http.circuit.open-duration=300", "songfinder.retry.max-attempts=1" })
+public class CircuitBreakerSearchTest {
+
+    private static SpotifyEmulator emulator;
+
+    @Autowired
+    private SpotifyProperties spotifyProperties;
+
+    @Autowired
+    private ISpotifyService spotifyService;
+
+    @Autowired
+    private HttpClientEngine httpClientEngine;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+    }
+
+    @AfterClass
+    public static void stopEmulator() {
+        emulator.close();
+    }
+
+    @Test
+    public void circuitTest() throws InterruptedException {
+        spotifyProperties.setBaseUrl(emulator.getBaseUrl());
+        emulator.getSearch().setErrorRate(1);
+
+        /* Failing searches open the circuit of the emulator host */
+        for (int i = 0; i < 4; i++) {
+            SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Failing " + i, "token"));
+            assert (search.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+        CircuitBreaker breaker = httpClientEngine.getCircuitBreaker("127.0.0.1");
+        assert (breaker.getState() == CircuitBreaker.OPEN);
+
+        /* Searches fail fast while the circuit is open, without reaching the emulator */
+        SearchItemOutput rejected = spotifyService.searchItem(new SearchItemInput("Rejected", "token"));
+        assert (rejected.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+        assert (rejected.getErrorMessage().endsWith("circuit is open."));
+        assert (emulator.getSearch().getRequestCount() == 4);
+        assert (breaker.getRejectedCount() == 1);
+
+        /* A successful trial after the open duration closes the circuit */
+        emulator.getSearch().setErrorRate(0);
+        Thread.sleep(400);
+        SearchItemOutput trial = spotifyService.searchItem(new SearchItemInput("Trial", "token"));
+        assert (trial.getStatus() == HttpStatus.OK.value());
+        assert (breaker.getState() == CircuitBreaker.CLOSED);
+    }
+}
@@ -0,0 +1,488 @@
+package com.utkuyavuz.songfinder.service;
+
+import com.utkuyavuz.songfinder.cache.PreviewAudioCache;
+import com.utkuyavuz.songfinder.cache.PreviewDiskStore;
+import com.utkuyavuz.songfinder.configuration.AsyncConfiguration;
+import com.utkuyavuz.songfinder.configuration.BatchingConfiguration;
+import com.utkuyavuz.songfinder.configuration.CacheConfiguration;
+import com.utkuyavuz.songfinder.configuration.CoalescingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HedgingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HttpClientConfiguration;
+import com.utkuyavuz.songfinder.configuration.MetricsConfiguration;
+import com.utkuyavuz.songfinder.configuration.PrefetchConfiguration;
+import com.utkuyavuz.songfinder.configuration.PreviewProperties;
+import com.utkuyavuz.songfinder.configuration.RateLimitConfiguration;
+import com.utkuyavuz.songfinder.configuration.RetryConfiguration;
+import com.utkuyavuz.songfinder.configuration.SpotifyProperties;
+import com.utkuyavuz.songfinder.emulator.Latency;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import com.utkuyavuz.songfinder.service.contract.IPreviewService;
+import com.utkuyavuz.songfinder.service.contract.ISpotifyService;
+import com.utkuyavuz.songfinder.service.implementation.PreviewService;
+import com.utkuyavuz.songfinder.service.implementation.SpotifyService;
+import com.utkuyavuz.songfinder.service.input.GetTrackInput;
+import com.utkuyavuz.songfinder.service.input.PreviewInput;
+import com.utkuyavuz.songfinder.service.input.SearchItemInput;
+import com.utkuyavuz.songfinder.service.output.GetTrackOutput;
+import com.utkuyavuz.songfinder.service.output.PreviewOutput;
+import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
+import com.utkuyavuz.songfinder.util.BoundedExecutor;
+import com.utkuyavuz.songfinder.util.Deadline;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.MicroBatcher;
+import com.utkuyavuz.songfinder.util.RateLimiter;
+import com.utkuyavuz.songfinder.util.Retrier;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/* The services against the Spotify emulator, without a network or a token */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = { SpotifyService.class, PreviewService.class, HttpClientConfiguration.class,
+        AsyncConfiguration.class, BatchingConfiguration.class, CacheConfiguration.class, CoalescingConfiguration.class,
+        HedgingConfiguration.class, MetricsConfiguration.class, PrefetchConfiguration.class,
+        RateLimitConfiguration.class, RetryConfiguration.class },
+        properties = { "songfinder.http.timeouts[127.0.0.1].read=1000", "songfinder.batching.window=50",
+                "songfinder.cache.disk.directory=${java.io.tmpdir}/songfinder/emulated-${random.uuid}" })
+public class EmulatedSpotifyTest {
+
+    private static SpotifyEmulator emulator;
+
+    @Autowired
+    private SpotifyProperties spotifyProperties;
+
+    @Autowired
+    private ISpotifyService spotifyService;
+
+    @Autowired
+    private IPreviewService previewService;
+
+    @Autowired
+    private HttpClientEngine httpClientEngine;
+
+    @Autowired
+    private BoundedExecutor previewStreamExecutor;
+
+    @Autowired
+    private BoundedExecutor previewStoreExecutor;
+
+    @Autowired
+    private PreviewProperties previewProperties;
+
+    @Autowired
+    private PreviewAudioCache previewAudioCache;
+
+    @Autowired
+    private PreviewDiskStore previewDiskStore;
+
+    @Autowired
+    private Retrier searchRetrier;
+
+    @Autowired
+    private RateLimiter searchRateLimiter;
+
+    @Autowired
+    private MicroBatcher<String, GetTrackOutput> trackBatcher;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+    }
+
+    @AfterClass
+    public static void stopEmulator() {
+        emulator.close();
+    }
+
+    @Before
+    public void resetEmulator() {
+        emulator.reset();
+        spotifyProperties.setBaseUrl(emulator.getBaseUrl());
+    }
+
+    @Test
+    public void searchAndPreviewTest() {
+        long receivedBytes = httpClientEngine.getReceivedBytes();
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Bodrum Akşamları", "token"));
+
+        /* Search should find a track of the emulator */
+        assert (search.getStatus() == HttpStatus.OK.value());
+        assert (search.getTrack() != null);
+        assert (search.getTrack().getName().equals("Bodrum Akşamları"));
+        assert (search.getTrack().getArtists().size() == 1);
+        assert (search.getPreviewUrl().startsWith(emulator.getBaseUrl() + "/mp3-preview/"));
+
+        PreviewOutput preview = previewService.getSongPreview(new PreviewInput(search.getPreviewUrl()));
+
+        /* Preview should be the audio of the emulator */
+        assert (preview.getStatus() == HttpStatus.OK.value());
+        assert (Arrays.equals(preview.getRawAudio(), emulator.getAudio()));
+        assert (emulator.getSearch().getRequestCount() == 1);
+        assert (emulator.getPreview().getRequestCount() == 1);
+        /* Both responses should be counted, and no request left in flight */
+        assert (httpClientEngine.getReceivedBytes() - receivedBytes > emulator.getAudio().length);
+        assert (httpClientEngine.getInFlight() == 0);
+    }
+
+    @Test
+    public void throttledSearchTest() {
+        emulator.getSearch().setThrottleRate(1);
+
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Throttled", "throttled-token"));
+
+        /* Status of the emulator should be passed on */
+        assert (search.getStatus() == HttpStatus.TOO_MANY_REQUESTS.value());
+        assert (search.getErrorMessage() != null);
+        assert (emulator.getSearch().getThrottledCount() >= 1);
+    }
+
+    @Test
+    public void tokenFlightTest() {
+        emulator.getSearch().setLatency(Latency.fixed(200));
+
+        /* Concurrent searches of a query with different tokens do not share a request, nor its 401 */
+        String expired = SpotifyEmulator.EXPIRED_TOKEN_PREFIX + "-token";
+        CompletableFuture<SearchItemOutput> rejected = spotifyService.searchItemAsync(
+                new SearchItemInput("Shared Query", expired));
+        CompletableFuture<SearchItemOutput> accepted = spotifyService.searchItemAsync(
+                new SearchItemInput("Shared Query", "token"));
+        assert (rejected.join().getStatus() == HttpStatus.UNAUTHORIZED.value());
+        assert (accepted.join().getStatus() == HttpStatus.OK.value());
+        assert (emulator.getSearch().getRequestCount() == 2);
+
+        /* And a rejected token is not answered with the result searched with another token */
+        CompletableFuture<SearchItemOutput> first = spotifyService.searchItemAsync(
+                new SearchItemInput("Other Shared Query", "token"));
+        CompletableFuture<SearchItemOutput> second = spotifyService.searchItemAsync(
+                new SearchItemInput("Other Shared Query", expired));
+        assert (first.join().getStatus() == HttpStatus.OK.value());
+        assert (second.join().getStatus() == HttpStatus.UNAUTHORIZED.value());
+    }
+
+    @Test
+    public void failedSearchTest() {
+        emulator.getSearch().setErrorRate(1);
+
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Failed", "token"));
+
+        /* Status of the emulator should be passed on */
+        assert (search.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+        assert (search.getErrorMessage() != null);
+    }
+
+    @Test
+    public void retriedSearchTest() {
+        emulator.getSearch().failNext(2);
+        long retries = searchRetrier.getRetryCount();
+
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Retried", "token"));
+
+        /* Server errors should be retried until the third attempt succeeds */
+        assert (search.getStatus() == HttpStatus.OK.value());
+        assert (emulator.getSearch().getErrorCount() == 2);
+        assert (emulator.getSearch().getRequestCount() == 3);
+        assert (searchRetrier.getRetryCount() == retries + 2);
+    }
+
+    @Test
+    public void retryAfterSearchTest() {
+        emulator.getSearch().throttleNext(1);
+        emulator.getSearch().setRetryAfter(1);
+        long throttled = searchRateLimiter.getThrottledCount();
+
+        long start = System.nanoTime();
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Retry After", "retry-after-token"));
+
+        /* The retry should wait for the Retry-After of the emulator, and the rate of the token should be cut */
+        assert (search.getStatus() == HttpStatus.OK.value());
+        assert (emulator.getSearch().getRequestCount() == 2);
+        assert (System.nanoTime() - start >= 1_000_000_000L);
+        assert (searchRateLimiter.getThrottledCount() == throttled + 1);
+        assert (searchRateLimiter.getRate("retry-after-token") < searchRateLimiter.getRate("token"));
+
+        /* A Retry-After longer than the deadline should be answered at once */
+        emulator.getSearch().throttleNext(1);
+        SearchItemInput input = new SearchItemInput("Retry After Deadline", "retry-after-token");
+        input.setDeadline(Deadline.after(500));
+        assert (spotifyService.searchItem(input).getStatus() == HttpStatus.TOO_MANY_REQUESTS.value());
+        assert (emulator.getSearch().getRequestCount() == 3);
+    }
+
+    @Test
+    public void batchedTrackTest() {
+        long batches = trackBatcher.getBatchCount();
+        List<CompletableFuture<GetTrackOutput>> lookups = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lookups.add(spotifyService.getTrackAsync(new GetTrackInput(trackId(i), "token")));
+        }
+        /* A lookup of the same id shares its track, an unknown id is not found */
+        lookups.add(spotifyService.getTrackAsync(new GetTrackInput(trackId(0), "token")));
+        GetTrackOutput unknown = spotifyService.getTrackAsync(new GetTrackInput("0000" + trackId(1).substring(4),
+                "token")).join();
+
+        /* Concurrent lookups should share one request, each getting its own track */
+        for (int i = 0; i < 20; i++) {
+            GetTrackOutput track = lookups.get(i).join();
+            assert (track.getStatus() == HttpStatus.OK.value());
+            assert (track.getTrack().getId().equals(trackId(i)));
+            assert (track.getTrack().getPreviewUrl().startsWith(emulator.getBaseUrl() + "/mp3-preview/"));
+        }
+        assert (lookups.get(20).join().getTrack().getId().equals(trackId(0)));
+        assert (unknown.getStatus() == HttpStatus.NOT_FOUND.value());
+        assert (emulator.getTracks().getRequestCount() == 1);
+        assert (trackBatcher.getBatchCount() == batches + 1);
+
+        /* Lookups with other tokens are not batched together */
+        CompletableFuture<GetTrackOutput> first = spotifyService.getTrackAsync(new GetTrackInput(trackId(0), "a"));
+        CompletableFuture<GetTrackOutput> second = spotifyService.getTrackAsync(new GetTrackInput(trackId(0), "b"));
+        assert (first.join().getStatus() == HttpStatus.OK.value());
+        assert (second.join().getStatus() == HttpStatus.OK.value());
+        assert (emulator.getTracks().getRequestCount() == 3);
+    }
+
+    @Test
+    public void failedTrackTest() {
+        emulator.getTracks().setErrorRate(1);
+
+        CompletableFuture<GetTrackOutput> first = spotifyService.getTrackAsync(new GetTrackInput(trackId(0), "token"));
+        CompletableFuture<GetTrackOutput> second = spotifyService.getTrackAsync(new GetTrackInput(trackId(1), "token"));
+
+        /* Status of the emulator should be passed on to every lookup of the batch */
+        assert (first.join().getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+        assert (second.join().getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+        assert (second.join().getErrorMessage() != null);
+
+        /* A malformed id should not be sent */
+        GetTrackOutput invalid = spotifyService.getTrack(new GetTrackInput("not-an-id", "token"));
+        assert (invalid.getStatus() == HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    public void missingPreviewTest() {
+        emulator.setMissingPreviewRate(1);
+
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("No Preview", "token"));
+
+        /* A track without a preview url is an error */
+        assert (search.getStatus() == HttpStatus.INTERNAL_SERVER_ERROR.value());
+        assert (search.getPreviewUrl() == null);
+    }
+
+    @Test
+    public void searchDeadlineTest() {
+        emulator.getSearch().setLatency(Latency.fixed(2000));
+        long timeouts = httpClientEngine.getTimeouts(HttpClientEngine.DEADLINE_TIMEOUT);
+
+        SearchItemInput input = new SearchItemInput("Deadline", "token");
+        input.setDeadline(Deadline.after(200));
+        long start = System.nanoTime();
+        SearchItemOutput search = spotifyService.searchItem(input);
+
+        /* Search should be answered when the deadline passes, not when the emulator responds */
+        assert (search.getStatus() == HttpStatus.GATEWAY_TIMEOUT.value());
+        assert (search.getErrorMessage().startsWith("Deadline of the request exceeded"));
+        assert (System.nanoTime() - start < 1_500_000_000L);
+        assert (httpClientEngine.getTimeouts(HttpClientEngine.DEADLINE_TIMEOUT) == timeouts + 1);
+        assert (httpClientEngine.getInFlight() == 0);
+
+        /* An expired deadline should not send the request */
+        SearchItemInput expired = new SearchItemInput("Expired", "token");
+        expired.setDeadline(Deadline.after(0));
+        assert (spotifyService.searchItem(expired).getStatus() == HttpStatus.GATEWAY_TIMEOUT.value());
+        assert (emulator.getSearch().getRequestCount() == 1);
+    }
+
+    @Test
+    public void previewReadTimeoutTest() {
+        /* Well past the read timeout, which the I/O reactor only checks once a second */
+        emulator.getPreview().setLatency(Latency.fixed(2500));
+        long timeouts = httpClientEngine.getTimeouts("127.0.0.1", HttpClientEngine.READ_TIMEOUT);
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Read Timeout", "token"));
+
+        PreviewOutput preview = previewService.getSongPreview(new PreviewInput(search.getPreviewUrl()));
+
+        /* Read timeout of the emulator host should answer the preview */
+        assert (preview.getStatus() == HttpStatus.GATEWAY_TIMEOUT.value());
+        assert (preview.getErrorMessage().startsWith("Timed out waiting for endpoint"));
+        assert (httpClientEngine.getTimeouts("127.0.0.1", HttpClientEngine.READ_TIMEOUT) == timeouts + 1);
+    }
+
+    @Test
+    public void streamedPreviewDeadlineTest() {
+        emulator.getPreview().setLatency(Latency.fixed(1500));
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Streamed Deadline", "token"));
+
+        PreviewInput input = new PreviewInput(search.getPreviewUrl());
+        input.setDeadline(Deadline.after(200));
+        long start = System.nanoTime();
+        PreviewOutput preview = previewService.openSongPreview(input);
+
+        /* Streamed preview should be aborted when the deadline passes */
+        assert (preview.getStatus() == HttpStatus.GATEWAY_TIMEOUT.value());
+        assert (preview.getContent() == null);
+        assert (System.nanoTime() - start < 1_000_000_000L);
+        assert (httpClientEngine.getInFlight() == 0);
+    }
+
+    @Test
+    public void streamedPreviewAsyncTest() throws IOException {
+        emulator.getPreview().setLatency(Latency.fixed(300));
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Streamed Async", "token"));
+        long opened = previewStreamExecutor.getTaskCount();
+
+        CompletableFuture<PreviewOutput> future = previewService.openSongPreviewAsync(
+                new PreviewInput(search.getPreviewUrl()));
+
+        /* Streamed preview should be opened on its own executor, without blocking the caller */
+        assert (!future.isDone());
+        PreviewOutput preview = future.join();
+        assert (preview.getStatus() == HttpStatus.OK.value());
+        ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        try (StreamingContent content = preview.getContent()) {
+            content.writeTo(audio);
+        }
+        assert (Arrays.equals(audio.toByteArray(), emulator.getAudio()));
+        assert (previewStreamExecutor.getTaskCount() == opened + 1);
+    }
+
+    @Test
+    public void streamedPreviewCancelTest() throws InterruptedException {
+        emulator.getPreview().setLatency(Latency.fixed(2000));
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Streamed Cancel", "token"));
+
+        CompletableFuture<PreviewOutput> future = previewService.openSongPreviewAsync(
+                new PreviewInput(search.getPreviewUrl()));
+        Thread.sleep(100);
+        assert (httpClientEngine.getInFlight() == 1);
+
+        /* Cancelling the streamed preview should abort its request */
+        future.cancel(true);
+        awaitNoneInFlight();
+    }
+
+    @Test
+    public void searchAsyncTest() {
+        /* The track of the emulator, and its errors passed on as for a blocking search */
+        SearchItemOutput search = spotifyService.searchItemAsync(new SearchItemInput("Async Search", "token")).join();
+        assert (search.getStatus() == HttpStatus.OK.value());
+        assert (search.getTrack().getName().equals("Async Search"));
+
+        SearchItemOutput expired = spotifyService.searchItemAsync(
+                new SearchItemInput("Async Expired", SpotifyEmulator.EXPIRED_TOKEN_PREFIX + "-async")).join();
+        assert (expired.getStatus() == HttpStatus.UNAUTHORIZED.value());
+        assert (expired.getErrorMessage() != null);
+
+        emulator.getSearch().setErrorRate(1);
+        SearchItemOutput failed = spotifyService.searchItemAsync(new SearchItemInput("Async Failed", "token")).join();
+        assert (failed.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+        assert (failed.getErrorMessage() != null);
+        assert (httpClientEngine.getInFlight() == 0);
+    }
+
+    @Test
+    public void searchAsyncCancelTest() throws InterruptedException {
+        emulator.getSearch().setLatency(Latency.fixed(2000));
+
+        CompletableFuture<SearchItemOutput> future = spotifyService.searchItemAsync(
+                new SearchItemInput("Async Cancel", "token"));
+        Thread.sleep(100);
+        assert (httpClientEngine.getInFlight() == 1);
+
+        /* Cancelling the search should abort its request */
+        future.cancel(true);
+        awaitNoneInFlight();
+    }
+
+    @Test
+    public void previewAsyncTest() {
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Async Preview", "token"));
+
+        /* The audio of the emulator, without blocking the caller while it is downloaded */
+        emulator.getPreview().setLatency(Latency.fixed(200));
+        CompletableFuture<PreviewOutput> future = previewService.getSongPreviewAsync(
+                new PreviewInput(search.getPreviewUrl()));
+        assert (!future.isDone());
+        PreviewOutput preview = future.join();
+        assert (preview.getStatus() == HttpStatus.OK.value());
+        assert (Arrays.equals(preview.getRawAudio(), emulator.getAudio()));
+
+        /* Errors of the preview CDN should be passed on */
+        SearchItemOutput other = spotifyService.searchItem(new SearchItemInput("Async Failed Preview", "token"));
+        emulator.getPreview().setErrorRate(1);
+        PreviewOutput failed = previewService.getSongPreviewAsync(new PreviewInput(other.getPreviewUrl())).join();
+        assert (failed.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+        assert (failed.getErrorMessage() != null);
+        assert (httpClientEngine.getInFlight() == 0);
+    }
+
+    @Test
+    public void previewAsyncCancelTest() throws InterruptedException {
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Async Preview Cancel", "token"));
+        emulator.getPreview().setLatency(Latency.fixed(2000));
+
+        CompletableFuture<PreviewOutput> future = previewService.getSongPreviewAsync(
+                new PreviewInput(search.getPreviewUrl()));
+        Thread.sleep(100);
+        assert (httpClientEngine.getInFlight() == 1);
+
+        /* Cancelling the download should abort its request */
+        future.cancel(true);
+        awaitNoneInFlight();
+    }
+
+    @Test
+    public void previewStoreTest() throws InterruptedException {
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Stored Preview", "token"));
+        String previewUrl = search.getPreviewUrl();
+
+        /* With every store thread busy, the download completes without the preview being stored by its callback */
+        CountDownLatch busy = new CountDownLatch(1);
+        for (int i = 0; i < previewProperties.getStoreThreads(); i++) {
+            previewStoreExecutor.execute(() -> {
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        PreviewOutput preview = previewService.getSongPreviewAsync(new PreviewInput(previewUrl)).join();
+        assert (preview.getStatus() == HttpStatus.OK.value());
+        assert (!previewAudioCache.contains(previewUrl) && !previewDiskStore.contains(previewUrl));
+
+        /* The preview is stored once a store thread is free */
+        busy.countDown();
+        for (int i = 0; i < 100 && !previewDiskStore.contains(previewUrl); i++) {
+            Thread.sleep(10);
+        }
+        assert (previewAudioCache.contains(previewUrl) && previewDiskStore.contains(previewUrl));
+    }
+
+    /* Waits until no request is in flight, for half a second at most */
+    private void awaitNoneInFlight() throws InterruptedException {
+        for (int i = 0; i < 50 && httpClientEngine.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assert (httpClientEngine.getInFlight() == 0);
+    }
+
+    /* A Spotify id of a track of the emulator */
+    private static String trackId(int index) {
+        return String.format("%022d", index + 1).replace('0', 'x');
+    }
+}
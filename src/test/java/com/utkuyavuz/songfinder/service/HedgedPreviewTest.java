@@ -0,0 +1,135 @@
+package com.utkuyavuz.songfinder.service;
+
+import com.utkuyavuz.songfinder.configuration.AsyncConfiguration;
+import com.utkuyavuz.songfinder.configuration.BatchingConfiguration;
+import com.utkuyavuz.songfinder.configuration.CacheConfiguration;
+import com.utkuyavuz.songfinder.configuration.CoalescingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HedgingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HttpClientConfiguration;
+import com.utkuyavuz.songfinder.configuration.MetricsConfiguration;
+import com.utkuyavuz.songfinder.configuration.PrefetchConfiguration;
+import com.utkuyavuz.songfinder.configuration.RateLimitConfiguration;
+import com.utkuyavuz.songfinder.configuration.RetryConfiguration;
+import com.utkuyavuz.songfinder.configuration.SpotifyProperties;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import com.utkuyavuz.songfinder.service.contract.IPreviewService;
+import com.utkuyavuz.songfinder.service.contract.ISpotifyService;
+import com.utkuyavuz.songfinder.service.implementation.PreviewService;
+import com.utkuyavuz.songfinder.service.implementation.SpotifyService;
+import com.utkuyavuz.songfinder.service.input.PreviewInput;
+import com.utkuyavuz.songfinder.service.input.SearchItemInput;
+import com.utkuyavuz.songfinder.service.output.PreviewOutput;
+import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
+import com.utkuyavuz.songfinder.util.Hedger;
+import com.utkuyavuz.songfinder.util.HttpClientEngine;
+import com.utkuyavuz.songfinder.util.StreamingContent;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Hedged preview downloads against the Spotify emulator, whose first preview response is slow */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = { SpotifyService.class, PreviewService.class, HttpClientConfiguration.class,
+        AsyncConfiguration.class, BatchingConfiguration.class, CacheConfiguration.class, CoalescingConfiguration.class,
+        HedgingConfiguration.class, MetricsConfiguration.class, PrefetchConfiguration.class,
+        RateLimitConfiguration.class, RetryConfiguration.class },
+        properties = { "songfinder.hedging.enabled=true", "songfinder.hedging.min-delay=100",
+                "songfinder.hedging.max-delay=100", "songfinder.hedging.max-ratio=1" })
+public class HedgedPreviewTest {
+
+    private static SpotifyEmulator emulator;
+
+    @Autowired
+    private SpotifyProperties spotifyProperties;
+
+    @Autowired
+    private ISpotifyService spotifyService;
+
+    @Autowired
+    private IPreviewService previewService;
+
+    @Autowired
+    private HttpClientEngine httpClientEngine;
+
+    @Autowired
+    private Hedger previewHedger;
+
+    @Autowired
+    private Hedger previewStreamHedger;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+    }
+
+    @AfterClass
+    public static void stopEmulator() {
+        emulator.close();
+    }
+
+    @Before
+    public void resetEmulator() {
+        emulator.reset();
+        spotifyProperties.setBaseUrl(emulator.getBaseUrl());
+        /* Only the first preview response is slow */
+        AtomicInteger responses = new AtomicInteger();
+        emulator.getPreview().setLatency(random -> responses.getAndIncrement() == 0 ? 2000 : 0);
+    }
+
+    @Test
+    public void hedgedDownloadTest() throws InterruptedException {
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Hedged Download", "token"));
+        long won = previewHedger.getWonCount();
+
+        long start = System.nanoTime();
+        PreviewOutput preview = previewService.getSongPreview(new PreviewInput(search.getPreviewUrl()));
+
+        /* The hedge should answer before the slow first response */
+        assert (preview.getStatus() == HttpStatus.OK.value());
+        assert (Arrays.equals(preview.getRawAudio(), emulator.getAudio()));
+        assert (System.nanoTime() - start < 1_500_000_000L);
+        assert (emulator.getPreview().getRequestCount() == 2);
+        assert (previewHedger.getWonCount() == won + 1);
+        assertNothingInFlight();
+    }
+
+    @Test
+    public void hedgedStreamTest() throws IOException, InterruptedException {
+        SearchItemOutput search = spotifyService.searchItem(new SearchItemInput("Hedged Stream", "token"));
+        long won = previewStreamHedger.getWonCount();
+
+        long start = System.nanoTime();
+        PreviewOutput preview = previewService.openSongPreview(new PreviewInput(search.getPreviewUrl()));
+
+        /* The hedge should be opened before the slow first response, which is aborted */
+        assert (preview.getStatus() == HttpStatus.OK.value());
+        ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        try (StreamingContent content = preview.getContent()) {
+            content.writeTo(audio);
+        }
+        assert (Arrays.equals(audio.toByteArray(), emulator.getAudio()));
+        assert (System.nanoTime() - start < 1_500_000_000L);
+        assert (emulator.getPreview().getRequestCount() == 2);
+        assert (previewStreamHedger.getWonCount() == won + 1);
+        assertNothingInFlight();
+    }
+
+    /* The cancelled attempt is finished shortly after the winner */
+    private void assertNothingInFlight() throws InterruptedException {
+        for (int i = 0; i < 100 && httpClientEngine.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assert (httpClientEngine.getInFlight() == 0);
+    }
+}
@@ -1,5 +1,11 @@
 package com.utkuyavuz.songfinder.service;
 
+import com.utkuyavuz.songfinder.configuration.AsyncConfiguration;
+import com.utkuyavuz.songfinder.configuration.CacheConfiguration;
+import com.utkuyavuz.songfinder.configuration.CoalescingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HedgingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HttpClientConfiguration;
+import com.utkuyavuz.songfinder.configuration.PrefetchConfiguration;
 import com.utkuyavuz.songfinder.service.contract.IPreviewService;
 import com.utkuyavuz.songfinder.service.implementation.PreviewService;
 import com.utkuyavuz.songfinder.service.input.PreviewInput;
@@ -13,7 +19,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.util.StringUtils;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = PreviewService.class)
+@SpringBootTest(classes = { PreviewService.class, HttpClientConfiguration.class, AsyncConfiguration.class,
+        CacheConfiguration.class, CoalescingConfiguration.class, HedgingConfiguration.class,
+        PrefetchConfiguration.class })
 public class PreviewServiceTest {
 
     @Autowired
@@ -1,6 +1,17 @@
 package com.utkuyavuz.songfinder.service;
 
+import com.utkuyavuz.songfinder.configuration.AsyncConfiguration;
+import com.utkuyavuz.songfinder.configuration.BatchingConfiguration;
+import com.utkuyavuz.songfinder.configuration.CacheConfiguration;
+import com.utkuyavuz.songfinder.configuration.CoalescingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HedgingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HttpClientConfiguration;
+import com.utkuyavuz.songfinder.configuration.MetricsConfiguration;
+import com.utkuyavuz.songfinder.configuration.PrefetchConfiguration;
+import com.utkuyavuz.songfinder.configuration.RateLimitConfiguration;
+import com.utkuyavuz.songfinder.configuration.RetryConfiguration;
 import com.utkuyavuz.songfinder.service.contract.ISpotifyService;
+import com.utkuyavuz.songfinder.service.implementation.PreviewService;
 import com.utkuyavuz.songfinder.service.implementation.SpotifyService;
 import com.utkuyavuz.songfinder.service.input.SearchItemInput;
 import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
@@ -12,7 +23,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit4.SpringRunner;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = SpotifyService.class)
+@SpringBootTest(classes = { SpotifyService.class, PreviewService.class, HttpClientConfiguration.class,
+        AsyncConfiguration.class, BatchingConfiguration.class, CacheConfiguration.class, CoalescingConfiguration.class,
+        HedgingConfiguration.class, MetricsConfiguration.class, PrefetchConfiguration.class,
+        RateLimitConfiguration.class, RetryConfiguration.class })
 public class SpotifyServiceTest {
 
     @Autowired
@@ -37,6 +51,9 @@ public class SpotifyServiceTest {
         assert (output.getErrorMessage() == null);
         /* Output previewUrl should not be empty */
         assert (output.getPreviewUrl() != null);
+        /* Output track should carry the same preview url */
+        assert (output.getTrack() != null);
+        assert (output.getPreviewUrl().equals(output.getTrack().getPreviewUrl()));
 
     }
 }
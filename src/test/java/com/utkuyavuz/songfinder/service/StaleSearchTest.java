@@ -0,0 +1,120 @@
+package com.utkuyavuz.songfinder.service;
+
+import com.utkuyavuz.songfinder.cache.SearchResultCache;
+import com.utkuyavuz.songfinder.configuration.AsyncConfiguration;
+import com.utkuyavuz.songfinder.configuration.BatchingConfiguration;
+import com.utkuyavuz.songfinder.configuration.CacheConfiguration;
+import com.utkuyavuz.songfinder.configuration.CoalescingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HedgingConfiguration;
+import com.utkuyavuz.songfinder.configuration.HttpClientConfiguration;
+import com.utkuyavuz.songfinder.configuration.MetricsConfiguration;
+import com.utkuyavuz.songfinder.configuration.PrefetchConfiguration;
+import com.utkuyavuz.songfinder.configuration.RateLimitConfiguration;
+import com.utkuyavuz.songfinder.configuration.RetryConfiguration;
+import com.utkuyavuz.songfinder.configuration.SpotifyProperties;
+import com.utkuyavuz.songfinder.emulator.Latency;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import com.utkuyavuz.songfinder.service.contract.ISpotifyService;
+import com.utkuyavuz.songfinder.service.implementation.PreviewService;
+import com.utkuyavuz.songfinder.service.implementation.SpotifyService;
+import com.utkuyavuz.songfinder.service.input.SearchItemInput;
+import com.utkuyavuz.songfinder.service.output.SearchItemOutput;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+
+/* Expired search results served while they are refreshed, or while the emulator fails the searches */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = { SpotifyService.class, PreviewService.class, HttpClientConfiguration.class,
+        AsyncConfiguration.class, BatchingConfiguration.class, CacheConfiguration.class, CoalescingConfiguration.class,
+        HedgingConfiguration.class, MetricsConfiguration.class, PrefetchConfiguration.class,
+        RateLimitConfiguration.class, RetryConfiguration.class },
+        properties = { "songfinder.cache.search.ttl=500", "songfinder.cache.search.stale-while-revalidate=1000",
+                "songfinder.cache.search.stale-if-error=5000", "songfinder.retry.max-attempts=1" })
+public class StaleSearchTest {
+
+    private static SpotifyEmulator emulator;
+
+    @Autowired
+    private SpotifyProperties spotifyProperties;
+
+    @Autowired
+    private ISpotifyService spotifyService;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+    }
+
+    @AfterClass
+    public static void stopEmulator() {
+        emulator.close();
+    }
+
+    @Before
+    public void resetEmulator() {
+        spotifyProperties.setBaseUrl(emulator.getBaseUrl());
+        emulator.reset();
+    }
+
+    @Test
+    public void revalidateTest() throws InterruptedException {
+        SearchItemOutput fresh = spotifyService.searchItem(new SearchItemInput("Stale Revalidate", "token"));
+        assert (fresh.getStatus() == HttpStatus.OK.value());
+        assert (emulator.getSearch().getRequestCount() == 1);
+        long refreshes = searchResultCache.getRefreshCount();
+        long hits = searchResultCache.getHitCount();
+        long misses = searchResultCache.getMissCount();
+
+        /* An expired entry within the grace window is answered at once, however slow the search is */
+        Thread.sleep(600);
+        emulator.getSearch().setLatency(Latency.fixed(300));
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            SearchItemOutput stale = spotifyService.searchItem(new SearchItemInput("stale revalidate", "token"));
+            assert (System.nanoTime() - start < 100_000_000L);
+            assert (stale.getStatus() == HttpStatus.OK.value());
+            assert (fresh.getPreviewUrl().equals(stale.getPreviewUrl()));
+        }
+        /* Though served, the expired entry is a miss as it is searched again */
+        assert (searchResultCache.getHitCount() == hits);
+        assert (searchResultCache.getMissCount() >= misses + 3);
+
+        /* Only one background search refreshes it */
+        Thread.sleep(450);
+        assert (emulator.getSearch().getRequestCount() == 2);
+        assert (searchResultCache.getRefreshCount() == refreshes + 1);
+        assert (searchResultCache.getTrack("Stale Revalidate", "TR") != null);
+    }
+
+    @Test
+    public void errorTest() throws InterruptedException {
+        SearchItemOutput fresh = spotifyService.searchItem(new SearchItemInput("Stale Error", "token"));
+        assert (fresh.getStatus() == HttpStatus.OK.value());
+        long staleErrors = searchResultCache.getStaleErrorCount();
+
+        /* Past the grace window the search is sent, and the expired entry is answered if it fails */
+        Thread.sleep(1600);
+        emulator.getSearch().setErrorRate(1);
+        SearchItemOutput stale = spotifyService.searchItem(new SearchItemInput("Stale Error", "token"));
+        assert (stale.getStatus() == HttpStatus.OK.value());
+        assert (fresh.getPreviewUrl().equals(stale.getPreviewUrl()));
+        assert (searchResultCache.getStaleErrorCount() == staleErrors + 1);
+        assert (emulator.getSearch().getRequestCount() == 2);
+
+        /* A query which has not been cached fails */
+        SearchItemOutput failed = spotifyService.searchItem(new SearchItemInput("Never Cached", "token"));
+        assert (failed.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+    }
+}
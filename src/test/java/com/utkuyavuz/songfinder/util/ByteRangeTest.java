@@ -0,0 +1,63 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+public class ByteRangeTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    public void closedRangeTest() {
+        ByteRange range = ByteRange.parse("bytes=100-199");
+        assert (range != null);
+        assert (range.getStart(LENGTH) == 100);
+        assert (range.getEnd(LENGTH) == 199);
+        assert ("bytes 100-199/1000".equals(range.toContentRange(LENGTH)));
+        assert ("bytes=100-199".equals(range.toString()));
+    }
+
+    @Test
+    public void openRangeTest() {
+        /* Open-ended and overlong ranges end at the last byte */
+        assert (ByteRange.parse("bytes=900-").getEnd(LENGTH) == 999);
+        assert (ByteRange.parse("bytes=900-5000").getEnd(LENGTH) == 999);
+    }
+
+    @Test
+    public void suffixRangeTest() {
+        /* Suffix ranges select the last bytes, or the whole content if it is shorter */
+        ByteRange range = ByteRange.parse("bytes=-100");
+        assert (range.getStart(LENGTH) == 900);
+        assert (range.getEnd(LENGTH) == 999);
+        assert (ByteRange.parse("bytes=-5000").getStart(LENGTH) == 0);
+        assert ("bytes=-100".equals(range.toString()));
+    }
+
+    @Test
+    public void satisfiableTest() {
+        assert (ByteRange.parse("bytes=999-").isSatisfiable(LENGTH));
+        assert (!ByteRange.parse("bytes=1000-").isSatisfiable(LENGTH));
+    }
+
+    @Test
+    public void invalidRangeTest() {
+        /* Invalid ranges are ignored */
+        assert (ByteRange.parse(null) == null);
+        assert (ByteRange.parse("items=0-1") == null);
+        assert (ByteRange.parse("bytes=200-100") == null);
+        assert (ByteRange.parse("bytes=-0") == null);
+        assert (ByteRange.parse("bytes=a-b") == null);
+        assert (ByteRange.parse("bytes=+1-2") == null);
+    }
+
+    @Test
+    public void multipleRangeTest() {
+        assert (ByteRange.isMultiple("bytes=0-1,5-6"));
+        assert (!ByteRange.isMultiple("bytes=0-1"));
+        assert (!ByteRange.isMultiple(null));
+        assert (ByteRange.parse("bytes=0-1,5-6") == null);
+    }
+}
@@ -0,0 +1,78 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+public class CircuitBreakerTest {
+
+    @Test
+    public void openTest() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.5, 60000, 1);
+
+        /* Failures below the minimum number of calls keep the circuit closed */
+        for (int i = 0; i < 3; i++) {
+            assert (breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assert (breaker.getState() == CircuitBreaker.CLOSED);
+
+        /* The fourth call fills the window with failures and opens the circuit */
+        assert (breaker.tryAcquire());
+        breaker.onFailure();
+        assert (breaker.getState() == CircuitBreaker.OPEN);
+        assert (!breaker.tryAcquire());
+        assert (breaker.getRejectedCount() == 1);
+    }
+
+    @Test
+    public void windowTest() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.75, 60000, 1);
+
+        /* Half of the calls failing stays below the threshold */
+        for (int i = 0; i < 10; i++) {
+            assert (breaker.tryAcquire());
+            if (i % 2 == 0) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+        assert (breaker.getState() == CircuitBreaker.CLOSED);
+
+        /* Older successes leave the window, three failures of the last four calls open the circuit */
+        breaker.onFailure();
+        assert (breaker.getState() == CircuitBreaker.CLOSED);
+        breaker.onFailure();
+        assert (breaker.getState() == CircuitBreaker.OPEN);
+    }
+
+    @Test
+    public void halfOpenTest() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 2, 0.5, 50, 1);
+        breaker.onFailure();
+        breaker.onFailure();
+        assert (breaker.getState() == CircuitBreaker.OPEN);
+        Thread.sleep(100);
+
+        /* A single trial is let through once the open duration is over, a failed trial opens the circuit again */
+        assert (breaker.tryAcquire());
+        assert (breaker.getState() == CircuitBreaker.HALF_OPEN);
+        assert (!breaker.tryAcquire());
+        breaker.onFailure();
+        assert (breaker.getState() == CircuitBreaker.OPEN);
+        Thread.sleep(100);
+
+        /* A released trial lets another one through, a successful trial closes the circuit */
+        assert (breaker.tryAcquire());
+        breaker.release();
+        assert (breaker.tryAcquire());
+        breaker.onSuccess();
+        assert (breaker.getState() == CircuitBreaker.CLOSED);
+
+        /* The window starts over after the circuit closes */
+        breaker.onFailure();
+        assert (breaker.getState() == CircuitBreaker.CLOSED);
+    }
+}
@@ -0,0 +1,56 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import org.apache.http.client.config.RequestConfig;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+
+@RunWith(SpringRunner.class)
+public class DeadlineTest {
+
+    @Test
+    public void limitTest() {
+        Deadline deadline = Deadline.after(10000);
+        assert (!deadline.isExpired());
+        assert (deadline.remainingMillis() > 9000 && deadline.remainingMillis() <= 10000);
+
+        /* A stage gets the smaller of its budget and what remains */
+        Deadline stage = deadline.limit(1000);
+        assert (stage.remainingMillis() <= 1000);
+        assert (deadline.limit(20000) == deadline);
+
+        Deadline expired = Deadline.after(0);
+        assert (expired.isExpired());
+        assert (expired.remainingNanos() == 0);
+        assert (expired.remainingMillis() == 0);
+    }
+
+    @Test
+    public void requestConfigTest() throws IOException {
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setConnectTimeout(2000);
+        properties.setReadTimeout(5000);
+        properties.setPoolTimeout(0);
+        HttpClientProperties.Timeouts timeouts = new HttpClientProperties.Timeouts();
+        timeouts.setRead(3000);
+        properties.getTimeouts().put("api.spotify.com", timeouts);
+
+        try (HttpClientEngine engine = new HttpClientEngine(properties)) {
+            /* Host timeouts override the defaults, the ones not set are inherited */
+            RequestConfig host = engine.requestConfig("api.spotify.com", null);
+            assert (host.getConnectTimeout() == 2000);
+            assert (host.getSocketTimeout() == 3000);
+            RequestConfig other = engine.requestConfig("p.scdn.co", null);
+            assert (other.getSocketTimeout() == 5000);
+
+            /* Every timeout, also the unbounded ones, is bounded by the deadline */
+            RequestConfig bounded = engine.requestConfig("api.spotify.com", Deadline.after(500));
+            assert (bounded.getConnectTimeout() <= 500);
+            assert (bounded.getSocketTimeout() <= 500);
+            assert (bounded.getConnectionRequestTimeout() > 0 && bounded.getConnectionRequestTimeout() <= 500);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@RunWith(SpringRunner.class)
+public class FanOutTest {
+
+    @Test
+    public void windowTest() {
+        List<Integer> items = IntStream.range(0, 5).boxed().collect(Collectors.toList());
+        List<CompletableFuture<Integer>> calls = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = FanOut.run(items, 2, item -> {
+            CompletableFuture<Integer> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }, (index, item, result, throwable) -> results.add(index));
+
+        /* Only the window is in flight, a completion starts the next call */
+        assert (calls.size() == 2);
+        calls.get(1).complete(1);
+        assert (calls.size() == 3);
+        assert (results.equals(Collections.singletonList(1)));
+
+        /* The results are handed over in completion order, failures included */
+        calls.get(2).completeExceptionally(new IllegalStateException("failed"));
+        calls.get(0).complete(0);
+        assert (calls.size() == 5);
+        calls.get(4).complete(4);
+        assert (!done.isDone());
+        calls.get(3).complete(3);
+        assert (done.isDone() && !done.isCompletedExceptionally());
+        assert (results.equals(Arrays.asList(1, 2, 0, 4, 3)));
+    }
+
+    @Test
+    public void synchronousTest() {
+        /* Calls completing at once, e.g. from a cache, run in a loop rather than recursing */
+        List<Integer> items = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        List<Integer> results = new ArrayList<>();
+        CompletableFuture<Void> done = FanOut.run(items, 4, CompletableFuture::completedFuture,
+                (index, item, result, throwable) -> results.add(result));
+        assert (done.isDone() && !done.isCompletedExceptionally());
+        assert (results.equals(items));
+    }
+
+    @Test
+    public void cancelTest() {
+        List<Integer> items = IntStream.range(0, 5).boxed().collect(Collectors.toList());
+        List<CompletableFuture<Integer>> calls = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = FanOut.run(items, 2, item -> {
+            CompletableFuture<Integer> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }, (index, item, result, throwable) -> results.add(index));
+
+        /* Cancelling cancels the calls in flight and starts no further call */
+        done.cancel(true);
+        assert (calls.size() == 2);
+        assert (calls.get(0).isCancelled() && calls.get(1).isCancelled());
+        assert (results.isEmpty());
+    }
+
+    @Test
+    public void callbackFailureTest() {
+        List<Integer> items = IntStream.range(0, 5).boxed().collect(Collectors.toList());
+        List<CompletableFuture<Integer>> calls = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = FanOut.run(items, 2, item -> {
+            CompletableFuture<Integer> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }, (index, item, result, throwable) -> {
+            throw new IllegalStateException("Client has gone away");
+        });
+
+        /* A throwing callback fails the fan out and cancels the other calls */
+        calls.get(0).complete(0);
+        assert (done.isCompletedExceptionally());
+        assert (calls.size() == 2 && calls.get(1).isCancelled());
+        try {
+            done.join();
+            assert (false);
+        } catch (CompletionException e) {
+            assert (e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
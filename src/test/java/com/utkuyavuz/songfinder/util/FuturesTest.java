@@ -0,0 +1,113 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+@RunWith(SpringRunner.class)
+public class FuturesTest {
+
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    public void cancellingTest() {
+        /* Cancelling the dependent stage cancels its source */
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<Integer> dependent = Futures.cancelling(source, source.thenApply(String::length));
+        dependent.cancel(true);
+        assert (source.isCancelled());
+    }
+
+    @Test
+    public void composeTest() {
+        /* The following stage gets the result of the source */
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<Integer> composed = Futures.composeCancelling(source,
+                value -> CompletableFuture.completedFuture(value.length()), DIRECT, value -> { });
+        source.complete("result");
+        assert (composed.join() == 6);
+    }
+
+    @Test
+    public void cancelSourceTest() {
+        /* Cancelling before the source completes cancels the source, the following stage is never started */
+        CompletableFuture<String> source = new CompletableFuture<>();
+        List<String> started = new ArrayList<>();
+        CompletableFuture<Integer> composed = Futures.composeCancelling(source, value -> {
+            started.add(value);
+            return new CompletableFuture<>();
+        }, DIRECT, value -> { });
+        composed.cancel(true);
+        assert (source.isCancelled());
+        assert (started.isEmpty());
+    }
+
+    @Test
+    public void cancelStageTest() {
+        /* Cancelling after the source completes cancels the following stage, whose late result is discarded */
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<Integer> stage = new CompletableFuture<>();
+        List<Integer> discarded = new ArrayList<>();
+        CompletableFuture<Integer> composed = Futures.composeCancelling(source, value -> stage, DIRECT,
+                discarded::add);
+        source.complete("result");
+        composed.cancel(true);
+        assert (stage.isCancelled());
+
+        /* A stage which completes regardless, as if it completed while being cancelled */
+        CompletableFuture<String> late = new CompletableFuture<>();
+        CompletableFuture<Integer> unaware = new CompletableFuture<Integer>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        CompletableFuture<Integer> abandoned = Futures.composeCancelling(late, value -> unaware, DIRECT,
+                discarded::add);
+        late.complete("result");
+        abandoned.cancel(true);
+        unaware.complete(6);
+        assert (discarded.size() == 1 && discarded.get(0) == 6);
+    }
+
+    @Test
+    public void failureTest() {
+        /* A failure of either stage, or a rejecting executor, fails the composed future */
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<Integer> composed = Futures.composeCancelling(source,
+                value -> CompletableFuture.completedFuture(value.length()), DIRECT, value -> { });
+        source.completeExceptionally(new IllegalStateException("failed"));
+        assert (causeOf(composed) instanceof IllegalStateException);
+
+        CompletableFuture<Integer> failed = Futures.composeCancelling(CompletableFuture.completedFuture("result"),
+                value -> {
+                    CompletableFuture<Integer> stage = new CompletableFuture<>();
+                    stage.completeExceptionally(new IllegalStateException("failed"));
+                    return stage;
+                }, DIRECT, value -> { });
+        assert (causeOf(failed) instanceof IllegalStateException);
+
+        CompletableFuture<Integer> rejected = Futures.composeCancelling(CompletableFuture.completedFuture("result"),
+                value -> CompletableFuture.completedFuture(value.length()), command -> {
+                    throw new RejectedExecutionException("busy");
+                }, value -> { });
+        assert (causeOf(rejected) instanceof RejectedExecutionException);
+    }
+
+    private static Throwable causeOf(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            return cause instanceof CompletionException ? cause.getCause() : cause;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+@RunWith(SpringRunner.class)
+public class GsonStreamUtilsTest {
+
+    private static final String PLAIN_KEY = "plainKey";
+    private static final String PLAIN_VALUE = "plainValue";
+
+    private static final String INNER_OBJECT_KEY = "inner";
+    private static final String INNER_KEY = "innerKey";
+    private static final String INNER_VALUE = "innerValue";
+
+    private static final int PRIMITIVE_ARRAY_SIZE = 3;
+    private static final String PRIMITIVE_ARRAY_KEY = "array";
+
+    private static final int ARRAY_SIZE = 5;
+    private static final String ARRAY_KEY = "items";
+
+    private static final String ARRAY_ITEM_KEY = "item";
+
+    private String json;
+
+    /**
+     * Creating the json object
+     * {
+     *     "plainKey": "plainValue",
+     *     "inner": {
+     *         "innerKey": "innerValue"
+     *     },
+     *     "array": [0, 1, 2],
+     *     "items": [
+     *     {
+     *         "item": 0
+     *     },
+     *     {
+     *         "item": 1
+     *     },
+     *     {
+     *         "item": 2
+     *     },
+     *     {
+     *         "item": 3
+     *     },
+     *     {
+     *         "item": 4
+     *     }]
+     * }
+     */
+    @Before
+    public void fetchData() {
+        JsonObject root = new JsonObject();
+        root.addProperty(PLAIN_KEY, PLAIN_VALUE);
+
+        JsonObject inner = new JsonObject();
+        inner.addProperty(INNER_KEY, INNER_VALUE);
+        root.add(INNER_OBJECT_KEY, inner);
+
+        JsonArray primitive = new JsonArray();
+        for (int i = 0; i < PRIMITIVE_ARRAY_SIZE; i++) {
+            primitive.add(i);
+        }
+        root.add(PRIMITIVE_ARRAY_KEY, primitive);
+
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < ARRAY_SIZE; i++) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty(ARRAY_ITEM_KEY, i);
+            items.add(obj);
+        }
+        root.add(ARRAY_KEY, items);
+
+        this.json = root.toString();
+    }
+
+    @Test
+    public void getAsJsonArrayTest() {
+        /* Get "items" and check it is a JsonArray */
+        GsonStreamUtils gsonUtils = new GsonStreamUtils(bytes(this.json));
+        gsonUtils.getAsJsonArray(ARRAY_KEY);
+        assert (gsonUtils.isSuccess());
+        assert (gsonUtils.isJsonArray());
+    }
+
+    @Test
+    public void getAsJsonObjectTest() {
+        /* Get "inner" and check it is a JsonObject */
+        GsonStreamUtils gsonUtils = new GsonStreamUtils(bytes(this.json));
+        gsonUtils.getAsJsonObject(INNER_OBJECT_KEY);
+        assert (gsonUtils.isSuccess());
+        assert (gsonUtils.isJsonObject());
+    }
+
+    @Test
+    public void getJsonPrimitiveTest() {
+        /* Get "inner" > "innerKey" and check it is a JsonPrimitive and String and has value INNER_VALUE */
+        GsonStreamUtils gsonUtils = new GsonStreamUtils(bytes(this.json));
+        gsonUtils.getAsJsonObject(INNER_OBJECT_KEY);
+        gsonUtils.getJsonPrimitive(INNER_KEY);
+        assert (gsonUtils.isSuccess());
+        assert (gsonUtils.isJsonPrimitive());
+        assert (gsonUtils.getCurrent().isString());
+        assert (gsonUtils.getCurrent().getAsString().equals(INNER_VALUE));
+    }
+
+    @Test
+    public void getJsonObjectAtIndexTest() {
+        /* Get a random element of "items" and check its "item" has the index as its value */
+        int randIdx = new Random().nextInt(ARRAY_SIZE);
+
+        GsonStreamUtils gsonUtils = new GsonStreamUtils(bytes(this.json));
+        gsonUtils.getAsJsonArray(ARRAY_KEY);
+        gsonUtils.getJsonObjectAtIndex(randIdx);
+        assert (gsonUtils.isSuccess());
+        assert (gsonUtils.isJsonObject());
+        gsonUtils.getJsonPrimitive(ARRAY_ITEM_KEY);
+        assert (gsonUtils.isJsonPrimitive());
+        assert (gsonUtils.getCurrent().isNumber());
+        assert (gsonUtils.getCurrent().getAsInt() == randIdx);
+    }
+
+    @Test
+    public void getObjectAtIndexTest() {
+        /* Get a random element of "array" and check it has the index as its value */
+        int randIdx = new Random().nextInt(PRIMITIVE_ARRAY_SIZE);
+
+        GsonStreamUtils gsonUtils = new GsonStreamUtils(bytes(this.json));
+        gsonUtils.getAsJsonArray(PRIMITIVE_ARRAY_KEY);
+        gsonUtils.getObjectAtIndex(randIdx);
+        assert (gsonUtils.isSuccess());
+        assert (gsonUtils.isJsonPrimitive());
+        assert (gsonUtils.getCurrent().isNumber());
+        assert (gsonUtils.getCurrent().getAsInt() == randIdx);
+    }
+
+    @Test
+    public void sameErrorsTest() {
+        /* Errors are the same as the ones of GsonUtils */
+        String[] documents = {
+                this.json,
+                "{\"tracks\": {\"items\": []}}",
+                "{\"tracks\": {\"items\": [1]}}",
+                "{\"tracks\": {\"items\": [{\"preview_url\": null}]}}",
+                "{\"tracks\": {\"items\": [{\"preview_url\": {}}]}}",
+                "{\"tracks\": {\"items\": {}}}",
+                "{\"tracks\": []}",
+                "[]",
+                "\"text\"",
+                "",
+                "{\"tracks\": {\"items\": [{\"preview_url\": \"http://x\"}]}}",
+                "{\"tracks\": {\"items\": [{\"preview_url\": 42}]}}"
+        };
+        for (String document : documents) {
+            GsonUtils tree = new GsonUtils(document);
+            tree.getAsJsonObject("tracks").getAsJsonArray("items").getJsonObjectAtIndex(0)
+                    .getJsonPrimitive("preview_url");
+            GsonStreamUtils stream = new GsonStreamUtils(bytes(document));
+            stream.getAsJsonObject("tracks").getAsJsonArray("items").getJsonObjectAtIndex(0)
+                    .getJsonPrimitive("preview_url");
+
+            assert (tree.isSuccess() == stream.isSuccess());
+            assert (tree.isJsonPrimitive() == stream.isJsonPrimitive());
+            assert (tree.getErrorMessage() == null ? stream.getErrorMessage() == null
+                    : tree.getErrorMessage().equals(stream.getErrorMessage()));
+            assert (!tree.isJsonPrimitive() || tree.getCurrent().equals(stream.getCurrent()));
+        }
+    }
+
+    @Test
+    public void malformedTest() {
+        /* Malformed documents are errors */
+        GsonStreamUtils gsonUtils = new GsonStreamUtils(bytes("{\"tracks\": {\"items\": [{\"preview_url\" 1"));
+        gsonUtils.getAsJsonObject("tracks").getAsJsonArray("items").getJsonObjectAtIndex(0)
+                .getJsonPrimitive("preview_url");
+        assert (!gsonUtils.isSuccess());
+        assert (gsonUtils.getErrorMessage().startsWith("Cannot parse input as a JsonElement"));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,150 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HedgingProperties;
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(SpringRunner.class)
+public class HedgerTest {
+
+    private static HttpClientEngine engine;
+
+    @BeforeClass
+    public static void createEngine() {
+        engine = new HttpClientEngine(new HttpClientProperties());
+    }
+
+    @AfterClass
+    public static void closeEngine() throws IOException {
+        engine.close();
+    }
+
+    @Test
+    public void hedgeTest() {
+        Hedger hedger = new Hedger("test", properties(1), engine);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger();
+
+        /* A slow first attempt is hedged, the hedge wins and the first attempt is cancelled */
+        String result = hedger.execute(() -> attempts.getAndIncrement() == 0
+                ? primary : CompletableFuture.completedFuture("hedge"), value -> { }).join();
+        assert (result.equals("hedge"));
+        assert (attempts.get() == 2);
+        assert (primary.isCancelled());
+        assert (hedger.getFiredCount() == 1);
+        assert (hedger.getWonCount() == 1);
+
+        /* A fast first attempt is not hedged */
+        assert (hedger.execute(() -> CompletableFuture.completedFuture("fast"), value -> { }).join().equals("fast"));
+        assert (hedger.getFiredCount() == 1);
+        assert (hedger.getCallCount() == 2);
+    }
+
+    @Test
+    public void discardTest() {
+        Hedger hedger = new Hedger("test", properties(1), engine);
+        /* First attempt which cannot be cancelled any more */
+        CompletableFuture<String> primary = new CompletableFuture<String>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        List<String> discarded = new ArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = hedger.execute(() -> attempts.getAndIncrement() == 0
+                ? primary : CompletableFuture.completedFuture("hedge"), discarded::add).join();
+        assert (result.equals("hedge"));
+
+        /* The response of the first attempt comes second and is discarded */
+        primary.complete("primary");
+        assert (discarded.size() == 1 && discarded.get(0).equals("primary"));
+    }
+
+    @Test
+    public void failedHedgeTest() {
+        Hedger hedger = new Hedger("test", properties(1), engine);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        List<String> discarded = new ArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = hedger.execute(() -> attempts.getAndIncrement() == 0 ? primary : hedge,
+                discarded::add);
+        while (attempts.get() < 2) {
+            Thread.yield();
+        }
+
+        /* A failed hedge gives way to the first attempt */
+        hedge.completeExceptionally(new IllegalStateException("hedge failed"));
+        assert (!result.isDone());
+        primary.complete("primary");
+        assert (result.join().equals("primary"));
+        assert (hedger.getWonCount() == 0);
+        assert (discarded.isEmpty());
+    }
+
+    @Test
+    public void ratioTest() throws InterruptedException {
+        Hedger hedger = new Hedger("test", properties(0.5), engine);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+        /* Half a hedge is earned by each call, so only half of the slow calls are hedged */
+        for (int i = 0; i < 4; i++) {
+            results.add(hedger.execute(() -> {
+                CompletableFuture<String> attempt = new CompletableFuture<>();
+                synchronized (attempts) {
+                    attempts.add(attempt);
+                }
+                return attempt;
+            }, value -> { }));
+        }
+        while (hedger.getFiredCount() + hedger.getDeniedCount() < 4) {
+            Thread.sleep(5);
+        }
+        assert (hedger.getFiredCount() == 2);
+        assert (hedger.getDeniedCount() == 2);
+        assert (attempts.size() == 6);
+
+        /* Cancelling the calls cancels their attempts */
+        for (CompletableFuture<String> result : results) {
+            result.cancel(true);
+        }
+        for (CompletableFuture<String> attempt : attempts) {
+            assert (attempt.isCancelled());
+        }
+    }
+
+    @Test
+    public void disabledTest() {
+        HedgingProperties properties = properties(1);
+        properties.setEnabled(false);
+        Hedger hedger = new Hedger("test", properties, engine);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+
+        /* The first attempt is returned as it is */
+        assert (hedger.execute(() -> primary, value -> { }) == primary);
+        assert (hedger.getCallCount() == 0);
+    }
+
+    private static HedgingProperties properties(double maxRatio) {
+        HedgingProperties properties = new HedgingProperties();
+        properties.setEnabled(true);
+        properties.setMinDelay(10);
+        properties.setMaxDelay(10);
+        properties.setMaxRatio(maxRatio);
+        return properties;
+    }
+}
@@ -0,0 +1,168 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import com.utkuyavuz.songfinder.emulator.Latency;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/* The connection pools of the HTTP client engine against the Spotify emulator */
+@RunWith(SpringRunner.class)
+public class HttpClientEngineTest {
+
+    private static SpotifyEmulator emulator;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+    }
+
+    @AfterClass
+    public static void stopEmulator() {
+        emulator.close();
+    }
+
+    @Before
+    public void resetEmulator() {
+        emulator.reset();
+    }
+
+    @Test
+    public void reuseTest() throws IOException {
+        /* Consecutive requests to a host are sent over one kept alive connection, in both pools */
+        try (HttpClientEngine engine = new HttpClientEngine(new HttpClientProperties())) {
+            for (int i = 0; i < 5; i++) {
+                assert (search(engine).get().isSuccess());
+            }
+            assert (engine.getTotalStats().getLeased() == 0);
+            assert (engine.getTotalStats().getAvailable() == 1);
+
+            for (int i = 0; i < 5; i++) {
+                assert (search(engine).getAsync().join().isSuccess());
+            }
+            assert (engine.getAsyncTotalStats().getLeased() == 0);
+            assert (engine.getAsyncTotalStats().getAvailable() == 1);
+        }
+    }
+
+    @Test
+    public void poolLimitTest() throws IOException {
+        /* A host gets at most its share of max-per-route connections, a request waiting longer than the pool
+        timeout fails */
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxPerRoute(4);
+        properties.setPoolTimeout(200);
+        try (HttpClientEngine engine = new HttpClientEngine(properties)) {
+            List<RestUtils> streams = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                RestUtils stream = preview(engine).getStream();
+                assert (stream.isSuccess());
+                streams.add(stream);
+            }
+            assert (engine.getTotalStats().getLeased() == 2);
+
+            long poolTimeouts = engine.getTimeouts(HttpClientEngine.POOL_TIMEOUT);
+            RestUtils waiting = preview(engine).getStream();
+            assert (waiting.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT);
+            assert (engine.getTimeouts(HttpClientEngine.POOL_TIMEOUT) == poolTimeouts + 1);
+
+            /* A closed stream gives its connection back */
+            streams.remove(0).getResponseStream().close();
+            RestUtils next = preview(engine).getStream();
+            assert (next.isSuccess());
+            next.getResponseStream().close();
+            streams.remove(0).getResponseStream().close();
+            assert (engine.getTotalStats().getLeased() == 0);
+            assert (engine.getTotalStats().getAvailable() <= 2);
+        }
+    }
+
+    @Test
+    public void asyncPoolLimitTest() throws IOException, InterruptedException {
+        /* The non-blocking pool opens at most its share of max-per-route connections, the others wait for the pool
+        timeout */
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxPerRoute(4);
+        properties.setPoolTimeout(200);
+        emulator.getSearch().setLatency(Latency.fixed(1000));
+        try (HttpClientEngine engine = new HttpClientEngine(properties)) {
+            List<CompletableFuture<RestUtils>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(search(engine).getAsync());
+            }
+            Thread.sleep(100);
+            assert (engine.getAsyncTotalStats().getLeased() == 2);
+
+            int succeeded = 0;
+            int timedOut = 0;
+            for (CompletableFuture<RestUtils> future : futures) {
+                RestUtils restUtils = future.join();
+                if (restUtils.isSuccess()) {
+                    succeeded++;
+                } else if (restUtils.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT) {
+                    timedOut++;
+                }
+            }
+            assert (succeeded == 2 && timedOut == 1);
+            assert (engine.getTimeouts(HttpClientEngine.POOL_TIMEOUT) == 1);
+            assert (engine.getAsyncTotalStats().getLeased() == 0);
+        }
+    }
+
+    @Test
+    public void shareTest() throws IOException {
+        /* The connection limits are split between the two pools, each gets at least one connection */
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxTotal(10);
+        properties.setAsyncShare(70);
+        try (HttpClientEngine engine = new HttpClientEngine(properties)) {
+            assert (engine.getTotalStats().getMax() == 3);
+            assert (engine.getAsyncTotalStats().getMax() == 7);
+        }
+        properties.setMaxTotal(1);
+        try (HttpClientEngine engine = new HttpClientEngine(properties)) {
+            assert (engine.getTotalStats().getMax() == 1);
+            assert (engine.getAsyncTotalStats().getMax() == 1);
+        }
+    }
+
+    @Test
+    public void asyncEvictTest() throws IOException, InterruptedException {
+        /* The non-blocking pool cannot validate a connection, its expired ones are evicted before they are reused */
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setKeepAlive(100);
+        properties.setValidateAfterInactivity(100);
+        try (HttpClientEngine engine = new HttpClientEngine(properties)) {
+            assert (search(engine).getAsync().join().isSuccess());
+            assert (engine.getAsyncTotalStats().getAvailable() == 1);
+            for (int i = 0; i < 50 && engine.getAsyncTotalStats().getAvailable() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assert (engine.getAsyncTotalStats().getAvailable() == 0);
+            assert (search(engine).getAsync().join().isSuccess());
+        }
+    }
+
+    /* A search request of the emulator */
+    private static RestUtils search(HttpClientEngine engine) {
+        return new RestUtils(engine, emulator.getBaseUrl() + "/v1/search")
+                .addHeader("Authorization", "Bearer token")
+                .addParameter("q", "Pooled")
+                .addParameter("type", "track");
+    }
+
+    /* A preview request of the emulator */
+    private static RestUtils preview(HttpClientEngine engine) {
+        return new RestUtils(engine, emulator.getBaseUrl() + "/mp3-preview/pooled");
+    }
+}
@@ -0,0 +1,107 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@RunWith(SpringRunner.class)
+public class JsonPathTest {
+
+    private static final String JSON = "{\"plainKey\": \"plainValue\", \"inner\": {\"innerKey\": \"innerValue\"},"
+            + " \"array\": [0, 1, [2, true]], \"items\": [{\"item\": 0}, {\"item\": 1}, {\"item\": 2}]}";
+
+    @Test
+    public void readTest() {
+        /* Read keys and indexes */
+        assert (JsonPath.compile("plainKey").read(bytes(JSON)).getValue().getAsString().equals("plainValue"));
+        assert (JsonPath.compile("inner.innerKey").read(bytes(JSON)).getValue().getAsString().equals("innerValue"));
+        assert (JsonPath.compile("array[1]").read(bytes(JSON)).getValue().getAsInt() == 1);
+        assert (JsonPath.compile("array[2][1]").read(bytes(JSON)).getValue().getAsBoolean());
+        assert (JsonPath.compile("items[2].item").read(bytes(JSON)).getValue().getAsInt() == 2);
+        assert (JsonPath.compile("[1]").read(bytes("[\"a\", \"b\"]")).getValue().getAsString().equals("b"));
+    }
+
+    @Test
+    public void invalidExpressionTest() {
+        /* Invalid expressions are rejected when compiled */
+        String[] expressions = { "", "a.", ".a", "a..b", "a.[0]", "a[", "a[]", "a[x]", "a[-1]", "a]", "a[0]b",
+                "a[99999999999]" };
+        for (String expression : expressions) {
+            try {
+                JsonPath.compile(expression);
+                assert (false);
+            } catch (IllegalArgumentException e) {
+                assert (e.getMessage() != null);
+            }
+        }
+    }
+
+    @Test
+    public void sameErrorsTest() {
+        /* Errors are the same as the ones of GsonUtils */
+        JsonPath path = JsonPath.compile("tracks.items[0].preview_url");
+        String[] documents = {
+                JSON,
+                "{\"tracks\": {\"items\": []}}",
+                "{\"tracks\": {\"items\": [1]}}",
+                "{\"tracks\": {\"items\": [{\"preview_url\": null}]}}",
+                "{\"tracks\": {\"items\": [{\"preview_url\": {}}]}}",
+                "{\"tracks\": {\"items\": {}}}",
+                "{\"tracks\": []}",
+                "[]",
+                "\"text\"",
+                "",
+                "{\"tracks\": {\"items\": [{\"preview_url\": \"http://x\"}]}}",
+                "{\"tracks\": {\"items\": [{\"preview_url\": 42}]}}"
+        };
+        for (String document : documents) {
+            GsonUtils tree = new GsonUtils(document);
+            tree.getAsJsonObject("tracks").getAsJsonArray("items").getJsonObjectAtIndex(0)
+                    .getJsonPrimitive("preview_url");
+            JsonPath.Result result = path.read(bytes(document));
+
+            assert (tree.isSuccess() == result.isSuccess());
+            assert (tree.getErrorMessage() == null ? result.getErrorMessage() == null
+                    : tree.getErrorMessage().equals(result.getErrorMessage()));
+            assert (!tree.isSuccess() || tree.getCurrent().equals(result.getValue()));
+        }
+    }
+
+    @Test
+    public void malformedTest() {
+        /* Malformed documents are errors */
+        JsonPath.Result result = JsonPath.compile("tracks.items[0].preview_url")
+                .read(bytes("{\"tracks\": {\"items\": [{\"preview_url\" 1"));
+        assert (!result.isSuccess());
+        assert (result.getErrorMessage().startsWith("Cannot parse input as a JsonElement"));
+    }
+
+    @Test
+    public void sharedTest() {
+        /* A compiled path is read by many threads at once */
+        JsonPath path = JsonPath.compile("items[1].item");
+        List<CompletableFuture<Boolean>> reads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            reads.add(CompletableFuture.supplyAsync(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (path.read(bytes(JSON)).getValue().getAsInt() != 1) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (CompletableFuture<Boolean> read : reads) {
+            assert (read.join());
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
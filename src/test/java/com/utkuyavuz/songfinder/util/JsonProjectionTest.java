@@ -0,0 +1,97 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.nio.charset.StandardCharsets;
+
+@RunWith(SpringRunner.class)
+public class JsonProjectionTest {
+
+    /**
+     * Two tracks with their fields in different orders, values which are not projected and a missing field
+     */
+    private static final String JSON = "{\"tracks\": {\"href\": \"x\", \"items\": ["
+            + "{\"album\": {\"images\": [{\"url\": \"large\"}, {\"url\": \"small\"}], \"name\": \"a\"},"
+            + " \"artists\": [{\"name\": \"first\"}, {\"name\": \"second\"}], \"id\": \"1\", \"name\": \"one\","
+            + " \"duration_ms\": 1000, \"popularity\": 50, \"is_playable\": true, \"preview_url\": \"http://1\"},"
+            + "{\"preview_url\": null, \"id\": \"2\", \"available_markets\": [\"TR\", \"US\"], \"artists\": [],"
+            + " \"name\": {\"nested\": 1}}"
+            + "], \"total\": 2}}";
+
+    private static final JsonProjection TRACKS = JsonProjection.compile("tracks.items", "id", "name",
+            "artists[*].name", "album.images[0].url", "duration_ms", "popularity", "is_playable", "preview_url");
+
+    @Test
+    public void readTest() {
+        /* All the fields of every track are projected */
+        JsonProjection.Result result = TRACKS.read(bytes(JSON));
+        assert (result.isSuccess());
+        assert (result.getRows().size() == 2);
+
+        JsonProjection.Row first = result.getRows().get(0);
+        assert (first.isObject());
+        assert (first.get(0).getAsString().equals("1"));
+        assert (first.get(1).getAsString().equals("one"));
+        assert (first.getAll(2).size() == 2);
+        assert (first.getAll(2).get(1).getAsString().equals("second"));
+        assert (first.get(3).getAsString().equals("large"));
+        assert (first.get(4).getAsLong() == 1000);
+        assert (first.get(5).getAsInt() == 50);
+        assert (first.get(6).getAsBoolean());
+        assert (first.get(7).getAsString().equals("http://1"));
+    }
+
+    @Test
+    public void missingFieldTest() {
+        /* Missing fields, nulls and values which are not primitives are left out */
+        JsonProjection.Row second = TRACKS.read(bytes(JSON)).getRows().get(1);
+        assert (second.get(0).getAsString().equals("2"));
+        assert (second.get(1) == null);
+        assert (second.getAll(2).isEmpty());
+        assert (second.get(2) == null);
+        assert (second.get(3) == null);
+        assert (second.get(7) == null);
+    }
+
+    @Test
+    public void notObjectTest() {
+        /* Elements which are not objects have no fields */
+        JsonProjection.Result result = TRACKS.read(bytes("{\"tracks\": {\"items\": [1, {\"id\": \"x\"}]}}"));
+        assert (result.getRows().size() == 2);
+        assert (!result.getRows().get(0).isObject());
+        assert (result.getRows().get(1).get(0).getAsString().equals("x"));
+    }
+
+    @Test
+    public void errorTest() {
+        /* Errors of the path to the array are the same as the ones of GsonUtils */
+        JsonProjection.Result result = TRACKS.read(bytes("{\"tracks\": {\"items\": {}}}"));
+        assert (!result.isSuccess());
+        assert (result.getErrorMessage().equals("Key[items] does not exists or resulting item is not a JsonArray."));
+
+        result = TRACKS.read(bytes("{\"tracks\": {\"items\": [{\"id\": \"1\"}, {\"id\" 2}]}}"));
+        assert (!result.isSuccess());
+        assert (result.getErrorMessage().startsWith("Cannot parse input as a JsonElement"));
+    }
+
+    @Test
+    public void invalidFieldsTest() {
+        /* Overlapping fields and arrays read both by index and [*] are rejected */
+        String[][] fields = { { "a", "a" }, { "a", "a.b" }, { "a.b", "a" }, { "a[0]", "a[*]" }, { "a[*]", "a[0]" },
+                { "a[x]" } };
+        for (String[] invalid : fields) {
+            try {
+                JsonProjection.compile("items", invalid);
+                assert (false);
+            } catch (IllegalArgumentException e) {
+                assert (e.getMessage() != null);
+            }
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@RunWith(SpringRunner.class)
+public class MicroBatcherTest {
+
+    private static HttpClientEngine engine;
+
+    @BeforeClass
+    public static void createEngine() {
+        engine = new HttpClientEngine(new HttpClientProperties());
+    }
+
+    @AfterClass
+    public static void closeEngine() throws IOException {
+        engine.close();
+    }
+
+    @Test
+    public void windowTest() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 50, 10, engine);
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+        /* Keys loaded within the window are loaded together, a key loaded twice is sent once */
+        CompletableFuture<String> a = batcher.load("group", "a", null, upperCase(batches));
+        CompletableFuture<String> b = batcher.load("group", "b", null, upperCase(batches));
+        CompletableFuture<String> again = batcher.load("group", "a", null, upperCase(batches));
+        assert (!a.isDone());
+        assert (batcher.getOpenCount() == 1);
+
+        assert (a.join().equals("A") && b.join().equals("B") && again.join().equals("A"));
+        assert (batches.size() == 1);
+        assert (batches.get(0).size() == 2);
+        assert (batcher.getLoadCount() == 3 && batcher.getKeyCount() == 2);
+        assert (batcher.getOpenCount() == 0);
+
+        /* Keys of other groups are loaded apart */
+        CompletableFuture<String> first = batcher.load("first", "c", null, upperCase(batches));
+        CompletableFuture<String> second = batcher.load("second", "c", null, upperCase(batches));
+        assert (first.join().equals("C") && second.join().equals("C"));
+        assert (batches.size() == 3);
+    }
+
+    @Test
+    public void fullTest() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 60000, 3, engine);
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+        /* A full batch is loaded at once without waiting for the window, the next key opens a new batch */
+        List<CompletableFuture<String>> loads = new ArrayList<>();
+        for (String key : new String[] { "a", "b", "c", "d" }) {
+            loads.add(batcher.load("group", key, null, upperCase(batches)));
+        }
+        assert (loads.get(0).join().equals("A") && loads.get(2).join().equals("C"));
+        assert (batches.size() == 1);
+        assert (!loads.get(3).isDone());
+        assert (batcher.getOpenCount() == 1);
+    }
+
+    @Test
+    public void failureTest() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 20, 10, engine);
+        MicroBatcher.Loader<String, String> failing = (group, keys, deadline) -> {
+            CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+            result.completeExceptionally(new IllegalStateException("failed"));
+            return result;
+        };
+
+        /* A failed batch fails each of its callers, a cancelled caller does not cancel the others */
+        CompletableFuture<String> a = batcher.load("group", "a", null, failing);
+        CompletableFuture<String> b = batcher.load("group", "b", null, failing);
+        a.cancel(false);
+        try {
+            b.join();
+            assert (false);
+        } catch (CompletionException e) {
+            assert (e.getCause() instanceof IllegalStateException);
+        }
+
+        /* Without a window, each key is loaded on its own and a missing result is null */
+        MicroBatcher<String, String> unbatched = new MicroBatcher<>("test", 0, 10, engine);
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        assert (unbatched.load("group", "a", null, upperCase(batches)).join().equals("A"));
+        assert (unbatched.load("group", "b", null, (group, keys, deadline) ->
+                CompletableFuture.completedFuture(new HashMap<>())).join() == null);
+        assert (batches.size() == 1);
+    }
+
+    @Test
+    public void cancelTest() throws InterruptedException {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 20, 10, engine);
+        List<CompletableFuture<Map<String, String>>> calls = new CopyOnWriteArrayList<>();
+        MicroBatcher.Loader<String, String> pending = (group, keys, deadline) -> {
+            CompletableFuture<Map<String, String>> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        };
+
+        /* The call of a batch is cancelled once its last caller cancels */
+        CompletableFuture<String> a = batcher.load("group", "a", null, pending);
+        CompletableFuture<String> b = batcher.load("group", "b", null, pending);
+        a.cancel(true);
+        Thread.sleep(100);
+        assert (calls.size() == 1);
+        assert (!calls.get(0).isCancelled());
+        b.cancel(true);
+        assert (calls.get(0).isCancelled());
+        assert (batcher.getCancelledCount() == 1);
+
+        /* A batch whose callers all cancelled while it was open is not sent */
+        batcher.load("group", "c", null, pending).cancel(true);
+        Thread.sleep(100);
+        assert (calls.size() == 1);
+        assert (batcher.getCancelledCount() == 2);
+        assert (batcher.getOpenCount() == 0);
+    }
+
+    @Test
+    public void deadlineTest() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 20, 10, engine);
+        List<Deadline> deadlines = new CopyOnWriteArrayList<>();
+        MicroBatcher.Loader<String, String> loader = (group, keys, deadline) -> {
+            deadlines.add(deadline);
+            return CompletableFuture.completedFuture(new HashMap<>());
+        };
+
+        /* A batch is loaded within the latest deadline of its callers, without one if a caller has none */
+        Deadline later = Deadline.after(5000);
+        batcher.load("group", "a", Deadline.after(1000), loader);
+        batcher.load("group", "b", later, loader).join();
+        batcher.load("group", "c", Deadline.after(1000), loader);
+        batcher.load("group", "d", null, loader).join();
+        assert (deadlines.get(0) == later);
+        assert (deadlines.get(1) == null);
+    }
+
+    /* Loads the keys as their upper case, recording the batches */
+    private static MicroBatcher.Loader<String, String> upperCase(List<List<String>> batches) {
+        return (group, keys, deadline) -> {
+            batches.add(keys);
+            Map<String, String> results = new HashMap<>();
+            for (String key : keys) {
+                results.put(key, key.toUpperCase());
+            }
+            return CompletableFuture.completedFuture(results);
+        };
+    }
+}
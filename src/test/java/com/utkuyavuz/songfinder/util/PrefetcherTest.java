@@ -0,0 +1,128 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import com.utkuyavuz.songfinder.configuration.PrefetchProperties;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+@RunWith(SpringRunner.class)
+public class PrefetcherTest {
+
+    private static HttpClientEngine engine;
+
+    @BeforeClass
+    public static void createEngine() {
+        engine = new HttpClientEngine(new HttpClientProperties());
+    }
+
+    @AfterClass
+    public static void closeEngine() throws IOException {
+        engine.close();
+    }
+
+    @Test
+    public void hitTest() throws InterruptedException {
+        Prefetcher prefetcher = new Prefetcher("test", properties(2, 1000, 200, 8), engine);
+        assert (prefetcher.submit("first", key -> CompletableFuture.completedFuture(100L)));
+        assert (prefetcher.submit("second", key -> CompletableFuture.completedFuture(300L)));
+        assert (prefetcher.getPrefetchedCount() == 2 && prefetcher.getOutstandingBytes() == 400);
+
+        /* A prefetched key is loaded once */
+        assert (!prefetcher.submit("first", key -> CompletableFuture.completedFuture(100L)));
+
+        /* A requested key is a hit, one which expires unrequested is wasted */
+        prefetcher.onRequested("first");
+        assert (prefetcher.getHitCount() == 1);
+        Thread.sleep(300);
+        assert (prefetcher.getWastedCount() == 1);
+        assert (prefetcher.getOutstandingBytes() == 0);
+        assert (prefetcher.getHitRatio() == 0.5);
+
+        /* Nothing to load is not a prefetch */
+        prefetcher.submit("cached", key -> CompletableFuture.completedFuture(0L));
+        assert (prefetcher.getPrefetchedCount() == 2 && prefetcher.getDroppedCount() == 1);
+    }
+
+    @Test
+    public void budgetTest() {
+        Map<String, CompletableFuture<Long>> loads = new ConcurrentHashMap<>();
+        Prefetcher prefetcher = new Prefetcher("test", properties(1, 100, 60000, 8), engine);
+
+        /* Only max-concurrent prefetches are in flight, the others wait in order */
+        for (String key : new String[] { "a", "b", "c" }) {
+            prefetcher.submit(key, loaded -> loads.computeIfAbsent(loaded, created -> new CompletableFuture<>()));
+        }
+        assert (prefetcher.getActiveCount() == 1 && prefetcher.getQueuedCount() == 2);
+        assert (loads.keySet().size() == 1 && loads.containsKey("a"));
+
+        /* A key requested while it is prefetched is a hit once loaded, one requested before it is started is not
+        prefetched */
+        prefetcher.onRequested("a");
+        prefetcher.onRequested("b");
+        loads.get("a").complete(50L);
+        assert (prefetcher.getHitCount() == 1 && prefetcher.getDroppedCount() == 1);
+        assert (loads.containsKey("c") && !loads.containsKey("b"));
+
+        /* Unrequested bytes over the budget hold the queue until they are requested */
+        loads.get("c").complete(150L);
+        prefetcher.submit("d", loaded -> loads.computeIfAbsent(loaded, created -> new CompletableFuture<>()));
+        assert (prefetcher.getQueuedCount() == 1 && !loads.containsKey("d"));
+        prefetcher.onRequested("c");
+        long start = System.nanoTime();
+        while (!loads.containsKey("d") && System.nanoTime() - start < 2_000_000_000L) {
+            Thread.yield();
+        }
+        assert (loads.containsKey("d"));
+    }
+
+    @Test
+    public void yieldTest() {
+        Map<String, CompletableFuture<Long>> loads = new ConcurrentHashMap<>();
+        Prefetcher prefetcher = new Prefetcher("test", properties(2, 1000, 60000, 2), engine);
+
+        /* Prefetches wait while the clients have requests in flight upstream */
+        engine.requestStarted("yield.test");
+        engine.requestStarted("yield.test");
+        try {
+            prefetcher.submit("a", loaded -> loads.computeIfAbsent(loaded, created -> new CompletableFuture<>()));
+            assert (prefetcher.getQueuedCount() == 1 && loads.isEmpty());
+        } finally {
+            engine.requestFinished("yield.test");
+            engine.requestFinished("yield.test");
+        }
+
+        /* And start once the traffic is over */
+        long start = System.nanoTime();
+        while (!loads.containsKey("a") && System.nanoTime() - start < 2_000_000_000L) {
+            Thread.yield();
+        }
+        assert (loads.containsKey("a") && prefetcher.getQueuedCount() == 0);
+    }
+
+    @Test
+    public void disabledTest() {
+        PrefetchProperties properties = properties(2, 1000, 60000, 8);
+        properties.setEnabled(false);
+        Prefetcher prefetcher = new Prefetcher("test", properties, engine);
+        assert (!prefetcher.submit("a", key -> CompletableFuture.completedFuture(100L)));
+        assert (prefetcher.getSubmittedCount() == 0);
+    }
+
+    private static PrefetchProperties properties(int maxConcurrent, long maxBytes, long ttl, int yieldInFlight) {
+        PrefetchProperties properties = new PrefetchProperties();
+        properties.setEnabled(true);
+        properties.setMaxConcurrent(maxConcurrent);
+        properties.setMaxBytes(maxBytes);
+        properties.setTtl(ttl);
+        properties.setYieldInFlight(yieldInFlight);
+        return properties;
+    }
+}
@@ -0,0 +1,97 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import com.utkuyavuz.songfinder.configuration.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+@RunWith(SpringRunner.class)
+public class RateLimiterTest {
+
+    private static HttpClientEngine engine;
+
+    @BeforeClass
+    public static void createEngine() {
+        engine = new HttpClientEngine(new HttpClientProperties());
+    }
+
+    @AfterClass
+    public static void closeEngine() throws IOException {
+        engine.close();
+    }
+
+    @Test
+    public void queueTest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RateLimiter limiter = new RateLimiter("test", properties(10, 2, 2), engine, registry);
+
+        /* The burst is granted at once, further requests wait for the refill in order */
+        assert (limiter.acquire("key", null).join());
+        assert (limiter.acquire("key", null).join());
+        CompletableFuture<Boolean> first = limiter.acquire("key", null);
+        CompletableFuture<Boolean> second = limiter.acquire("key", null);
+        assert (!first.isDone() && !second.isDone());
+        assert (limiter.getQueued() == 2);
+
+        /* A full queue rejects at once, other keys have buckets of their own */
+        assert (!limiter.acquire("key", null).join());
+        assert (limiter.acquire("other", null).join());
+
+        long start = System.nanoTime();
+        assert (first.join() && second.join());
+        assert (System.nanoTime() - start >= 100_000_000L);
+        assert (limiter.getQueued() == 0);
+        assert (registry.get("songfinder.ratelimit.wait").tag("outcome", "granted").timer().count() == 5);
+        assert (registry.get("songfinder.ratelimit.wait").tag("outcome", "rejected").timer().count() == 1);
+    }
+
+    @Test
+    public void deadlineTest() {
+        RateLimiter limiter = new RateLimiter("test", properties(1, 1, 10), engine, new SimpleMeterRegistry());
+        assert (limiter.acquire("key", null).join());
+
+        /* A permit which cannot be granted before the deadline is rejected at once */
+        assert (!limiter.acquire("key", Deadline.after(100)).join());
+
+        /* A cancelled request gives its place in the queue up */
+        CompletableFuture<Boolean> waiting = limiter.acquire("key", Deadline.after(5000));
+        assert (limiter.getQueued() == 1);
+        waiting.cancel(false);
+        assert (limiter.getQueued() == 0);
+    }
+
+    @Test
+    public void throttleTest() {
+        RateLimiter limiter = new RateLimiter("test", properties(10, 10, 10), engine, new SimpleMeterRegistry());
+        assert (limiter.acquire("key", null).join());
+
+        /* A 429 halves the rate and pauses the bucket for the Retry-After */
+        limiter.onThrottled("key", 300);
+        assert (limiter.getRate("key") == 5);
+        assert (limiter.getThrottledCount() == 1);
+        long start = System.nanoTime();
+        assert (limiter.acquire("key", null).join());
+        assert (System.nanoTime() - start >= 300_000_000L);
+
+        /* Successes raise the rate step by step, up to the configured rate */
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess("key");
+        }
+        assert (limiter.getRate("key") == 10);
+    }
+
+    private static RateLimitProperties properties(double rate, int burst, int maxQueue) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRate(rate);
+        properties.setBurst(burst);
+        properties.setMaxQueue(maxQueue);
+        return properties;
+    }
+}
@@ -0,0 +1,57 @@
+package com.utkuyavuz.songfinder.util;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(SpringRunner.class)
+public class RequestMetricsTest {
+
+    @Test
+    public void outcomeTest() {
+        assert (RequestMetrics.outcome(200).equals("ok"));
+        assert (RequestMetrics.outcome(206).equals("ok"));
+        assert (RequestMetrics.outcome(401).equals("401"));
+        assert (RequestMetrics.outcome(404).equals("404"));
+        assert (RequestMetrics.outcome(429).equals("429"));
+        assert (RequestMetrics.outcome(400).equals("4xx"));
+        assert (RequestMetrics.outcome(502).equals("5xx"));
+    }
+
+    @Test
+    public void recordStageTest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RequestMetrics metrics = new RequestMetrics(registry);
+
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+        metrics.recordStage(RequestMetrics.SEARCH, 200, start);
+        metrics.recordStage(RequestMetrics.SEARCH, 200, start);
+        metrics.recordStage(RequestMetrics.SEARCH, 404, start);
+
+        /* Stages should be timed by outcome */
+        Timer ok = registry.get("songfinder.request.stage").tag("stage", "search").tag("outcome", "ok").timer();
+        Timer notFound = registry.get("songfinder.request.stage").tag("stage", "search").tag("outcome", "404")
+                .timer();
+        assert (ok.count() == 2);
+        assert (ok.totalTime(TimeUnit.MILLISECONDS) >= 10);
+        assert (notFound.count() == 1);
+    }
+
+    @Test
+    public void recordRequestTest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RequestMetrics metrics = new RequestMetrics(registry);
+
+        metrics.requestStarted();
+        assert (registry.get("songfinder.request.inflight").gauge().value() == 1);
+
+        metrics.recordRequest(503, System.nanoTime());
+        metrics.requestCompleted();
+        assert (registry.get("songfinder.request").tag("outcome", "5xx").timer().count() == 1);
+        assert (registry.get("songfinder.request.inflight").gauge().value() == 0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.MDC;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(SpringRunner.class)
+public class RequestTraceTest {
+
+    @Test
+    public void idTest() {
+        /* A valid client id is kept, others are replaced by a generated one */
+        assert (new RequestTrace("abc-123_x.y").getId().equals("abc-123_x.y"));
+        assert (!new RequestTrace("abc\r\nSet-Cookie: x").getId().contains("\n"));
+        assert (!new RequestTrace(null).getId().isEmpty());
+        assert (!new RequestTrace(null).getId().equals(new RequestTrace(null).getId()));
+    }
+
+    @Test
+    public void serverTimingTest() {
+        RequestTrace trace = new RequestTrace(null);
+        assert (trace.toServerTiming().isEmpty());
+
+        trace.setStage(RequestMetrics.SEARCH, TimeUnit.MICROSECONDS.toNanos(12345));
+        trace.setStage(RequestMetrics.PREVIEW, TimeUnit.MILLISECONDS.toNanos(80));
+        trace.setCacheHit(false);
+        assert (trace.toServerTiming().equals("search;dur=12.345, preview;dur=80.0, cache;desc=miss"));
+
+        trace.setStage(RequestMetrics.PARSE, TimeUnit.MICROSECONDS.toNanos(300));
+        trace.setCacheHit(true);
+        assert (trace.toServerTiming().equals("search;dur=12.345, parse;dur=0.3, preview;dur=80.0, cache;desc=hit"));
+    }
+
+    @Test
+    public void propagationTest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RequestTrace trace = new RequestTrace("traced");
+            RequestTrace previous = RequestTrace.attach(trace);
+            CompletableFuture<String> id;
+            try {
+                assert ("traced".equals(MDC.get(RequestTrace.MDC_KEY)));
+                /* Tasks of the wrapped executor run within the trace */
+                id = CompletableFuture.supplyAsync(() -> RequestTrace.current().getId() + MDC.get(RequestTrace.MDC_KEY),
+                        RequestTrace.wrap(executor));
+            } finally {
+                RequestTrace.restore(previous);
+            }
+            assert (id.get().equals("tracedtraced"));
+            assert (RequestTrace.current() == null);
+            assert (MDC.get(RequestTrace.MDC_KEY) == null);
+
+            /* The thread of the executor is left without a trace */
+            assert (CompletableFuture.supplyAsync(RequestTrace::current, executor).get() == null);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
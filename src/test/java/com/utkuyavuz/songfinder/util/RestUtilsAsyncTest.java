@@ -0,0 +1,103 @@
+package com.utkuyavuz.songfinder.util;
+
+import com.utkuyavuz.songfinder.configuration.HttpClientProperties;
+import com.utkuyavuz.songfinder.emulator.Latency;
+import com.utkuyavuz.songfinder.emulator.SpotifyEmulator;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/* The non-blocking requests of RestUtils against the Spotify emulator */
+@RunWith(SpringRunner.class)
+public class RestUtilsAsyncTest {
+
+    private static SpotifyEmulator emulator;
+    private static HttpClientEngine engine;
+
+    @BeforeClass
+    public static void startEmulator() throws IOException {
+        emulator = new SpotifyEmulator();
+        engine = new HttpClientEngine(new HttpClientProperties());
+    }
+
+    @AfterClass
+    public static void stopEmulator() throws IOException {
+        engine.close();
+        emulator.close();
+    }
+
+    @Before
+    public void resetEmulator() {
+        emulator.reset();
+    }
+
+    @Test
+    public void getAsyncTest() {
+        /* The response of the emulator, completed without blocking the caller */
+        emulator.getSearch().setLatency(Latency.fixed(200));
+        CompletableFuture<RestUtils> future = search("token").getAsync();
+        assert (!future.isDone());
+
+        RestUtils restUtils = future.join();
+        assert (restUtils.isSuccess());
+        assert (restUtils.getStatusCode() == HttpStatus.OK);
+        assert (restUtils.getResponse().contains("\"tracks\""));
+        assert (engine.getInFlight() == 0);
+    }
+
+    @Test
+    public void errorStatusTest() {
+        /* Error statuses are mapped as for a blocking request */
+        RestUtils expired = search(SpotifyEmulator.EXPIRED_TOKEN_PREFIX).getAsync().join();
+        assert (!expired.isSuccess());
+        assert (expired.getStatusCode() == HttpStatus.UNAUTHORIZED);
+        assert ("Unauthorized, try to renew access token.".equals(expired.getErrorMessage()));
+        assert (!expired.isRetryable());
+
+        RestUtils missing = new RestUtils(engine, emulator.getBaseUrl() + "/v1/missing").getAsync().join();
+        assert (missing.getStatusCode() == HttpStatus.NOT_FOUND);
+        assert (missing.getErrorMessage().startsWith("Endpoint ["));
+
+        emulator.getSearch().failNext(1);
+        RestUtils failed = search("token").getAsync().join();
+        assert (failed.getStatusCode().is5xxServerError());
+        assert (failed.isRetryable());
+
+        emulator.getSearch().setLatency(Latency.fixed(2000));
+        RestUtils timedOut = search("token").withDeadline(Deadline.after(200)).getAsync().join();
+        assert (timedOut.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT);
+        assert (engine.getInFlight() == 0);
+    }
+
+    @Test
+    public void cancelTest() throws InterruptedException {
+        emulator.getSearch().setLatency(Latency.fixed(2000));
+        CompletableFuture<RestUtils> future = search("token").getAsync();
+        Thread.sleep(100);
+        assert (engine.getInFlight() == 1);
+
+        /* Cancelling the future should abort the request well before the emulator answers */
+        future.cancel(true);
+        for (int i = 0; i < 50 && engine.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assert (engine.getInFlight() == 0);
+        assert (future.isCancelled());
+    }
+
+    /* A search request of the emulator with the given access token */
+    private static RestUtils search(String token) {
+        return new RestUtils(engine, emulator.getBaseUrl() + "/v1/search")
+                .addHeader("Authorization", "Bearer " + token)
+                .addParameter("q", "Async")
+                .addParameter("type", "track")
+                .addParameter("limit", "1");
+    }
+}
@@ -0,0 +1,151 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(SpringRunner.class)
+public class SingleFlightTest {
+
+    @Test
+    public void coalesceTest() {
+        /* Callers arriving while the call is in flight share its result */
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flight.execute("key", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = flight.execute("key", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assert (flight.getInFlightCount() == 1);
+
+        upstream.complete("result");
+        assert ("result".equals(first.join()));
+        assert ("result".equals(second.join()));
+        assert (calls.get() == 1);
+        assert (flight.getCallCount() == 1);
+        assert (flight.getCoalescedCount() == 1);
+        assert (flight.getInFlightCount() == 0);
+    }
+
+    @Test
+    public void errorTest() {
+        /* Callers share the error, the next caller starts a new call */
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.execute("key", () -> upstream);
+        CompletableFuture<String> second = flight.execute("key", () -> upstream);
+        upstream.completeExceptionally(new IllegalStateException("failed"));
+
+        for (CompletableFuture<String> future : Arrays.asList(first, second)) {
+            try {
+                future.join();
+                assert (false);
+            } catch (CompletionException e) {
+                assert (e.getCause() instanceof IllegalStateException);
+            }
+        }
+        assert ("again".equals(flight.execute("key", () -> CompletableFuture.completedFuture("again")).join()));
+        assert (flight.getCallCount() == 2);
+    }
+
+    @Test
+    public void cancelTest() {
+        /* A caller cancelling its future does not affect the others */
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.execute("key", () -> upstream);
+        CompletableFuture<String> second = flight.execute("key", () -> upstream);
+        first.cancel(false);
+        upstream.complete("result");
+        assert ("result".equals(second.join()));
+    }
+
+    @Test
+    public void abandonTest() {
+        /* The call is cancelled once its last caller cancels, and the next caller starts a new call */
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.execute("key", () -> upstream);
+        CompletableFuture<String> second = flight.execute("key", () -> upstream);
+        first.cancel(true);
+        assert (!upstream.isCancelled());
+        second.cancel(true);
+        assert (upstream.isCancelled());
+        assert (flight.getCancelledCount() == 1);
+        assert (flight.getInFlightCount() == 0);
+        assert ("again".equals(flight.execute("key", () -> CompletableFuture.completedFuture("again")).join()));
+        assert (flight.getCallCount() == 2);
+    }
+
+    @Test
+    public void keyTest() {
+        /* Different keys do not share a call */
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        flight.execute("a", () -> upstream);
+        flight.execute("b", () -> upstream);
+        assert (flight.getCallCount() == 2);
+        assert (flight.getCoalescedCount() == 0);
+    }
+
+    @Test
+    public void deadlineTest() throws InterruptedException {
+        /* A caller with time left runs the call again once it times out within the deadline of its first caller */
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.execute("key", Deadline.after(50), () -> upstream,
+                "timeout"::equals);
+        CompletableFuture<String> shorter = flight.execute("key", Deadline.after(20), () -> upstream,
+                "timeout"::equals);
+        CompletableFuture<String> later = flight.execute("key", Deadline.after(5000),
+                () -> CompletableFuture.completedFuture("result"), "timeout"::equals);
+        Thread.sleep(100);
+        upstream.complete("timeout");
+
+        assert ("timeout".equals(first.join()));
+        assert ("timeout".equals(shorter.join()));
+        assert ("result".equals(later.join()));
+        assert (flight.getCallCount() == 2);
+        assert (flight.getRetriedCount() == 1);
+
+        /* A call which fails within the deadline of its first caller is shared */
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        CompletableFuture<String> leader = flight.execute("key", Deadline.after(5000), () -> failing,
+                "timeout"::equals);
+        CompletableFuture<String> follower = flight.execute("key", Deadline.after(10000),
+                () -> CompletableFuture.completedFuture("result"), "timeout"::equals);
+        failing.complete("timeout");
+        assert ("timeout".equals(leader.join()) && "timeout".equals(follower.join()));
+        assert (flight.getRetriedCount() == 1);
+    }
+
+    @Test
+    public void deadlineCancelTest() throws InterruptedException {
+        /* Cancelling a caller which runs the call again cancels its own call */
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> retried = new CompletableFuture<>();
+        flight.execute("key", Deadline.after(20), () -> upstream, "timeout"::equals);
+        CompletableFuture<String> later = flight.execute("key", Deadline.after(5000), () -> retried,
+                "timeout"::equals);
+        Thread.sleep(50);
+        upstream.complete("timeout");
+        assert (!later.isDone());
+        assert (flight.getInFlightCount() == 1);
+
+        later.cancel(true);
+        assert (retried.isCancelled());
+        assert (flight.getInFlightCount() == 0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.DispatcherType;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+@RunWith(SpringRunner.class)
+public class StreamingContentHttpMessageConverterTest {
+
+    private static final MediaType AUDIO = MediaType.parseMediaType("audio/mpeg");
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final StreamingContentHttpMessageConverter converter = new StreamingContentHttpMessageConverter();
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private Path file;
+    private byte[] audio;
+
+    @Before
+    public void initialize() throws IOException {
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        audio = new byte[1000];
+        Arrays.fill(audio, (byte) 7);
+        file = folder.newFile("audio").toPath().toRealPath();
+        Files.write(file, audio);
+    }
+
+    @After
+    public void reset() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void sendfileTest() throws IOException {
+        /* A region of a file is left to the container, which sends it itself */
+        request.setAttribute(SENDFILE_SUPPORT, Boolean.TRUE);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        StreamingContent content = new FileContent(channel, file, 0, audio.length).slice(100, 500);
+        converter.write(content, AUDIO, new ServletServerHttpResponse(response));
+
+        assert (file.toString().equals(request.getAttribute("org.apache.tomcat.sendfile.filename")));
+        assert (Long.valueOf(100).equals(request.getAttribute("org.apache.tomcat.sendfile.start")));
+        assert (Long.valueOf(600).equals(request.getAttribute("org.apache.tomcat.sendfile.end")));
+        assert (response.getContentLengthLong() == 500);
+        assert (response.getContentAsByteArray().length == 0);
+        assert (!channel.isOpen());
+    }
+
+    @Test
+    public void copyTest() throws IOException {
+        /* Without the support of the container, or in an asynchronous dispatch, the file is written */
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        converter.write(new FileContent(channel, file, 0, audio.length), AUDIO,
+                new ServletServerHttpResponse(response));
+        assert (Arrays.equals(audio, response.getContentAsByteArray()));
+        assert (!channel.isOpen());
+
+        request.setAttribute(SENDFILE_SUPPORT, Boolean.TRUE);
+        request.setDispatcherType(DispatcherType.ASYNC);
+        response = new MockHttpServletResponse();
+        converter.write(new FileContent(FileChannel.open(file, StandardOpenOption.READ), file, 0, audio.length),
+                AUDIO, new ServletServerHttpResponse(response));
+        assert (Arrays.equals(audio, response.getContentAsByteArray()));
+        assert (request.getAttribute("org.apache.tomcat.sendfile.filename") == null);
+    }
+}
@@ -0,0 +1,168 @@
+package com.utkuyavuz.songfinder.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+@RunWith(SpringRunner.class)
+public class ZipContentTest {
+
+    @Test
+    public void completionOrderTest() throws IOException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger maxOpened = new AtomicInteger();
+        try {
+            /* Later entries open faster, each one is written as soon as it is opened */
+            long[] delays = { 300, 100, 10, 200 };
+            ZipContent zip = new ZipContent(4, 2, 0, index -> {
+                maxOpened.accumulateAndGet(opened.incrementAndGet(), Math::max);
+                CompletableFuture<ZipContent.Entry> entry = new CompletableFuture<>();
+                scheduler.schedule(() -> entry.complete(entry(index + ".txt", "Entry " + index, opened)),
+                        delays[index], TimeUnit.MILLISECONDS);
+                return entry;
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            zip.writeTo(out);
+
+            /* Only the window is held at once */
+            assert (maxOpened.get() == 2);
+            assert (opened.get() == 0);
+            List<String> names = new ArrayList<>();
+            for (String[] entry : read(out.toByteArray())) {
+                names.add(entry[0]);
+                assert (entry[1].equals("Entry " + entry[0].charAt(0)));
+            }
+            assert (names.equals(Arrays.asList("1.txt", "2.txt", "0.txt", "3.txt")));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureTest() throws IOException {
+        /* An entry which cannot be opened is left out, the others are written */
+        ZipContent zip = new ZipContent(3, 2, 0, index -> {
+            if (index == 1) {
+                CompletableFuture<ZipContent.Entry> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("Not found"));
+                return failed;
+            }
+            return CompletableFuture.completedFuture(entry(index + ".txt", "Entry " + index, null));
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        zip.writeTo(out);
+        List<String[]> entries = read(out.toByteArray());
+        assert (entries.size() == 2);
+        assert (entries.get(0)[0].equals("0.txt") && entries.get(1)[0].equals("2.txt"));
+    }
+
+    @Test
+    public void timeoutTest() throws IOException {
+        /* The archive is ended with the entries written before the timeout */
+        List<CompletableFuture<ZipContent.Entry>> pending = new CopyOnWriteArrayList<>();
+        ZipContent zip = new ZipContent(3, 3, 200, index -> {
+            if (index == 0) {
+                return CompletableFuture.completedFuture(entry("0.txt", "Entry 0", null));
+            }
+            CompletableFuture<ZipContent.Entry> entry = new CompletableFuture<>();
+            pending.add(entry);
+            return entry;
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        zip.writeTo(out);
+        assert (System.nanoTime() - start >= 200_000_000L);
+        assert (read(out.toByteArray()).size() == 1);
+
+        /* An entry opened after the archive is ended is released */
+        AtomicInteger released = new AtomicInteger(1);
+        pending.get(0).complete(entry("1.txt", "Entry 1", released));
+        assert (released.get() == 0);
+    }
+
+    @Test
+    public void clientGoneTest() {
+        /* A failed write stops opening entries and releases the opened ones */
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+        ZipContent zip = new ZipContent(10, 2, 0, index -> {
+            opened.incrementAndGet();
+            released.incrementAndGet();
+            return CompletableFuture.completedFuture(entry(index + ".txt", "Entry " + index, released));
+        });
+        try {
+            zip.writeTo(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("Client has gone away");
+                }
+            });
+            assert (false);
+        } catch (IOException e) {
+            assert (e.getMessage().equals("Client has gone away"));
+        }
+        assert (opened.get() == 2);
+        assert (released.get() == 0);
+    }
+
+    /* An entry which counts itself down when it is released */
+    private static ZipContent.Entry entry(String name, String text, AtomicInteger open) {
+        ByteBufferContent content = new ByteBufferContent(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        return new ZipContent.Entry(name, new StreamingContent() {
+            @Override
+            public long getContentLength() {
+                return content.getContentLength();
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                content.writeTo(out);
+            }
+
+            @Override
+            public void close() {
+                if (open != null) {
+                    open.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /* Reads the names and the contents of the entries of an archive */
+    private static List<String[]> read(byte[] archive) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+                String text = new String(content.toByteArray(), StandardCharsets.UTF_8);
+                entries.add(new String[] { entry.getName(), text });
+            }
+        }
+        return entries;
+    }
+}